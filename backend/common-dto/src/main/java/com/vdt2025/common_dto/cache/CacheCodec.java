@@ -0,0 +1,12 @@
+package com.vdt2025.common_dto.cache;
+
+/**
+ * Codec chuyển giá trị cache sang byte[] và ngược lại
+ * Triển khai phải tự mang thông tin kiểu để decode không cần biết trước class
+ */
+public interface CacheCodec {
+
+    byte[] encode(Object value) throws Exception;
+
+    Object decode(byte[] bytes, int offset, int length) throws Exception;
+}
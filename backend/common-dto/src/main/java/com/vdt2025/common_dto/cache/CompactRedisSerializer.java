@@ -0,0 +1,143 @@
+package com.vdt2025.common_dto.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * RedisSerializer cho cache dùng {@link CacheCodec} nhị phân, nén LZ4 khi payload vượt ngưỡng
+ *
+ * Định dạng: [magic 2 byte][version][flags][(độ dài gốc 4 byte nếu nén)][payload]
+ *
+ * Migration từ JSON:
+ * - Đọc: byte không bắt đầu bằng magic được đọc bằng serializer JSON cũ, nên entry cũ vẫn dùng được đến khi hết TTL
+ * - Ghi: {@link WriteFormat#JSON} vẫn ghi JSON (dùng khi rolling deploy để instance cũ còn đọc được),
+ *   chuyển sang {@link WriteFormat#COMPACT} khi mọi instance đã có serializer này
+ *
+ * Dùng chung cho cache config của mọi service:
+ * <pre>
+ * CompactRedisSerializer.create(objectMapper, WriteFormat.COMPACT, 1024)
+ * </pre>
+ */
+@Slf4j
+public class CompactRedisSerializer implements RedisSerializer<Object> {
+
+    private static final byte MAGIC_0 = (byte) 0xCC;
+    private static final byte MAGIC_1 = (byte) 0xDC;
+    private static final byte VERSION = 1;
+    private static final byte FLAG_LZ4 = 1;
+    private static final int HEADER_SIZE = 4;
+
+    public enum WriteFormat {
+        JSON, COMPACT
+    }
+
+    private final CacheCodec codec;
+    private final RedisSerializer<Object> legacySerializer;
+    private final WriteFormat writeFormat;
+    private final int compressionThreshold;
+    private final LZ4Compressor compressor;
+    private final LZ4FastDecompressor decompressor;
+
+    /**
+     * @param compressionThreshold kích thước payload (byte) từ đó trở lên thì nén LZ4, <= 0 để tắt nén
+     */
+    public CompactRedisSerializer(CacheCodec codec, RedisSerializer<Object> legacySerializer,
+                                  WriteFormat writeFormat, int compressionThreshold) {
+        this.codec = codec;
+        this.legacySerializer = legacySerializer;
+        this.writeFormat = writeFormat;
+        this.compressionThreshold = compressionThreshold;
+        LZ4Factory factory = LZ4Factory.fastestInstance();
+        this.compressor = factory.fastCompressor();
+        this.decompressor = factory.fastDecompressor();
+    }
+
+    /**
+     * Serializer Smile + LZ4, đọc được entry JSON cũ ghi bởi GenericJackson2JsonRedisSerializer cùng ObjectMapper
+     *
+     * @param objectMapper ObjectMapper JSON đã cấu hình (module, default typing) của service
+     */
+    public static CompactRedisSerializer create(ObjectMapper objectMapper, WriteFormat writeFormat,
+                                                int compressionThreshold) {
+        return new CompactRedisSerializer(
+                new SmileCacheCodec(objectMapper),
+                new GenericJackson2JsonRedisSerializer(objectMapper),
+                writeFormat,
+                compressionThreshold);
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        if (writeFormat == WriteFormat.JSON) {
+            return legacySerializer.serialize(value);
+        }
+
+        byte[] payload;
+        try {
+            payload = codec.encode(value);
+        } catch (Exception e) {
+            throw new SerializationException("Could not encode cache value: " + e.getMessage(), e);
+        }
+
+        if (compressionThreshold <= 0 || payload.length < compressionThreshold) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+            header(buffer, (byte) 0);
+            return buffer.put(payload).array();
+        }
+
+        int maxLength = compressor.maxCompressedLength(payload.length);
+        byte[] out = new byte[HEADER_SIZE + 4 + maxLength];
+        ByteBuffer buffer = ByteBuffer.wrap(out);
+        header(buffer, FLAG_LZ4);
+        buffer.putInt(payload.length);
+        int compressedLength = compressor.compress(payload, 0, payload.length, out, HEADER_SIZE + 4, maxLength);
+        byte[] result = new byte[HEADER_SIZE + 4 + compressedLength];
+        System.arraycopy(out, 0, result, 0, result.length);
+        return result;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (!isCompact(bytes)) {
+            // Entry JSON ghi trước khi chuyển codec
+            return legacySerializer.deserialize(bytes);
+        }
+        if (bytes[2] != VERSION) {
+            throw new SerializationException("Unsupported cache codec version " + bytes[2]);
+        }
+
+        try {
+            if ((bytes[3] & FLAG_LZ4) == 0) {
+                return codec.decode(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE);
+            }
+            int originalLength = ByteBuffer.wrap(bytes, HEADER_SIZE, 4).getInt();
+            byte[] payload = new byte[originalLength];
+            decompressor.decompress(bytes, HEADER_SIZE + 4, payload, 0, originalLength);
+            return codec.decode(payload, 0, originalLength);
+        } catch (Exception e) {
+            throw new SerializationException("Could not decode cache value: " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean isCompact(byte[] bytes) {
+        return bytes.length >= HEADER_SIZE && bytes[0] == MAGIC_0 && bytes[1] == MAGIC_1;
+    }
+
+    private static void header(ByteBuffer buffer, byte flags) {
+        buffer.put(MAGIC_0).put(MAGIC_1).put(VERSION).put(flags);
+    }
+}
@@ -0,0 +1,38 @@
+package com.vdt2025.common_dto.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+/**
+ * Codec nhị phân Smile (binary JSON của Jackson)
+ *
+ * Dùng cùng cấu hình ObjectMapper (module, default typing) với serializer JSON của service nên mọi DTO
+ * đang cache được giữ nguyên hành vi, nhưng:
+ * - tên field và chuỗi lặp lại (kể cả tên class của default typing) chỉ ghi một lần rồi tham chiếu ngược
+ * - số được ghi dạng nhị phân thay vì text
+ */
+public class SmileCacheCodec implements CacheCodec {
+
+    private final ObjectMapper smileMapper;
+
+    /**
+     * @param jsonMapper ObjectMapper JSON đã cấu hình của service (được copy, không bị thay đổi)
+     */
+    public SmileCacheCodec(ObjectMapper jsonMapper) {
+        SmileFactory smileFactory = SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build();
+        this.smileMapper = jsonMapper.copyWith(smileFactory);
+    }
+
+    @Override
+    public byte[] encode(Object value) throws Exception {
+        return smileMapper.writeValueAsBytes(value);
+    }
+
+    @Override
+    public Object decode(byte[] bytes, int offset, int length) throws Exception {
+        return smileMapper.readValue(bytes, offset, length, Object.class);
+    }
+}
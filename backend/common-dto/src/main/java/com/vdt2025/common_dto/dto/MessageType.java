@@ -32,7 +32,11 @@ public enum MessageType {
     ORDER_RETURN_REJECTED("order.return.rejected", "order-return-rejected-queue"),
 
     // Seller notifications for orders
-    SELLER_NEW_ORDER("seller.new.order", "seller-new-order-queue");
+    SELLER_NEW_ORDER("seller.new.order", "seller-new-order-queue"),
+
+    // Saga đặt hàng: order-service yêu cầu giữ hàng, product-service trả kết quả
+    INVENTORY_RESERVE_REQUESTED("inventory.reserve.requested", "inventory-reserve-requested-queue"),
+    INVENTORY_RESERVE_RESULT("inventory.reserve.result", "inventory-reserve-result-queue");
 
     private final String routingKey;
     private final String queueName;
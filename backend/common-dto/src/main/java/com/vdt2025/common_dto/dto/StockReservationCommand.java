@@ -0,0 +1,56 @@
+package com.vdt2025.common_dto.dto;
+
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Lệnh giữ hàng cho một lần checkout (order-service -> product-service)
+ * Được ghi vào outbox cùng transaction tạo đơn và relay sang RabbitMQ (at-least-once),
+ * product-service xử lý idempotent theo reservationId
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReservationCommand implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * ID của lần giữ hàng, dùng chung cho mọi đơn (theo store) tạo từ cùng một checkout
+     */
+    private String reservationId;
+
+    /**
+     * Các variant cần giữ, giữ tất cả hoặc không giữ gì
+     */
+    private List<Item> items;
+
+    /**
+     * Thời điểm tạo lệnh
+     */
+    private LocalDateTime timestamp;
+
+    /**
+     * Source service tạo ra lệnh
+     */
+    private String source;
+
+    @Getter
+    @Setter
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private String variantId;
+
+        private Integer quantity;
+    }
+}
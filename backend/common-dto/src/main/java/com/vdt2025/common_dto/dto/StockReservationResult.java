@@ -0,0 +1,40 @@
+package com.vdt2025.common_dto.dto;
+
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Kết quả giữ hàng (product-service -> order-service)
+ * Có thể được gửi lại nhiều lần cho cùng reservationId, bên nhận xử lý idempotent
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReservationResult implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * ID của lần giữ hàng (trùng với StockReservationCommand.reservationId)
+     */
+    private String reservationId;
+
+    /**
+     * true nếu đã giữ đủ tất cả variant
+     */
+    private boolean success;
+
+    /**
+     * Lý do từ chối (mã lỗi của product-service), null khi thành công
+     */
+    private String reason;
+
+    /**
+     * Thời điểm xử lý
+     */
+    private LocalDateTime timestamp;
+}
@@ -0,0 +1,53 @@
+package com.vdt2025.common_dto.dto;
+
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Message DTO cho sự kiện Variant thay đổi (giá, tồn kho, trạng thái)
+ * Được publish qua RabbitMQ để các service giữ bản sao variant (order-service) làm mới cache
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VariantChangedMessage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Routing key trên notification-exchange
+     */
+    public static final String ROUTING_KEY = "product.variant.changed";
+
+    /**
+     * ID các variant bị thay đổi
+     */
+    private List<String> variantIds;
+
+    /**
+     * Loại thay đổi: PRICE, STOCK, STATUS, DELETED
+     */
+    private ChangeType changeType;
+
+    /**
+     * Thời điểm xảy ra thay đổi
+     */
+    private LocalDateTime timestamp;
+
+    /**
+     * Source service tạo ra event
+     */
+    private String source;
+
+    public enum ChangeType {
+        PRICE,
+        STOCK,
+        STATUS,
+        DELETED
+    }
+}
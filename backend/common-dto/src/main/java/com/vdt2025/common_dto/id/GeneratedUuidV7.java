@@ -0,0 +1,18 @@
+package com.vdt2025.common_dto.id;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Khóa chính sinh bằng {@link UuidV7} khi insert (thay cho @GeneratedValue(strategy = GenerationType.UUID))
+ * Field kiểu String hoặc UUID
+ */
+@IdGeneratorType(UuidV7Generator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface GeneratedUuidV7 {
+}
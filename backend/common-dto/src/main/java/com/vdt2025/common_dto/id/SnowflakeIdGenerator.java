@@ -0,0 +1,117 @@
+package com.vdt2025.common_dto.id;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Sinh id 64 bit kiểu Snowflake, tăng dần theo thời gian, không trùng giữa các instance
+ *
+ * Bố cục: 1 bit dấu (0) | 41 bit millis từ {@link #EPOCH_MILLIS} | 10 bit node | 12 bit sequence
+ * - Node id phải khác nhau giữa các instance cùng sinh một loại id: cấu hình tường minh hoặc thuê qua
+ *   {@link SnowflakeNodeLease} (generator ngừng sinh id khi lease mất hiệu lực)
+ * - Lock-free: trạng thái (millis, sequence) nằm trong một AtomicLong, cập nhật bằng CAS
+ * - Hết 4096 id trong một millis hoặc đồng hồ bị lùi: mượn millis kế tiếp thay vì chờ / ném lỗi,
+ *   nên id luôn tăng ngặt trong một node (đồng hồ logic chỉ chạy trước đồng hồ thật trong lúc đó)
+ */
+public final class SnowflakeIdGenerator {
+
+    /**
+     * 2025-01-01T00:00:00Z - 41 bit millis đủ dùng khoảng 69 năm
+     */
+    public static final long EPOCH_MILLIS = 1735689600000L;
+
+    public static final int NODE_BITS = 10;
+    public static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int TIMESTAMP_SHIFT = NODE_BITS + SEQUENCE_BITS;
+
+    // Ngày trong mã đơn / mã giao dịch theo giờ Việt Nam (ZaloPay yêu cầu yyMMdd theo GMT+7)
+    private static final ZoneId BUSINESS_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+    private static final DateTimeFormatter DATE_PREFIX = DateTimeFormatter.ofPattern("yyMMdd").withZone(BUSINESS_ZONE);
+
+    private final long nodeId;
+    private final LongSupplier clock;
+    private final BooleanSupplier nodeValid;
+    // (millis từ epoch << SEQUENCE_BITS) | sequence của id cuối cùng
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeIdGenerator(int nodeId) {
+        this(nodeId, System::currentTimeMillis, () -> true);
+    }
+
+    /**
+     * Generator dùng node id được thuê, chỉ sinh id khi lease còn hiệu lực
+     */
+    public SnowflakeIdGenerator(SnowflakeNodeLease lease) {
+        this(lease.getNodeId(), System::currentTimeMillis, lease::isValid);
+    }
+
+    SnowflakeIdGenerator(int nodeId, LongSupplier clock, BooleanSupplier nodeValid) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be in [0, " + MAX_NODE_ID + "]: " + nodeId);
+        }
+        this.nodeId = nodeId;
+        this.clock = clock;
+        this.nodeValid = nodeValid;
+    }
+
+    public int getNodeId() {
+        return (int) nodeId;
+    }
+
+    /**
+     * @throws IllegalStateException nếu lease node id đã mất hiệu lực
+     */
+    public long nextId() {
+        if (!nodeValid.getAsBoolean()) {
+            throw new IllegalStateException("Snowflake node id " + nodeId + " is no longer leased");
+        }
+        long next = state.updateAndGet(previous -> {
+            long now = (clock.getAsLong() - EPOCH_MILLIS) << SEQUENCE_BITS;
+            // Cùng millis (hoặc đồng hồ lùi): tăng sequence; tràn sequence thì tự cộng sang millis kế tiếp
+            return now > previous ? now : previous + 1;
+        });
+        long millis = next >>> SEQUENCE_BITS;
+        long sequence = next & SEQUENCE_MASK;
+        return millis << TIMESTAMP_SHIFT | nodeId << SEQUENCE_BITS | sequence;
+    }
+
+    /**
+     * Mã đơn hàng hiển thị: ORD-yyMMdd-XXXXXXXXXXXXX (id dạng base36 viết hoa, tăng dần theo thời gian)
+     */
+    public String nextOrderNumber() {
+        long id = nextId();
+        return "ORD-" + DATE_PREFIX.format(timestampOf(id)) + "-" + Long.toString(id, 36).toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * app_trans_id của ZaloPay: yyMMdd_xxxx (ngày GMT+7 trùng với thời điểm trong id, tối đa 40 ký tự)
+     */
+    public String nextZaloPayTransId() {
+        long id = nextId();
+        return DATE_PREFIX.format(timestampOf(id)) + "_" + id;
+    }
+
+    /**
+     * m_refund_id của ZaloPay: yyMMdd_appid_xxxx
+     */
+    public String nextZaloPayRefundId(long appId) {
+        long id = nextId();
+        return DATE_PREFIX.format(timestampOf(id)) + "_" + appId + "_" + id;
+    }
+
+    public static Instant timestampOf(long id) {
+        return Instant.ofEpochMilli((id >>> TIMESTAMP_SHIFT) + EPOCH_MILLIS);
+    }
+
+    public static int nodeIdOf(long id) {
+        return (int) (id >>> SEQUENCE_BITS & MAX_NODE_ID);
+    }
+}
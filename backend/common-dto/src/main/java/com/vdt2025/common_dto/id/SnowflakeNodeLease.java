@@ -0,0 +1,133 @@
+package com.vdt2025.common_dto.id;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thuê một node id của {@link SnowflakeIdGenerator} trên Redis để các replica không bao giờ dùng trùng node id
+ *
+ * - Mỗi node id là một key id-generator:{namespace}:node:{n} (SET NX PX) chứa owner của instance
+ * - Lease được gia hạn mỗi ttl/3 trên thread nền; instance khác chỉ lấy được node id khi key hết hạn
+ * - Gia hạn thất bại (Redis lỗi, key đã thuộc instance khác) thì lease hết hiệu lực trước khi key hết hạn
+ *   trên Redis, generator ngừng sinh id thay vì có thể sinh trùng
+ */
+@Slf4j
+public final class SnowflakeNodeLease implements AutoCloseable {
+
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>("""
+            local owner = redis.call('GET', KEYS[1])
+            if owner == ARGV[1] then
+                redis.call('PEXPIRE', KEYS[1], ARGV[2])
+                return 1
+            end
+            if not owner then
+                redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])
+                return 1
+            end
+            return 0
+            """, Long.class);
+
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final String key;
+    private final String owner;
+    private final int nodeId;
+    private final Duration ttl;
+    private final ScheduledExecutorService renewer;
+
+    // Lease chỉ được coi là còn hiệu lực trước mốc này (tính từ lúc bắt đầu lần gia hạn thành công gần nhất)
+    private volatile long validUntilMillis;
+
+    private SnowflakeNodeLease(StringRedisTemplate redisTemplate, String key, String owner, int nodeId,
+                               Duration ttl, long acquiredAtMillis) {
+        this.redisTemplate = redisTemplate;
+        this.key = key;
+        this.owner = owner;
+        this.nodeId = nodeId;
+        this.ttl = ttl;
+        this.validUntilMillis = acquiredAtMillis + ttl.toMillis();
+        this.renewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snowflake-node-lease");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Thuê node id còn trống đầu tiên, bắt đầu từ vị trí băm theo owner để các instance ít tranh chấp
+     *
+     * @param namespace loại id (VD: tên service), node id chỉ duy nhất trong cùng namespace
+     * @param owner     định danh duy nhất của instance
+     * @throws IllegalStateException nếu cả 1024 node id đều đang được thuê
+     */
+    public static SnowflakeNodeLease acquire(StringRedisTemplate redisTemplate, String namespace,
+                                             String owner, Duration ttl) {
+        int start = Math.floorMod(owner.hashCode(), SnowflakeIdGenerator.MAX_NODE_ID + 1);
+        for (int i = 0; i <= SnowflakeIdGenerator.MAX_NODE_ID; i++) {
+            int nodeId = (start + i) % (SnowflakeIdGenerator.MAX_NODE_ID + 1);
+            String key = "id-generator:" + namespace + ":node:" + nodeId;
+            long now = System.currentTimeMillis();
+            if (Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, owner, ttl))) {
+                SnowflakeNodeLease lease = new SnowflakeNodeLease(redisTemplate, key, owner, nodeId, ttl, now);
+                lease.scheduleRenewal();
+                log.info("Acquired snowflake node id {} for {} ({})", nodeId, namespace, owner);
+                return lease;
+            }
+        }
+        throw new IllegalStateException("No free snowflake node id for " + namespace);
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    public boolean isValid() {
+        return System.currentTimeMillis() < validUntilMillis;
+    }
+
+    @Override
+    public void close() {
+        renewer.shutdownNow();
+        validUntilMillis = 0;
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, List.of(key), owner);
+        } catch (Exception e) {
+            // Key tự hết hạn theo ttl
+            log.warn("Could not release snowflake node id {}: {}", nodeId, e.getMessage());
+        }
+    }
+
+    private void scheduleRenewal() {
+        long period = Math.max(1, ttl.toMillis() / 3);
+        renewer.scheduleAtFixedRate(this::renew, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private void renew() {
+        long startedAt = System.currentTimeMillis();
+        try {
+            Long renewed = redisTemplate.execute(RENEW_SCRIPT, List.of(key), owner, String.valueOf(ttl.toMillis()));
+            if (renewed != null && renewed == 1) {
+                validUntilMillis = startedAt + ttl.toMillis();
+            } else {
+                validUntilMillis = 0;
+                log.error("Snowflake node id {} is now owned by another instance, id generation stopped", nodeId);
+            }
+        } catch (Exception e) {
+            log.warn("Could not renew snowflake node id {}: {}", nodeId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.vdt2025.common_dto.id;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * UUID version 7 (RFC 9562) cho khóa chính: 48 bit unix millis | version | 12 bit counter | variant | 62 bit ngẫu nhiên
+ *
+ * - Tăng dần theo thời gian nên insert vào B-tree luôn ở cuối index (UUID v4 ngẫu nhiên làm phân mảnh index)
+ * - Dạng chuỗi (hex cố định độ dài) giữ nguyên thứ tự, dùng được cho cột varchar id hiện có
+ * - Counter trong cùng millis giữ thứ tự tăng ngặt trong một JVM (lock-free, cùng cách với SnowflakeIdGenerator),
+ *   62 bit ngẫu nhiên đảm bảo không trùng giữa các instance
+ */
+public final class UuidV7 {
+
+    private static final int COUNTER_BITS = 12;
+    private static final long COUNTER_MASK = (1L << COUNTER_BITS) - 1;
+    private static final long VERSION_7 = 0x7000L;
+    private static final long VARIANT_RFC = 0x8000000000000000L;
+    private static final long RANDOM_MASK = 0x3FFFFFFFFFFFFFFFL;
+
+    // (unix millis << COUNTER_BITS) | counter của UUID cuối cùng
+    private static final AtomicLong STATE = new AtomicLong();
+
+    private UuidV7() {
+    }
+
+    public static UUID generate() {
+        return next(STATE, System.currentTimeMillis());
+    }
+
+    static UUID next(AtomicLong state, long nowMillis) {
+        long next = state.updateAndGet(previous -> {
+            long now = nowMillis << COUNTER_BITS;
+            return now > previous ? now : previous + 1;
+        });
+        long millis = next >>> COUNTER_BITS;
+        long counter = next & COUNTER_MASK;
+
+        long mostSigBits = millis << 16 | VERSION_7 | counter;
+        long leastSigBits = ThreadLocalRandom.current().nextLong() & RANDOM_MASK | VARIANT_RFC;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    public static String generateString() {
+        return generate().toString();
+    }
+}
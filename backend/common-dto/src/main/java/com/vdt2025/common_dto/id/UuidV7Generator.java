@@ -0,0 +1,37 @@
+package com.vdt2025.common_dto.id;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.EnumSet;
+import java.util.UUID;
+
+/**
+ * Hibernate generator cho {@link GeneratedUuidV7}
+ */
+public class UuidV7Generator implements BeforeExecutionGenerator {
+
+    private final boolean uuidType;
+
+    public UuidV7Generator(GeneratedUuidV7 config, Member member, CustomIdGeneratorCreationContext context) {
+        Class<?> type = member instanceof Field field ? field.getType() : ((Method) member).getReturnType();
+        this.uuidType = UUID.class.equals(type);
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue, EventType eventType) {
+        UUID id = UuidV7.generate();
+        return uuidType ? id : id.toString();
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+}
@@ -0,0 +1,103 @@
+package com.vdt2025.common_dto.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SnowflakeIdGeneratorTest {
+
+    private static final long T0 = SnowflakeIdGenerator.EPOCH_MILLIS + 1_000_000L;
+
+    @Test
+    void idsIncreaseStrictlyAndCarryTimestampAndNode() {
+        AtomicLong clock = new AtomicLong(T0);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(37, clock::get, () -> true);
+
+        long previous = -1;
+        for (int i = 0; i < 10_000; i++) {
+            if (i % 7 == 0) {
+                clock.incrementAndGet();
+            }
+            long id = generator.nextId();
+            assertThat(id).isGreaterThan(previous);
+            assertThat(SnowflakeIdGenerator.nodeIdOf(id)).isEqualTo(37);
+            assertThat(SnowflakeIdGenerator.timestampOf(id)).isEqualTo(Instant.ofEpochMilli(clock.get()));
+            previous = id;
+        }
+    }
+
+    @Test
+    void sequenceOverflowBorrowsNextMillisecond() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, () -> T0, () -> true);
+
+        long first = generator.nextId();
+        long last = first;
+        for (int i = 1; i < 4096; i++) {
+            last = generator.nextId();
+        }
+        assertThat(SnowflakeIdGenerator.timestampOf(last)).isEqualTo(Instant.ofEpochMilli(T0));
+        assertThat(last - first).isEqualTo(4095);
+
+        long overflow = generator.nextId();
+        assertThat(overflow).isGreaterThan(last);
+        assertThat(SnowflakeIdGenerator.timestampOf(overflow)).isEqualTo(Instant.ofEpochMilli(T0 + 1));
+        assertThat(SnowflakeIdGenerator.nodeIdOf(overflow)).isEqualTo(1);
+    }
+
+    @Test
+    void clockRollbackKeepsIdsIncreasing() {
+        AtomicLong clock = new AtomicLong(T0);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(5, clock::get, () -> true);
+
+        long beforeRollback = generator.nextId();
+        clock.set(T0 - 5_000);
+        long afterRollback = generator.nextId();
+
+        assertThat(afterRollback).isGreaterThan(beforeRollback);
+        assertThat(SnowflakeIdGenerator.timestampOf(afterRollback)).isEqualTo(Instant.ofEpochMilli(T0));
+
+        clock.set(T0 + 10);
+        assertThat(SnowflakeIdGenerator.timestampOf(generator.nextId())).isEqualTo(Instant.ofEpochMilli(T0 + 10));
+    }
+
+    @Test
+    void differentNodesNeverCollideInSameMillisecond() {
+        SnowflakeIdGenerator a = new SnowflakeIdGenerator(1, () -> T0, () -> true);
+        SnowflakeIdGenerator b = new SnowflakeIdGenerator(2, () -> T0, () -> true);
+
+        assertThat(a.nextId()).isNotEqualTo(b.nextId());
+    }
+
+    @Test
+    void refusesToGenerateWhenLeaseIsLost() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(3, () -> T0, () -> false);
+
+        assertThatThrownBy(generator::nextId).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void rejectsOutOfRangeNodeId() {
+        assertThatThrownBy(() -> new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID + 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new SnowflakeIdGenerator(-1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void zaloPayTransIdUsesVietnamDateOfId() {
+        // 2025-03-01T18:30:00Z là 2025-03-02 theo GMT+7
+        long millis = Instant.parse("2025-03-01T18:30:00Z").toEpochMilli();
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(9, () -> millis, () -> true);
+
+        String transId = generator.nextZaloPayTransId();
+
+        assertThat(transId).startsWith("250302_");
+        assertThat(transId.length()).isLessThanOrEqualTo(40);
+        long id = Long.parseLong(transId.substring("250302_".length()));
+        assertThat(SnowflakeIdGenerator.timestampOf(id)).isEqualTo(Instant.ofEpochMilli(millis));
+    }
+}
@@ -0,0 +1,64 @@
+package com.vdt2025.common_dto.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UuidV7Test {
+
+    private static final long NOW = 1_735_689_600_123L;
+
+    @Test
+    void layoutFollowsRfc9562() {
+        UUID uuid = UuidV7.next(new AtomicLong(), NOW);
+
+        assertThat(uuid.version()).isEqualTo(7);
+        assertThat(uuid.variant()).isEqualTo(2);
+        assertThat(uuid.getMostSignificantBits() >>> 16).isEqualTo(NOW);
+    }
+
+    @Test
+    void sameMillisecondUsesCounterAndKeepsStringOrder() {
+        AtomicLong state = new AtomicLong();
+        List<String> generated = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            generated.add(UuidV7.next(state, NOW).toString());
+        }
+
+        assertThat(generated).isSorted().doesNotHaveDuplicates();
+    }
+
+    @Test
+    void clockRollbackKeepsOrder() {
+        AtomicLong state = new AtomicLong();
+        String before = UuidV7.next(state, NOW).toString();
+        String after = UuidV7.next(state, NOW - 10_000).toString();
+
+        assertThat(after).isGreaterThan(before);
+    }
+
+    @Test
+    void laterMillisecondSortsAfter() {
+        AtomicLong state = new AtomicLong();
+        UUID first = UuidV7.next(state, NOW);
+        UUID second = UuidV7.next(state, NOW + 1);
+
+        assertThat(second.toString()).isGreaterThan(first.toString());
+        assertThat(second.getMostSignificantBits() >>> 16).isEqualTo(NOW + 1);
+    }
+
+    @Test
+    void generatedStringsAreOrdered() {
+        List<String> generated = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            generated.add(UuidV7.generateString());
+        }
+
+        assertThat(generated).isSorted().doesNotHaveDuplicates();
+    }
+}
@@ -4,11 +4,12 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.vdt2025.common_dto.cache.CompactRedisSerializer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
-import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.security.data.repository.query.SecurityEvaluationContextExtension;
 
@@ -24,7 +25,9 @@ public class CacheConfiguration {
     }
 
     @Bean
-    public RedisCacheConfiguration redisCacheConfiguration() {
+    public RedisCacheConfiguration redisCacheConfiguration(
+            @Value("${cache.codec.write-format:compact}") String writeFormat,
+            @Value("${cache.codec.compression-threshold:1024}") int compressionThreshold) {
         // 1. Tạo một ObjectMapper tùy chỉnh
         ObjectMapper objectMapper = new ObjectMapper()
                 // 2. Đăng ký module để xử lý LocalDateTime, ZonedDateTime, v.v.
@@ -51,8 +54,12 @@ public class CacheConfiguration {
 
         objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
 
-        // 4. Tạo serializer với ObjectMapper đã được cấu hình
-        GenericJackson2JsonRedisSerializer serializer = new GenericJackson2JsonRedisSerializer(objectMapper);
+        // 4. Tạo serializer nhị phân (Smile + LZ4) với ObjectMapper đã được cấu hình
+        // Entry JSON cũ vẫn đọc được; write-format=json dùng khi rolling deploy
+        CompactRedisSerializer serializer = CompactRedisSerializer.create(
+                objectMapper,
+                CompactRedisSerializer.WriteFormat.valueOf(writeFormat.toUpperCase()),
+                compressionThreshold);
 
         // 5. Sử dụng serializer này cho cấu hình cache
         return RedisCacheConfiguration.defaultCacheConfig()
@@ -53,6 +53,16 @@ public interface ProductClient {
     @PostMapping("/release-batch")
     ApiResponse<Void> releaseBatch(@RequestBody @Valid BatchInventoryChangeRequest request);
 
+    /**
+     * Hủy một lần giữ hàng của saga đặt hàng (xả hàng nếu đã giữ, chặn lệnh giữ hàng đến muộn)
+     * POST /internal/products/reservations/{reservationId}/cancel
+     *
+     * @return trạng thái giữ hàng trước khi hủy (RESERVED/REJECTED/RELEASED), null nếu lệnh chưa được xử lý
+     */
+    @PostMapping("/reservations/{reservationId}/cancel")
+    ApiResponse<String> cancelReservation(@PathVariable("reservationId") String reservationId,
+                                          @RequestBody @Valid BatchInventoryChangeRequest request);
+
     /**
      * Trả hàng cho một loạt hàng hóa khi khách hàng thực hiện hoàn trả
      * POST /internal/products/return-batch
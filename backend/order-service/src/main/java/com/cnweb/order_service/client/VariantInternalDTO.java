@@ -32,4 +32,6 @@ public class VariantInternalDTO implements Serializable {
     String imageUrl;
     boolean isActive;
     boolean isDeleted;
+    Boolean productActive; // Product active và chưa bị xóa
+    Boolean storeActive;
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+package com.cnweb.order_service.config;
+
+import com.vdt2025.common_dto.id.SnowflakeIdGenerator;
+import com.vdt2025.common_dto.id.SnowflakeNodeLease;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.netflix.eureka.EurekaInstanceConfigBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Snowflake id generator của instance
+ * Node id cấu hình tường minh qua id-generator.node-id (0..1023), mặc định thuê node id còn trống trên Redis
+ * để các replica không bao giờ trùng node id
+ */
+@Configuration
+@Slf4j
+public class IdGeneratorConfig {
+
+    private SnowflakeNodeLease lease;
+
+    @Bean
+    public SnowflakeIdGenerator snowflakeIdGenerator(@Value("${id-generator.node-id:-1}") int nodeId,
+                                                     @Value("${id-generator.lease-ttl:30s}") Duration leaseTtl,
+                                                     @Value("${spring.application.name}") String applicationName,
+                                                     ObjectProvider<StringRedisTemplate> redisTemplate,
+                                                     ObjectProvider<EurekaInstanceConfigBean> eurekaInstance) {
+        SnowflakeIdGenerator generator;
+        if (nodeId >= 0) {
+            generator = new SnowflakeIdGenerator(nodeId);
+        } else {
+            StringRedisTemplate redis = redisTemplate.getIfAvailable();
+            if (redis == null) {
+                throw new IllegalStateException("id-generator.node-id is required when Redis is not available");
+            }
+            EurekaInstanceConfigBean instance = eurekaInstance.getIfAvailable();
+            // Hậu tố ngẫu nhiên: instance khởi động lại không "gia hạn" nhầm lease của lần chạy trước
+            String owner = (instance != null ? instance.getInstanceId() : applicationName) + "#" + UUID.randomUUID();
+            lease = SnowflakeNodeLease.acquire(redis, applicationName, owner, leaseTtl);
+            generator = new SnowflakeIdGenerator(lease);
+        }
+        log.info("Snowflake id generator uses node id {}", generator.getNodeId());
+        return generator;
+    }
+
+    @PreDestroy
+    public void releaseLease() {
+        if (lease != null) {
+            lease.close();
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package com.cnweb.order_service.config;
 
 import com.vdt2025.common_dto.dto.MessageType;
+import com.vdt2025.common_dto.dto.VariantChangedMessage;
 import jakarta.annotation.PostConstruct;
+import org.springframework.amqp.core.AnonymousQueue;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarables;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.core.TopicExchange;
 import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
@@ -181,4 +184,37 @@ public class RabbitMQConfig {
                 .to(exchange)
                 .with(MessageType.PAYMENT_FAILED.getRoutingKey());
     }
-}
\ No newline at end of file
+
+    /**
+     * Queue riêng của từng instance (anonymous, tự xóa khi instance dừng) nhận event variant/product
+     * để làm mới VariantSnapshotCache trong bộ nhớ của instance đó
+     */
+    @Bean
+    public Queue variantSnapshotVariantQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding variantSnapshotVariantBinding(Queue variantSnapshotVariantQueue, TopicExchange exchange) {
+        return BindingBuilder.bind(variantSnapshotVariantQueue)
+                .to(exchange)
+                .with(VariantChangedMessage.ROUTING_KEY);
+    }
+
+    @Bean
+    public Queue variantSnapshotProductQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Declarables variantSnapshotProductBindings(Queue variantSnapshotProductQueue, TopicExchange exchange) {
+        return new Declarables(
+                BindingBuilder.bind(variantSnapshotProductQueue).to(exchange)
+                        .with(MessageType.PRODUCT_UPDATED.getRoutingKey()),
+                BindingBuilder.bind(variantSnapshotProductQueue).to(exchange)
+                        .with(MessageType.PRODUCT_DELETED.getRoutingKey()),
+                BindingBuilder.bind(variantSnapshotProductQueue).to(exchange)
+                        .with(MessageType.PRODUCT_STATUS_CHANGED.getRoutingKey())
+        );
+    }
+}
@@ -5,6 +5,7 @@ import com.cnweb.order_service.enums.PaymentMethod;
 import com.cnweb.order_service.enums.PaymentStatus;
 import com.cnweb.order_service.enums.RefundStatus;
 import com.cnweb.order_service.enums.ReturnReason;
+import com.cnweb.order_service.enums.StockReservationStatus;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 
@@ -50,6 +51,7 @@ public class OrderResponse {
     PaymentMethod paymentMethod;
     PaymentStatus paymentStatus;
     String paymentTransactionId;
+    StockReservationStatus reservationStatus;
 
     // Ghi chú
     String note;
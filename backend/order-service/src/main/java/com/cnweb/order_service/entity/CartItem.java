@@ -1,5 +1,6 @@
 package com.cnweb.order_service.entity;
 
+import com.vdt2025.common_dto.id.GeneratedUuidV7;
 import jakarta.persistence.*;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
@@ -19,7 +20,7 @@ import java.time.LocalDateTime;
 @Table(name = "cart_items")
 public class CartItem {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @GeneratedUuidV7
     String id;
 
     @ManyToOne(fetch = FetchType.LAZY)
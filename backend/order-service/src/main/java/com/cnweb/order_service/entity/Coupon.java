@@ -1,6 +1,7 @@
 package com.cnweb.order_service.entity;
 
 import com.cnweb.order_service.enums.DiscountType;
+import com.vdt2025.common_dto.id.GeneratedUuidV7;
 import jakarta.persistence.*;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
@@ -30,7 +31,7 @@ import java.time.LocalDateTime;
 public class Coupon {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @GeneratedUuidV7
     String id;
 
     @Column(name = "code", nullable = false, unique = true, length = 50)
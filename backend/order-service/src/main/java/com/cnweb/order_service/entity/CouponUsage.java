@@ -1,5 +1,6 @@
 package com.cnweb.order_service.entity;
 
+import com.vdt2025.common_dto.id.GeneratedUuidV7;
 import jakarta.persistence.*;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
@@ -25,7 +26,7 @@ import java.time.LocalDateTime;
 public class CouponUsage {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @GeneratedUuidV7
     String id;
 
     @Column(name = "user_id", nullable = false)
@@ -5,6 +5,8 @@ import com.cnweb.order_service.enums.PaymentMethod;
 import com.cnweb.order_service.enums.PaymentStatus;
 import com.cnweb.order_service.enums.RefundStatus;
 import com.cnweb.order_service.enums.ReturnReason;
+import com.cnweb.order_service.enums.StockReservationStatus;
+import com.vdt2025.common_dto.id.GeneratedUuidV7;
 import jakarta.persistence.*;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
@@ -29,7 +31,8 @@ import java.util.List;
     @Index(name = "idx_order_user_id", columnList = "user_id"),
     @Index(name = "idx_order_store_id", columnList = "store_id"),
     @Index(name = "idx_order_status", columnList = "status"),
-    @Index(name = "idx_order_created_at", columnList = "created_at")
+    @Index(name = "idx_order_created_at", columnList = "created_at"),
+    @Index(name = "idx_order_reservation_id", columnList = "reservation_id")
 })
 @Getter
 @Setter
@@ -40,7 +43,7 @@ import java.util.List;
 public class Order {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @GeneratedUuidV7
     String id;
 
     @Column(name = "order_number", nullable = false, unique = true, length = 50)
@@ -115,6 +118,14 @@ public class Order {
     @Column(name = "payment_transaction_id", length = 100)
     String paymentTransactionId;
 
+    // Giữ hàng (saga đặt hàng) - các đơn tách theo store từ cùng một checkout dùng chung reservationId
+    @Column(name = "reservation_id", length = 36)
+    String reservationId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "reservation_status", length = 20)
+    StockReservationStatus reservationStatus;
+
     // Ghi chú
     @Column(name = "note", columnDefinition = "TEXT")
     String note;
@@ -226,6 +237,13 @@ public class Order {
         return status == OrderStatus.PENDING || status == OrderStatus.PAID;
     }
 
+    /**
+     * Đơn đang chờ product-service giữ hàng (chưa thể thanh toán hay hủy)
+     */
+    public boolean isAwaitingStockReservation() {
+        return reservationStatus == StockReservationStatus.PENDING;
+    }
+
     /**
      * Kiểm tra đơn hàng có thể xác nhận được không
      * Chỉ có thể xác nhận khi đã PAID
@@ -0,0 +1,56 @@
+package com.cnweb.order_service.entity;
+
+import com.vdt2025.common_dto.id.GeneratedUuidV7;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Transactional outbox - message được ghi cùng transaction với thay đổi nghiệp vụ
+ * và được OutboxRelay gửi sang RabbitMQ sau đó (at-least-once, bên nhận xử lý idempotent)
+ */
+@Entity
+@Table(name = "outbox_events", indexes = {
+    @Index(name = "idx_outbox_pending", columnList = "published_at, created_at")
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class OutboxEvent {
+
+    @Id
+    @GeneratedUuidV7
+    String id;
+
+    @Column(name = "aggregate_id", nullable = false, length = 36)
+    String aggregateId; // VD: reservationId của saga đặt hàng
+
+    @Column(name = "routing_key", nullable = false, length = 100)
+    String routingKey;
+
+    @Column(name = "payload_type", nullable = false)
+    String payloadType; // Tên class của payload (header __TypeId__)
+
+    @Column(name = "payload", nullable = false, columnDefinition = "TEXT")
+    String payload; // JSON
+
+    @Column(name = "attempts", nullable = false)
+    @Builder.Default
+    Integer attempts = 0;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    String lastError;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    LocalDateTime createdAt;
+
+    @Column(name = "published_at")
+    LocalDateTime publishedAt;
+}
@@ -0,0 +1,12 @@
+package com.cnweb.order_service.enums;
+
+/**
+ * Trạng thái giữ hàng của đơn trong saga đặt hàng (null: đơn tạo trước saga, đã reserve đồng bộ)
+ */
+public enum StockReservationStatus {
+    PENDING,        // Đã gửi lệnh giữ hàng, chờ product-service
+    RESERVED,       // Đã giữ hàng
+    REJECTED,       // Không đủ hàng, đơn bị hủy
+    CANCELLING,     // Quá thời gian chờ kết quả: đơn đã hủy, đang hủy lần giữ hàng ở product-service
+    CANCELLED       // Lần giữ hàng đã được hủy ở product-service (hàng đã xả nếu từng được giữ)
+}
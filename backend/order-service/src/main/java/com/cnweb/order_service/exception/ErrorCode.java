@@ -139,6 +139,7 @@ public enum ErrorCode {
     ORDER_CANNOT_BE_REFUNDED(1929, "error.1929", HttpStatus.BAD_REQUEST),
     REFUND_FAILED(1930, "error.1930", HttpStatus.INTERNAL_SERVER_ERROR),
     RETURN_PERIOD_EXPIRED(1931, "error.1931", HttpStatus.BAD_REQUEST),
+    ORDER_STOCK_NOT_RESERVED(1932, "error.1932", HttpStatus.CONFLICT),
 
     // Lỗi khác (99xx)
     UNCATEGORIZED_EXCEPTION(9999, "error.9999", HttpStatus.INTERNAL_SERVER_ERROR),
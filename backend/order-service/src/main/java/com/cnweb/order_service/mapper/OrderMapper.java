@@ -30,6 +30,8 @@ public interface OrderMapper {
     @Mapping(target = "totalAmount", ignore = true)
     @Mapping(target = "couponId", ignore = true)
     @Mapping(target = "paymentTransactionId", ignore = true)
+    @Mapping(target = "reservationId", ignore = true)
+    @Mapping(target = "reservationStatus", ignore = true)
     @Mapping(target = "cancelReason", ignore = true)
     @Mapping(target = "cancelledBy", ignore = true)
     @Mapping(target = "createdAt", ignore = true)
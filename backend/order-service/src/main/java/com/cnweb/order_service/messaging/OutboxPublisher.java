@@ -0,0 +1,43 @@
+package com.cnweb.order_service.messaging;
+
+import com.cnweb.order_service.entity.OutboxEvent;
+import com.cnweb.order_service.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vdt2025.common_dto.dto.MessageType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Ghi message vào outbox trong transaction hiện tại (commit cùng dữ liệu nghiệp vụ hoặc không ghi gì)
+ * Việc gửi sang RabbitMQ do OutboxRelay đảm nhận
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxPublisher {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(MessageType messageType, String aggregateId, Object payload) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize outbox payload for " + messageType, e);
+        }
+
+        outboxEventRepository.save(OutboxEvent.builder()
+                .aggregateId(aggregateId)
+                .routingKey(messageType.getRoutingKey())
+                .payloadType(payload.getClass().getName())
+                .payload(json)
+                .build());
+        log.debug("Enqueued {} to outbox for aggregate {}", messageType, aggregateId);
+    }
+}
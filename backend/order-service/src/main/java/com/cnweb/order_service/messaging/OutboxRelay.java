@@ -0,0 +1,144 @@
+package com.cnweb.order_service.messaging;
+
+import com.cnweb.order_service.entity.OutboxEvent;
+import com.cnweb.order_service.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gửi message trong outbox sang RabbitMQ
+ *
+ * - Mỗi lô: khóa các row chưa gửi (FOR UPDATE SKIP LOCKED), gửi cả lô trên một channel rồi chờ
+ *   publisher confirm, sau đó đánh dấu published_at trong cùng transaction
+ * - Gửi lỗi thì tăng attempts, ghi last_error và dừng chu kỳ; lô được gửi lại ở chu kỳ sau
+ * - Có thể gửi trùng (crash giữa confirm và commit) - bên nhận xử lý idempotent
+ *
+ * Metrics: outbox.relay.messages{result=published|failed}, outbox.pending
+ */
+@Component
+@Slf4j
+public class OutboxRelay {
+
+    private static final String EXCHANGE_NAME = "notification-exchange";
+    private static final String TYPE_ID_HEADER = "__TypeId__";
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final RabbitTemplate rabbitTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final int batchSize;
+    private final int maxBatchesPerCycle;
+    private final long confirmTimeoutMs;
+
+    private final Counter published;
+    private final Counter failed;
+    private final AtomicLong pending = new AtomicLong();
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       RabbitTemplate rabbitTemplate,
+                       TransactionTemplate transactionTemplate,
+                       MeterRegistry meterRegistry,
+                       @Value("${outbox.relay.batch-size:100}") int batchSize,
+                       @Value("${outbox.relay.max-batches-per-cycle:20}") int maxBatchesPerCycle,
+                       @Value("${outbox.relay.confirm-timeout-ms:5000}") long confirmTimeoutMs) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.rabbitTemplate = rabbitTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.maxBatchesPerCycle = maxBatchesPerCycle;
+        this.confirmTimeoutMs = confirmTimeoutMs;
+
+        this.published = messages(meterRegistry, "published");
+        this.failed = messages(meterRegistry, "failed");
+        Gauge.builder("outbox.pending", pending, AtomicLong::get)
+                .description("Outbox messages not yet published (sampled each relay cycle)")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.relay.interval-ms:200}")
+    public void relay() {
+        for (int i = 0; i < maxBatchesPerCycle; i++) {
+            Integer sent = transactionTemplate.execute(status -> relayBatch());
+            if (sent == null || sent < batchSize) {
+                break;
+            }
+        }
+        pending.set(outboxEventRepository.countByPublishedAtIsNull());
+    }
+
+    /**
+     * Dọn message đã gửi cũ hơn 1 ngày - chạy mỗi giờ
+     */
+    @Scheduled(fixedDelay = 3600000, initialDelay = 3600000)
+    @Transactional
+    public void cleanupPublished() {
+        int deleted = outboxEventRepository.deletePublishedBefore(LocalDateTime.now().minusDays(1));
+        if (deleted > 0) {
+            log.info("Deleted {} published outbox messages", deleted);
+        }
+    }
+
+    /**
+     * @return số message đã gửi, -1 nếu lô bị lỗi
+     */
+    private int relayBatch() {
+        List<OutboxEvent> events = outboxEventRepository.lockPending(batchSize);
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            rabbitTemplate.invoke(operations -> {
+                for (OutboxEvent event : events) {
+                    operations.send(EXCHANGE_NAME, event.getRoutingKey(), toMessage(event));
+                }
+                operations.waitForConfirmsOrDie(confirmTimeoutMs);
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Failed to relay {} outbox messages: {}", events.size(), e.getMessage());
+            events.forEach(event -> {
+                event.setAttempts(event.getAttempts() + 1);
+                event.setLastError(e.getMessage());
+            });
+            failed.increment(events.size());
+            return -1;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        events.forEach(event -> event.setPublishedAt(now));
+        published.increment(events.size());
+        log.debug("Relayed {} outbox messages", events.size());
+        return events.size();
+    }
+
+    private Message toMessage(OutboxEvent event) {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        properties.setContentEncoding(StandardCharsets.UTF_8.name());
+        properties.setMessageId(event.getId());
+        properties.setHeader(TYPE_ID_HEADER, event.getPayloadType());
+        return new Message(event.getPayload().getBytes(StandardCharsets.UTF_8), properties);
+    }
+
+    private Counter messages(MeterRegistry registry, String result) {
+        return Counter.builder("outbox.relay.messages")
+                .tag("result", result)
+                .register(registry);
+    }
+}
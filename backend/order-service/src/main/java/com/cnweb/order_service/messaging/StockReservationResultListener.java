@@ -0,0 +1,73 @@
+package com.cnweb.order_service.messaging;
+
+import com.cnweb.order_service.entity.Order;
+import com.cnweb.order_service.enums.StockReservationStatus;
+import com.cnweb.order_service.repository.OrderRepository;
+import com.cnweb.order_service.service.OrderNotificationService;
+import com.cnweb.order_service.service.StockReservationRecoveryService;
+import com.vdt2025.common_dto.dto.StockReservationResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Nhận kết quả giữ hàng từ product-service và chuyển trạng thái các đơn của saga đặt hàng
+ *
+ * - Thành công: reservationStatus = RESERVED, gửi thông báo đơn mới (đơn có thể thanh toán)
+ * - Thất bại: reservationStatus = REJECTED, hủy đơn, hoàn lượt dùng coupon
+ * - Idempotent: chỉ xử lý các đơn còn PENDING (đơn được khóa khi đọc), kết quả gửi lại bị bỏ qua
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StockReservationResultListener {
+
+    private static final String SYSTEM = "SYSTEM";
+
+    private final OrderRepository orderRepository;
+    private final StockReservationRecoveryService recoveryService;
+    private final OrderNotificationService orderNotificationService;
+
+    @RabbitListener(queues = "#{messageTypeQueues.get(T(com.vdt2025.common_dto.dto.MessageType).INVENTORY_RESERVE_RESULT).name}")
+    @Transactional
+    public void handleReservationResult(StockReservationResult result) {
+        log.info("Received INVENTORY_RESERVE_RESULT for reservation {}: success={}",
+                result.getReservationId(), result.isSuccess());
+
+        List<Order> orders = orderRepository.findByReservationIdForUpdate(result.getReservationId()).stream()
+                .filter(Order::isAwaitingStockReservation)
+                .toList();
+        if (orders.isEmpty()) {
+            log.info("Reservation {} already applied or unknown. Skip processing.", result.getReservationId());
+            return;
+        }
+
+        if (result.isSuccess()) {
+            orders.forEach(order -> order.setReservationStatus(StockReservationStatus.RESERVED));
+        } else {
+            reject(orders, result.getReason());
+        }
+        orderRepository.saveAll(orders);
+
+        for (Order order : orders) {
+            try {
+                if (result.isSuccess()) {
+                    orderNotificationService.notifyOrderCreated(order, order.getReceiverEmail());
+                } else {
+                    orderNotificationService.notifyOrderCancelled(order, SYSTEM);
+                }
+            } catch (Exception e) {
+                log.error("Failed to send notification for order {}: {}", order.getOrderNumber(), e.getMessage());
+            }
+        }
+    }
+
+    private void reject(List<Order> orders, String reason) {
+        recoveryService.cancelOrders(orders, StockReservationStatus.REJECTED,
+                "Không đủ hàng trong kho" + (reason != null ? " (" + reason + ")" : ""));
+    }
+}
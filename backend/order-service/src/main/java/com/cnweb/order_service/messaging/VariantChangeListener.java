@@ -0,0 +1,39 @@
+package com.cnweb.order_service.messaging;
+
+import com.cnweb.order_service.service.VariantSnapshotCache;
+import com.vdt2025.common_dto.dto.ProductChangedMessage;
+import com.vdt2025.common_dto.dto.VariantChangedMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Làm mới VariantSnapshotCache theo event của product-service
+ * Mỗi instance có queue riêng (anonymous, tự xóa) để mọi instance đều nhận event
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class VariantChangeListener {
+
+    private final VariantSnapshotCache variantSnapshotCache;
+
+    @RabbitListener(queues = "#{variantSnapshotVariantQueue.name}")
+    public void handleVariantChanged(VariantChangedMessage message) {
+        if (message.getVariantIds() == null || message.getVariantIds().isEmpty()) {
+            return;
+        }
+        log.debug("Received {} change for variants {}", message.getChangeType(), message.getVariantIds());
+        variantSnapshotCache.evictVariants(message.getVariantIds());
+    }
+
+    @RabbitListener(queues = "#{variantSnapshotProductQueue.name}")
+    public void handleProductChanged(ProductChangedMessage message) {
+        if (message.getProductId() == null) {
+            return;
+        }
+        log.debug("Received {} change for product {}", message.getChangeType(), message.getProductId());
+        variantSnapshotCache.evictProduct(message.getProductId());
+    }
+}
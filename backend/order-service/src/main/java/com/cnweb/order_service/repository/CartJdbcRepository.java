@@ -0,0 +1,126 @@
+package com.cnweb.order_service.repository;
+
+import com.cnweb.order_service.dto.response.CartDTO;
+import com.cnweb.order_service.dto.response.CartItemDTO;
+import com.vdt2025.common_dto.id.UuidV7;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ghi cart xuống bảng carts/cart_items bằng JDBC batch (write-behind của CartPersistenceService)
+ *
+ * - carts: upsert theo id (id cũ tra theo user_name, user chưa có cart thì sinh UUID)
+ * - cart_items: thay toàn bộ item của các cart trong lô (xóa theo cart_id rồi batch insert)
+ */
+@Repository
+@RequiredArgsConstructor
+public class CartJdbcRepository {
+
+    private static final String UPSERT_CART = """
+            INSERT INTO carts (id, user_name, created_at, updated_at)
+            VALUES (:id, :userName, :createdAt, :updatedAt)
+            ON CONFLICT (id) DO UPDATE SET updated_at = EXCLUDED.updated_at
+            """;
+
+    private static final String INSERT_ITEM = """
+            INSERT INTO cart_items (id, cart_id, product_id, product_name, variant_id, variant_name,
+                                    store_id, store_name, image_url, quantity, price, original_price,
+                                    created_at, updated_at)
+            VALUES (:id, :cartId, :productId, :productName, :variantId, :variantName,
+                    :storeId, :storeName, :imageUrl, :quantity, :price, :originalPrice,
+                    :createdAt, :updatedAt)
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Ghi một lô cart (ghi đè item trong DB bằng item trong Redis)
+     *
+     * @return số item đã ghi
+     */
+    @Transactional
+    public int saveCarts(Collection<CartDTO> carts) {
+        if (carts.isEmpty()) {
+            return 0;
+        }
+        Map<String, String> cartIds = findCartIds(carts.stream().map(CartDTO::getUserName).toList());
+        LocalDateTime now = LocalDateTime.now();
+
+        List<MapSqlParameterSource> cartRows = new ArrayList<>(carts.size());
+        List<MapSqlParameterSource> itemRows = new ArrayList<>();
+        for (CartDTO cart : carts) {
+            String cartId = cartIds.computeIfAbsent(cart.getUserName(), userName -> UuidV7.generateString());
+            cartRows.add(new MapSqlParameterSource()
+                    .addValue("id", cartId)
+                    .addValue("userName", cart.getUserName())
+                    .addValue("createdAt", timestamp(cart.getCreatedAt(), now))
+                    .addValue("updatedAt", timestamp(cart.getUpdatedAt(), now)));
+
+            for (CartItemDTO item : cart.getItems()) {
+                itemRows.add(new MapSqlParameterSource()
+                        .addValue("id", UuidV7.generateString())
+                        .addValue("cartId", cartId)
+                        .addValue("productId", item.getProductId())
+                        .addValue("productName", item.getProductName())
+                        .addValue("variantId", item.getVariantId())
+                        .addValue("variantName", item.getVariantName())
+                        .addValue("storeId", item.getStoreId())
+                        .addValue("storeName", item.getStoreName())
+                        .addValue("imageUrl", item.getImageUrl())
+                        .addValue("quantity", item.getQuantity())
+                        .addValue("price", item.getPrice())
+                        .addValue("originalPrice", item.getOriginalPrice())
+                        .addValue("createdAt", timestamp(item.getAddedAt(), now))
+                        .addValue("updatedAt", timestamp(item.getUpdatedAt(), now)));
+            }
+        }
+
+        jdbcTemplate.batchUpdate(UPSERT_CART, cartRows.toArray(MapSqlParameterSource[]::new));
+        jdbcTemplate.update("DELETE FROM cart_items WHERE cart_id IN (:cartIds)",
+                Map.of("cartIds", cartRows.stream().map(row -> row.getValue("id")).toList()));
+        if (!itemRows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_ITEM, itemRows.toArray(MapSqlParameterSource[]::new));
+        }
+        return itemRows.size();
+    }
+
+    /**
+     * Xóa item của các user có cart đã bị xóa khỏi Redis (clear cart)
+     *
+     * @return số item đã xóa
+     */
+    @Transactional
+    public int clearCarts(Collection<String> userNames) {
+        if (userNames.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update("""
+                DELETE FROM cart_items WHERE cart_id IN (SELECT id FROM carts WHERE user_name IN (:userNames))
+                """, Map.of("userNames", userNames));
+    }
+
+    private Map<String, String> findCartIds(List<String> userNames) {
+        Map<String, String> cartIds = new HashMap<>();
+        jdbcTemplate.query("SELECT id, user_name FROM carts WHERE user_name IN (:userNames)",
+                Map.of("userNames", userNames),
+                rs -> {
+                    cartIds.putIfAbsent(rs.getString("user_name"), rs.getString("id"));
+                });
+        return cartIds;
+    }
+
+    private static Timestamp timestamp(LocalDateTime value, LocalDateTime fallback) {
+        return Timestamp.valueOf(value != null ? value : fallback);
+    }
+}
@@ -2,10 +2,13 @@ package com.cnweb.order_service.repository;
 
 import com.cnweb.order_service.entity.Order;
 import com.cnweb.order_service.enums.OrderStatus;
+import com.cnweb.order_service.enums.StockReservationStatus;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -32,6 +35,19 @@ public interface OrderRepository extends JpaRepository<Order, String>, JpaSpecif
      */
     List<Order> findByPaymentTransactionId(String paymentTransactionId);
 
+    /**
+     * Khóa các đơn của một lần giữ hàng (saga đặt hàng) để xử lý kết quả đúng một lần
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.reservationId = :reservationId")
+    List<Order> findByReservationIdForUpdate(@Param("reservationId") String reservationId);
+
+    /**
+     * Tìm các đơn đang chờ kết quả giữ hàng được tạo trước một mốc thời gian
+     */
+    List<Order> findByReservationStatusAndCreatedAtBefore(StockReservationStatus reservationStatus,
+                                                          LocalDateTime dateTime);
+
     /**
      * Tìm các đơn hàng theo trạng thái và thời gian tạo trước một mốc thời gian
      */
@@ -0,0 +1,30 @@
+package com.cnweb.order_service.repository;
+
+import com.cnweb.order_service.entity.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, String> {
+
+    /**
+     * Lấy và khóa một lô message chưa gửi theo thứ tự tạo
+     * SKIP LOCKED: nhiều instance relay cùng lúc không lấy trùng lô, cũng không chờ nhau
+     */
+    @Query(value = "SELECT * FROM outbox_events WHERE published_at IS NULL " +
+                   "ORDER BY created_at LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<OutboxEvent> lockPending(@Param("limit") int limit);
+
+    long countByPublishedAtIsNull();
+
+    @Modifying
+    @Query("DELETE FROM OutboxEvent e WHERE e.publishedAt < :before")
+    int deletePublishedBefore(@Param("before") LocalDateTime before);
+}
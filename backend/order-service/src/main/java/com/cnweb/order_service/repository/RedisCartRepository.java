@@ -2,27 +2,92 @@ package com.cnweb.order_service.repository;
 
 import com.cnweb.order_service.dto.response.CartDTO;
 import com.cnweb.order_service.dto.response.CartItemDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
 import org.springframework.stereotype.Repository;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
+/**
+ * Cart trên Redis dạng hash, mỗi item là một nhóm field theo variant:
+ * - meta: JSON (cartId, sessionId, userName, createdAt), updatedAt: thời điểm sửa cuối
+ * - i:{variantId}: JSON thông tin item, q:{variantId}: số lượng, u:{variantId}: thời điểm sửa item
+ *
+ * Thêm/sửa/xóa/gộp là một script Lua (một round trip, nguyên tử, trả về luôn cart sau khi sửa) nên không còn
+ * GET - sửa - SET cả cart và không mất cập nhật khi nhiều tab thao tác cùng lúc. Tổng số lượng/tiền tính khi đọc.
+ *
+ * Cart cũ lưu dạng blob CartDTO (cùng key) được chuyển sang hash ở lần truy cập đầu: script trả về
+ * marker legacy, repository đọc blob, ghi hash (chỉ khi key vẫn là blob) rồi chạy lại thao tác.
+ */
 @Repository
 @RequiredArgsConstructor
 @Slf4j
 public class RedisCartRepository {
 
-    private final RedisTemplate<String, Object> redisTemplate;
     private static final String CART_PREFIX = "cart:";
     private static final Duration CART_TTL = Duration.ofDays(30); // 30 days for guest carts
     private static final Duration USER_CART_TTL = Duration.ofDays(90); // 90 days for user carts
 
+    private static final String META = "meta";
+    private static final String UPDATED_AT = "updatedAt";
+    private static final String ITEM = "i:";
+    private static final String QUANTITY = "q:";
+    private static final String ITEM_UPDATED_AT = "u:";
+    private static final long LEGACY_QUANTITY = -1;
+    private static final String LEGACY_MARKER = "__legacy__";
+
+    // Write-behind: cart user cần ghi xuống DB (ngoài prefix cart: để không trùng cart id)
+    private static final String DIRTY_KEY = "cart-persist:dirty";
+    private static final String INFLIGHT_KEY = "cart-persist:inflight";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    // Script trả về nội dung hash (HGETALL) của cart sau thao tác
+    @SuppressWarnings("rawtypes")
+    private final RedisScript<List> readScript = script("redis/cart-read.lua", List.class);
+    @SuppressWarnings("rawtypes")
+    private final RedisScript<List> addScript = script("redis/cart-add.lua", List.class);
+    @SuppressWarnings("rawtypes")
+    private final RedisScript<List> updateScript = script("redis/cart-update.lua", List.class);
+    @SuppressWarnings("rawtypes")
+    private final RedisScript<List> removeScript = script("redis/cart-remove.lua", List.class);
+    @SuppressWarnings("rawtypes")
+    private final RedisScript<List> mergeScript = script("redis/cart-merge.lua", List.class);
+    private final RedisScript<Long> quantityScript = script("redis/cart-quantity.lua", Long.class);
+    private final RedisScript<Long> replaceScript = script("redis/cart-replace.lua", Long.class);
+    @SuppressWarnings("rawtypes")
+    private final RedisScript<List> dirtyClaimScript = script("redis/cart-dirty-claim.lua", List.class);
+
+    /**
+     * Metadata của cart (field meta)
+     */
+    record CartMeta(String cartId, String sessionId, String userName, LocalDateTime createdAt) {
+    }
+
     /**
      * Generate Redis key for cart
      */
@@ -31,16 +96,15 @@ public class RedisCartRepository {
     }
 
     /**
-     * Save cart to Redis
+     * Save cart to Redis (ghi đè toàn bộ cart)
      */
     public void saveCart(CartDTO cart) {
         String key = getCartKey(cart.getSessionId() != null ? cart.getSessionId() : cart.getUserName());
         cart.setUpdatedAt(LocalDateTime.now());
         cart.calculateTotals();
-        
-        redisTemplate.opsForValue().set(key, cart, 
-            cart.getUserName() != null ? USER_CART_TTL : CART_TTL);
-        
+
+        stringRedisTemplate.execute(replaceScript, List.of(key), replaceArgs(cart, false));
+
         log.info("Saved cart to Redis: {}", key);
     }
 
@@ -48,116 +112,76 @@ public class RedisCartRepository {
      * Remove multiple items from cart
      */
     public CartDTO removeItems(String identifier, List<String> variantIds) {
-        CartDTO cart = getCart(identifier);
+        List<String> args = new ArrayList<>();
+        args.add(LocalDateTime.now().toString());
+        args.add(ttlSeconds(identifier));
+        args.addAll(variantIds);
 
-        if (cart == null) {
-            return null;
-        }
-
-        cart.getItems().removeIf(item ->
-                item.getVariantId() != null && variantIds.contains(item.getVariantId())
-        );
-
-        saveCart(cart);
-        return cart;
+        return toCart(identifier, execute(removeScript, List.of(getCartKey(identifier)), args.toArray()));
     }
 
     /**
      * Get cart from Redis
      */
     public CartDTO getCart(String identifier) {
+        return toCart(identifier, execute(readScript, List.of(getCartKey(identifier))));
+    }
+
+    /**
+     * Số lượng hiện có của item trong cart (0 nếu chưa có), chỉ đọc một field
+     */
+    public int getItemQuantity(String identifier, String productId, String variantId) {
         String key = getCartKey(identifier);
-        Object value = redisTemplate.opsForValue().get(key);
-        
-        if (value instanceof CartDTO) {
-            return (CartDTO) value;
+        Long quantity = stringRedisTemplate.execute(quantityScript, List.of(key), itemKey(productId, variantId));
+        if (quantity != null && quantity == LEGACY_QUANTITY) {
+            migrateLegacy(key);
+            quantity = stringRedisTemplate.execute(quantityScript, List.of(key), itemKey(productId, variantId));
         }
-        
-        return null;
+        return quantity != null ? quantity.intValue() : 0;
     }
 
     /**
      * Add item to cart
      */
     public CartDTO addItem(String identifier, CartItemDTO item) {
-        CartDTO cart = getCart(identifier);
-        
-        if (cart == null) {
-            cart = CartDTO.builder()
-                    .sessionId(identifier.startsWith("guest:") ? identifier : null)
-                    .userName(identifier.startsWith("guest:") ? null : identifier)
-                    .items(new ArrayList<>())
-                    .createdAt(LocalDateTime.now())
-                    .build();
-        }
+        LocalDateTime now = LocalDateTime.now();
+        item.setAddedAt(now);
+        item.setUpdatedAt(now);
 
-        item.setAddedAt(LocalDateTime.now());
-        item.setUpdatedAt(LocalDateTime.now());
-
-        // Check if item already exists (same product and variant)
-        boolean found = false;
-        for (CartItemDTO existingItem : cart.getItems()) {
-            if (existingItem.getProductId().equals(item.getProductId()) &&
-                    ((existingItem.getVariantId() == null && item.getVariantId() == null) ||
-                            (existingItem.getVariantId() != null && existingItem.getVariantId().equals(item.getVariantId())))) {
-                // Update quantity
-                existingItem.setQuantity(existingItem.getQuantity() + item.getQuantity());
-                existingItem.setUpdatedAt(LocalDateTime.now());
-                found = true;
-                break;
-            }
-        }
+        boolean guest = identifier.startsWith("guest:");
+        CartMeta meta = new CartMeta(null, guest ? identifier : null, guest ? null : identifier, now);
 
-        if (!found) {
-            cart.getItems().add(item);
-        }
-
-        saveCart(cart);
-        return cart;
+        List<String> fields = execute(addScript, List.of(getCartKey(identifier)),
+                itemKey(item.getProductId(), item.getVariantId()),
+                toJson(item),
+                String.valueOf(item.getQuantity()),
+                toJson(meta),
+                now.toString(),
+                ttlSeconds(identifier));
+        return toCart(identifier, fields);
     }
 
     /**
      * Update item quantity
      */
     public CartDTO updateItem(String identifier, String productId, String variantId, Integer quantity) {
-        CartDTO cart = getCart(identifier);
-        
-        if (cart == null) {
-            return null;
-        }
-
-        for (CartItemDTO item : cart.getItems()) {
-            if (item.getProductId().equals(productId) &&
-                    ((item.getVariantId() == null && variantId == null) ||
-                            (item.getVariantId() != null && item.getVariantId().equals(variantId)))) {
-                item.setQuantity(quantity);
-                item.setUpdatedAt(LocalDateTime.now());
-                break;
-            }
-        }
-
-        saveCart(cart);
-        return cart;
+        List<String> fields = execute(updateScript, List.of(getCartKey(identifier)),
+                itemKey(productId, variantId),
+                String.valueOf(quantity),
+                LocalDateTime.now().toString(),
+                ttlSeconds(identifier));
+        return toCart(identifier, fields);
     }
 
     /**
      * Remove item from cart
      */
     public CartDTO removeItem(String identifier, String productId, String variantId) {
-        CartDTO cart = getCart(identifier);
-        
-        if (cart == null) {
-            return null;
-        }
-
-        cart.getItems().removeIf(item ->
-                item.getProductId().equals(productId) &&
-                        ((item.getVariantId() == null && variantId == null) ||
-                                (item.getVariantId() != null && item.getVariantId().equals(variantId)))
-        );
-
-        saveCart(cart);
-        return cart;
+        List<String> fields = execute(removeScript, List.of(getCartKey(identifier)),
+                LocalDateTime.now().toString(),
+                ttlSeconds(identifier),
+                itemKey(productId, variantId));
+        return toCart(identifier, fields);
     }
 
     /**
@@ -173,54 +197,200 @@ public class RedisCartRepository {
      * Merge guest cart into user cart
      */
     public CartDTO mergeCart(String guestSessionId, String userName) {
-        CartDTO guestCart = getCart(guestSessionId);
-        CartDTO userCart = getCart(userName);
+        String guestKey = getCartKey(guestSessionId);
+        String userKey = getCartKey(userName);
+        LocalDateTime now = LocalDateTime.now();
+        List<String> fields = execute(mergeScript, List.of(guestKey, userKey),
+                toJson(new CartMeta(null, null, userName, now)),
+                now.toString(),
+                ttlSeconds(userName));
 
-        if (guestCart == null || guestCart.getItems().isEmpty()) {
-            return userCart;
+        log.info("Merged guest cart {} into user cart {}", guestSessionId, userName);
+        return toCart(userName, fields);
+    }
+
+    /**
+     * Đánh dấu cart user cần ghi xuống DB (giữ thời điểm bẩn đầu tiên để đo độ trễ)
+     */
+    public void markDirty(String userName) {
+        stringRedisTemplate.opsForZSet().addIfAbsent(DIRTY_KEY, userName, System.currentTimeMillis());
+    }
+
+    /**
+     * Lấy một lô cart bẩn (lâu nhất trước) và chuyển sang inflight cho tới khi {@link #ackDirty}
+     *
+     * @return userName -> thời điểm bẩn (ms), theo thứ tự cũ nhất trước
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Long> claimDirty(int batchSize, Duration inflightTimeout) {
+        List<String> batch = stringRedisTemplate.execute(dirtyClaimScript, List.of(DIRTY_KEY, INFLIGHT_KEY),
+                String.valueOf(System.currentTimeMillis()),
+                String.valueOf(batchSize),
+                String.valueOf(inflightTimeout.toMillis()));
+
+        Map<String, Long> claimed = new LinkedHashMap<>();
+        if (batch != null) {
+            for (int i = 0; i + 1 < batch.size(); i += 2) {
+                claimed.put(batch.get(i), (long) Double.parseDouble(batch.get(i + 1)));
+            }
         }
+        return claimed;
+    }
 
-        if (userCart == null) {
-            // No existing user cart, convert guest cart to user cart
-            guestCart.setSessionId(null);
-            guestCart.setUserName(userName);
-            saveCart(guestCart);
-            clearCart(guestSessionId);
-            return guestCart;
+    /**
+     * Lô đã ghi xuống DB
+     */
+    public void ackDirty(Collection<String> userNames) {
+        if (!userNames.isEmpty()) {
+            stringRedisTemplate.opsForZSet().remove(INFLIGHT_KEY, userNames.toArray());
         }
+    }
 
-        // Merge items from guest cart to user cart
-        for (CartItemDTO guestItem : guestCart.getItems()) {
-            boolean found = false;
-            
-            for (CartItemDTO userItem : userCart.getItems()) {
-                if (userItem.getProductId().equals(guestItem.getProductId()) &&
-                        ((userItem.getVariantId() == null && guestItem.getVariantId() == null) ||
-                                (userItem.getVariantId() != null && userItem.getVariantId().equals(guestItem.getVariantId())))) {
-                    // Merge quantities
-                    userItem.setQuantity(userItem.getQuantity() + guestItem.getQuantity());
-                    userItem.setUpdatedAt(LocalDateTime.now());
-                    found = true;
-                    break;
-                }
-            }
+    /**
+     * Ghi lô thất bại: trả lại dirty với thời điểm bẩn ban đầu
+     */
+    public void requeueDirty(Map<String, Long> dirtySince) {
+        dirtySince.forEach((userName, since) ->
+                stringRedisTemplate.opsForZSet().addIfAbsent(DIRTY_KEY, userName, since));
+        ackDirty(dirtySince.keySet());
+    }
 
-            if (!found) {
-                userCart.getItems().add(guestItem);
-            }
+    /**
+     * Số cart đang chờ ghi
+     */
+    public long pendingDirty() {
+        Long size = stringRedisTemplate.opsForZSet().zCard(DIRTY_KEY);
+        return size != null ? size : 0;
+    }
+
+    /**
+     * Chạy script trên các cart key, migrate blob cũ rồi chạy lại nếu script trả về marker legacy
+     *
+     * @return nội dung hash của cart sau thao tác (rỗng nếu cart không tồn tại)
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<String> execute(RedisScript<List> script, List<String> keys, Object... args) {
+        List<String> fields = stringRedisTemplate.execute(script, keys, args);
+        if (fields != null && fields.size() == 1 && LEGACY_MARKER.equals(fields.get(0))) {
+            keys.forEach(this::migrateLegacy);
+            fields = stringRedisTemplate.execute(script, keys, args);
         }
+        return fields != null ? fields : List.of();
+    }
 
-        saveCart(userCart);
-        clearCart(guestSessionId);
-        
-        log.info("Merged guest cart {} into user cart {}", guestSessionId, userName);
-        return userCart;
+    /**
+     * Chuyển blob CartDTO cũ sang hash (bỏ qua nếu request khác đã chuyển)
+     */
+    private void migrateLegacy(String key) {
+        Object value = redisTemplate.opsForValue().get(key);
+        if (!(value instanceof CartDTO legacy)) {
+            return;
+        }
+        Long migrated = stringRedisTemplate.execute(replaceScript, List.of(key), replaceArgs(legacy, true));
+        if (migrated != null && migrated > 0) {
+            log.info("Migrated legacy cart blob to hash: {}", key);
+        }
+    }
+
+    private Object[] replaceArgs(CartDTO cart, boolean onlyIfLegacy) {
+        String identifier = cart.getSessionId() != null ? cart.getSessionId() : cart.getUserName();
+        LocalDateTime updatedAt = cart.getUpdatedAt() != null ? cart.getUpdatedAt() : LocalDateTime.now();
+
+        List<String> args = new ArrayList<>();
+        args.add(onlyIfLegacy ? "1" : "0");
+        args.add(ttlSeconds(identifier));
+        args.add(META);
+        args.add(toJson(new CartMeta(cart.getCartId(), cart.getSessionId(), cart.getUserName(), cart.getCreatedAt())));
+        args.add(UPDATED_AT);
+        args.add(updatedAt.toString());
+        for (CartItemDTO item : cart.getItems()) {
+            String itemKey = itemKey(item.getProductId(), item.getVariantId());
+            args.add(ITEM + itemKey);
+            args.add(toJson(item));
+            args.add(QUANTITY + itemKey);
+            args.add(String.valueOf(item.getQuantity()));
+            args.add(ITEM_UPDATED_AT + itemKey);
+            args.add((item.getUpdatedAt() != null ? item.getUpdatedAt() : updatedAt).toString());
+        }
+        return args.toArray();
+    }
+
+    /**
+     * Dựng CartDTO từ nội dung hash và tính tổng, null nếu cart không tồn tại
+     */
+    private CartDTO toCart(String identifier, List<String> fields) {
+        if (fields.isEmpty()) {
+            return null;
+        }
+        Map<String, String> hash = new HashMap<>();
+        for (int i = 0; i + 1 < fields.size(); i += 2) {
+            hash.put(fields.get(i), fields.get(i + 1));
+        }
+
+        CartMeta meta = hash.containsKey(META) ? fromJson(hash.get(META), CartMeta.class) : null;
+        boolean guest = identifier.startsWith("guest:");
+        CartDTO cart = CartDTO.builder()
+                .cartId(meta != null ? meta.cartId() : null)
+                .sessionId(meta != null ? meta.sessionId() : guest ? identifier : null)
+                .userName(meta != null ? meta.userName() : guest ? null : identifier)
+                .items(new ArrayList<>())
+                .createdAt(meta != null ? meta.createdAt() : null)
+                .updatedAt(hash.containsKey(UPDATED_AT) ? LocalDateTime.parse(hash.get(UPDATED_AT)) : null)
+                .build();
+
+        hash.forEach((field, value) -> {
+            if (!field.startsWith(ITEM)) {
+                return;
+            }
+            String itemKey = field.substring(ITEM.length());
+            CartItemDTO item = fromJson(value, CartItemDTO.class);
+            item.setQuantity(Integer.parseInt(hash.getOrDefault(QUANTITY + itemKey, "0")));
+            String itemUpdatedAt = hash.get(ITEM_UPDATED_AT + itemKey);
+            if (itemUpdatedAt != null) {
+                item.setUpdatedAt(LocalDateTime.parse(itemUpdatedAt));
+            }
+            cart.getItems().add(item);
+        });
+        // Hash không giữ thứ tự: sắp theo thời điểm thêm vào cart
+        cart.getItems().sort(Comparator.comparing(CartItemDTO::getAddedAt,
+                        Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(item -> itemKey(item.getProductId(), item.getVariantId())));
+
+        cart.calculateTotals();
+        return cart;
     }
 
     /**
-     * Get all cart keys for persistence job
+     * Field của item: theo variantId, item cũ không có variant dùng productId
      */
-    public Set<String> getAllCartKeys() {
-        return redisTemplate.keys(CART_PREFIX + "*");
+    private static String itemKey(String productId, String variantId) {
+        return variantId != null ? variantId : "p:" + productId;
+    }
+
+    private static String ttlSeconds(String identifier) {
+        return String.valueOf((identifier.startsWith("guest:") ? CART_TTL : USER_CART_TTL).toSeconds());
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize cart data", e);
+        }
+    }
+
+    private <T> T fromJson(String json, Class<T> type) {
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not deserialize cart data", e);
+        }
+    }
+
+    private static <T> RedisScript<T> script(String path, Class<T> resultType) {
+        DefaultRedisScript<T> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource(path)));
+        script.setResultType(resultType);
+        return script;
     }
 }
@@ -4,130 +4,171 @@ import com.cnweb.order_service.dto.response.CartDTO;
 import com.cnweb.order_service.dto.response.CartItemDTO;
 import com.cnweb.order_service.entity.Cart;
 import com.cnweb.order_service.entity.CartItem;
-import com.cnweb.order_service.repository.CartItemRepository;
+import com.cnweb.order_service.repository.CartJdbcRepository;
 import com.cnweb.order_service.repository.CartRepository;
 import com.cnweb.order_service.repository.RedisCartRepository;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
-
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lưu cart của user đã đăng nhập xuống DB theo kiểu write-behind
+ *
+ * - Mỗi thay đổi cart chỉ đánh dấu cart bẩn trong Redis (zset, score = thời điểm bẩn đầu tiên)
+ * - Persister định kỳ claim từng lô (cũ nhất trước, chuyển sang inflight), đọc cart từ Redis và ghi bằng
+ *   JDBC batch; cart không còn trong Redis (đã clear) thì xóa item trong DB
+ * - Lô ghi lỗi được trả lại dirty; instance dừng giữa chừng thì inflight quá hạn tự quay lại dirty
+ * - Chi phí mỗi chu kỳ tỉ lệ với số cart thay đổi, không còn KEYS cart:* và ghi lại mọi cart
+ *
+ * Metrics: cart.persistence.carts{result=saved|cleared|failed}, cart.persistence.items,
+ * cart.persistence.lag (ms, cart bẩn lâu nhất của chu kỳ), cart.persistence.pending, cart.persistence.cycle
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class CartPersistenceService {
 
     private final RedisCartRepository redisCartRepository;
     private final CartRepository cartRepository;
-    private final CartItemRepository cartItemRepository;
+    private final CartJdbcRepository cartJdbcRepository;
+
+    private final int batchSize;
+    private final int maxBatchesPerCycle;
+    private final Duration inflightTimeout;
+
+    private final Counter savedCarts;
+    private final Counter clearedCarts;
+    private final Counter failedCarts;
+    private final Counter savedItems;
+    private final Timer cycleTimer;
+    private final AtomicLong lagMs = new AtomicLong();
+    private final AtomicLong pending = new AtomicLong();
+
+    public CartPersistenceService(RedisCartRepository redisCartRepository,
+                                  CartRepository cartRepository,
+                                  CartJdbcRepository cartJdbcRepository,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${cart.persistence.batch-size:200}") int batchSize,
+                                  @Value("${cart.persistence.max-batches-per-cycle:50}") int maxBatchesPerCycle,
+                                  @Value("${cart.persistence.inflight-timeout-ms:300000}") long inflightTimeoutMs) {
+        this.redisCartRepository = redisCartRepository;
+        this.cartRepository = cartRepository;
+        this.cartJdbcRepository = cartJdbcRepository;
+        this.batchSize = batchSize;
+        this.maxBatchesPerCycle = maxBatchesPerCycle;
+        this.inflightTimeout = Duration.ofMillis(inflightTimeoutMs);
+
+        this.savedCarts = carts(meterRegistry, "saved");
+        this.clearedCarts = carts(meterRegistry, "cleared");
+        this.failedCarts = carts(meterRegistry, "failed");
+        this.savedItems = Counter.builder("cart.persistence.items")
+                .description("Cart items written to the database")
+                .register(meterRegistry);
+        this.cycleTimer = Timer.builder("cart.persistence.cycle")
+                .description("Duration of a cart write-behind cycle")
+                .register(meterRegistry);
+        Gauge.builder("cart.persistence.lag", lagMs, AtomicLong::get)
+                .description("Age in ms of the oldest dirty cart written in the last cycle")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("cart.persistence.pending", pending, AtomicLong::get)
+                .description("Dirty carts waiting to be written")
+                .register(meterRegistry);
+    }
 
     /**
-     * Async method to persist cart from Redis to database
+     * Đánh dấu cart cần ghi xuống DB (bỏ qua cart guest)
      */
-    @Async("taskExecutor")
-    @Transactional
-    public void persistCartToDatabase(String identifier) {
+    public void markDirty(String identifier) {
+        if (identifier == null || identifier.startsWith("guest:")) {
+            return;
+        }
         try {
-            CartDTO cartDTO = redisCartRepository.getCart(identifier);
-            
-            if (cartDTO == null || cartDTO.getUserName() == null) {
-                // Only persist carts with user names (authenticated users)
-                return;
-            }
-
-            saveCartToDatabase(cartDTO);
-            log.info("Persisted cart to database for user: {}", cartDTO.getUserName());
-            
+            redisCartRepository.markDirty(identifier);
         } catch (Exception e) {
-            log.error("Error persisting cart to database for identifier: {}", identifier, e);
+            log.error("Error marking cart dirty for identifier: {}", identifier, e);
         }
     }
 
     /**
-     * Scheduled job to persist all user carts from Redis to database
-     * Runs every 5 minutes
+     * Ghi các cart bẩn xuống DB theo lô
      */
-    @Scheduled(fixedDelay = 300000) // 5 minutes
-    @Transactional
-    public void scheduledPersistence() {
+    @Scheduled(fixedDelayString = "${cart.persistence.flush-interval-ms:5000}")
+    public void flushDirtyCarts() {
+        long started = System.nanoTime();
+        int saved = 0;
+        int cleared = 0;
+        int failed = 0;
+        int items = 0;
+        long oldest = 0;
+
         try {
-            log.info("Starting scheduled cart persistence job");
-            
-            Set<String> cartKeys = redisCartRepository.getAllCartKeys();
-            int persistedCount = 0;
-            
-            for (String key : cartKeys) {
-                String identifier = key.replace("cart:", "");
-                
-                // Skip guest carts (those starting with "guest:")
-                if (identifier.startsWith("guest:")) {
-                    continue;
+            for (int batch = 0; batch < maxBatchesPerCycle; batch++) {
+                Map<String, Long> claimed = redisCartRepository.claimDirty(batchSize, inflightTimeout);
+                if (claimed.isEmpty()) {
+                    break;
                 }
-                
-                CartDTO cartDTO = redisCartRepository.getCart(identifier);
-                
-                if (cartDTO != null && cartDTO.getUserName() != null) {
-                    saveCartToDatabase(cartDTO);
-                    persistedCount++;
+                if (oldest == 0) {
+                    oldest = claimed.values().iterator().next();
+                }
+
+                List<CartDTO> carts = new ArrayList<>();
+                List<String> missing = new ArrayList<>();
+                try {
+                    for (String userName : claimed.keySet()) {
+                        CartDTO cart = redisCartRepository.getCart(userName);
+                        if (cart != null) {
+                            cart.setUserName(userName);
+                            carts.add(cart);
+                        } else {
+                            missing.add(userName);
+                        }
+                    }
+                    items += cartJdbcRepository.saveCarts(carts);
+                    cartJdbcRepository.clearCarts(missing);
+                    redisCartRepository.ackDirty(claimed.keySet());
+                    saved += carts.size();
+                    cleared += missing.size();
+                } catch (Exception e) {
+                    log.error("Error writing {} carts to database, requeued", claimed.size(), e);
+                    redisCartRepository.requeueDirty(claimed);
+                    failed += claimed.size();
+                    break;
+                }
+                if (claimed.size() < batchSize) {
+                    break;
                 }
             }
-            
-            log.info("Scheduled cart persistence completed. Persisted {} carts", persistedCount);
-            
+            pending.set(redisCartRepository.pendingDirty());
         } catch (Exception e) {
-            log.error("Error in scheduled cart persistence job", e);
-        }
-    }
-
-    /**
-     * Save cart DTO to database
-     */
-    @Transactional
-    public void saveCartToDatabase(CartDTO cartDTO) {
-        if (cartDTO.getUserName() == null) {
-            return;
+            log.error("Error in cart write-behind cycle", e);
         }
 
-        Optional<Cart> existingCartOpt = cartRepository.findByUserName(cartDTO.getUserName());
-        Cart cart;
-
-        if (existingCartOpt.isPresent()) {
-            cart = existingCartOpt.get();
-            // Clear existing items
-            cartItemRepository.deleteByCartId(cart.getId());
-        } else {
-            cart = Cart.builder()
-                    .userName(cartDTO.getUserName())
-                    .cartItems(new ArrayList<>())
-                    .build();
+        long lag = oldest > 0 ? System.currentTimeMillis() - oldest : 0;
+        lagMs.set(lag);
+        savedCarts.increment(saved);
+        clearedCarts.increment(cleared);
+        failedCarts.increment(failed);
+        savedItems.increment(items);
+        cycleTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+
+        if (saved + cleared + failed > 0) {
+            log.info("Cart write-behind cycle: saved {} carts ({} items), cleared {}, failed {}, pending {}, lag {} ms",
+                    saved, items, cleared, failed, pending.get(), lag);
         }
-
-        // Convert DTOs to entities
-        for (CartItemDTO itemDTO : cartDTO.getItems()) {
-            CartItem cartItem = CartItem.builder()
-                    .cart(cart)
-                    .productId(itemDTO.getProductId())
-                    .productName(itemDTO.getProductName())
-                    .variantId(itemDTO.getVariantId())
-                    .variantName(itemDTO.getVariantName())
-                    .storeId(itemDTO.getStoreId())
-                    .storeName(itemDTO.getStoreName())
-                    .imageUrl(itemDTO.getImageUrl())
-                    .quantity(itemDTO.getQuantity())
-                    .price(itemDTO.getPrice())
-                    .originalPrice(itemDTO.getOriginalPrice())
-                    .build();
-            
-            cart.getCartItems().add(cartItem);
-        }
-
-        cartRepository.save(cart);
     }
 
     /**
@@ -174,4 +215,10 @@ public class CartPersistenceService {
         
         return cartDTO;
     }
+
+    private Counter carts(MeterRegistry registry, String result) {
+        return Counter.builder("cart.persistence.carts")
+                .tag("result", result)
+                .register(registry);
+    }
 }
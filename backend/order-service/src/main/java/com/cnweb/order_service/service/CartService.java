@@ -1,9 +1,6 @@
 package com.cnweb.order_service.service;
 
-import com.cnweb.order_service.client.ProductClient;
 import com.cnweb.order_service.client.VariantInternalDTO;
-import com.cnweb.order_service.client.VariantValidationDTO;
-import com.cnweb.order_service.client.VariantsQueryRequest;
 import com.cnweb.order_service.dto.request.AddToCartRequest;
 import com.cnweb.order_service.dto.request.UpdateCartItemRequest;
 import com.cnweb.order_service.dto.response.CartDTO;
@@ -18,7 +15,6 @@ import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 @Service
@@ -28,7 +24,7 @@ public class CartService {
 
     private final RedisCartRepository redisCartRepository;
     private final CartPersistenceService cartPersistenceService;
-    private final ProductClient productClient;
+    private final VariantSnapshotCache variantSnapshotCache;
 
     /**
      * Get cart for user or guest session
@@ -78,36 +74,20 @@ public class CartService {
         VariantInternalDTO variant = null;
         try {
             if (request.getVariantId() != null && !request.getVariantId().isEmpty()) {
-                // Get variant info from product-service
-                VariantsQueryRequest queryRequest = VariantsQueryRequest.builder()
-                        .variantIds(Collections.singletonList(request.getVariantId()))
-                        .build();
+                // Get variant info from local snapshot (Feign only on miss)
+                variant = variantSnapshotCache.getVariant(request.getVariantId());
                 
-                List<VariantInternalDTO> variants = productClient.getVariants(queryRequest).getResult();
-                
-                if (variants == null || variants.isEmpty()) {
+                if (variant == null) {
                     throw new RuntimeException("Product variant not found");
                 }
                 
-                variant = variants.getFirst();
-                
-                if (!variant.isActive() || variant.isDeleted()) {
+                if (!isAvailable(variant)) {
                     throw new RuntimeException("Product variant is not available");
                 }
                 
-                // Check existing quantity in cart
-                CartDTO existingCart = redisCartRepository.getCart(identifier);
-                int existingQuantity = 0;
-                
-                if (existingCart != null && existingCart.getItems() != null) {
-                    for (CartItemDTO existingItem : existingCart.getItems()) {
-                        if (existingItem.getVariantId() != null && 
-                            existingItem.getVariantId().equals(request.getVariantId())) {
-                            existingQuantity = existingItem.getQuantity();
-                            break;
-                        }
-                    }
-                }
+                // Check existing quantity in cart (chỉ đọc field số lượng của variant)
+                int existingQuantity = redisCartRepository.getItemQuantity(
+                        identifier, request.getProductId(), request.getVariantId());
                 
                 // Validate TOTAL quantity (existing + new)
                 int totalQuantity = existingQuantity + request.getQuantity();
@@ -149,9 +129,9 @@ public class CartService {
 
         CartDTO cart = redisCartRepository.addItem(identifier, item);
         
-        // Trigger async persistence for authenticated users
+        // Mark cart for write-behind persistence (authenticated users)
         if (!identifier.startsWith("guest:")) {
-            cartPersistenceService.persistCartToDatabase(identifier);
+            cartPersistenceService.markDirty(identifier);
         }
         
         log.info("Added item to cart for identifier: {}", identifier);
@@ -165,24 +145,19 @@ public class CartService {
         // Validate stock availability
         try {
             if (request.getVariantId() != null && !request.getVariantId().isEmpty()) {
-                VariantsQueryRequest queryRequest = VariantsQueryRequest.builder()
-                        .variantIds(Collections.singletonList(request.getVariantId()))
-                        .build();
+                VariantInternalDTO variant = variantSnapshotCache.getVariant(request.getVariantId());
                 
-                List<VariantValidationDTO> validations = productClient.validateVariants(queryRequest).getResult();
-                
-                if (validations != null && !validations.isEmpty()) {
-                    VariantValidationDTO validation = validations.getFirst();
-                    
-                    if (!validation.isActive() || validation.isDeleted() || !validation.isInStock()) {
+                if (variant != null) {
+                    int available = variant.getStockQuantity() != null ? variant.getStockQuantity() : 0;
+                    if (!isAvailable(variant) || available <= 0) {
                         throw new RuntimeException("Product variant is not available");
                     }
                     
                     // Validate the NEW quantity directly (updateCartItem sets absolute quantity, not incremental)
-                    if (validation.getAvailableStock() < request.getQuantity()) {
+                    if (available < request.getQuantity()) {
                         throw new RuntimeException(
                             String.format("Insufficient stock. Available: %d, Requested: %d",
-                                validation.getAvailableStock(), request.getQuantity())
+                                available, request.getQuantity())
                         );
                     }
                 }
@@ -203,9 +178,9 @@ public class CartService {
             throw new RuntimeException("Cart not found");
         }
         
-        // Trigger async persistence for authenticated users
+        // Mark cart for write-behind persistence (authenticated users)
         if (!identifier.startsWith("guest:")) {
-            cartPersistenceService.persistCartToDatabase(identifier);
+            cartPersistenceService.markDirty(identifier);
         }
         
         log.info("Updated cart item for identifier: {}", identifier);
@@ -222,9 +197,9 @@ public class CartService {
             throw new RuntimeException("Cart not found");
         }
         
-        // Trigger async persistence for authenticated users
+        // Mark cart for write-behind persistence (authenticated users)
         if (!identifier.startsWith("guest:")) {
-            cartPersistenceService.persistCartToDatabase(identifier);
+            cartPersistenceService.markDirty(identifier);
         }
         
         log.info("Removed item from cart for identifier: {}", identifier);
@@ -235,11 +210,16 @@ public class CartService {
      * Clear entire cart
      */
     public void clearCart(String identifier) {
-        redisCartRepository.clearCart(identifier);
-        
-        // Trigger async persistence for authenticated users
-        if (!identifier.startsWith("guest:")) {
-            cartPersistenceService.persistCartToDatabase(identifier);
+        if (identifier.startsWith("guest:")) {
+            redisCartRepository.clearCart(identifier);
+        } else {
+            // Giữ cart rỗng trong Redis để getCart không nạp lại bản cũ từ DB trước khi write-behind ghi xong
+            redisCartRepository.saveCart(CartDTO.builder()
+                    .userName(identifier)
+                    .items(new ArrayList<>())
+                    .createdAt(LocalDateTime.now())
+                    .build());
+            cartPersistenceService.markDirty(identifier);
         }
         
         log.info("Cleared cart for identifier: {}", identifier);
@@ -251,8 +231,8 @@ public class CartService {
     public CartDTO mergeCart(String guestSessionId, String userName) {
         CartDTO mergedCart = redisCartRepository.mergeCart(guestSessionId, userName);
         
-        // Trigger async persistence for the merged cart
-        cartPersistenceService.persistCartToDatabase(userName);
+        // Mark merged cart for write-behind persistence
+        cartPersistenceService.markDirty(userName);
         
         log.info("Merged guest cart {} into user cart {}", guestSessionId, userName);
         return mergedCart;
@@ -304,21 +284,9 @@ public class CartService {
         }
         
         try {
-            // Batch validate all variants
-            VariantsQueryRequest queryRequest = VariantsQueryRequest.builder()
-                    .variantIds(variantIds)
-                    .build();
-            
-            List<VariantInternalDTO> variants = productClient.getVariants(queryRequest).getResult();
-            log.info("Fetched {} variants for cart validation", variants.size());
-            log.info("Variants: {}", variants);
-            
-            // Create a map for quick lookup
-            java.util.Map<String, VariantInternalDTO> variantMap = variants.stream()
-                    .collect(java.util.stream.Collectors.toMap(
-                            VariantInternalDTO::getId,
-                            v -> v
-                    ));
+            // Batch validate all variants against local snapshot (one Feign call for misses only)
+            java.util.Map<String, VariantInternalDTO> variantMap = variantSnapshotCache.getVariants(variantIds);
+            log.debug("Resolved {} variants for cart validation", variantMap.size());
             
             // Track items to remove (unavailable products)
             List<CartItemDTO> itemsToRemove = new ArrayList<>();
@@ -328,7 +296,7 @@ public class CartService {
                 VariantInternalDTO variant = variantMap.get(item.getVariantId());
                 
                 // Check if variant is unavailable
-                if (variant == null || !variant.isActive() || variant.isDeleted()) {
+                if (variant == null || !isAvailable(variant)) {
                     log.warn("Cart item unavailable: variant {}", item.getVariantId());
                     
                     changes.add(CartItemChangeDTO.builder()
@@ -435,7 +403,7 @@ public class CartService {
             
             // Persist to database for authenticated users
             if (!identifier.startsWith("guest:")) {
-                cartPersistenceService.persistCartToDatabase(identifier);
+                cartPersistenceService.markDirty(identifier);
             }
         }
         
@@ -461,9 +429,9 @@ public class CartService {
             throw new RuntimeException("Cart not found");
         }
 
-        // Trigger async persistence for authenticated users
+        // Mark cart for write-behind persistence (authenticated users)
         if (!identifier.startsWith("guest:")) {
-            cartPersistenceService.persistCartToDatabase(identifier);
+            cartPersistenceService.markDirty(identifier);
         }
 
         log.info("Removed {} items from cart for identifier: {}", variantIds.size(), identifier);
@@ -523,6 +491,17 @@ public class CartService {
         
         return String.join(". ", messages);
     }
+
+    /**
+     * Variant còn bán được: variant, product và store đều active, chưa bị xóa
+     * (productActive/storeActive null khi product-service chưa trả về - coi như active)
+     */
+    private boolean isAvailable(VariantInternalDTO variant) {
+        return variant.isActive()
+                && !variant.isDeleted()
+                && !Boolean.FALSE.equals(variant.getProductActive())
+                && !Boolean.FALSE.equals(variant.getStoreActive());
+    }
     
     /**
      * Validate entire cart before checkout (public API)
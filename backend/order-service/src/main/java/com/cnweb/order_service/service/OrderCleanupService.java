@@ -46,6 +46,13 @@ public class OrderCleanupService {
         log.info("Found {} expired orders. Cancelling...", expiredOrders.size());
 
         for (Order order : expiredOrders) {
+            // Lệnh giữ hàng chưa có kết quả: StockReservationRecoveryService gửi lại lệnh hoặc hủy khi quá hạn
+            // (release lúc này có thể chạy trước reserve)
+            if (order.isAwaitingStockReservation()) {
+                log.warn("Expired order {} is still awaiting stock reservation. Skipping.", order.getOrderNumber());
+                continue;
+            }
+
             try {
                 log.info("Cancelling expired order: {}", order.getOrderNumber());
                 
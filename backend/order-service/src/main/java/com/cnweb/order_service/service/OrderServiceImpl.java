@@ -14,14 +14,20 @@ import com.cnweb.order_service.entity.Order;
 import com.cnweb.order_service.entity.OrderItem;
 import com.cnweb.order_service.enums.OrderStatus;
 import com.cnweb.order_service.enums.RefundStatus;
+import com.cnweb.order_service.enums.StockReservationStatus;
 import com.cnweb.order_service.exception.AppException;
 import com.cnweb.order_service.exception.ErrorCode;
 import com.cnweb.order_service.mapper.OrderMapper;
+import com.cnweb.order_service.messaging.OutboxPublisher;
 import com.cnweb.order_service.repository.OrderRepository;
 import com.cnweb.order_service.specification.OrderSpecification;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vdt2025.common_dto.dto.MessageType;
+import com.vdt2025.common_dto.dto.StockReservationCommand;
 import com.vdt2025.common_dto.dto.response.ApiResponse;
+import com.vdt2025.common_dto.id.SnowflakeIdGenerator;
+import com.vdt2025.common_dto.id.UuidV7;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
@@ -34,6 +40,7 @@ import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -41,7 +48,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -51,36 +57,38 @@ public class OrderServiceImpl implements OrderService {
 
     OrderRepository orderRepository;
     ProductClient productClient;
+    VariantSnapshotCache variantSnapshotCache;
     PaymentClient paymentClient;
     OrderMapper orderMapper;
     CouponService couponService;
     ObjectMapper objectMapper;
     OrderNotificationService orderNotificationService;
+    OutboxPublisher outboxPublisher;
+    TransactionTemplate transactionTemplate;
+    SnowflakeIdGenerator snowflakeIdGenerator;
     @Value("${payment.redirect-url}")
     @NonFinal
     String paymentRedirectUrl;
 
+    /**
+     * Tạo đơn theo saga: đọc variant và tính giá ngoài transaction, transaction chỉ gồm insert đơn,
+     * lượt dùng coupon và lệnh giữ hàng trong outbox. Đơn trả về ở trạng thái reservationStatus = PENDING,
+     * StockReservationResultListener chuyển sang RESERVED hoặc hủy đơn khi product-service trả kết quả.
+     */
     @Override
-    @Transactional
     public List<OrderResponse> createOrder(String username, OrderCreationRequest request) {
         // 1. Get all variant IDs
         List<String> variantIds = request.getItems().stream()
                 .map(OrderItemRequest::getVariantId)
                 .toList();
 
-        // 2. Fetch variant details
-        ApiResponse<List<VariantInternalDTO>> variantResponse = productClient.getVariants(
-                VariantsQueryRequest.builder().variantIds(variantIds).build()
-        );
+        // 2. Fetch variant details - checkout luôn đọc trực tiếp product-service, không dùng snapshot của cart
+        Map<String, VariantInternalDTO> variantMap = variantSnapshotCache.getFreshVariants(variantIds);
 
-        if (variantResponse.getResult() == null || variantResponse.getResult().isEmpty()) {
+        if (variantMap.isEmpty()) {
             throw new RuntimeException("Products not found");
         }
 
-        List<VariantInternalDTO> variants = variantResponse.getResult();
-        Map<String, VariantInternalDTO> variantMap = variants.stream()
-                .collect(Collectors.toMap(VariantInternalDTO::getId, v -> v));
-
         // 3. Group items by Store
         Map<String, List<OrderItemRequest>> itemsByStore = new HashMap<>();
 
@@ -98,7 +106,8 @@ public class OrderServiceImpl implements OrderService {
         }
 
         List<Order> createdOrders = new ArrayList<>();
-        List<InventoryChangeRequest> inventoryChanges = new ArrayList<>();
+        List<StockReservationCommand.Item> reservationItems = new ArrayList<>();
+        String reservationId = UuidV7.generateString();
 
         // Prepare orders (calculate subtotal first)
         for (Map.Entry<String, List<OrderItemRequest>> entry : itemsByStore.entrySet()) {
@@ -114,6 +123,8 @@ public class OrderServiceImpl implements OrderService {
             order.setStoreId(storeId);
             order.setStoreName(storeName);
             order.setStoreOwnerUsername(storeOwnerUsername); // Lưu username của seller
+            order.setReservationId(reservationId);
+            order.setReservationStatus(StockReservationStatus.PENDING);
 
             List<OrderItem> orderItems = new ArrayList<>();
             for (OrderItemRequest itemRequest : storeItems) {
@@ -134,7 +145,7 @@ public class OrderServiceImpl implements OrderService {
                 orderItem.calculateTotalPrice();
                 orderItems.add(orderItem);
                 
-                inventoryChanges.add(InventoryChangeRequest.builder()
+                reservationItems.add(StockReservationCommand.Item.builder()
                         .variantId(variant.getId())
                         .quantity(itemRequest.getQuantity())
                         .build());
@@ -149,16 +160,11 @@ public class OrderServiceImpl implements OrderService {
             applyCoupon(username, request.getCouponCode(), createdOrders);
         }
 
-        // 5. Reserve stock
-        productClient.reserveBatch(BatchInventoryChangeRequest.builder()
-                .items(inventoryChanges)
-                .build());
-
-        try {
-            // 6. Save orders
+        // 5. Save orders + coupon usage + reservation command (outbox) in one local transaction
+        transactionTemplate.executeWithoutResult(status -> {
             orderRepository.saveAll(createdOrders);
 
-            // 7. Record Coupon Usage (if applied)
+            // Record Coupon Usage (if applied)
             if (request.getCouponCode() != null && !request.getCouponCode().isEmpty()) {
                  // Only record usage if discount was actually applied to at least one order
                  boolean couponApplied = createdOrders.stream()
@@ -169,36 +175,23 @@ public class OrderServiceImpl implements OrderService {
                      couponService.useCoupon(createdOrders.getFirst().getCouponId(), username, createdOrders.get(0).getId());
                  }
             }
-            
-            // 8. Map to response (NO PAYMENT INITIATION HERE)
-            List<OrderResponse> responses = createdOrders.stream()
-                    .map(orderMapper::toOrderResponse)
-                    .toList();
-            
-            // 9. Send notifications for each created order
-            for (Order order : createdOrders) {
-                try {
-                    orderNotificationService.notifyOrderCreated(order, request.getReceiverEmail());
-                } catch (Exception e) {
-                    log.error("Failed to send notification for order {}: {}", order.getOrderNumber(), e.getMessage());
-                    // Don't fail the order creation if notification fails
-                }
-            }
-            
-            return responses;
 
-        } catch (Exception e) {
-            log.error("Error saving orders, triggering compensation transaction to release stock", e);
-            // Compensation: Release reserved stock
-            try {
-                productClient.releaseBatch(BatchInventoryChangeRequest.builder()
-                        .items(inventoryChanges)
-                        .build());
-            } catch (Exception ex) {
-                log.error("CRITICAL: Failed to compensate stock for failed order. Manual intervention required.", ex);
-            }
-            throw e; // Re-throw to rollback Order transaction
-        }
+            // Reserve stock asynchronously - relay gửi lệnh sau khi commit
+            outboxPublisher.enqueue(MessageType.INVENTORY_RESERVE_REQUESTED, reservationId,
+                    StockReservationCommand.builder()
+                            .reservationId(reservationId)
+                            .items(reservationItems)
+                            .timestamp(LocalDateTime.now())
+                            .source("order-service")
+                            .build());
+        });
+        log.info("Created {} orders for reservation {}", createdOrders.size(), reservationId);
+
+        // 6. Map to response (NO PAYMENT INITIATION HERE)
+        // Thông báo đơn mới được gửi khi giữ hàng thành công (StockReservationResultListener)
+        return createdOrders.stream()
+                .map(orderMapper::toOrderResponse)
+                .toList();
     }
 
     @Override
@@ -290,6 +283,11 @@ public class OrderServiceImpl implements OrderService {
                         String.format("Đơn hàng %s đã bị hủy", order.getOrderNumber())
                 );
             }
+
+            // Chưa giữ được hàng thì chưa cho thanh toán (confirm-batch cần phần đã reserve)
+            if (order.isAwaitingStockReservation()) {
+                throw new AppException(ErrorCode.ORDER_STOCK_NOT_RESERVED);
+            }
         }
 
         // Calculate total amount for payment
@@ -461,7 +459,7 @@ public class OrderServiceImpl implements OrderService {
     }
 
     private String generateOrderNumber() {
-        return "ORD-" + System.currentTimeMillis() + "-" + (int)(Math.random() * 1000);
+        return snowflakeIdGenerator.nextOrderNumber();
     }
 
     // ==================== Order Status Management ====================
@@ -608,6 +606,11 @@ public class OrderServiceImpl implements OrderService {
             throw new AppException(ErrorCode.ORDER_CANNOT_BE_CANCELLED);
         }
 
+        // Lệnh giữ hàng còn đang xử lý: release lúc này sẽ chạy trước reserve
+        if (order.isAwaitingStockReservation()) {
+            throw new AppException(ErrorCode.ORDER_STOCK_NOT_RESERVED);
+        }
+
         // Validate cancel reason
         if (cancelReason == null || cancelReason.trim().isEmpty()) {
             throw new AppException(ErrorCode.CANCEL_REASON_REQUIRED);
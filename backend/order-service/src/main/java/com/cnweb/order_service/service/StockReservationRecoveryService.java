@@ -0,0 +1,206 @@
+package com.cnweb.order_service.service;
+
+import com.cnweb.order_service.client.BatchInventoryChangeRequest;
+import com.cnweb.order_service.client.InventoryChangeRequest;
+import com.cnweb.order_service.client.ProductClient;
+import com.cnweb.order_service.entity.Order;
+import com.cnweb.order_service.entity.OrderItem;
+import com.cnweb.order_service.enums.OrderStatus;
+import com.cnweb.order_service.enums.StockReservationStatus;
+import com.cnweb.order_service.messaging.OutboxPublisher;
+import com.cnweb.order_service.repository.OrderRepository;
+import com.vdt2025.common_dto.dto.MessageType;
+import com.vdt2025.common_dto.dto.StockReservationCommand;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Gỡ các đơn treo ở reservationStatus = PENDING của saga đặt hàng
+ * (kết quả giữ hàng bị mất, lệnh bị dead-letter, product-service lỗi kéo dài...)
+ *
+ * - Chờ quá resend-after: gửi lại lệnh giữ hàng qua outbox (product-service xử lý idempotent
+ *   và phát lại kết quả cũ nếu đã xử lý)
+ * - Chờ quá timeout: hủy đơn ngay (CANCELLING - kết quả đến muộn bị bỏ qua), rồi gọi product-service
+ *   hủy lần giữ hàng theo reservationId: xả hàng nếu đã giữ, hoặc chặn lệnh đến muộn
+ * - Gọi product-service lỗi thì đơn giữ CANCELLING và được thử lại ở chu kỳ sau
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockReservationRecoveryService {
+
+    private static final String SYSTEM = "SYSTEM";
+
+    private final OrderRepository orderRepository;
+    private final ProductClient productClient;
+    private final CouponService couponService;
+    private final OrderNotificationService orderNotificationService;
+    private final OutboxPublisher outboxPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${saga.reservation.resend-after-seconds:60}")
+    private long resendAfterSeconds;
+
+    @Value("${saga.reservation.timeout-seconds:300}")
+    private long timeoutSeconds;
+
+    @Scheduled(fixedDelayString = "${saga.reservation.recovery-interval-ms:30000}")
+    public void recoverPendingReservations() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime timeoutBefore = now.minusSeconds(timeoutSeconds);
+
+        List<String> timedOut = transactionTemplate.execute(status -> {
+            Map<String, List<Order>> byReservation = orderRepository
+                    .findByReservationStatusAndCreatedAtBefore(StockReservationStatus.PENDING,
+                            now.minusSeconds(resendAfterSeconds))
+                    .stream()
+                    .collect(Collectors.groupingBy(Order::getReservationId, LinkedHashMap::new, Collectors.toList()));
+
+            List<String> expired = new ArrayList<>();
+            byReservation.forEach((reservationId, orders) -> {
+                LocalDateTime createdAt = orders.stream()
+                        .map(Order::getCreatedAt)
+                        .min(Comparator.naturalOrder())
+                        .orElse(now);
+                if (createdAt.isBefore(timeoutBefore)) {
+                    expired.add(reservationId);
+                } else {
+                    log.warn("Reservation {} still pending, re-sending reserve command", reservationId);
+                    outboxPublisher.enqueue(MessageType.INVENTORY_RESERVE_REQUESTED, reservationId,
+                            StockReservationCommand.builder()
+                                    .reservationId(reservationId)
+                                    .items(reservationItems(orders))
+                                    .timestamp(now)
+                                    .source("order-service")
+                                    .build());
+                }
+            });
+            return expired;
+        });
+
+        // Các lần hủy trước chưa gọi được product-service
+        orderRepository.findByReservationStatusAndCreatedAtBefore(StockReservationStatus.CANCELLING, now).stream()
+                .map(Order::getReservationId)
+                .distinct()
+                .forEach(this::cancelReservation);
+
+        if (timedOut != null) {
+            timedOut.forEach(this::cancelTimedOut);
+        }
+    }
+
+    /**
+     * Hủy các đơn của một lần giữ hàng không thành công (cập nhật trạng thái + hoàn lượt dùng coupon)
+     * Gọi trong transaction đang khóa các đơn; caller lưu đơn và gửi thông báo
+     */
+    public void cancelOrders(List<Order> orders, StockReservationStatus reservationStatus, String cancelReason) {
+        LocalDateTime now = LocalDateTime.now();
+        for (Order order : orders) {
+            order.setReservationStatus(reservationStatus);
+            order.setStatus(OrderStatus.CANCELLED);
+            order.setCancelReason(cancelReason);
+            order.setCancelledBy(SYSTEM);
+            order.setCancelledAt(now);
+            log.info("Cancelled order {} - {}", order.getOrderNumber(), cancelReason);
+        }
+
+        // createOrder ghi nhận một lượt dùng coupon cho cả checkout
+        orders.stream()
+                .filter(order -> order.getCouponId() != null
+                        && order.getDiscountAmount() != null
+                        && order.getDiscountAmount().compareTo(BigDecimal.ZERO) > 0)
+                .findFirst()
+                .ifPresent(order -> couponService.revertCouponUsage(
+                        order.getCouponId(), order.getUsername(), order.getId()));
+    }
+
+    private void cancelTimedOut(String reservationId) {
+        List<Order> cancelled = transactionTemplate.execute(status -> {
+            List<Order> orders = orderRepository.findByReservationIdForUpdate(reservationId).stream()
+                    .filter(Order::isAwaitingStockReservation)
+                    .toList();
+            if (orders.isEmpty()) {
+                return List.<Order>of();
+            }
+            cancelOrders(orders, StockReservationStatus.CANCELLING, "Quá thời gian chờ giữ hàng");
+            return orderRepository.saveAll(orders);
+        });
+        if (cancelled == null || cancelled.isEmpty()) {
+            return;
+        }
+
+        log.warn("Reservation {} timed out, cancelled {} orders", reservationId, cancelled.size());
+        for (Order order : cancelled) {
+            try {
+                orderNotificationService.notifyOrderCancelled(order, SYSTEM);
+            } catch (Exception e) {
+                log.error("Failed to send notification for order {}: {}", order.getOrderNumber(), e.getMessage());
+            }
+        }
+        cancelReservation(reservationId);
+    }
+
+    /**
+     * Hủy lần giữ hàng ở product-service rồi chuyển các đơn CANCELLING sang CANCELLED
+     */
+    private void cancelReservation(String reservationId) {
+        List<InventoryChangeRequest> items = transactionTemplate.execute(status ->
+                reservationItems(orderRepository.findByReservationIdForUpdate(reservationId).stream()
+                        .filter(order -> order.getReservationStatus() == StockReservationStatus.CANCELLING)
+                        .toList())
+                        .stream()
+                        .map(item -> InventoryChangeRequest.builder()
+                                .variantId(item.getVariantId())
+                                .quantity(item.getQuantity())
+                                .build())
+                        .toList());
+        if (items == null || items.isEmpty()) {
+            return;
+        }
+
+        String previous;
+        try {
+            previous = productClient.cancelReservation(reservationId, BatchInventoryChangeRequest.builder()
+                    .items(items)
+                    .build()).getResult();
+        } catch (Exception e) {
+            log.error("Failed to cancel stock reservation {}, will retry: {}", reservationId, e.getMessage());
+            return;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Order> orders = orderRepository.findByReservationIdForUpdate(reservationId).stream()
+                    .filter(order -> order.getReservationStatus() == StockReservationStatus.CANCELLING)
+                    .toList();
+            orders.forEach(order -> order.setReservationStatus(StockReservationStatus.CANCELLED));
+            orderRepository.saveAll(orders);
+        });
+        log.info("Cancelled stock reservation {} (previous state: {})", reservationId, previous);
+    }
+
+    private List<StockReservationCommand.Item> reservationItems(List<Order> orders) {
+        List<StockReservationCommand.Item> items = new ArrayList<>();
+        for (Order order : orders) {
+            for (OrderItem item : order.getItems()) {
+                items.add(StockReservationCommand.Item.builder()
+                        .variantId(item.getVariantId())
+                        .quantity(item.getQuantity())
+                        .build());
+            }
+        }
+        return items;
+    }
+}
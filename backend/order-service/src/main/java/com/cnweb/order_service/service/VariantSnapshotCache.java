@@ -0,0 +1,141 @@
+package com.cnweb.order_service.service;
+
+import com.cnweb.order_service.client.ProductClient;
+import com.cnweb.order_service.client.VariantInternalDTO;
+import com.cnweb.order_service.client.VariantsQueryRequest;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bản sao variant (giá, tồn kho, trạng thái, store) trong bộ nhớ cho cart
+ *
+ * - Caffeine giới hạn kích thước, mỗi entry sống tối đa ttl kể từ lần nạp
+ * - Nhận VariantChangedMessage / ProductChangedMessage từ product-service và xóa entry liên quan,
+ *   nên giá trị lệch chỉ tồn tại tới khi event tới (hoặc hết ttl nếu event bị mất)
+ * - Miss thì gọi batch getVariants qua Feign một lần cho mọi variant còn thiếu
+ * - Kết quả Feign bắt đầu trước một lần xóa không được ghi vào cache (tránh ghi đè bằng dữ liệu cũ)
+ *
+ * Đảm bảo tại checkout: {@link #getFreshVariants} luôn đọc trực tiếp product-service (và làm mới cache),
+ * không dùng bản sao; tồn kho còn được kiểm tra nguyên tử lần nữa khi reserve.
+ *
+ * Metrics: order.variant-snapshot.lookups{result=hit|miss}, cache.* của Caffeine (cache=variantSnapshot)
+ */
+@Service
+@Slf4j
+public class VariantSnapshotCache {
+
+    private final ProductClient productClient;
+    private final Cache<String, VariantInternalDTO> variants;
+    // variantId -> thời điểm bị xóa gần nhất (nano), giữ lâu hơn thời gian một lần gọi Feign
+    private final Cache<String, Long> invalidations;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public VariantSnapshotCache(ProductClient productClient,
+                                MeterRegistry meterRegistry,
+                                @Value("${variant-snapshot.ttl-seconds:60}") long ttlSeconds,
+                                @Value("${variant-snapshot.maximum-size:50000}") long maximumSize) {
+        this.productClient = productClient;
+        this.variants = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        this.invalidations = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofMinutes(1))
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, variants, "variantSnapshot");
+
+        this.hits = lookups(meterRegistry, "hit");
+        this.misses = lookups(meterRegistry, "miss");
+    }
+
+    /**
+     * Variant theo id, đọc từ bộ nhớ và chỉ gọi product-service cho các variant chưa có
+     * Variant không tồn tại không có trong kết quả
+     */
+    public Map<String, VariantInternalDTO> getVariants(Collection<String> variantIds) {
+        Set<String> ids = new LinkedHashSet<>(variantIds);
+        Map<String, VariantInternalDTO> result = new HashMap<>(variants.getAllPresent(ids));
+        hits.increment(result.size());
+
+        List<String> missing = ids.stream().filter(id -> !result.containsKey(id)).toList();
+        if (!missing.isEmpty()) {
+            misses.increment(missing.size());
+            result.putAll(load(missing));
+        }
+        return result;
+    }
+
+    public VariantInternalDTO getVariant(String variantId) {
+        return getVariants(List.of(variantId)).get(variantId);
+    }
+
+    /**
+     * Variant đọc trực tiếp từ product-service (checkout), đồng thời làm mới cache
+     */
+    public Map<String, VariantInternalDTO> getFreshVariants(Collection<String> variantIds) {
+        return load(new ArrayList<>(new LinkedHashSet<>(variantIds)));
+    }
+
+    public void evictVariants(Collection<String> variantIds) {
+        long now = System.nanoTime();
+        variantIds.forEach(id -> invalidations.put(id, now));
+        variants.invalidateAll(variantIds);
+    }
+
+    /**
+     * Xóa mọi variant của product (product bị sửa, ẩn, xóa)
+     */
+    public void evictProduct(String productId) {
+        List<String> ids = variants.asMap().values().stream()
+                .filter(variant -> productId.equals(variant.getProductId()))
+                .map(VariantInternalDTO::getId)
+                .toList();
+        evictVariants(ids);
+    }
+
+    private Map<String, VariantInternalDTO> load(List<String> variantIds) {
+        long started = System.nanoTime();
+        List<VariantInternalDTO> loaded = productClient.getVariants(
+                VariantsQueryRequest.builder().variantIds(variantIds).build()
+        ).getResult();
+
+        Map<String, VariantInternalDTO> result = new HashMap<>();
+        if (loaded == null) {
+            return result;
+        }
+        for (VariantInternalDTO variant : loaded) {
+            result.put(variant.getId(), variant);
+            Long invalidatedAt = invalidations.getIfPresent(variant.getId());
+            if (invalidatedAt == null || invalidatedAt - started < 0) {
+                variants.put(variant.getId(), variant);
+            }
+        }
+        log.debug("Loaded {} variants from product-service into snapshot", result.size());
+        return result;
+    }
+
+    private Counter lookups(MeterRegistry registry, String result) {
+        return Counter.builder("order.variant-snapshot.lookups")
+                .tag("result", result)
+                .register(registry);
+    }
+}
@@ -0,0 +1,14 @@
+-- Thêm item vào cart hash, cộng dồn số lượng nếu item đã có (giữ nguyên thông tin item cũ)
+-- KEYS[1]: cart key
+-- ARGV[1]: item key, ARGV[2]: item JSON, ARGV[3]: số lượng thêm, ARGV[4]: meta JSON, ARGV[5]: now, ARGV[6]: ttl (giây)
+-- Trả về {'__legacy__'} nếu key còn là blob CartDTO cũ, ngược lại toàn bộ cart sau khi thêm
+local key = KEYS[1]
+if redis.call('TYPE', key)['ok'] == 'string' then
+    return {'__legacy__'}
+end
+redis.call('HSETNX', key, 'meta', ARGV[4])
+redis.call('HSETNX', key, 'i:' .. ARGV[1], ARGV[2])
+redis.call('HINCRBY', key, 'q:' .. ARGV[1], ARGV[3])
+redis.call('HSET', key, 'u:' .. ARGV[1], ARGV[5], 'updatedAt', ARGV[5])
+redis.call('EXPIRE', key, ARGV[6])
+return redis.call('HGETALL', key)
@@ -0,0 +1,17 @@
+-- Lấy một lô cart cần ghi xuống DB (bẩn lâu nhất trước) và chuyển sang inflight
+-- KEYS[1]: zset dirty (score = thời điểm bẩn đầu tiên, ms), KEYS[2]: zset inflight (score = thời điểm claim, ms)
+-- ARGV[1]: now (ms), ARGV[2]: batch size, ARGV[3]: inflight timeout (ms)
+-- Entry inflight quá hạn (instance dừng giữa lúc ghi) được trả lại dirty trước khi claim
+-- Trả về cặp member, score của lô
+local now = tonumber(ARGV[1])
+local expired = redis.call('ZRANGEBYSCORE', KEYS[2], '-inf', now - tonumber(ARGV[3]), 'WITHSCORES')
+for i = 1, #expired, 2 do
+    redis.call('ZADD', KEYS[1], 'NX', expired[i + 1], expired[i])
+    redis.call('ZREM', KEYS[2], expired[i])
+end
+local batch = redis.call('ZRANGE', KEYS[1], 0, tonumber(ARGV[2]) - 1, 'WITHSCORES')
+for i = 1, #batch, 2 do
+    redis.call('ZREM', KEYS[1], batch[i])
+    redis.call('ZADD', KEYS[2], now, batch[i])
+end
+return batch
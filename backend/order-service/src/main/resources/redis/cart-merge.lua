@@ -0,0 +1,31 @@
+-- Gộp cart guest vào cart user rồi xóa cart guest
+-- KEYS[1]: cart guest, KEYS[2]: cart user
+-- ARGV[1]: meta JSON của user (dùng khi user chưa có cart), ARGV[2]: now, ARGV[3]: ttl (giây)
+-- Trả về {'__legacy__'} nếu một trong hai key còn là blob CartDTO cũ, ngược lại toàn bộ cart user sau khi gộp
+-- (cart guest rỗng thì không gộp, trả về cart user hiện tại)
+local guest, user = KEYS[1], KEYS[2]
+if redis.call('TYPE', guest)['ok'] == 'string' or redis.call('TYPE', user)['ok'] == 'string' then
+    return {'__legacy__'}
+end
+local fields = redis.call('HGETALL', guest)
+local merged = 0
+for i = 1, #fields, 2 do
+    local field, value = fields[i], fields[i + 1]
+    local kind = string.sub(field, 1, 2)
+    if kind == 'i:' then
+        redis.call('HSETNX', user, field, value)
+        merged = merged + 1
+    elseif kind == 'q:' then
+        redis.call('HINCRBY', user, field, value)
+    elseif kind == 'u:' then
+        redis.call('HSET', user, field, ARGV[2])
+    end
+end
+if merged == 0 then
+    return redis.call('HGETALL', user)
+end
+redis.call('HSETNX', user, 'meta', ARGV[1])
+redis.call('HSET', user, 'updatedAt', ARGV[2])
+redis.call('EXPIRE', user, ARGV[3])
+redis.call('DEL', guest)
+return redis.call('HGETALL', user)
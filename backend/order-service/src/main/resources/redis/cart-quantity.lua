@@ -0,0 +1,7 @@
+-- Số lượng hiện có của một item trong cart (0 nếu chưa có)
+-- KEYS[1]: cart key, ARGV[1]: item key
+-- Trả về -1 nếu key còn là blob CartDTO cũ
+if redis.call('TYPE', KEYS[1])['ok'] == 'string' then
+    return -1
+end
+return tonumber(redis.call('HGET', KEYS[1], 'q:' .. ARGV[1]) or '0')
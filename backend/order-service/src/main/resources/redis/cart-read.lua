@@ -0,0 +1,7 @@
+-- Đọc toàn bộ cart hash
+-- KEYS[1]: cart key
+-- Trả về {'__legacy__'} nếu key còn là blob CartDTO cũ (caller migrate rồi đọc lại)
+if redis.call('TYPE', KEYS[1])['ok'] == 'string' then
+    return {'__legacy__'}
+end
+return redis.call('HGETALL', KEYS[1])
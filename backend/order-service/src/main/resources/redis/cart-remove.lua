@@ -0,0 +1,18 @@
+-- Xóa các item khỏi cart
+-- KEYS[1]: cart key
+-- ARGV[1]: now, ARGV[2]: ttl (giây), ARGV[3..]: item key
+-- Trả về {'__legacy__'} nếu key còn là blob CartDTO cũ, {} nếu cart không tồn tại, ngược lại toàn bộ cart sau khi sửa
+local key = KEYS[1]
+local keyType = redis.call('TYPE', key)['ok']
+if keyType == 'string' then
+    return {'__legacy__'}
+end
+if keyType == 'none' then
+    return {}
+end
+for i = 3, #ARGV do
+    redis.call('HDEL', key, 'i:' .. ARGV[i], 'q:' .. ARGV[i], 'u:' .. ARGV[i])
+end
+redis.call('HSET', key, 'updatedAt', ARGV[1])
+redis.call('EXPIRE', key, ARGV[2])
+return redis.call('HGETALL', key)
@@ -0,0 +1,14 @@
+-- Ghi đè toàn bộ cart hash (đồng bộ với product-service, nạp từ DB, migrate blob cũ)
+-- KEYS[1]: cart key
+-- ARGV[1]: '1' = chỉ ghi khi key còn là blob cũ (migrate), ARGV[2]: ttl (giây), ARGV[3..]: cặp field, value
+-- Trả về 1 nếu đã ghi, 0 nếu bỏ qua (key đã được migrate bởi request khác)
+local key = KEYS[1]
+if ARGV[1] == '1' and redis.call('TYPE', key)['ok'] ~= 'string' then
+    return 0
+end
+redis.call('DEL', key)
+for i = 3, #ARGV, 2 do
+    redis.call('HSET', key, ARGV[i], ARGV[i + 1])
+end
+redis.call('EXPIRE', key, ARGV[2])
+return 1
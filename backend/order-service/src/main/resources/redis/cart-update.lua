@@ -0,0 +1,18 @@
+-- Đặt số lượng tuyệt đối cho item đã có trong cart
+-- KEYS[1]: cart key
+-- ARGV[1]: item key, ARGV[2]: số lượng, ARGV[3]: now, ARGV[4]: ttl (giây)
+-- Trả về {'__legacy__'} nếu key còn là blob CartDTO cũ, {} nếu cart không tồn tại, ngược lại toàn bộ cart sau khi sửa
+local key = KEYS[1]
+local keyType = redis.call('TYPE', key)['ok']
+if keyType == 'string' then
+    return {'__legacy__'}
+end
+if keyType == 'none' then
+    return {}
+end
+if redis.call('HEXISTS', key, 'i:' .. ARGV[1]) == 1 then
+    redis.call('HSET', key, 'q:' .. ARGV[1], ARGV[2], 'u:' .. ARGV[1], ARGV[3])
+end
+redis.call('HSET', key, 'updatedAt', ARGV[3])
+redis.call('EXPIRE', key, ARGV[4])
+return redis.call('HGETALL', key)
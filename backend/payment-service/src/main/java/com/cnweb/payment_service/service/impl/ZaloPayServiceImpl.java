@@ -20,6 +20,7 @@ import com.vdt2025.common_dto.dto.PaymentFailedEvent;
 import com.vdt2025.common_dto.dto.PaymentSuccessEvent;
 import com.vdt2025.common_dto.dto.RefundSuccessEvent;
 import com.vdt2025.common_dto.dto.RefundFailedEvent;
+import com.vdt2025.common_dto.id.SnowflakeIdGenerator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -35,7 +36,6 @@ import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
-import java.text.SimpleDateFormat;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
@@ -56,14 +56,13 @@ public class ZaloPayServiceImpl implements ZaloPayService {
     private final ZaloPayRefundTransactionRepository refundTransactionRepository;
     private final RestTemplate restTemplate = new RestTemplate();
     private final RabbitMQMessagePublisher rabbitMQMessagePublisher;
-    
-    private static final String DATE_FORMAT = "yyMMdd";
+    private final SnowflakeIdGenerator snowflakeIdGenerator;
     
     @Override
     @Transactional
     public CreateOrderResponse createOrder(CreateOrderRequest request) {
         try {
-            // Generate app_trans_id với format: yyMMdd_timestamp
+            // Generate app_trans_id với format: yyMMdd_<snowflake id>
             String appTransId = generateAppTransId();
             
             // Lấy thời gian hiện tại (milliseconds)
@@ -212,21 +211,12 @@ public class ZaloPayServiceImpl implements ZaloPayService {
     }
     
     /**
-     * Generate app_trans_id theo format: yyMMdd_timestamp
+     * Generate app_trans_id theo format: yyMMdd_<snowflake id>
      * QUAN TRỌNG: Sử dụng TimeZone GMT+7 (Vietnam) theo yêu cầu của ZaloPay
      */
     private String generateAppTransId() {
-        // Sử dụng Calendar với GMT+7 timezone giống như code mẫu ZaloPay
-        Calendar cal = new GregorianCalendar(TimeZone.getTimeZone("GMT+7"));
-        SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT);
-        sdf.setCalendar(cal);
-        String datePrefix = sdf.format(cal.getTimeInMillis());
-        
-        // Sử dụng random ID để tránh trùng lặp trong cùng 1 millisecond
-        Random rand = new Random();
-        int randomId = rand.nextInt(1000000);
-        
-        return String.format("%s_%d", datePrefix, randomId);
+        // yyMMdd (GMT+7) + Snowflake id: không trùng giữa các instance, tăng dần theo thời gian
+        return snowflakeIdGenerator.nextZaloPayTransId();
     }
     
     /**
@@ -1054,19 +1044,8 @@ public class ZaloPayServiceImpl implements ZaloPayService {
      * Generate m_refund_id theo format: yymmdd_appid_xxxx
      */
     private String generateMRefundId() {
-        // Lấy thời gian hiện tại theo GMT+7
-        Calendar cal = new GregorianCalendar(TimeZone.getTimeZone("GMT+7"));
-        SimpleDateFormat sdf = new SimpleDateFormat("yyMMdd");
-        sdf.setCalendar(cal);
-        String datePrefix = sdf.format(cal.getTimeInMillis());
-
-        // Sinh số ngẫu nhiên 10 chữ số (0 -> 9999999999)
-        Random rand = new Random();
-        long randomId = Math.abs(rand.nextLong() % 1_000_000_0000L);
-        String randomStr = String.format("%010d", randomId);
-
-        // Trả về kết quả đúng format yêu cầu
-        return String.format("%s_%d_%s", datePrefix, zaloPayConfig.getAppId(), randomStr);
+        // Đúng format yêu cầu: yyMMdd_appid_xxxx (phần cuối là Snowflake id)
+        return snowflakeIdGenerator.nextZaloPayRefundId(zaloPayConfig.getAppId());
     }
     
     /**
@@ -0,0 +1,61 @@
+package com.vdt2025.product_service.cache;
+
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generation counter của cache trên Redis (cache-gen:{scope})
+ * Key cache nhúng generation hiện tại, tăng generation là invalidate toàn bộ entry cũ trong một lệnh INCR;
+ * entry của generation cũ tự hết hạn theo TTL
+ */
+public class CacheGenerations {
+
+    private final StringRedisTemplate redisTemplate;
+
+    public CacheGenerations(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    public long current(String scope) {
+        String value = redisTemplate.opsForValue().get(key(scope));
+        return value != null ? Long.parseLong(value) : 0L;
+    }
+
+    public long bump(String scope) {
+        Long value = redisTemplate.opsForValue().increment(key(scope));
+        return value != null ? value : 0L;
+    }
+
+    /**
+     * Đọc generation của nhiều scope trong một lệnh MGET
+     */
+    public List<Long> current(List<String> scopes) {
+        List<String> values = redisTemplate.opsForValue().multiGet(scopes.stream().map(CacheGenerations::key).toList());
+        List<Long> generations = new ArrayList<>(scopes.size());
+        for (int i = 0; i < scopes.size(); i++) {
+            String value = values != null ? values.get(i) : null;
+            generations.add(value != null ? Long.parseLong(value) : 0L);
+        }
+        return generations;
+    }
+
+    /**
+     * Tăng generation của nhiều scope trong một pipeline
+     */
+    public void bump(List<String> scopes) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String scope : scopes) {
+                connection.stringCommands().incr(key(scope).getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+    }
+
+    private static String key(String scope) {
+        return "cache-gen:" + scope;
+    }
+}
@@ -0,0 +1,92 @@
+package com.vdt2025.product_service.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Index tag -> các key Redis của cache (Redis set cache-tag:{cacheName}:{tag})
+ *
+ * - Ghi cache: SADD key vào tag set và gia hạn TTL của set (pipeline)
+ * - Xóa theo tag: lấy và xóa set nguyên tử, sau đó DEL các key theo lô trong một pipeline
+ */
+@Slf4j
+public class CacheTagIndex {
+
+    private static final RedisScript<List> POP_SCRIPT = popScript();
+    private static final int DELETE_BATCH_SIZE = 500;
+
+    private final StringRedisTemplate redisTemplate;
+    private final Duration tagTtl;
+
+    /**
+     * @param tagTtl TTL của tag set, nên lớn hơn TTL của entry cache
+     */
+    public CacheTagIndex(StringRedisTemplate redisTemplate, Duration tagTtl) {
+        this.redisTemplate = redisTemplate;
+        this.tagTtl = tagTtl;
+    }
+
+    public void register(String cacheName, String tag, String redisKey) {
+        byte[] tagKey = bytes(tagKey(cacheName, tag));
+        byte[] member = bytes(redisKey);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.setCommands().sAdd(tagKey, member);
+            connection.keyCommands().expire(tagKey, tagTtl.toSeconds());
+            return null;
+        });
+    }
+
+    /**
+     * Xóa mọi key đã đăng ký dưới tag
+     *
+     * @return số key đã gửi lệnh xóa
+     */
+    @SuppressWarnings("unchecked")
+    public int evict(String cacheName, String tag) {
+        List<String> keys = redisTemplate.execute(POP_SCRIPT, List.of(tagKey(cacheName, tag)));
+        if (keys == null || keys.isEmpty()) {
+            return 0;
+        }
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int from = 0; from < keys.size(); from += DELETE_BATCH_SIZE) {
+                delete(connection, keys.subList(from, Math.min(from + DELETE_BATCH_SIZE, keys.size())));
+            }
+            return null;
+        });
+        log.debug("Evicted {} keys of {} tagged {}", keys.size(), cacheName, tag);
+        return keys.size();
+    }
+
+    private static void delete(RedisConnection connection, List<String> keys) {
+        byte[][] raw = new byte[keys.size()][];
+        for (int i = 0; i < keys.size(); i++) {
+            raw[i] = bytes(keys.get(i));
+        }
+        connection.keyCommands().del(raw);
+    }
+
+    private static String tagKey(String cacheName, String tag) {
+        return "cache-tag:" + cacheName + ":" + tag;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static RedisScript<List> popScript() {
+        DefaultRedisScript<List> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource("redis/cache-tag-pop.lua")));
+        script.setResultType(List.class);
+        return script;
+    }
+}
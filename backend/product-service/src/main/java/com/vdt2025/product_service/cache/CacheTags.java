@@ -0,0 +1,44 @@
+package com.vdt2025.product_service.cache;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Quy tắc gắn tag cho key của từng cache (tag = id thực thể mà entry phụ thuộc)
+ * Tag được dùng để xóa đúng các key liên quan thay vì pattern scan (KEYS) trên Redis
+ */
+public final class CacheTags {
+
+    private static final Map<String, Function<String, String>> RESOLVERS = Map.of(
+            "products", Function.identity(),
+            "productSpecs", Function.identity(),
+            "variantSpecs", Function.identity(),
+            "variantSelectionOptions", Function.identity(),
+            "productSelectionConfig", Function.identity(),
+            "productSelectionIndex", Function.identity(),
+            // productId-[attributeValueIds]
+            "variantByAttributes", key -> beforeLast(key, "-["),
+            // username-pageNumber-pageSize
+            "storesOfCurrentSeller", key -> beforeLast(beforeLast(key, "-"), "-")
+    );
+
+    private CacheTags() {
+    }
+
+    public static boolean isTagged(String cacheName) {
+        return RESOLVERS.containsKey(cacheName);
+    }
+
+    /**
+     * @return tag của key, hoặc null nếu cache không dùng tag
+     */
+    public static String tagOf(String cacheName, Object key) {
+        Function<String, String> resolver = RESOLVERS.get(cacheName);
+        return resolver != null ? resolver.apply(String.valueOf(key)) : null;
+    }
+
+    private static String beforeLast(String value, String separator) {
+        int index = value.lastIndexOf(separator);
+        return index > 0 ? value.substring(0, index) : value;
+    }
+}
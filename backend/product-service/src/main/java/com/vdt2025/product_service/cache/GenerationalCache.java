@@ -0,0 +1,69 @@
+package com.vdt2025.product_service.cache;
+
+import org.springframework.cache.Cache;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Decorator cho RedisCache ở chế độ generation: key thực tế là g{generation}:{key}
+ * clear() chỉ tăng generation (O(1)) thay vì scan/xóa toàn bộ key của cache
+ */
+public class GenerationalCache implements Cache {
+
+    private final Cache delegate;
+    private final CacheGenerations generations;
+
+    public GenerationalCache(Cache delegate, CacheGenerations generations) {
+        this.delegate = delegate;
+        this.generations = generations;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        return delegate.get(versioned(key));
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        return delegate.get(versioned(key), type);
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        return delegate.get(versioned(key), valueLoader);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        delegate.put(versioned(key), value);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        return delegate.putIfAbsent(versioned(key), value);
+    }
+
+    @Override
+    public void evict(Object key) {
+        delegate.evict(versioned(key));
+    }
+
+    @Override
+    public void clear() {
+        generations.bump(getName());
+    }
+
+    private String versioned(Object key) {
+        return "g" + generations.current(getName()) + ":" + key;
+    }
+}
@@ -0,0 +1,95 @@
+package com.vdt2025.product_service.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Broadcast invalidation của L1 near cache giữa các instance qua Redis pub/sub
+ *
+ * Message: instanceId|mode|cacheName|key với mode K (một key), P (prefix), C (toàn bộ cache).
+ * Instance bỏ qua message của chính nó. Pub/sub không đảm bảo giao nhận nên L1 luôn có TTL ngắn làm lưới an toàn.
+ */
+@Slf4j
+public class NearCacheInvalidationBus implements MessageListener {
+
+    public static final String CHANNEL = "cache:near-invalidation";
+
+    private static final char SEPARATOR = '|';
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private final StringRedisTemplate redisTemplate;
+    private Consumer<Invalidation> handler = invalidation -> { };
+
+    public NearCacheInvalidationBus(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    void setHandler(Consumer<Invalidation> handler) {
+        this.handler = handler;
+    }
+
+    public void publishKey(String cacheName, String key) {
+        publish(Mode.KEY, cacheName, key);
+    }
+
+    public void publishPrefix(String cacheName, String prefix) {
+        publish(Mode.PREFIX, cacheName, prefix);
+    }
+
+    public void publishClear(String cacheName) {
+        publish(Mode.CLEAR, cacheName, "");
+    }
+
+    private void publish(Mode mode, String cacheName, String key) {
+        String message = instanceId + SEPARATOR + mode.code + SEPARATOR + cacheName + SEPARATOR + key;
+        try {
+            redisTemplate.convertAndSend(CHANNEL, message);
+        } catch (Exception e) {
+            // L1 của instance khác sẽ hết hạn theo TTL
+            log.warn("Failed to broadcast near cache invalidation for {}: {}", cacheName, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = body.split("\\|", 4);
+        if (parts.length < 4 || parts[0].equals(instanceId)) {
+            return;
+        }
+        Mode mode = Mode.of(parts[1].charAt(0));
+        if (mode == null) {
+            log.warn("Ignoring malformed near cache invalidation: {}", body);
+            return;
+        }
+        handler.accept(new Invalidation(mode, parts[2], parts[3]));
+    }
+
+    public enum Mode {
+        KEY('K'), PREFIX('P'), CLEAR('C');
+
+        private final char code;
+
+        Mode(char code) {
+            this.code = code;
+        }
+
+        static Mode of(char code) {
+            for (Mode mode : values()) {
+                if (mode.code == code) {
+                    return mode;
+                }
+            }
+            return null;
+        }
+    }
+
+    public record Invalidation(Mode mode, String cacheName, String key) {
+    }
+}
@@ -0,0 +1,100 @@
+package com.vdt2025.product_service.cache;
+
+import com.vdt2025.product_service.dto.request.product.ProductFilterRequest;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generation theo phạm vi cho cache product-search
+ *
+ * Key nhúng generation của phạm vi hẹp nhất mà filter thuộc về:
+ * - filter theo store -> store:{id} (kèm category:{id} nếu filter cả category)
+ * - filter theo category -> category:{id}
+ * - còn lại -> catalog
+ * cùng với epoch (flush toàn bộ). Khi một sản phẩm thay đổi chỉ store, category của nó và catalog bị tăng
+ * generation, cache tìm kiếm của store/category khác vẫn giữ nguyên. Entry cũ hết hạn theo TTL.
+ */
+@Component("productSearchKeyGenerator")
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class ProductSearchCacheScopes implements KeyGenerator {
+
+    private static final String PREFIX = "product-search:";
+    private static final String EPOCH = PREFIX + "epoch";
+    private static final String CATALOG = PREFIX + "catalog";
+
+    CacheGenerations generations;
+
+    /**
+     * Key cho searchProductsInternal(ProductFilterRequest, Pageable) và countProductsInternal(ProductFilterRequest)
+     */
+    @Override
+    public Object generate(Object target, Method method, Object... params) {
+        ProductFilterRequest filter = (ProductFilterRequest) params[0];
+        Object pageable = params.length > 1 ? (Pageable) params[1] : "count";
+
+        List<String> scopes = new ArrayList<>();
+        scopes.add(EPOCH);
+        if (filter.getStoreId() != null) {
+            scopes.add(store(filter.getStoreId()));
+        }
+        if (filter.getCategoryId() != null) {
+            scopes.add(category(filter.getCategoryId()));
+        }
+        if (scopes.size() == 1) {
+            scopes.add(CATALOG);
+        }
+
+        StringBuilder key = new StringBuilder();
+        List<Long> current = generations.current(scopes);
+        for (int i = 0; i < scopes.size(); i++) {
+            key.append(scopes.get(i).substring(PREFIX.length())).append('=').append(current.get(i)).append(';');
+        }
+        return key.append(filter).append('-').append(pageable).toString();
+    }
+
+    /**
+     * Invalidate kết quả tìm kiếm có thể chứa sản phẩm thuộc store/category này
+     */
+    public void invalidate(String storeId, String... categoryIds) {
+        Set<String> scopes = new LinkedHashSet<>();
+        scopes.add(CATALOG);
+        if (storeId != null) {
+            scopes.add(store(storeId));
+        }
+        for (String categoryId : categoryIds) {
+            if (categoryId != null) {
+                scopes.add(category(categoryId));
+            }
+        }
+        generations.bump(List.copyOf(scopes));
+        log.debug("Bumped product search generations: {}", scopes);
+    }
+
+    /**
+     * Invalidate toàn bộ cache tìm kiếm
+     */
+    public void invalidateAll() {
+        generations.bump(EPOCH);
+    }
+
+    private static String store(String storeId) {
+        return PREFIX + "store:" + storeId;
+    }
+
+    private static String category(String categoryId) {
+        return PREFIX + "category:" + categoryId;
+    }
+}
@@ -0,0 +1,90 @@
+package com.vdt2025.product_service.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Decorator cho RedisCache: mỗi lần ghi entry thì đăng ký key Redis của entry vào tag set tương ứng
+ * (xem {@link CacheTags}), để có thể xóa theo tag mà không cần KEYS
+ */
+@Slf4j
+public class TagIndexedCache implements Cache {
+
+    private final Cache delegate;
+    private final CacheTagIndex tagIndex;
+
+    public TagIndexedCache(Cache delegate, CacheTagIndex tagIndex) {
+        this.delegate = delegate;
+        this.tagIndex = tagIndex;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        return delegate.get(key);
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        return delegate.get(key, type);
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        return delegate.get(key, () -> {
+            T value = valueLoader.call();
+            register(key);
+            return value;
+        });
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        delegate.put(key, value);
+        register(key);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = delegate.putIfAbsent(key, value);
+        if (existing == null) {
+            register(key);
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        delegate.evict(key);
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+
+    private void register(Object key) {
+        String tag = CacheTags.tagOf(getName(), key);
+        if (tag == null) {
+            return;
+        }
+        try {
+            // Prefix mặc định của RedisCache: cacheName::key
+            tagIndex.register(getName(), tag, getName() + "::" + key);
+        } catch (Exception e) {
+            // Entry vẫn hết hạn theo TTL của cache
+            log.warn("Failed to register cache tag {} for {}: {}", tag, getName(), e.getMessage());
+        }
+    }
+}
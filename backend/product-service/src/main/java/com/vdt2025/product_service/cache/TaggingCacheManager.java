@@ -0,0 +1,56 @@
+package com.vdt2025.product_service.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bọc RedisCacheManager để gắn cơ chế invalidation cho từng cache:
+ * - Cache có quy tắc tag ({@link CacheTags}) -> {@link TagIndexedCache}
+ * - Cache trong danh sách generation -> {@link GenerationalCache}
+ * - Cache còn lại giữ nguyên
+ */
+public class TaggingCacheManager implements CacheManager {
+
+    private final CacheManager delegate;
+    private final CacheTagIndex tagIndex;
+    private final CacheGenerations generations;
+    private final Set<String> generationalCaches;
+    private final Map<String, Cache> caches = new ConcurrentHashMap<>();
+
+    public TaggingCacheManager(CacheManager delegate, CacheTagIndex tagIndex,
+                               CacheGenerations generations, Set<String> generationalCaches) {
+        this.delegate = delegate;
+        this.tagIndex = tagIndex;
+        this.generations = generations;
+        this.generationalCaches = Set.copyOf(generationalCaches);
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        Cache cache = delegate.getCache(name);
+        if (cache == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, cacheName -> decorate(cacheName, cache));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return delegate.getCacheNames();
+    }
+
+    private Cache decorate(String name, Cache cache) {
+        if (generationalCaches.contains(name)) {
+            return new GenerationalCache(cache, generations);
+        }
+        if (CacheTags.isTagged(name)) {
+            return new TagIndexedCache(cache, tagIndex);
+        }
+        return cache;
+    }
+}
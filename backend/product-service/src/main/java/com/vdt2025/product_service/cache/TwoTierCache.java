@@ -0,0 +1,178 @@
+package com.vdt2025.product_service.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Cache 2 tầng: L1 trong process (Caffeine, bounded) phía trước L2 Redis
+ *
+ * - Đọc: L1 -> L2 -> loader, giá trị lấy từ L2/loader được đưa vào L1
+ * - Ghi (put): cập nhật L2 rồi L1 của instance này, KHÔNG broadcast - put chủ yếu là lần fill sau miss của
+ *   {@code @Cacheable}, broadcast ở đây sẽ xóa key khỏi L1 của mọi instance mỗi lần fill. Luồng cập nhật dữ liệu
+ *   phải evict (CacheEvictService), không dùng {@code @CachePut} cho near cache
+ * - Xóa (evict/clear): cập nhật L2 trước, sau đó L1 và broadcast invalidation cho L1 của các instance khác
+ * - Null không được cache ở L1 (L2 cũng disableCachingNullValues)
+ */
+@Slf4j
+public class TwoTierCache implements Cache {
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> local;
+    private final Cache remote;
+    private final NearCacheInvalidationBus invalidationBus;
+
+    private final Counter l1Hits;
+    private final Counter l2Hits;
+    private final Counter misses;
+    private final Timer l2LoadTimer;
+    private final Timer sourceLoadTimer;
+
+    public TwoTierCache(String name,
+                        com.github.benmanes.caffeine.cache.Cache<String, Object> local,
+                        Cache remote,
+                        NearCacheInvalidationBus invalidationBus,
+                        MeterRegistry meterRegistry) {
+        this.name = name;
+        this.local = local;
+        this.remote = remote;
+        this.invalidationBus = invalidationBus;
+
+        this.l1Hits = requests(meterRegistry, "l1_hit");
+        this.l2Hits = requests(meterRegistry, "l2_hit");
+        this.misses = requests(meterRegistry, "miss");
+        this.l2LoadTimer = loadTimer(meterRegistry, "l2");
+        this.sourceLoadTimer = loadTimer(meterRegistry, "source");
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remote.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String localKey = localKey(key);
+        Object value = local.getIfPresent(localKey);
+        if (value != null) {
+            l1Hits.increment();
+            return new SimpleValueWrapper(value);
+        }
+
+        ValueWrapper wrapper = l2LoadTimer.record(() -> remote.get(key));
+        if (wrapper != null && wrapper.get() != null) {
+            l2Hits.increment();
+            local.put(localKey, wrapper.get());
+            return wrapper;
+        }
+        misses.increment();
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+
+        // Caffeine chỉ cho một thread load cùng một key trong instance này
+        return (T) local.get(localKey(key), k -> {
+            try {
+                T value = sourceLoadTimer.recordCallable(valueLoader);
+                if (value != null) {
+                    remote.put(key, value);
+                }
+                return value;
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+        });
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        remote.put(key, value);
+        String localKey = localKey(key);
+        if (value != null) {
+            local.put(localKey, value);
+        } else {
+            local.invalidate(localKey);
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        remote.evict(key);
+        String localKey = localKey(key);
+        local.invalidate(localKey);
+        invalidationBus.publishKey(name, localKey);
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        local.invalidateAll();
+        invalidationBus.publishClear(name);
+    }
+
+    /**
+     * Xóa L1 theo key (nhận từ instance khác hoặc sau khi L2 bị xóa trực tiếp)
+     */
+    void invalidateLocal(String localKey) {
+        local.invalidate(localKey);
+    }
+
+    /**
+     * Xóa L1 theo prefix key (tương ứng các pattern delete trên L2)
+     */
+    void invalidateLocalByPrefix(String prefix) {
+        local.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    void clearLocal() {
+        local.invalidateAll();
+    }
+
+    static String localKey(Object key) {
+        return String.valueOf(key);
+    }
+
+    private Counter requests(MeterRegistry registry, String result) {
+        return Counter.builder("cache.near.requests")
+                .description("Two-tier cache lookups by outcome")
+                .tag("cache", name)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private Timer loadTimer(MeterRegistry registry, String source) {
+        return Timer.builder("cache.near.load")
+                .description("Time to load a value on L1 miss")
+                .tag("cache", name)
+                .tag("source", source)
+                .register(registry);
+    }
+}
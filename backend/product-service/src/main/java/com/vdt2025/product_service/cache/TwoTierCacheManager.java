@@ -0,0 +1,114 @@
+package com.vdt2025.product_service.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CacheManager bọc RedisCacheManager: các cache nằm trong danh sách near cache được phục vụ qua
+ * {@link TwoTierCache} (L1 Caffeine + L2 Redis), các cache còn lại đi thẳng Redis như trước
+ */
+@Slf4j
+public class TwoTierCacheManager implements CacheManager {
+
+    private final CacheManager remoteCacheManager;
+    private final NearCacheInvalidationBus invalidationBus;
+    private final MeterRegistry meterRegistry;
+    private final Set<String> nearCacheNames;
+    private final long maximumWeight;
+    private final Duration localTtl;
+    private final Map<String, TwoTierCache> nearCaches = new ConcurrentHashMap<>();
+
+    /**
+     * @param maximumWeight giới hạn weight của mỗi L1 (xem {@link #weigh(Object)})
+     * @param localTtl      TTL của L1, lưới an toàn khi mất message invalidation
+     */
+    public TwoTierCacheManager(CacheManager remoteCacheManager,
+                               NearCacheInvalidationBus invalidationBus,
+                               MeterRegistry meterRegistry,
+                               Set<String> nearCacheNames,
+                               long maximumWeight,
+                               Duration localTtl) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.invalidationBus = invalidationBus;
+        this.meterRegistry = meterRegistry;
+        this.nearCacheNames = Set.copyOf(nearCacheNames);
+        this.maximumWeight = maximumWeight;
+        this.localTtl = localTtl;
+        invalidationBus.setHandler(this::applyRemoteInvalidation);
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        Cache remote = remoteCacheManager.getCache(name);
+        if (remote == null || !nearCacheNames.contains(name)) {
+            return remote;
+        }
+        return nearCaches.computeIfAbsent(name, cacheName -> createNearCache(cacheName, remote));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return remoteCacheManager.getCacheNames();
+    }
+
+    /**
+     * Xóa L1 theo prefix trên mọi instance - dùng khi key L2 bị xóa trực tiếp (không qua Cache API)
+     */
+    public void evictLocalByPrefix(String cacheName, String prefix) {
+        TwoTierCache cache = nearCaches.get(cacheName);
+        if (cache != null) {
+            cache.invalidateLocalByPrefix(prefix);
+        }
+        if (nearCacheNames.contains(cacheName)) {
+            invalidationBus.publishPrefix(cacheName, prefix);
+        }
+    }
+
+    private TwoTierCache createNearCache(String name, Cache remote) {
+        com.github.benmanes.caffeine.cache.Cache<String, Object> local = Caffeine.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((String key, Object value) -> weigh(value))
+                .expireAfterWrite(localTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, local, name + ".l1");
+        log.info("Near cache enabled for {} (maxWeight={}, ttl={})", name, maximumWeight, localTtl);
+        return new TwoTierCache(name, local, remote, invalidationBus, meterRegistry);
+    }
+
+    private void applyRemoteInvalidation(NearCacheInvalidationBus.Invalidation invalidation) {
+        TwoTierCache cache = nearCaches.get(invalidation.cacheName());
+        if (cache == null) {
+            return;
+        }
+        switch (invalidation.mode()) {
+            case KEY -> cache.invalidateLocal(invalidation.key());
+            case PREFIX -> cache.invalidateLocalByPrefix(invalidation.key());
+            case CLEAR -> cache.clearLocal();
+        }
+    }
+
+    /**
+     * Weight của entry: 1 cho một object, cộng số phần tử nếu là collection/map
+     * (một trang kết quả hoặc danh sách variant chiếm nhiều chỗ hơn một ProductResponse)
+     */
+    static int weigh(Object value) {
+        if (value instanceof Collection<?> collection) {
+            return 1 + collection.size();
+        }
+        if (value instanceof Map<?, ?> map) {
+            return 1 + map.size();
+        }
+        return 1;
+    }
+}
@@ -4,15 +4,30 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.vdt2025.product_service.cache.CacheGenerations;
+import com.vdt2025.product_service.cache.CacheTagIndex;
+import com.vdt2025.product_service.cache.NearCacheInvalidationBus;
+import com.vdt2025.product_service.cache.TaggingCacheManager;
+import com.vdt2025.product_service.cache.TwoTierCacheManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import com.vdt2025.common_dto.cache.CompactRedisSerializer;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
-import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.cache.BatchStrategies;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.security.data.repository.query.SecurityEvaluationContextExtension;
 
 import java.time.Duration;
+import java.util.Set;
 
 @Configuration
 @EnableCaching
@@ -24,7 +39,29 @@ public class CacheConfiguration {
     }
 
     @Bean
-    public RedisCacheConfiguration redisCacheConfiguration() {
+    public RedisCacheConfiguration redisCacheConfiguration(
+            @Value("${cache.codec.write-format:compact}") String writeFormat,
+            @Value("${cache.codec.compression-threshold:1024}") int compressionThreshold) {
+        ObjectMapper objectMapper = cacheObjectMapper();
+
+        // 4. Tạo serializer nhị phân (Smile + LZ4) với ObjectMapper đã được cấu hình
+        // Entry JSON cũ vẫn đọc được; write-format=json dùng khi rolling deploy
+        CompactRedisSerializer serializer = CompactRedisSerializer.create(
+                objectMapper,
+                CompactRedisSerializer.WriteFormat.valueOf(writeFormat.toUpperCase()),
+                compressionThreshold);
+
+        // 5. Sử dụng serializer này cho cấu hình cache
+        return RedisCacheConfiguration.defaultCacheConfig()
+                .entryTtl(Duration.ofMinutes(10))
+                .disableCachingNullValues()
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(serializer));
+    }
+
+    /**
+     * ObjectMapper cho giá trị cache (dùng chung cho codec nhị phân và JSON cũ)
+     */
+    public static ObjectMapper cacheObjectMapper() {
         // 1. Tạo một ObjectMapper tùy chỉnh
         ObjectMapper objectMapper = new ObjectMapper()
                 // 2. Đăng ký module để xử lý LocalDateTime, ZonedDateTime, v.v.
@@ -50,14 +87,62 @@ public class CacheConfiguration {
         );
 
         objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        return objectMapper;
+    }
 
-        // 4. Tạo serializer với ObjectMapper đã được cấu hình
-        GenericJackson2JsonRedisSerializer serializer = new GenericJackson2JsonRedisSerializer(objectMapper);
+    /**
+     * CacheManager 2 tầng: các cache đọc nhiều (chi tiết sản phẩm, specs, selection config) có thêm L1 trong process,
+     * các cache còn lại dùng Redis như cũ
+     */
+    @Bean
+    public TwoTierCacheManager cacheManager(
+            RedisConnectionFactory connectionFactory,
+            RedisCacheConfiguration redisCacheConfiguration,
+            NearCacheInvalidationBus nearCacheInvalidationBus,
+            MeterRegistry meterRegistry,
+            @Value("${cache.near.caches:products,productSpecs,variantSpecs,productSelectionConfig,productSelectionIndex}") Set<String> nearCaches,
+            @Value("${cache.near.maximum-weight:10000}") long maximumWeight,
+            @Value("${cache.near.ttl-seconds:60}") long ttlSeconds,
+            @Value("${cache.generational.caches:}") Set<String> generationalCaches,
+            CacheTagIndex cacheTagIndex,
+            CacheGenerations cacheGenerations) {
+        // clear() (@CacheEvict allEntries) dùng SCAN thay vì KEYS mặc định
+        RedisCacheManager redisCacheManager = RedisCacheManager
+                .builder(RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory, BatchStrategies.scan(1000)))
+                .cacheDefaults(redisCacheConfiguration)
+                .build();
+        redisCacheManager.afterPropertiesSet();
 
-        // 5. Sử dụng serializer này cho cấu hình cache
-        return RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(Duration.ofMinutes(10))
-                .disableCachingNullValues()
-                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(serializer));
+        TaggingCacheManager taggingCacheManager = new TaggingCacheManager(
+                redisCacheManager, cacheTagIndex, cacheGenerations, generationalCaches);
+
+        return new TwoTierCacheManager(taggingCacheManager, nearCacheInvalidationBus, meterRegistry,
+                nearCaches, maximumWeight, Duration.ofSeconds(ttlSeconds));
+    }
+
+    @Bean
+    public CacheTagIndex cacheTagIndex(StringRedisTemplate redisTemplate) {
+        // Tag set sống lâu hơn TTL của entry (10 phút) để không mất key trước khi entry hết hạn
+        return new CacheTagIndex(redisTemplate, Duration.ofMinutes(15));
+    }
+
+    @Bean
+    public CacheGenerations cacheGenerations(StringRedisTemplate redisTemplate) {
+        return new CacheGenerations(redisTemplate);
+    }
+
+    @Bean
+    public NearCacheInvalidationBus nearCacheInvalidationBus(StringRedisTemplate redisTemplate) {
+        return new NearCacheInvalidationBus(redisTemplate);
+    }
+
+    @Bean
+    public RedisMessageListenerContainer nearCacheListenerContainer(
+            RedisConnectionFactory connectionFactory,
+            NearCacheInvalidationBus nearCacheInvalidationBus) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(nearCacheInvalidationBus, new ChannelTopic(NearCacheInvalidationBus.CHANNEL));
+        return container;
     }
 }
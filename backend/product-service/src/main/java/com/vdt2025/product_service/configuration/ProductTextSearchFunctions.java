@@ -0,0 +1,35 @@
+package com.vdt2025.product_service.configuration;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.type.BasicType;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * Hàm SQL cho tìm kiếm keyword trên Postgres (đăng ký qua META-INF/services)
+ *
+ * Biểu thức phải trùng với biểu thức của index trong V7__product_text_search.sql để planner dùng được index:
+ * - product_text_match(name, description, keyword): full-text trên tên + mô tả đã bỏ dấu (GIN tsvector)
+ * - product_name_contains(name, keyword): chuỗi con trong tên đã bỏ dấu (GIN trigram), cho từ gõ dở
+ *
+ * Keyword của product_name_contains phải được escape ký tự LIKE trước khi truyền vào.
+ */
+public class ProductTextSearchFunctions implements FunctionContributor {
+
+    @Override
+    public void contributeFunctions(FunctionContributions contributions) {
+        BasicType<Boolean> booleanType = contributions.getTypeConfiguration()
+                .getBasicTypeRegistry()
+                .resolve(StandardBasicTypes.BOOLEAN);
+
+        contributions.getFunctionRegistry().registerPattern(
+                "product_text_match",
+                "(to_tsvector('simple', f_unaccent(coalesce(?1, '') || ' ' || coalesce(?2, '')))"
+                        + " @@ plainto_tsquery('simple', f_unaccent(?3)))",
+                booleanType);
+        contributions.getFunctionRegistry().registerPattern(
+                "product_name_contains",
+                "(lower(f_unaccent(?1)) like ('%' || lower(f_unaccent(?2)) || '%'))",
+                booleanType);
+    }
+}
@@ -76,7 +76,9 @@ public class SecurityConfig {
     private static final String[] PUBLIC_POST_ENDPOINTS_SEARCH = {
             // POST search endpoint - public cho user tìm kiếm với filters
             "/products/search",
-            "/stores/search"
+            "/products/search/cursor",
+            "/stores/search",
+            "/stores/search/cursor"
     };
 
     CustomJwtDecoder customJwtDecoder;
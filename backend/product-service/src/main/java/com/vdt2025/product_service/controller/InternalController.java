@@ -7,9 +7,11 @@ import com.vdt2025.product_service.dto.response.ProductInternalDTO;
 import com.vdt2025.product_service.dto.response.ProductValidationDTO;
 import com.vdt2025.product_service.dto.response.VariantInternalDTO;
 import com.vdt2025.product_service.dto.response.VariantValidationDTO;
+import com.vdt2025.product_service.entity.InventoryReservation;
 import com.vdt2025.product_service.service.InventoryService;
 import com.vdt2025.product_service.service.ProductService;
 import com.vdt2025.product_service.service.StoreService;
+import com.vdt2025.product_service.service.inventory.StockReservationSagaHandler;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -30,6 +32,7 @@ public class InternalController {
     private final ProductService productService;
     private final InventoryService inventoryService;
     private final StoreService storeService;
+    private final StockReservationSagaHandler stockReservationSagaHandler;
 
     /**
      * Get product information by ID (for internal service calls)
@@ -165,6 +168,25 @@ public class InternalController {
                 .build();
     }
 
+    /**
+     * Hủy một lần giữ hàng của saga đặt hàng khi order-service chờ kết quả quá lâu
+     * Xả hàng nếu đã giữ, hoặc chặn lệnh giữ hàng đến muộn (idempotent theo reservationId)
+     * (internal - để order-service gọi)
+     *
+     * @return trạng thái marker trước khi hủy (RESERVED/REJECTED/RELEASED), null nếu lệnh chưa được xử lý
+     */
+    @PostMapping("/reservations/{reservationId}/cancel")
+    public ApiResponse<String> cancelReservation(@PathVariable String reservationId,
+                                                 @RequestBody @Valid BatchInventoryChangeRequest request) {
+        log.info("Internal: Cancelling stock reservation {}", reservationId);
+        InventoryReservation.Status previous = stockReservationSagaHandler.cancel(reservationId, request.getItems());
+
+        return ApiResponse.<String>builder()
+                .result(previous != null ? previous.name() : null)
+                .message("Stock reservation cancelled successfully")
+                .build();
+    }
+
     /**
      * Trả hàng cho một loạt hàng hóa khi khách hàng thực hiện hoàn trả
      * @param request BatchInventoryChangeRequest
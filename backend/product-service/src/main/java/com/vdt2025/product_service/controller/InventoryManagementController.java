@@ -1,16 +1,32 @@
 package com.vdt2025.product_service.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.vdt2025.common_dto.dto.response.ApiResponse;
 import com.vdt2025.product_service.dto.request.inventory.InventoryChangeRequest;
 import com.vdt2025.product_service.dto.response.InventoryStockResponse;
+import com.vdt2025.product_service.entity.InventoryTransaction;
 import com.vdt2025.product_service.service.InventoryService;
 import com.vdt2025.product_service.service.ProductService;
+import com.vdt2025.product_service.service.inventory.InventoryJournalQuery;
 import jakarta.validation.Valid;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 
 @RestController
 @RequestMapping("/inventory")
@@ -20,6 +36,7 @@ import org.springframework.web.bind.annotation.*;
 public class InventoryManagementController {
     InventoryService inventoryService;
     ProductService productService;
+    ObjectMapper objectMapper;
 
 
     // Lấy thông tin tồn kho của một variant sản phẩm
@@ -76,7 +93,33 @@ public class InventoryManagementController {
                 .build();
     }
 
-
-
-
+    // Admin xuất lịch sử thay đổi tồn kho (NDJSON, mỗi dòng một transaction, stream theo cursor)
+    @GetMapping(value = "/audit/transactions", produces = "application/x-ndjson")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> streamAuditTrail(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String variantId,
+            @RequestParam(required = false) InventoryTransaction.TransactionType type,
+            @RequestParam(required = false) String referenceType,
+            @RequestParam(required = false) String referenceId) {
+        InventoryJournalQuery query = new InventoryJournalQuery(from, to, variantId, type, referenceType, referenceId);
+        // Validate trước khi bắt đầu stream để lỗi trả về dạng ApiResponse
+        query.requireValidRange();
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            inventoryService.streamAuditTrail(query, entry -> {
+                try {
+                    writer.write(objectMapper.writeValueAsString(entry));
+                    writer.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
 }
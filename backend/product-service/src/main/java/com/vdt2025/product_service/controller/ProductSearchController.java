@@ -58,6 +58,32 @@ public class ProductSearchController {
                 .build();
     }
 
+    /**
+     * Tìm kiếm theo cursor cho infinite scroll / duyệt sâu (point-in-time + search_after)
+     * Trang đầu không gửi cursor, các trang sau gửi nextCursor của trang trước cùng request body
+     */
+    @PostMapping("/cursor")
+    @Operation(summary = "Search products with cursor",
+            description = "Deep pagination using point-in-time and search_after; pass nextCursor to get the next page")
+    public ApiResponse<ProductSearchResponse> searchWithCursor(
+            @RequestBody ProductSearchRequest request,
+            @Parameter(description = "Cursor from the previous page (omit for the first page)")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size")
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        log.info("Cursor search request: keyword={}, hasCursor={}, size={}",
+                request.getKeyword(), cursor != null, size);
+
+        ProductSearchResponse response = productSearchFacade.searchAfterWithRealtimeStock(
+                request, cursor, Math.max(1, Math.min(size, 100)));
+
+        return ApiResponse.<ProductSearchResponse>builder()
+                .code(1000)
+                .result(response)
+                .build();
+    }
+
     /**
      * Tìm kiếm nhanh với GET request (cho SEO-friendly URLs)
      */
@@ -13,6 +13,8 @@ import com.vdt2025.product_service.facade.ProductSearchFacade;
 import com.vdt2025.product_service.facade.SelectionVariantDetailFacade;
 import com.vdt2025.product_service.facade.VariantDetailFacade;
 import com.vdt2025.product_service.service.ProductService;
+import com.vdt2025.product_service.service.leaderboard.ProductLeaderboards;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
@@ -23,6 +25,9 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.*;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -90,11 +95,12 @@ public class PublicProductController {
      * GET /public/products/{productId}
      */
     @GetMapping("/{productId}")
-    public ApiResponse<ProductResponse> getProductDetail(@PathVariable String productId) {
+    public ApiResponse<ProductResponse> getProductDetail(@PathVariable String productId,
+                                                         HttpServletRequest httpRequest) {
         log.info("Public: Fetching product detail: {}", productId);
 
-        // Increment view count
-        productService.incrementViewCount(productId);
+        // Increment view count (buffer trong bộ nhớ, không ghi DB trên request này)
+        productService.incrementViewCount(productId, resolveViewerKey(httpRequest));
 
         ProductResponse response = productDetailFacade.getProductDetailWithStock(productId);
 
@@ -119,21 +125,25 @@ public class PublicProductController {
     }
 
     /**
-     * Xem sản phẩm bán chạy (best sellers)
+     * Xem sản phẩm bán chạy (best sellers), có thể lọc theo categoryId hoặc storeId
      * GET /public/products/best-sellers
      */
     @GetMapping("/best-sellers")
     public ApiResponse<Page<ProductSummaryResponse>> getBestSellers(
+            @RequestParam(required = false) String categoryId,
+            @RequestParam(required = false) String storeId,
             @PageableDefault(size = 20, sort = "soldCount", direction = Sort.Direction.DESC)
             Pageable pageable) {
         log.info("Public: Fetching best-selling products");
 
         ProductFilterRequest filter = ProductFilterRequest.builder()
                 .isActive(true)
+                .categoryId(categoryId)
+                .storeId(storeId)
                 .build();
 
-
-        PageCacheDTO<ProductSummaryResponse> dto = productSearchFacade.searchProductsWithStock(filter, pageable);
+        PageCacheDTO<ProductSummaryResponse> dto = productSearchFacade.leaderboardWithStock(
+                ProductLeaderboards.Metric.SOLD, filter, pageable);
 
         return ApiResponse.<Page<ProductSummaryResponse>>builder()
                 .result(new PageImpl<>(
@@ -145,12 +155,14 @@ public class PublicProductController {
     }
 
     /**
-     * Xem sản phẩm đánh giá cao (top rated)
+     * Xem sản phẩm đánh giá cao (top rated), có thể lọc theo categoryId hoặc storeId
      * GET /public/products/top-rated
      */
     @GetMapping("/top-rated")
     public ApiResponse<Page<ProductSummaryResponse>> getTopRated(
             @RequestParam(defaultValue = "4.0") Double minRating,
+            @RequestParam(required = false) String categoryId,
+            @RequestParam(required = false) String storeId,
             @PageableDefault(size = 20, sort = "averageRating", direction = Sort.Direction.DESC)
             Pageable pageable) {
         log.info("Public: Fetching top-rated products (min rating: {})", minRating);
@@ -158,9 +170,12 @@ public class PublicProductController {
         ProductFilterRequest filter = ProductFilterRequest.builder()
                 .isActive(true)
                 .ratingFrom(minRating)
+                .categoryId(categoryId)
+                .storeId(storeId)
                 .build();
 
-        PageCacheDTO<ProductSummaryResponse> dto = productSearchFacade.searchProductsWithStock(filter, pageable);
+        PageCacheDTO<ProductSummaryResponse> dto = productSearchFacade.leaderboardWithStock(
+                ProductLeaderboards.Metric.RATING, filter, pageable);
 
         return ApiResponse.<Page<ProductSummaryResponse>>builder()
                 .result(new PageImpl<>(
@@ -172,20 +187,25 @@ public class PublicProductController {
     }
 
     /**
-     * Xem sản phẩm mới (new arrivals)
+     * Xem sản phẩm mới (new arrivals), có thể lọc theo categoryId hoặc storeId
      * GET /public/products/new-arrivals
      */
     @GetMapping("/new-arrivals")
     public ApiResponse<Page<ProductSummaryResponse>> getNewArrivals(
+            @RequestParam(required = false) String categoryId,
+            @RequestParam(required = false) String storeId,
             @PageableDefault(size = 20, sort = "createdAt", direction = Sort.Direction.DESC)
             Pageable pageable) {
         log.info("Public: Fetching new arrivals");
 
         ProductFilterRequest filter = ProductFilterRequest.builder()
                 .isActive(true)
+                .categoryId(categoryId)
+                .storeId(storeId)
                 .build();
 
-        PageCacheDTO<ProductSummaryResponse> dto = productSearchFacade.searchProductsWithStock(filter, pageable);
+        PageCacheDTO<ProductSummaryResponse> dto = productSearchFacade.leaderboardWithStock(
+                ProductLeaderboards.Metric.NEW, filter, pageable);
 
         return ApiResponse.<Page<ProductSummaryResponse>>builder()
                 .result(new PageImpl<>(
@@ -196,6 +216,85 @@ public class PublicProductController {
                 .build();
     }
 
+    /**
+     * Danh sách sản phẩm theo cursor (keyset) cho infinite scroll, không COUNT ở mỗi trang
+     * GET /public/products/cursor?sortBy=soldCount&sortDirection=desc&cursor=...&size=20
+     *
+     * sortBy hỗ trợ: soldCount (sold), averageRating, createdAt (mặc định), minPrice (price)
+     */
+    @GetMapping("/cursor")
+    public ApiResponse<CursorPageDTO<ProductSummaryResponse>> getProductsByCursor(
+            @ModelAttribute ProductFilterRequest filter,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        log.info("Public: Cursor listing products with filter: {}", filter);
+
+        filter.setIsActive(true);
+
+        return ApiResponse.<CursorPageDTO<ProductSummaryResponse>>builder()
+                .result(productSearchFacade.seekProductsWithStock(filter, cursor, clampPageSize(size)))
+                .build();
+    }
+
+    /**
+     * Sản phẩm bán chạy theo cursor
+     * GET /public/products/best-sellers/cursor
+     */
+    @GetMapping("/best-sellers/cursor")
+    public ApiResponse<CursorPageDTO<ProductSummaryResponse>> getBestSellersByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        ProductFilterRequest filter = ProductFilterRequest.builder()
+                .isActive(true)
+                .sortBy("soldCount")
+                .sortDirection("desc")
+                .build();
+
+        return ApiResponse.<CursorPageDTO<ProductSummaryResponse>>builder()
+                .result(productSearchFacade.seekProductsWithStock(filter, cursor, clampPageSize(size)))
+                .build();
+    }
+
+    /**
+     * Sản phẩm đánh giá cao theo cursor
+     * GET /public/products/top-rated/cursor
+     */
+    @GetMapping("/top-rated/cursor")
+    public ApiResponse<CursorPageDTO<ProductSummaryResponse>> getTopRatedByCursor(
+            @RequestParam(defaultValue = "4.0") Double minRating,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        ProductFilterRequest filter = ProductFilterRequest.builder()
+                .isActive(true)
+                .ratingFrom(minRating)
+                .sortBy("averageRating")
+                .sortDirection("desc")
+                .build();
+
+        return ApiResponse.<CursorPageDTO<ProductSummaryResponse>>builder()
+                .result(productSearchFacade.seekProductsWithStock(filter, cursor, clampPageSize(size)))
+                .build();
+    }
+
+    /**
+     * Sản phẩm mới theo cursor
+     * GET /public/products/new-arrivals/cursor
+     */
+    @GetMapping("/new-arrivals/cursor")
+    public ApiResponse<CursorPageDTO<ProductSummaryResponse>> getNewArrivalsByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        ProductFilterRequest filter = ProductFilterRequest.builder()
+                .isActive(true)
+                .sortBy("createdAt")
+                .sortDirection("desc")
+                .build();
+
+        return ApiResponse.<CursorPageDTO<ProductSummaryResponse>>builder()
+                .result(productSearchFacade.seekProductsWithStock(filter, cursor, clampPageSize(size)))
+                .build();
+    }
+
     /**
      * Lấy thông số kỹ thuật của sản phẩm
      * GET /public/products/{productId}/specs
@@ -448,4 +547,24 @@ public class PublicProductController {
                 .result(response)
                 .build();
     }
-}
\ No newline at end of file
+
+    /**
+     * Định danh viewer cho dedup lượt xem: username nếu đã đăng nhập, ngược lại là IP client
+     */
+    private String resolveViewerKey(HttpServletRequest httpRequest) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken)) {
+            return "u:" + authentication.getName();
+        }
+        String ipAddress = httpRequest.getHeader("X-Forwarded-For");
+        if (ipAddress == null || ipAddress.isEmpty()) {
+            ipAddress = httpRequest.getRemoteAddr();
+        }
+        return "ip:" + ipAddress.split(",")[0].trim();
+    }
+
+    private static int clampPageSize(int size) {
+        return Math.max(1, Math.min(size, 100));
+    }
+}
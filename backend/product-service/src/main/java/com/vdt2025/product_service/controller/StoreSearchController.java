@@ -54,6 +54,31 @@ public class StoreSearchController {
                 .build();
     }
 
+    /**
+     * Tìm kiếm cửa hàng theo cursor (point-in-time + search_after)
+     * Trang đầu không gửi cursor, các trang sau gửi nextCursor của trang trước cùng request body
+     */
+    @PostMapping("/cursor")
+    @Operation(summary = "Search stores with cursor",
+            description = "Deep pagination using point-in-time and search_after; pass nextCursor to get the next page")
+    public ApiResponse<StoreSearchResponse> searchWithCursor(
+            @RequestBody StoreSearchRequest request,
+            @Parameter(description = "Cursor from the previous page (omit for the first page)")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size")
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        log.info("Store cursor search request: keyword={}, hasCursor={}, size={}",
+                request.getKeyword(), cursor != null, size);
+
+        StoreSearchResponse response = storeSearchService.searchAfter(request, cursor, Math.max(1, Math.min(size, 100)));
+
+        return ApiResponse.<StoreSearchResponse>builder()
+                .code(1000)
+                .result(response)
+                .build();
+    }
+
     /**
      * Tìm kiếm nhanh cửa hàng với GET request
      */
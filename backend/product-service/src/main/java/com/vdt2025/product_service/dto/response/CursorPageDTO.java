@@ -0,0 +1,16 @@
+package com.vdt2025.product_service.dto.response;
+
+import java.util.List;
+
+/**
+ * Một trang của listing phân trang theo cursor (keyset)
+ *
+ * @param nextCursor    cursor của trang kế tiếp, null nếu đã hết
+ * @param totalElements tổng số dòng khớp filter, lấy từ cache nên có thể trễ so với dữ liệu thực
+ */
+public record CursorPageDTO<T>(
+        List<T> content,
+        int pageSize,
+        String nextCursor,
+        long totalElements
+) {}
@@ -31,4 +31,6 @@ public class VariantInternalDTO implements Serializable {
     String imageUrl;
     boolean isActive;
     boolean isDeleted;
+    Boolean productActive; // Product active và chưa bị xóa
+    Boolean storeActive;
 }
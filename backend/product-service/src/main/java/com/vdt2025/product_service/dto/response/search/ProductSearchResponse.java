@@ -26,6 +26,7 @@ public class ProductSearchResponse {
     Integer totalPages;
     Integer currentPage;
     Integer pageSize;
+    String nextCursor;          // Chế độ cursor (search_after): token cho trang kế tiếp, null nếu đã hết
 
     // Search metadata
     Long took;                  // Thời gian tìm kiếm (ms)
@@ -25,6 +25,7 @@ public class StoreSearchResponse {
     Integer totalPages;
     Integer currentPage;
     Integer pageSize;
+    String nextCursor;          // Chế độ cursor (search_after): token cho trang kế tiếp, null nếu đã hết
 
     // Search metadata
     Long took;                  // Thời gian tìm kiếm (ms)
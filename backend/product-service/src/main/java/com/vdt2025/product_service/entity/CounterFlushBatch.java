@@ -0,0 +1,40 @@
+package com.vdt2025.product_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Đánh dấu các lô delta của write-behind counter (sold count, view count, ...) đã được ghi xuống DB
+ * Ghi cùng transaction với các UPDATE cộng dồn để mỗi lô chỉ được apply đúng một lần
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(
+    name = "counter_flush_batches",
+    indexes = {
+        @Index(name = "idx_counter_flush_flushed_at", columnList = "flushed_at")
+    }
+)
+public class CounterFlushBatch {
+
+    @Id
+    @Column(name = "batch_id", length = 36)
+    String batchId;
+
+    @Column(name = "counter_name", nullable = false, length = 50)
+    String counterName;
+
+    @Column(name = "entry_count", nullable = false)
+    Integer entryCount;
+
+    @Column(name = "flushed_at", nullable = false)
+    LocalDateTime flushedAt;
+}
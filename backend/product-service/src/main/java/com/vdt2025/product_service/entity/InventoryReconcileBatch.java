@@ -0,0 +1,43 @@
+package com.vdt2025.product_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Đánh dấu các lô delta của reservation engine đã được apply xuống inventory_stocks
+ * Được ghi cùng transaction với UPDATE tồn kho, khóa chính batch_id đảm bảo mỗi lô chỉ apply một lần
+ * (kể cả khi nhiều instance cùng reconcile hoặc instance crash trước khi xóa lô trên Redis)
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(
+    name = "inventory_reconcile_batches",
+    indexes = {
+        @Index(name = "idx_inv_reconcile_applied", columnList = "applied_at")
+    }
+)
+public class InventoryReconcileBatch {
+
+    @Id
+    @Column(name = "batch_id", length = 36)
+    String batchId;
+
+    @Column(name = "shard", nullable = false)
+    Integer shard;
+
+    @Column(name = "variant_count", nullable = false)
+    Integer variantCount;
+
+    @CreationTimestamp
+    @Column(name = "applied_at", nullable = false, updatable = false)
+    LocalDateTime appliedAt;
+}
@@ -0,0 +1,50 @@
+package com.vdt2025.product_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Kết quả xử lý lệnh giữ hàng của saga đặt hàng, theo reservationId của order-service
+ * Ghi cùng transaction với reserve để lệnh gửi lại (at-least-once) không giữ hàng lần hai
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(
+    name = "inventory_reservations",
+    indexes = {
+        @Index(name = "idx_inventory_reservation_processed_at", columnList = "processed_at")
+    }
+)
+public class InventoryReservation {
+
+    @Id
+    @Column(name = "reservation_id", length = 36)
+    String reservationId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    Status status;
+
+    /**
+     * Mã lỗi khi bị từ chối
+     */
+    @Column(name = "reason", length = 100)
+    String reason;
+
+    @Column(name = "processed_at", nullable = false)
+    LocalDateTime processedAt;
+
+    public enum Status {
+        RESERVED,
+        REJECTED,
+        RELEASED    // order-service hủy lần giữ hàng (quá thời gian chờ kết quả), hàng đã được xả
+    }
+}
@@ -3,7 +3,7 @@ package com.vdt2025.product_service.entity;
 import jakarta.persistence.*;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
-import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.Immutable;
 
 import java.time.LocalDateTime;
 
@@ -15,6 +15,10 @@ import java.time.LocalDateTime;
  * - Comprehensive: Lưu đầy đủ thông tin before/after, reason, user
  * - Performance: Index theo variantId và createdAt để query nhanh
  * - Compliance: Đáp ứng yêu cầu audit và compliance
+ *
+ * Bảng được ghi append-only bằng JDBC multi-row insert (InventoryJournal), không qua JPA save.
+ * Trên Postgres bảng được partition theo tháng (created_at), xem db/migration/V4__partition_inventory_transactions.sql.
+ * Entity chỉ dùng để đọc.
  */
 @Getter
 @Setter
@@ -23,10 +27,11 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Entity
+@Immutable
 @Table(
     name = "inventory_transactions",
     indexes = {
-        @Index(name = "idx_inv_tx_variant", columnList = "variant_id"),
+        @Index(name = "idx_inv_tx_variant", columnList = "variant_id, created_at"),
         @Index(name = "idx_inv_tx_type", columnList = "transaction_type"),
         @Index(name = "idx_inv_tx_created", columnList = "created_at"),
         @Index(name = "idx_inv_tx_reference", columnList = "reference_type, reference_id")
@@ -38,9 +43,11 @@ public class InventoryTransaction {
     @GeneratedValue(strategy = GenerationType.UUID)
     String id;
 
-    @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "variant_id", nullable = false)
-    ProductVariant variant;
+    /**
+     * ID của product variant (không dùng FK để insert vào bảng partition không phải check khóa ngoại)
+     */
+    @Column(name = "variant_id", nullable = false)
+    String variantId;
 
     /**
      * Loại giao dịch
@@ -111,7 +118,6 @@ public class InventoryTransaction {
     @Column(name = "metadata", columnDefinition = "TEXT")
     String metadata;
 
-    @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     LocalDateTime createdAt;
 
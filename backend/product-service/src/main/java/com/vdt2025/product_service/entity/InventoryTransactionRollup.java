@@ -0,0 +1,67 @@
+package com.vdt2025.product_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Tổng hợp journal tồn kho theo tháng (variant, tháng, loại transaction)
+ * Được tạo trước khi partition tháng cũ của inventory_transactions được archive,
+ * các báo cáo dài hạn đọc bảng này thay vì quét journal chi tiết
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@IdClass(InventoryTransactionRollup.RollupId.class)
+@Table(name = "inventory_transaction_rollups")
+public class InventoryTransactionRollup {
+
+    @Id
+    @Column(name = "variant_id")
+    String variantId;
+
+    /**
+     * Ngày đầu tháng
+     */
+    @Id
+    @Column(name = "period_month")
+    LocalDate periodMonth;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "transaction_type", length = 50)
+    InventoryTransaction.TransactionType transactionType;
+
+    @Column(name = "transaction_count", nullable = false)
+    Long transactionCount;
+
+    /**
+     * Tổng thay đổi onHand
+     */
+    @Column(name = "quantity_change_total", nullable = false)
+    Long quantityChangeTotal;
+
+    /**
+     * Tổng thay đổi reserved
+     */
+    @Column(name = "reserved_change_total", nullable = false)
+    Long reservedChangeTotal;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class RollupId implements Serializable {
+        String variantId;
+        LocalDate periodMonth;
+        InventoryTransaction.TransactionType transactionType;
+    }
+}
@@ -23,7 +23,18 @@ import java.util.Map;
 @AllArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Entity
-@Table(name = "products")
+@Table(
+    name = "products",
+    indexes = {
+        // Keyset scan của incremental sync Elasticsearch
+        @Index(name = "idx_products_updated_at_id", columnList = "updated_at, id"),
+        // Keyset pagination của listing (ProductKeyset)
+        @Index(name = "idx_products_sold_count_id", columnList = "sold_count, id"),
+        @Index(name = "idx_products_average_rating_id", columnList = "average_rating, id"),
+        @Index(name = "idx_products_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_products_min_price_id", columnList = "min_price, id")
+    }
+)
 public class Product {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -0,0 +1,35 @@
+package com.vdt2025.product_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Tombstone cho product bị xóa vĩnh viễn (hard delete)
+ * Soft delete đã được incremental sync nhận ra qua updatedAt, còn hard delete không còn dòng nào để quét
+ * nên phải để lại tombstone. Incremental sync xóa document khỏi index rồi xóa tombstone.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(
+    name = "product_search_tombstones",
+    indexes = {
+        @Index(name = "idx_product_tombstone_deleted_at", columnList = "deleted_at")
+    }
+)
+public class ProductSearchTombstone {
+
+    @Id
+    @Column(name = "product_id", length = 255)
+    String productId;
+
+    @Column(name = "deleted_at", nullable = false)
+    LocalDateTime deletedAt;
+}
@@ -0,0 +1,43 @@
+package com.vdt2025.product_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Trạng thái đồng bộ tăng dần PostgreSQL -> Elasticsearch cho từng luồng sync (ví dụ: "products")
+ *
+ * - watermark: (updatedAt, id) của bản ghi cuối cùng đã đẩy lên index, dùng làm con trỏ keyset
+ * - lease: chỉ một replica được chạy incremental sync tại một thời điểm, lease hết hạn thì replica khác nhận
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(name = "search_sync_state")
+public class SearchSyncState {
+
+    @Id
+    @Column(name = "sync_name", length = 50)
+    String syncName;
+
+    @Column(name = "watermark_at")
+    LocalDateTime watermarkAt;
+
+    @Column(name = "watermark_id", length = 255)
+    String watermarkId;
+
+    @Column(name = "lease_owner", length = 100)
+    String leaseOwner;
+
+    @Column(name = "lease_until")
+    LocalDateTime leaseUntil;
+
+    @Column(name = "last_synced_at")
+    LocalDateTime lastSyncedAt;
+}
@@ -130,6 +130,7 @@ public enum ErrorCode {
     INVALID_INVENTORY_OPERATION(1905, "error.1905", HttpStatus.BAD_REQUEST),
     INVALID_STOCK_QUANTITY(1906, "error.1906", HttpStatus.BAD_REQUEST),
     INVENTORY_STOCK_ALREADY_EXISTS(1907, "error.1907", HttpStatus.CONFLICT),
+    INVALID_AUDIT_RANGE(1908, "error.1908", HttpStatus.BAD_REQUEST),
 
     // Lỗi đánh giá sản phẩm (20xx)
     RATING_NOT_FOUND(2001, "error.2001", HttpStatus.NOT_FOUND),
@@ -139,6 +140,12 @@ public enum ErrorCode {
     PURCHASE_NOT_VERIFIED(2005, "error.2005", HttpStatus.FORBIDDEN),
     RATING_IMAGE_LIMIT_EXCEEDED(2006, "error.2006", HttpStatus.BAD_REQUEST),
     ORDER_SERVICE_ERROR(2007, "error.2007", HttpStatus.INTERNAL_SERVER_ERROR),
+
+    // Lỗi tìm kiếm (21xx)
+    INVALID_SEARCH_CURSOR(2101, "error.2101", HttpStatus.BAD_REQUEST),
+    UNSUPPORTED_LISTING_SORT(2102, "error.2102", HttpStatus.BAD_REQUEST),
+    TOO_MANY_SEARCH_CURSORS(2103, "error.2103", HttpStatus.TOO_MANY_REQUESTS),
+
     // Lỗi banner (30xx)
     BANNER_NOT_FOUND(3001, "error.3001", HttpStatus.NOT_FOUND),
     MAX_BANNER_EXCEEDED(3002, "error.3002", HttpStatus.BAD_REQUEST),
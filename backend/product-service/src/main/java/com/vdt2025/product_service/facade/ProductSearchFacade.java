@@ -2,26 +2,33 @@ package com.vdt2025.product_service.facade;
 
 import com.vdt2025.product_service.dto.request.product.ProductFilterRequest;
 import com.vdt2025.product_service.dto.request.search.ProductSearchRequest;
+import com.vdt2025.product_service.dto.response.CursorPageDTO;
 import com.vdt2025.product_service.dto.response.PageCacheDTO;
 import com.vdt2025.product_service.dto.response.ProductSummaryResponse;
 import com.vdt2025.product_service.dto.response.search.ProductSearchResponse;
-import com.vdt2025.product_service.repository.InventoryStockRepository;
 import com.vdt2025.product_service.service.ProductService;
+import com.vdt2025.product_service.service.inventory.ProductStockSnapshot;
+import com.vdt2025.product_service.service.leaderboard.ProductLeaderboards;
 import com.vdt2025.product_service.service.search.ProductSearchService;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
  * Facade: Chịu trách nhiệm điều phối việc tìm kiếm sản phẩm.
- * Nhiệm vụ: Lấy dữ liệu tĩnh từ Cache Service -> Lấy dữ liệu động từ DB -> Ghép lại.
+ * Nhiệm vụ: Lấy dữ liệu tĩnh từ Cache Service -> Lấy tồn kho từ {@link ProductStockSnapshot} -> Ghép lại.
  */
 @Component
 @RequiredArgsConstructor
@@ -30,15 +37,119 @@ import java.util.stream.Collectors;
 public class ProductSearchFacade {
     private final ProductService productService;
     private final ProductSearchService productSearchService;
-    private final InventoryStockRepository inventoryStockRepository;
+    private final ProductStockSnapshot productStockSnapshot;
+    private final ProductLeaderboards productLeaderboards;
+
+    @Value("${search.db.fallback.health-check-interval-ms:5000}")
+    @NonFinal
+    long healthCheckIntervalMs;
+
+    // Kết quả isHealthy() gần nhất, tránh ping Elasticsearch ở mỗi request
+    @NonFinal
+    volatile boolean elasticsearchHealthy = true;
+
+    @NonFinal
+    volatile long healthCheckedAt;
 
     /**
      * Tìm kiếm sản phẩm bằng Elasticsearch và ghép thông tin tồn kho realtime
+     * Elasticsearch không khả dụng thì tìm trên Postgres (xem {@link #searchFromDatabase})
      */
     public ProductSearchResponse searchWithRealtimeStock(ProductSearchRequest request, Pageable pageable) {
-        // 1. Search từ Elasticsearch
-        ProductSearchResponse response = productSearchService.search(request, pageable);
+        if (!isElasticsearchHealthy(false)) {
+            return searchFromDatabase(request, pageable);
+        }
+        try {
+            // 1. Search từ Elasticsearch
+            return withRealtimeStock(productSearchService.search(request, pageable));
+        } catch (RuntimeException e) {
+            if (isElasticsearchHealthy(true)) {
+                throw e;
+            }
+            log.warn("Elasticsearch unavailable, falling back to database search: {}", e.getMessage());
+            return searchFromDatabase(request, pageable);
+        }
+    }
+
+    /**
+     * Tìm kiếm rút gọn trên Postgres khi Elasticsearch không khả dụng
+     *
+     * Keyword dùng full-text/trigram của ProductSpecification, filter chỉ giữ các tiêu chí JPA hỗ trợ
+     * (danh sách id nhiều phần tử, attribute filter bị bỏ qua), không có aggregations và highlight.
+     * Sort "relevance" được thay bằng số lượng đã bán.
+     */
+    private ProductSearchResponse searchFromDatabase(ProductSearchRequest request, Pageable pageable) {
+        ProductFilterRequest filter = ProductFilterRequest.builder()
+                .keyword(request.getKeyword())
+                .categoryId(singleId(request.getCategoryId(), request.getCategoryIds()))
+                .storeId(singleId(request.getStoreId(), request.getStoreIds()))
+                .brandId(singleId(request.getBrandId(), request.getBrandIds()))
+                .priceFrom(request.getPriceFrom())
+                .priceTo(request.getPriceTo())
+                .ratingFrom(request.getMinRating())
+                .inStockOnly(request.getInStockOnly())
+                .isActive(true)
+                .sortBy(databaseSortField(request.getSortBy()))
+                .sortDirection(request.getSortDirection() != null ? request.getSortDirection() : "desc")
+                .build();
+
+        PageCacheDTO<ProductSummaryResponse> page = searchProductsWithStock(filter,
+                PageRequest.of(pageable.getPageNumber(), pageable.getPageSize()));
+        List<ProductSearchResponse.ProductSearchHit> hits = page.content().stream()
+                .map(product -> ProductSearchResponse.ProductSearchHit.builder()
+                        .id(product.getId())
+                        .product(product)
+                        .build())
+                .toList();
+
+        return ProductSearchResponse.builder()
+                .hits(hits)
+                .totalHits(page.totalElements())
+                .totalPages(page.pageSize() > 0 ? (int) Math.ceil((double) page.totalElements() / page.pageSize()) : 0)
+                .currentPage(page.pageNumber())
+                .pageSize(page.pageSize())
+                .build();
+    }
+
+    private boolean isElasticsearchHealthy(boolean force) {
+        long now = System.currentTimeMillis();
+        if (force || now - healthCheckedAt >= healthCheckIntervalMs) {
+            elasticsearchHealthy = productSearchService.isHealthy();
+            healthCheckedAt = now;
+        }
+        return elasticsearchHealthy;
+    }
+
+    private static String singleId(String id, List<String> ids) {
+        if (id != null && !id.isBlank()) {
+            return id;
+        }
+        return ids != null && ids.size() == 1 ? ids.get(0) : null;
+    }
 
+    /**
+     * Map sortBy của search (relevance, price, sold, rating, newest) sang field của ProductFilterRequest
+     */
+    private static String databaseSortField(String sortBy) {
+        if (sortBy == null) {
+            return "soldCount";
+        }
+        return switch (sortBy.toLowerCase()) {
+            case "price" -> "price";
+            case "rating" -> "averageRating";
+            case "newest" -> "createdAt";
+            default -> "soldCount";
+        };
+    }
+
+    /**
+     * Tìm kiếm theo cursor (search_after) và ghép thông tin tồn kho realtime
+     */
+    public ProductSearchResponse searchAfterWithRealtimeStock(ProductSearchRequest request, String cursor, int size) {
+        return withRealtimeStock(productSearchService.searchAfter(request, cursor, size));
+    }
+
+    private ProductSearchResponse withRealtimeStock(ProductSearchResponse response) {
         if (response.getHits() == null || response.getHits().isEmpty()) {
             return response;
         }
@@ -48,13 +159,8 @@ public class ProductSearchFacade {
                 .map(hit -> hit.getProduct().getId())
                 .collect(Collectors.toList());
 
-        // 3. Query tồn kho realtime từ DB
-        List<Object[]> stockData = inventoryStockRepository.countTotalAvailableStockByProductIds(productIds);
-        Map<String, Integer> stockMap = stockData.stream()
-                .collect(Collectors.toMap(
-                        row -> (String) row[0],
-                        row -> ((Long) row[1]).intValue()
-                ));
+        // 3. Lấy tồn kho từ snapshot (lookup trong bộ nhớ, chỉ xuống DB khi product chưa có trong snapshot)
+        Map<String, Integer> stockMap = productStockSnapshot.getAvailable(productIds);
 
         // 4. Cập nhật thông tin tồn kho vào kết quả
         List<ProductSearchResponse.ProductSearchHit> enrichedHits = response.getHits().stream()
@@ -89,35 +195,74 @@ public class ProductSearchFacade {
             return cachedResult;
         }
 
-        // Lấy danh sách ID để chuẩn bị query tồn kho
-        List<String> productIds = cachedResult.content().stream()
-                .map(ProductSummaryResponse::getId)
-                .toList();
+        // Trả về kết quả đã ghép tồn kho
+        return new PageCacheDTO<>(
+                withStock(cachedResult.content()),
+                cachedResult.pageNumber(),
+                cachedResult.pageSize(),
+                cachedResult.totalElements()
+        );
+    }
 
-        // Query tổng tồn kho
-        // Trả về dạng List Object[]
-        List<Object[]> stockData = inventoryStockRepository.countTotalAvailableStockByProductIds(productIds);
+    /**
+     * Trang đầu của các widget bán chạy / đánh giá cao / mới nhất từ leaderboard Redis kèm tồn kho
+     * Leaderboard chưa sẵn sàng, sort khác mặc định hoặc trang vượt max-rank thì dùng truy vấn JPA như cũ
+     */
+    public PageCacheDTO<ProductSummaryResponse> leaderboardWithStock(ProductLeaderboards.Metric metric,
+                                                                     ProductFilterRequest filter,
+                                                                     Pageable pageable) {
+        Sort.Order order = pageable.getSort().getOrderFor(metric.field());
+        boolean defaultSort = pageable.getSort().isUnsorted()
+                || (order != null && order.isDescending() && pageable.getSort().stream().count() == 1);
+        Optional<ProductLeaderboards.Ranking> ranking = defaultSort
+                ? productLeaderboards.top(metric, filter.getStoreId(), filter.getCategoryId(),
+                        metric == ProductLeaderboards.Metric.RATING ? filter.getRatingFrom() : null,
+                        pageable.getPageNumber(), pageable.getPageSize())
+                : Optional.empty();
+        if (ranking.isEmpty()) {
+            return searchProductsWithStock(filter, pageable);
+        }
 
-        Map<String, Integer> stockMap = stockData.stream()
-                .collect(Collectors.toMap(
-                        row -> (String) row[0],             // Key: ProductId
-                        row -> ((Long) row[1]).intValue()   // Value: Total Available Stock
-                ));
+        return new PageCacheDTO<>(
+                withStock(productService.getProductSummariesInternal(ranking.get().productIds())),
+                pageable.getPageNumber(),
+                pageable.getPageSize(),
+                ranking.get().total()
+        );
+    }
+
+    /**
+     * Listing sản phẩm theo cursor (keyset) kèm tồn kho
+     * Tổng số sản phẩm lấy từ cache product-search, không COUNT lại ở mỗi trang
+     */
+    public CursorPageDTO<ProductSummaryResponse> seekProductsWithStock(ProductFilterRequest filter, String cursor, int size) {
+        CursorPageDTO<ProductSummaryResponse> page = productService.seekProductsInternal(filter, cursor, size);
+        long total = productService.countProductsInternal(filter);
+
+        return new CursorPageDTO<>(
+                withStock(page.content()),
+                page.pageSize(),
+                page.nextCursor(),
+                total
+        );
+    }
+
+    private List<ProductSummaryResponse> withStock(List<ProductSummaryResponse> products) {
+        if (products.isEmpty()) {
+            return products;
+        }
+
+        // Tổng tồn kho khả dụng theo product từ snapshot
+        Map<String, Integer> stockMap = productStockSnapshot.getAvailable(products.stream()
+                .map(ProductSummaryResponse::getId)
+                .toList());
 
         // Ghép dữ liệu (Hydration)
         // Tạo một List mới hoàn toàn để đảm bảo không thay đổi object gốc trong Cache
-        List<ProductSummaryResponse> enrichedContent = cachedResult.content().stream()
+        return products.stream()
                 .map(product -> product.toBuilder()
                         .totalAvailableStock(stockMap.getOrDefault(product.getId(), 0)) // Nếu không tìm thấy thì là 0
                         .build())
                 .toList();
-
-        // Trả về kết quả đã ghép
-        return new PageCacheDTO<>(
-                enrichedContent,
-                cachedResult.pageNumber(),
-                cachedResult.pageSize(),
-                cachedResult.totalElements()
-        );
     }
 }
@@ -2,12 +2,15 @@ package com.vdt2025.product_service.messaging;
 
 import com.vdt2025.common_dto.dto.MessageType;
 import com.vdt2025.common_dto.dto.ProductChangedMessage;
+import com.vdt2025.common_dto.dto.VariantChangedMessage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 
 /**
  * Service để publish Product events qua RabbitMQ
@@ -54,6 +57,32 @@ public class ProductEventPublisher {
                 MessageType.PRODUCT_STATUS_CHANGED);
     }
 
+    /**
+     * Publish event khi giá / tồn kho / trạng thái của variant thay đổi
+     * (order-service làm mới cache variant snapshot)
+     */
+    public void publishVariantsChanged(Collection<String> variantIds, VariantChangedMessage.ChangeType changeType) {
+        if (variantIds.isEmpty()) {
+            return;
+        }
+        try {
+            VariantChangedMessage message = VariantChangedMessage.builder()
+                    .variantIds(new ArrayList<>(variantIds))
+                    .changeType(changeType)
+                    .timestamp(LocalDateTime.now())
+                    .source(SOURCE)
+                    .build();
+
+            rabbitTemplate.convertAndSend(EXCHANGE_NAME, VariantChangedMessage.ROUTING_KEY, message);
+
+            log.debug("Published {} event for variants: {}", changeType, variantIds);
+        } catch (Exception e) {
+            log.error("Failed to publish {} event for variants {}: {}",
+                    changeType, variantIds, e.getMessage(), e);
+            // Không throw exception để không ảnh hưởng đến flow chính
+        }
+    }
+
     /**
      * Generic method để publish Product event
      */
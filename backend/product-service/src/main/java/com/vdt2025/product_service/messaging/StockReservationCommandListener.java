@@ -0,0 +1,63 @@
+package com.vdt2025.product_service.messaging;
+
+import com.vdt2025.common_dto.dto.MessageType;
+import com.vdt2025.common_dto.dto.StockReservationCommand;
+import com.vdt2025.common_dto.dto.StockReservationResult;
+import com.vdt2025.product_service.service.inventory.StockReservationSagaHandler;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Nhận lệnh giữ hàng của saga đặt hàng và trả kết quả cho order-service
+ * Kết quả được gửi sau khi transaction reserve đã commit và chờ broker xác nhận (publisher confirm);
+ * gửi lỗi thì lệnh được giao lại và kết quả cũ được phát lại từ marker (at-least-once ở cả hai chiều).
+ * Lệnh không hợp lệ nhưng có reservationId vẫn nhận kết quả thất bại để đơn không treo ở PENDING.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockReservationCommandListener {
+
+    private final StockReservationSagaHandler sagaHandler;
+    private final RabbitTemplate rabbitTemplate;
+    private static final String EXCHANGE_NAME = "notification-exchange";
+
+    @Value("${inventory.reservation.result-confirm-timeout-ms:5000}")
+    private long confirmTimeoutMs;
+
+    @RabbitListener(queues = "#{messageTypeQueues.get(T(com.vdt2025.common_dto.dto.MessageType).INVENTORY_RESERVE_REQUESTED).name}")
+    public void handleReserveRequested(StockReservationCommand command) {
+        if (command.getReservationId() == null) {
+            throw new AmqpRejectAndDontRequeueException("Stock reservation command without reservationId");
+        }
+        log.info("Received INVENTORY_RESERVE_REQUESTED for reservation {}", command.getReservationId());
+
+        StockReservationResult result;
+        if (command.getItems() == null || command.getItems().isEmpty()) {
+            log.warn("Invalid stock reservation command {}: no items", command.getReservationId());
+            result = StockReservationResult.builder()
+                    .reservationId(command.getReservationId())
+                    .success(false)
+                    .reason("INVALID_RESERVATION_COMMAND")
+                    .timestamp(LocalDateTime.now())
+                    .build();
+        } else {
+            result = sagaHandler.handle(command);
+        }
+
+        rabbitTemplate.invoke(operations -> {
+            operations.convertAndSend(EXCHANGE_NAME, MessageType.INVENTORY_RESERVE_RESULT.getRoutingKey(), result);
+            operations.waitForConfirmsOrDie(confirmTimeoutMs);
+            return null;
+        });
+        log.info("Published INVENTORY_RESERVE_RESULT for reservation {}: success={}",
+                result.getReservationId(), result.isSuccess());
+    }
+}
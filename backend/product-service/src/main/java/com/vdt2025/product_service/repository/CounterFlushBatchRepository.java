@@ -0,0 +1,18 @@
+package com.vdt2025.product_service.repository;
+
+import com.vdt2025.product_service.entity.CounterFlushBatch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface CounterFlushBatchRepository extends JpaRepository<CounterFlushBatch, String> {
+
+    @Modifying
+    @Query("DELETE FROM CounterFlushBatch b WHERE b.flushedAt < :before")
+    int deleteFlushedBefore(@Param("before") LocalDateTime before);
+}
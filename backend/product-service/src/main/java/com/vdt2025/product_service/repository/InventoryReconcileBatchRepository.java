@@ -0,0 +1,21 @@
+package com.vdt2025.product_service.repository;
+
+import com.vdt2025.product_service.entity.InventoryReconcileBatch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface InventoryReconcileBatchRepository extends JpaRepository<InventoryReconcileBatch, String> {
+
+    /**
+     * Xóa các marker cũ (lô đã apply và đã được xóa khỏi reservation engine từ lâu)
+     */
+    @Modifying
+    @Query("DELETE FROM InventoryReconcileBatch b WHERE b.appliedAt < :before")
+    int deleteAppliedBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,28 @@
+package com.vdt2025.product_service.repository;
+
+import com.vdt2025.product_service.entity.InventoryReservation;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface InventoryReservationRepository extends JpaRepository<InventoryReservation, String> {
+
+    /**
+     * Khóa marker để hủy lần giữ hàng (tránh xả hàng hai lần khi hủy đồng thời)
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM InventoryReservation r WHERE r.reservationId = :reservationId")
+    Optional<InventoryReservation> findByIdForUpdate(@Param("reservationId") String reservationId);
+
+    @Modifying
+    @Query("DELETE FROM InventoryReservation r WHERE r.processedAt < :before")
+    int deleteProcessedBefore(@Param("before") LocalDateTime before);
+}
@@ -9,6 +9,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -185,8 +186,43 @@ public interface InventoryStockRepository extends JpaRepository<InventoryStock,
             "WHERE i.productVariant.product.id = :productId")
     List<Object[]> findAllStockByProductId(@Param("productId") String productId);
 
+    /**
+     * Lấy tồn kho khả dụng kèm product của nhiều variants (partial update Elasticsearch)
+     * Trả về: [productId, variantId, available]
+     */
+    @Query("SELECT v.product.id, v.id, i.quantityOnHand - i.quantityReserved " +
+            "FROM InventoryStock i " +
+            "JOIN i.productVariant v " +
+            "WHERE v.id IN :variantIds")
+    List<Object[]> findAvailableStockWithProductByVariantIds(@Param("variantIds") Collection<String> variantIds);
+
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("SELECT i FROM InventoryStock i WHERE i.productVariant.id IN :variantIds")
     List<InventoryStock> findAllByProductVariantIdInWithLock(@Param("variantIds") List<String> variantIds);
+
+    /**
+     * Lấy onHand/reserved của nhiều variants (dùng để nạp counter cho reservation engine)
+     * Trả về: [variantId, quantityOnHand, quantityReserved]
+     */
+    @Query("SELECT i.productVariant.id, i.quantityOnHand, i.quantityReserved " +
+            "FROM InventoryStock i WHERE i.productVariant.id IN :variantIds")
+    List<Object[]> findStockLevelsByVariantIds(@Param("variantIds") Collection<String> variantIds);
+
+    /**
+     * Cộng delta từ reservation engine vào tồn kho (không cần SELECT FOR UPDATE)
+     * Tăng version để các thao tác dùng Optimistic Locking phát hiện thay đổi
+     *
+     * @return số lượng rows được update
+     */
+    @Modifying
+    @Query("UPDATE InventoryStock i " +
+           "SET i.quantityOnHand = i.quantityOnHand + :onHandDelta, " +
+           "    i.quantityReserved = i.quantityReserved + :reservedDelta, " +
+           "    i.version = i.version + 1, " +
+           "    i.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE i.productVariant.id = :variantId")
+    int applyReservationDelta(@Param("variantId") String variantId,
+                              @Param("onHandDelta") Integer onHandDelta,
+                              @Param("reservedDelta") Integer reservedDelta);
 }
 
@@ -41,7 +41,7 @@ public interface InventoryTransactionRepository extends JpaRepository<InventoryT
      * Lấy transaction trong khoảng thời gian
      */
     @Query("SELECT t FROM InventoryTransaction t " +
-           "WHERE t.variant.id = :variantId " +
+           "WHERE t.variantId = :variantId " +
            "AND t.createdAt BETWEEN :startDate AND :endDate " +
            "ORDER BY t.createdAt DESC")
     List<InventoryTransaction> findByVariantIdAndDateRange(
@@ -53,7 +53,7 @@ public interface InventoryTransactionRepository extends JpaRepository<InventoryT
      * Tính tổng quantity change theo type
      */
     @Query("SELECT SUM(t.quantityChange) FROM InventoryTransaction t " +
-           "WHERE t.variant.id = :variantId " +
+           "WHERE t.variantId = :variantId " +
            "AND t.transactionType = :type")
     Integer sumQuantityChangeByType(
             @Param("variantId") String variantId,
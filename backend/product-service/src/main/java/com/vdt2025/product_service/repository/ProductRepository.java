@@ -10,6 +10,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -165,4 +166,63 @@ public interface ProductRepository extends JpaRepository<Product, String>, JpaSp
         WHERE p.id = :productId
     """)
     java.util.Optional<Product> findByIdForElasticsearch(@Param("productId") String productId);
+
+    /**
+     * Lấy các field thống kê thay đổi thường xuyên (partial update Elasticsearch)
+     * Trả về: [productId, soldCount, viewCount, averageRating, ratingCount]
+     */
+    @Query("SELECT p.id, p.soldCount, p.viewCount, p.averageRating, p.ratingCount FROM Product p WHERE p.id IN :productIds")
+    List<Object[]> findStatsByIds(@Param("productIds") java.util.Collection<String> productIds);
+
+    /**
+     * Fetch nhiều product với relations cho Elasticsearch bằng một query (bulk indexing)
+     */
+    @Query("SELECT p FROM Product p WHERE p.id IN :productIds")
+    @org.springframework.data.jpa.repository.EntityGraph(
+        attributePaths = {"category", "store", "brand", "storeCategories"}
+    )
+    List<Product> findAllByIdForElasticsearch(@Param("productIds") java.util.Collection<String> productIds);
+
+    /**
+     * Nguồn dữ liệu cho chỉ mục gợi ý (keyset theo id), chỉ product đang bán
+     * Trả về: [productId, name, soldCount, brandId, brandName, categoryId, categoryName]
+     */
+    @Query("""
+        SELECT p.id, p.name, p.soldCount, b.id, b.name, c.id, c.name FROM Product p
+        LEFT JOIN p.brand b
+        LEFT JOIN p.category c
+        WHERE p.isActive = true AND p.isDeleted = false AND p.id > :afterId
+        ORDER BY p.id ASC
+    """)
+    List<Object[]> findSuggestionSourceAfter(@Param("afterId") String afterId, Pageable pageable);
+
+    /**
+     * Nguồn dữ liệu cho rebuild leaderboard (keyset theo id), chỉ product đang bán
+     * Trả về: [productId, storeId, categoryId, soldCount, averageRating, ratingCount, createdAt]
+     */
+    @Query("""
+        SELECT p.id, p.store.id, p.category.id, p.soldCount, p.averageRating, p.ratingCount, p.createdAt FROM Product p
+        WHERE p.isActive = true AND p.isDeleted = false AND p.id > :afterId
+        ORDER BY p.id ASC
+    """)
+    List<Object[]> findLeaderboardSourceAfter(@Param("afterId") String afterId, Pageable pageable);
+
+    /**
+     * Keyset scan các product thay đổi sau watermark (updatedAt, id) cho incremental sync
+     * Bao gồm cả product đã soft delete để xóa khỏi index; upTo loại các dòng quá mới
+     * (transaction có thể chưa commit hết) để watermark không vượt qua chúng
+     */
+    @Query("""
+        SELECT p FROM Product p
+        WHERE (p.updatedAt > :afterAt OR (p.updatedAt = :afterAt AND p.id > :afterId))
+          AND p.updatedAt <= :upTo
+        ORDER BY p.updatedAt ASC, p.id ASC
+    """)
+    @org.springframework.data.jpa.repository.EntityGraph(
+        attributePaths = {"category", "store", "brand", "storeCategories"}
+    )
+    List<Product> findChangedForElasticsearchSync(@Param("afterAt") LocalDateTime afterAt,
+                                                  @Param("afterId") String afterId,
+                                                  @Param("upTo") LocalDateTime upTo,
+                                                  Pageable pageable);
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.vdt2025.product_service.repository;
+
+import com.vdt2025.product_service.entity.ProductSearchTombstone;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ProductSearchTombstoneRepository extends JpaRepository<ProductSearchTombstone, String> {
+
+    @Query("SELECT t FROM ProductSearchTombstone t ORDER BY t.deletedAt ASC, t.productId ASC")
+    List<ProductSearchTombstone> findOldest(Pageable pageable);
+}
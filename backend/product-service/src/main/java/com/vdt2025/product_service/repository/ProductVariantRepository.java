@@ -32,6 +32,13 @@ public interface ProductVariantRepository extends JpaRepository<ProductVariant,
             "WHERE v.id IN :ids")
     List<ProductVariant> findAllByIdWithDetails(@Param("ids") List<String> ids);
 
+    /**
+     * Lấy product của nhiều variants (snapshot tồn kho theo product)
+     * Trả về: [variantId, productId]
+     */
+    @Query("SELECT v.id, v.product.id FROM ProductVariant v WHERE v.id IN :variantIds")
+    List<Object[]> findProductIdsByVariantIds(@Param("variantIds") java.util.Collection<String> variantIds);
+
 
     /**
      * Tìm variant theo SKU
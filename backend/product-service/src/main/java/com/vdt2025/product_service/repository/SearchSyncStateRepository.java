@@ -0,0 +1,63 @@
+package com.vdt2025.product_service.repository;
+
+import com.vdt2025.product_service.entity.SearchSyncState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface SearchSyncStateRepository extends JpaRepository<SearchSyncState, String> {
+
+    /**
+     * Tạo dòng state nếu chưa có, an toàn khi nhiều replica cùng khởi tạo
+     */
+    @Modifying
+    @Query(value = "INSERT INTO search_sync_state (sync_name) VALUES (:syncName) ON CONFLICT (sync_name) DO NOTHING",
+            nativeQuery = true)
+    int createIfAbsent(@Param("syncName") String syncName);
+
+    /**
+     * Nhận hoặc gia hạn lease: thành công khi lease đang trống, đã hết hạn hoặc đang thuộc về chính owner
+     *
+     * @return 1 nếu nhận được lease, 0 nếu replica khác đang giữ
+     */
+    @Modifying
+    @Query("""
+        UPDATE SearchSyncState s
+        SET s.leaseOwner = :owner, s.leaseUntil = :until
+        WHERE s.syncName = :syncName
+          AND (s.leaseOwner IS NULL OR s.leaseOwner = :owner OR s.leaseUntil < :now)
+    """)
+    int tryAcquireLease(@Param("syncName") String syncName,
+                        @Param("owner") String owner,
+                        @Param("now") LocalDateTime now,
+                        @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Query("""
+        UPDATE SearchSyncState s
+        SET s.leaseOwner = NULL, s.leaseUntil = NULL
+        WHERE s.syncName = :syncName AND s.leaseOwner = :owner
+    """)
+    int releaseLease(@Param("syncName") String syncName, @Param("owner") String owner);
+
+    /**
+     * Tiến watermark và gia hạn lease, chỉ owner hiện tại của lease mới được ghi
+     */
+    @Modifying
+    @Query("""
+        UPDATE SearchSyncState s
+        SET s.watermarkAt = :watermarkAt, s.watermarkId = :watermarkId, s.lastSyncedAt = :now, s.leaseUntil = :until
+        WHERE s.syncName = :syncName AND s.leaseOwner = :owner
+    """)
+    int advanceWatermark(@Param("syncName") String syncName,
+                         @Param("owner") String owner,
+                         @Param("watermarkAt") LocalDateTime watermarkAt,
+                         @Param("watermarkId") String watermarkId,
+                         @Param("now") LocalDateTime now,
+                         @Param("until") LocalDateTime until);
+}
@@ -9,6 +9,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -21,6 +22,14 @@ public interface StoreRepository extends JpaRepository<Store, String> {
     boolean existsByIdAndUserNameIgnoreCase(String id, String userName);
     Page<Store> findAllByIsActiveTrue(Pageable pageable);
 
+    long countByIsActiveTrue();
+
+    /**
+     * Nguồn dữ liệu cho chỉ mục gợi ý: [storeId, storeName, totalSold]
+     */
+    @Query("SELECT s.id, s.storeName, s.totalSold FROM Store s WHERE s.isActive = true")
+    List<Object[]> findSuggestionSource();
+
     /**
      * Cập nhật total sold count của store
      */
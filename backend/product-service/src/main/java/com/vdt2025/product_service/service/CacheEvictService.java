@@ -14,12 +14,18 @@ public interface CacheEvictService {
     
     /**
      * Xóa toàn bộ cache tìm kiếm sản phẩm
-     * Được gọi khi thêm/xóa sản phẩm để đảm bảo kết quả tìm kiếm luôn chính xác
      */
     void evictProductSearchCache();
+
+    /**
+     * Xóa cache tìm kiếm có thể chứa sản phẩm thuộc store/category này
+     * (tìm kiếm theo store/category khác vẫn giữ cache)
+     * Được gọi khi thêm/sửa/xóa sản phẩm để đảm bảo kết quả tìm kiếm luôn chính xác
+     */
+    void evictProductSearchCache(String storeId, String... categoryIds);
     
     /**
-     * Xóa cache selection config của product (seller-defined selections)
+     * Xóa cache selection config và selection index của product (seller-defined selections)
      */
     void evictProductSelectionConfig(String productId);
 }
@@ -1,84 +1,72 @@
 package com.vdt2025.product_service.service;
 
+import com.vdt2025.product_service.cache.CacheTagIndex;
+import com.vdt2025.product_service.cache.ProductSearchCacheScopes;
+import com.vdt2025.product_service.cache.TwoTierCacheManager;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.util.Set;
-
+/**
+ * Xóa cache theo tag (id thực thể) hoặc theo generation, không dùng KEYS trên Redis
+ */
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class CacheEvictServiceImpl implements CacheEvictService{
-    private final StringRedisTemplate redisTemplate;
+    private final CacheTagIndex cacheTagIndex;
+    private final TwoTierCacheManager cacheManager;
+    private final ProductSearchCacheScopes productSearchCacheScopes;
 
     @Override
     public void evictUserStores(String username) {
-        String pattern = "storesOfCurrentSeller::" + username + "*";
-        Set<String> keys = redisTemplate.keys(pattern);
-        if (!keys.isEmpty()) {
-            redisTemplate.delete(keys);
-        }
+        evictTag("storesOfCurrentSeller", username);
     }
 
     @Override
     public void evictProductDetails(String productId) {
-        String pattern = "products::" + productId + "*";
-        Set<String> keys = redisTemplate.keys(pattern);
-        if (!keys.isEmpty()) {
-            redisTemplate.delete(keys);
-        }
+        evictTag("products", productId);
     }
 
     @Override
     public void evictProductCaches(String productId) {
-        String pattern = "productSpecs::" + productId + "*";
-        Set<String> keys = redisTemplate.keys(pattern);
-        if (!keys.isEmpty()) {
-            redisTemplate.delete(keys);
-        }
+        evictTag("productSpecs", productId);
     }
 
     @Override
     public void evictVariantCaches(String variantId) {
-        String pattern = "variantSpecs::" + variantId + "*";
-        Set<String> keys = redisTemplate.keys(pattern);
-        if (!keys.isEmpty()) {
-            redisTemplate.delete(keys);
-        }
+        evictTag("variantSpecs", variantId);
     }
 
     @Override
     public void evictVariantSelectionCaches(String productId) {
         // Evict variantSelectionOptions cache
-        String pattern1 = "variantSelectionOptions::" + productId + "*";
-        Set<String> keys1 = redisTemplate.keys(pattern1);
-        if (!keys1.isEmpty()) {
-            redisTemplate.delete(keys1);
-        }
-        
-        // Evict variantByAttributes cache (pattern: productId-[...])
-        String pattern2 = "variantByAttributes::" + productId + "-*";
-        Set<String> keys2 = redisTemplate.keys(pattern2);
-        if (!keys2.isEmpty()) {
-            redisTemplate.delete(keys2);
-        }
+        evictTag("variantSelectionOptions", productId);
+
+        // Evict variantByAttributes cache (key: productId-[...])
+        evictTag("variantByAttributes", productId);
     }
 
     @Override
     public void evictProductSearchCache() {
-        String pattern = "product-search::*";
-        Set<String> keys = redisTemplate.keys(pattern);
-        if (!keys.isEmpty()) {
-            redisTemplate.delete(keys);
-        }
+        // Key product-search nhúng generation: invalidate chỉ là INCR
+        productSearchCacheScopes.invalidateAll();
+    }
+
+    @Override
+    public void evictProductSearchCache(String storeId, String... categoryIds) {
+        productSearchCacheScopes.invalidate(storeId, categoryIds);
     }
     
     @Override
     public void evictProductSelectionConfig(String productId) {
-        String pattern = "productSelectionConfig::" + productId + "*";
-        Set<String> keys = redisTemplate.keys(pattern);
-        if (!keys.isEmpty()) {
-            redisTemplate.delete(keys);
-        }
+        evictTag("productSelectionConfig", productId);
+        evictTag("productSelectionIndex", productId);
+    }
+
+    private void evictTag(String cacheName, String tag) {
+        cacheTagIndex.evict(cacheName, tag);
+        // Xóa cả L1 near cache trên mọi instance
+        cacheManager.evictLocalByPrefix(cacheName, tag);
     }
 }
@@ -3,8 +3,11 @@ package com.vdt2025.product_service.service;
 import com.vdt2025.product_service.dto.request.inventory.InventoryChangeRequest;
 import com.vdt2025.product_service.dto.response.InventoryStockResponse;
 import com.vdt2025.product_service.exception.AppException;
+import com.vdt2025.product_service.service.inventory.InventoryJournalEntry;
+import com.vdt2025.product_service.service.inventory.InventoryJournalQuery;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Service interface cho quản lý tồn kho (Inventory Management)
@@ -12,7 +15,7 @@ import java.util.List;
  * Áp dụng Single Responsibility Principle:
  * - Tách biệt logic inventory khỏi ProductService
  * - Xử lý tất cả các thao tác liên quan đến stock: reserve, confirm, release, adjust
- * - Đảm bảo data consistency với proper locking và transaction management
+ * - Đảm bảo data consistency với reservation engine (counter nguyên tử) và transaction management
  * 
  * Flow chuẩn cho e-commerce:
  * 1. Customer places order -> reserveStock() (tăng reserved)
@@ -33,13 +36,12 @@ public interface InventoryService {
 
     /**
      * Giữ chỗ hàng khi customer đặt hàng (chưa thanh toán)
-     * Sử dụng Pessimistic Locking để đảm bảo atomic operation
+     * Sử dụng reservation engine (counter nguyên tử) thay vì lock DB row
      * 
      * Flow:
-     * 1. Lock inventory row (SELECT FOR UPDATE)
-     * 2. Check available stock (onHand - reserved >= quantity)
-     * 3. Increase reserved quantity
-     * 4. Save and release lock
+     * 1. Check available stock (onHand - reserved >= quantity) trên engine
+     * 2. Increase reserved quantity trong cùng thao tác nguyên tử
+     * 3. Delta được đồng bộ xuống inventory_stocks bất đồng bộ
      * 
      * @param variantId ID của product variant
      * @param quantity Số lượng cần reserve
@@ -53,10 +55,8 @@ public interface InventoryService {
      * Trừ cả quantityOnHand và quantityReserved
      * 
      * Flow:
-     * 1. Lock inventory row
-     * 2. Check reserved >= quantity (must have reserved before)
-     * 3. Decrease both onHand and reserved
-     * 4. Save and release lock
+     * 1. Check reserved >= quantity (must have reserved before)
+     * 2. Decrease both onHand and reserved (nguyên tử trên reservation engine)
      * 
      * @param variantId ID của product variant
      * @param quantity Số lượng confirm
@@ -138,6 +138,14 @@ public interface InventoryService {
      */
     InventoryStockResponse createInventoryStock(String variantId, Integer initialQuantity);
 
+    /**
+     * Stream lịch sử thay đổi tồn kho (audit) theo điều kiện lọc
+     * Đọc bằng cursor nên không giới hạn số dòng, consumer nhận từng entry theo thứ tự thời gian
+     *
+     * @throws AppException với ErrorCode.INVALID_AUDIT_RANGE nếu khoảng thời gian không hợp lệ
+     */
+    void streamAuditTrail(InventoryJournalQuery query, Consumer<InventoryJournalEntry> consumer);
+
     //=========== Internal Methods ===========
     void reserveStockBatch(List<InventoryChangeRequest> requests);
 
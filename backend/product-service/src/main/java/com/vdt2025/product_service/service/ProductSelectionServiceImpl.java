@@ -10,11 +10,16 @@ import com.vdt2025.product_service.exception.AppException;
 import com.vdt2025.product_service.exception.ErrorCode;
 import com.vdt2025.product_service.mapper.SelectionMapper;
 import com.vdt2025.product_service.repository.*;
+import com.vdt2025.product_service.service.selection.ProductSelectionIndex;
+import com.vdt2025.product_service.service.selection.ProductSelectionIndexLoader;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
@@ -41,6 +46,12 @@ public class ProductSelectionServiceImpl implements ProductSelectionService {
     SelectionMapper selectionMapper;
     FileServiceClient fileServiceClient;
     CacheEvictService cacheEvictService;
+    ProductSelectionIndexLoader selectionIndexLoader;
+
+    @Autowired
+    @Lazy
+    @NonFinal
+    ProductSelectionService self;
     
     // ========== Selection Group Operations ==========
     
@@ -606,23 +617,21 @@ public class ProductSelectionServiceImpl implements ProductSelectionService {
     public VariantResponse findVariantBySelections(String productId, FindVariantBySelectionRequest request) {
         log.info("Finding variant for product {} with options: {}", productId, request.getOptionIds());
         
-        if (!productRepository.existsById(productId)) {
-            throw new AppException(ErrorCode.PRODUCT_NOT_FOUND);
-        }
-        
         // Remove duplicates và sort
         List<String> uniqueOptionIds = request.getOptionIds().stream()
                 .distinct()
                 .sorted()
                 .collect(Collectors.toList());
         
-        // Tìm variant có đúng tất cả options
-        ProductVariant variant = optionRepository.findVariantByOptionIds(
-                        productId, uniqueOptionIds, (long) uniqueOptionIds.size())
+        // Giao bitset của các option trên index đã cache, chỉ còn 1 lần đọc variant theo id
+        String variantId = selectionIndexLoader.load(productId).findVariant(uniqueOptionIds)
                 .orElseThrow(() -> {
                     log.warn("No variant found for product {} with options {}", productId, uniqueOptionIds);
                     return new AppException(ErrorCode.VARIANT_NOT_FOUND);
                 });
+        ProductVariant variant = variantRepository.findById(variantId)
+                .filter(v -> v.isActive() && !v.isDeleted())
+                .orElseThrow(() -> new AppException(ErrorCode.VARIANT_NOT_FOUND));
         
         log.info("Found variant {} for product {} with options {}", 
                 variant.getId(), productId, uniqueOptionIds);
@@ -631,64 +640,39 @@ public class ProductSelectionServiceImpl implements ProductSelectionService {
     }
     
     @Override
-    @Transactional(readOnly = true)
     public ProductSelectionConfigResponse getAvailableOptions(String productId, List<String> selectedOptionIds) {
         log.info("Getting available options for product {} with selections: {}", 
                 productId, selectedOptionIds);
         
-        // Lấy full config
-        ProductSelectionConfigResponse config = getProductSelectionConfig(productId);
+        // Lấy full config (qua proxy để dùng cache)
+        ProductSelectionConfigResponse config = self.getProductSelectionConfig(productId);
         
         if (selectedOptionIds == null || selectedOptionIds.isEmpty()) {
             return config;
         }
         
-        // Lấy các options đã chọn
-        List<ProductSelectionOption> selectedOptions = optionRepository
-                .findByIdInWithVariants(selectedOptionIds);
-        
-        if (selectedOptions.isEmpty()) {
-            return config;
-        }
-        
         // Tìm các variants có tất cả selected options
-        Set<String> compatibleVariantIds = null;
+        ProductSelectionIndex index = selectionIndexLoader.load(productId);
+        Optional<BitSet> compatible = index.compatible(selectedOptionIds);
         
-        for (ProductSelectionOption opt : selectedOptions) {
-            Set<String> variantIds = opt.getVariants().stream()
-                    .map(ProductVariant::getId)
-                    .collect(Collectors.toSet());
-            
-            if (compatibleVariantIds == null) {
-                compatibleVariantIds = variantIds;
-            } else {
-                compatibleVariantIds.retainAll(variantIds); // Intersection
-            }
+        if (compatible.isEmpty()) {
+            return config;
         }
         
-        final Set<String> finalCompatibleIds = compatibleVariantIds;
-        
-        // Update availability cho các options dựa trên compatible variants
-        for (var group : config.getSelectionGroups()) {
+        // Config có thể là object trong L1 cache: cập nhật availability trên bản sao
+        ProductSelectionConfigResponse result = copyOf(config);
+        for (var group : result.getSelectionGroups()) {
             for (var option : group.getOptions()) {
                 // Option available nếu có ít nhất 1 variant compatible
                 // HOẶC option đang được select
                 if (selectedOptionIds.contains(option.getOptionId())) {
                     continue; // Keep current availability
                 }
-                
-                // Check xem option này có variant nào compatible không
-                ProductSelectionOption opt = optionRepository.findById(option.getOptionId())
-                        .orElse(null);
-                if (opt != null) {
-                    boolean hasCompatible = opt.getVariants().stream()
-                            .anyMatch(v -> finalCompatibleIds.contains(v.getId()));
-                    option.setAvailable(hasCompatible);
-                }
+                option.setAvailable(index.intersects(option.getOptionId(), compatible.get()));
             }
         }
         
-        return config;
+        return result;
     }
     
     // ========== Helper Methods ==========
@@ -733,6 +717,42 @@ public class ProductSelectionServiceImpl implements ProductSelectionService {
         return optionRepository.save(option);
     }
     
+    /**
+     * Bản sao groups/options của config để thay đổi availability mà không đụng object đang cache
+     */
+    private ProductSelectionConfigResponse copyOf(ProductSelectionConfigResponse config) {
+        List<ProductSelectionConfigResponse.SelectionGroupForUI> groups = config.getSelectionGroups().stream()
+                .map(group -> ProductSelectionConfigResponse.SelectionGroupForUI.builder()
+                        .groupId(group.getGroupId())
+                        .groupName(group.getGroupName())
+                        .description(group.getDescription())
+                        .displayOrder(group.getDisplayOrder())
+                        .required(group.isRequired())
+                        .allowMultiple(group.isAllowMultiple())
+                        .options(group.getOptions().stream()
+                                .map(opt -> ProductSelectionConfigResponse.SelectionOptionForUI.builder()
+                                        .optionId(opt.getOptionId())
+                                        .value(opt.getValue())
+                                        .label(opt.getLabel())
+                                        .imageUrl(opt.getImageUrl())
+                                        .colorCode(opt.getColorCode())
+                                        .available(opt.isAvailable())
+                                        .build())
+                                .collect(Collectors.toList()))
+                        .build())
+                .collect(Collectors.toList());
+        
+        return ProductSelectionConfigResponse.builder()
+                .productId(config.getProductId())
+                .productName(config.getProductName())
+                .selectionGroups(groups)
+                .selectionMatrix(config.getSelectionMatrix())
+                .outOfStockCombinations(config.getOutOfStockCombinations())
+                .basePrice(config.getBasePrice())
+                .totalVariants(config.getTotalVariants())
+                .build();
+    }
+    
     /**
      * Map variant entity sang response
      */
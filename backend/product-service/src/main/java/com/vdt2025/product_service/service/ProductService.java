@@ -68,6 +68,22 @@ public interface ProductService {
      */
     PageCacheDTO<ProductSummaryResponse> searchProductsInternal(ProductFilterRequest filter, Pageable pageable);
 
+    /**
+     * Listing sản phẩm theo keyset (cursor trên sortKey, id), không chạy COUNT
+     * Hỗ trợ sortBy: soldCount, averageRating, createdAt, minPrice (price)
+     */
+    CursorPageDTO<ProductSummaryResponse> seekProductsInternal(ProductFilterRequest filter, String cursor, int size);
+
+    /**
+     * Đếm số sản phẩm khớp filter (được cache cùng product-search, dùng cho listing theo cursor)
+     */
+    long countProductsInternal(ProductFilterRequest filter);
+
+    /**
+     * Lấy thông tin tóm tắt của các sản phẩm theo đúng thứ tự ids (bỏ qua id không còn tồn tại)
+     */
+    List<ProductSummaryResponse> getProductSummariesInternal(List<String> productIds);
+
     // ========== Variant Management ==========
 
     /**
@@ -144,8 +160,11 @@ public interface ProductService {
 
     /**
      * Tăng view count cho sản phẩm
+     * Lượt xem được gom trong bộ nhớ và ghi xuống DB theo lô (không mở transaction ghi)
+     *
+     * @param viewerKey định danh viewer dùng để bỏ qua lượt xem lặp lại, có thể null
      */
-    void incrementViewCount(String productId);
+    void incrementViewCount(String productId, String viewerKey);
 
     /**
      * Cập nhật sold count khi hoàn thành đơn hàng
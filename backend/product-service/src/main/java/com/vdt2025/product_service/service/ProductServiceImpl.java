@@ -1,5 +1,6 @@
 package com.vdt2025.product_service.service;
 
+import com.vdt2025.common_dto.dto.VariantChangedMessage;
 import com.vdt2025.common_dto.dto.response.ApiResponse;
 import com.vdt2025.common_dto.dto.response.FileInfoResponse;
 import com.vdt2025.common_dto.service.FileServiceClient;
@@ -16,6 +17,10 @@ import com.vdt2025.product_service.mapper.CategoryMapper;
 import com.vdt2025.product_service.mapper.ProductImageMapper;
 import com.vdt2025.product_service.mapper.StoreMapper;
 import com.vdt2025.product_service.repository.*;
+import com.vdt2025.product_service.service.counter.SoldCountAggregator;
+import com.vdt2025.product_service.service.counter.ViewCountTracker;
+import com.vdt2025.product_service.service.search.ProductTextSearch;
+import com.vdt2025.product_service.specification.ProductKeyset;
 import com.vdt2025.product_service.specification.ProductSpecification;
 import com.vdt2025.product_service.util.SpecsHelper;
 import lombok.AccessLevel;
@@ -34,6 +39,7 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -59,6 +65,7 @@ public class ProductServiceImpl implements ProductService {
     AttributeValueRepository attributeValueRepository;
     ProductAttributeRepository productAttributeRepository;
     InventoryStockRepository inventoryStockRepository;
+    ProductSearchTombstoneRepository productSearchTombstoneRepository;
     private final CategoryMapper categoryMapper;
     private final StoreMapper storeMapper;
     private final BrandMapper brandMapper;
@@ -66,6 +73,9 @@ public class ProductServiceImpl implements ProductService {
     private final CacheEvictService cacheEvictService;
     private final InventoryService inventoryService;
     private final ProductEventPublisher productEventPublisher;
+    private final SoldCountAggregator soldCountAggregator;
+    private final ViewCountTracker viewCountTracker;
+    private final ProductTextSearch productTextSearch;
 
     @Value("${product-images.max-per-product:5}")
     @NonFinal
@@ -179,7 +189,7 @@ public class ProductServiceImpl implements ProductService {
         }
         
         // Evict product search cache khi thêm sản phẩm mới
-        cacheEvictService.evictProductSearchCache();
+        evictSearchCacheFor(product);
         
         // Publish event qua RabbitMQ để sync với Elasticsearch
         productEventPublisher.publishProductCreated(product.getId());
@@ -211,6 +221,7 @@ public class ProductServiceImpl implements ProductService {
         
         // Authorization check
         checkProductAccess(product);
+        String previousCategoryId = product.getCategory() != null ? product.getCategory().getId() : null;
         
         // Update fields
         if (request.getName() != null) {
@@ -278,6 +289,9 @@ public class ProductServiceImpl implements ProductService {
         
         product = productRepository.save(product);
         log.info("Product {} updated successfully", product.getName());
+
+        // Evict cache tìm kiếm của store và category (cũ và mới) của sản phẩm
+        evictSearchCacheFor(product, previousCategoryId);
         
         // Publish event qua RabbitMQ để sync với Elasticsearch
         productEventPublisher.publishProductUpdated(product.getId());
@@ -308,7 +322,7 @@ public class ProductServiceImpl implements ProductService {
         }
         
         // Evict product search cache khi xóa sản phẩm
-        cacheEvictService.evictProductSearchCache();
+        evictSearchCacheFor(product);
         
         // Publish event qua RabbitMQ để sync với Elasticsearch
         productEventPublisher.publishProductDeleted(id);
@@ -332,9 +346,15 @@ public class ProductServiceImpl implements ProductService {
         }
         
         productRepository.delete(product);
+
+        // Hard delete không để lại dòng nào cho incremental sync quét, ghi tombstone để xóa khỏi index
+        productSearchTombstoneRepository.save(ProductSearchTombstone.builder()
+                .productId(id)
+                .deletedAt(LocalDateTime.now())
+                .build());
         
         // Evict product search cache khi xóa vĩnh viễn sản phẩm
-        cacheEvictService.evictProductSearchCache();
+        evictSearchCacheFor(product);
         
         log.info("Product {} permanently deleted", product.getName());
     }
@@ -344,7 +364,7 @@ public class ProductServiceImpl implements ProductService {
     @Override
     @Cacheable(
             value = "product-search",
-            key = "#filter.toString() + '-' + #pageable.toString()",
+            keyGenerator = "productSearchKeyGenerator",
             condition = "!#filter.hasStockFilter()"
     )
     @Transactional(readOnly = true)
@@ -372,7 +392,7 @@ public class ProductServiceImpl implements ProductService {
 
         // Query DB (Nặng nhất -> Cần Cache)
         Page<Product> productPage = productRepository.findAll(
-                ProductSpecification.withFilter(filter),
+                ProductSpecification.withFilter(filter, productTextSearch.keywordMatch()),
                 pageable
         );
 
@@ -389,6 +409,60 @@ public class ProductServiceImpl implements ProductService {
         );
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageDTO<ProductSummaryResponse> seekProductsInternal(ProductFilterRequest filter, String cursor, int size) {
+        ProductKeyset.SortKey sortKey = ProductKeyset.SortKey.from(filter.getSortBy());
+        Sort.Direction direction = "asc".equalsIgnoreCase(filter.getSortDirection())
+                ? Sort.Direction.ASC : Sort.Direction.DESC;
+        ProductKeyset.Cursor after = cursor != null && !cursor.isBlank()
+                ? ProductKeyset.decode(cursor, sortKey, direction)
+                : null;
+
+        // Lấy thừa 1 dòng để biết còn trang sau mà không cần COUNT
+        List<Product> products = productRepository.findBy(
+                ProductSpecification.withFilter(filter, productTextSearch.keywordMatch()).and(ProductKeyset.after(sortKey, direction, after)),
+                query -> query.sortBy(ProductKeyset.sort(sortKey, direction)).limit(size + 1).all()
+        );
+
+        boolean hasNext = products.size() > size;
+        List<Product> page = hasNext ? products.subList(0, size) : products;
+        String nextCursor = hasNext
+                ? ProductKeyset.encode(sortKey, direction, page.get(page.size() - 1))
+                : null;
+
+        List<ProductSummaryResponse> content = page.stream()
+                .map(this::mapToProductSummaryResponse)
+                .toList();
+        return new CursorPageDTO<>(content, size, nextCursor, -1);
+    }
+
+    @Override
+    @Cacheable(
+            value = "product-search",
+            keyGenerator = "productSearchKeyGenerator",
+            condition = "!#filter.hasStockFilter()"
+    )
+    @Transactional(readOnly = true)
+    public long countProductsInternal(ProductFilterRequest filter) {
+        return productRepository.count(ProductSpecification.withFilter(filter, productTextSearch.keywordMatch()));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ProductSummaryResponse> getProductSummariesInternal(List<String> productIds) {
+        if (productIds.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Product> products = productRepository.findAllById(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        return productIds.stream()
+                .map(products::get)
+                .filter(Objects::nonNull)
+                .map(this::mapToProductSummaryResponse)
+                .toList();
+    }
+
 
     // ========== Variant Management ==========
 
@@ -453,6 +527,9 @@ public class ProductServiceImpl implements ProductService {
         log.info("Variant {} updated successfully", variant.getSku());
         cacheEvictService.evictProductDetails(productId);
         cacheEvictService.evictVariantSelectionCaches(productId);
+        if (request.getPrice() != null || request.getOriginalPrice() != null) {
+            productEventPublisher.publishVariantsChanged(List.of(variantId), VariantChangedMessage.ChangeType.PRICE);
+        }
         return mapToVariantResponse(variant);
     }
 
@@ -490,7 +567,7 @@ public class ProductServiceImpl implements ProductService {
                     .isPrimary(displayOrder == 1)
                     .product(product)
                     .build();
-            cacheEvictService.evictProductSearchCache();
+            evictSearchCacheFor(product);
             return (
                     productImageMapper.toProductImageResponse(
                             productImageRepository.save(productImage)
@@ -513,7 +590,7 @@ public class ProductServiceImpl implements ProductService {
         checkProductAccess(productImage.getProduct());
         productImageRepository.delete(productImage);
         log.info("Product image {} deleted successfully", imageId);
-        cacheEvictService.evictProductSearchCache();
+        evictSearchCacheFor(productImage.getProduct());
     }
 
     @Override
@@ -569,7 +646,7 @@ public class ProductServiceImpl implements ProductService {
                 .toList();
 
         log.info("Image order updated for product {}", productId);
-        cacheEvictService.evictProductSearchCache();
+        evictSearchCacheFor(product);
         return responses;
     }
 
@@ -589,6 +666,8 @@ public class ProductServiceImpl implements ProductService {
         
         variantRepository.delete(variant);
         cacheEvictService.evictVariantSelectionCaches(productId);
+        cacheEvictService.evictProductSelectionConfig(productId);
+        productEventPublisher.publishVariantsChanged(List.of(variantId), VariantChangedMessage.ChangeType.DELETED);
         log.info("Variant {} deleted successfully", variant.getSku());
     }
 
@@ -811,6 +890,9 @@ public class ProductServiceImpl implements ProductService {
             log.info("All variants of product {} have been deactivated", product.getName());
         }
         
+        // Index lựa chọn chứa trạng thái active của variant
+        cacheEvictService.evictProductSelectionConfig(product.getId());
+
         // Publish event qua RabbitMQ để sync với Elasticsearch
         productEventPublisher.publishProductStatusChanged(product.getId());
         
@@ -846,6 +928,7 @@ public class ProductServiceImpl implements ProductService {
         log.info("Bulk status update completed for {} products", request.getProductIds().size());
         for (String productId : productIds) {
             cacheEvictService.evictProductDetails(productId);
+            cacheEvictService.evictProductSelectionConfig(productId);
         }
     }
 
@@ -869,6 +952,8 @@ public class ProductServiceImpl implements ProductService {
         variant = variantRepository.save(variant);
         log.info("Variant {} status updated to {}", variant.getSku(), isActive);
         cacheEvictService.evictProductDetails(productId);
+        cacheEvictService.evictProductSelectionConfig(productId);
+        productEventPublisher.publishVariantsChanged(List.of(variantId), VariantChangedMessage.ChangeType.STATUS);
         return mapToVariantResponse(variant);
     }
 
@@ -894,6 +979,9 @@ public class ProductServiceImpl implements ProductService {
         variants = variantRepository.saveAll(variants);
         log.info("Bulk status update completed for {} variants", variants.size());
         cacheEvictService.evictProductDetails(productId);
+        cacheEvictService.evictProductSelectionConfig(productId);
+        productEventPublisher.publishVariantsChanged(
+                variants.stream().map(ProductVariant::getId).toList(), VariantChangedMessage.ChangeType.STATUS);
         return variants.stream()
                 .map(this::mapToVariantResponse)
                 .collect(Collectors.toList());
@@ -901,9 +989,8 @@ public class ProductServiceImpl implements ProductService {
     // ========== Statistics & Metrics ==========
 
     @Override
-    @Transactional
-    public void incrementViewCount(String productId) {
-        productRepository.incrementViewCount(productId);
+    public void incrementViewCount(String productId, String viewerKey) {
+        viewCountTracker.recordView(productId, viewerKey);
     }
 
     @Override
@@ -922,57 +1009,30 @@ public class ProductServiceImpl implements ProductService {
 
         log.info("Updating sold count for {} variants", variantQuantityMap.size());
 
-        // Lấy thông tin variants để biết productId tương ứng
+        // Lấy thông tin variants (kèm product và store) để biết productId/storeId tương ứng
         List<String> variantIds = new ArrayList<>(variantQuantityMap.keySet());
-        List<ProductVariant> variants = variantRepository.findAllById(variantIds);
+        List<ProductVariant> variants = variantRepository.findAllByIdWithDetails(variantIds);
 
         if (variants.isEmpty()) {
             log.warn("No variants found for IDs: {}", variantIds);
             return;
         }
 
-        // Map productId -> tổng quantity bán được (gom các variants cùng product)
-        Map<String, Integer> productQuantityMap = new HashMap<>();
-
-        for (ProductVariant variant : variants) {
-            String variantId = variant.getId();
-            Integer quantity = variantQuantityMap.get(variantId);
-
-            if (quantity == null || quantity <= 0) {
-                continue;
-            }
-
-            // Cập nhật soldQuantity cho variant
-            int updatedRows = variantRepository.updateSoldQuantity(variantId, quantity);
-            if (updatedRows > 0) {
-                log.debug("Updated soldQuantity for variant {}: +{}", variantId, quantity);
-            }
-
-            // Gom quantity theo productId
-            String productId = variant.getProduct().getId();
-            productQuantityMap.merge(productId, quantity, Integer::sum);
-        }
-
-        // Cập nhật soldCount cho các products
-        for (Map.Entry<String, Integer> entry : productQuantityMap.entrySet()) {
-            String productId = entry.getKey();
-            Integer totalQuantity = entry.getValue();
+        // Aggregator gom delta và ghi xuống DB theo lô, cache chi tiết sản phẩm được evict sau khi flush
+        soldCountAggregator.recordSales(variants, variantQuantityMap);
+    }
 
-            int updatedRows = productRepository.updateSoldCount(productId, totalQuantity);
-            if (updatedRows > 0) {
-                log.debug("Updated soldCount for product {}: +{}", productId, totalQuantity);
-            }
+    // ========== Helper Methods ==========
 
-            // Evict cache cho product đã cập nhật
-            cacheEvictService.evictProductDetails(productId);
+    private void evictSearchCacheFor(Product product, String... previousCategoryIds) {
+        String storeId = product.getStore() != null ? product.getStore().getId() : null;
+        List<String> categoryIds = new ArrayList<>(Arrays.asList(previousCategoryIds));
+        if (product.getCategory() != null) {
+            categoryIds.add(product.getCategory().getId());
         }
-
-        log.info("Successfully updated sold count for {} variants across {} products", 
-                variants.size(), productQuantityMap.size());
+        cacheEvictService.evictProductSearchCache(storeId, categoryIds.toArray(String[]::new));
     }
 
-    // ========== Helper Methods ==========
-
     private void checkProductAccess(Product product) {
         String username = SecurityContextHolder.getContext().getAuthentication().getName();
         boolean isAdmin = username.equals("admin"); // Simplified admin check
@@ -1318,6 +1378,9 @@ public class ProductServiceImpl implements ProductService {
                             .price(variant.getPrice())
                             .originalPrice(variant.getOriginalPrice())
                             .isActive(variant.isActive())
+                            .isDeleted(variant.isDeleted())
+                            .productActive(product.isActive() && !product.isDeleted())
+                            .storeActive(store.isActive())
 
                             // --- MAPPING STORE INFO ---
                             .storeId(store.getId())
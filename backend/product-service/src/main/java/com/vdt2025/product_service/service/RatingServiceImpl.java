@@ -19,6 +19,8 @@ import com.vdt2025.product_service.exception.ErrorCode;
 import com.vdt2025.product_service.repository.ProductRatingRepository;
 import com.vdt2025.product_service.repository.ProductRepository;
 import com.vdt2025.product_service.repository.ProductVariantRepository;
+import com.vdt2025.product_service.service.leaderboard.ProductLeaderboards;
+import com.vdt2025.product_service.service.search.ElasticsearchSyncService;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
@@ -28,6 +30,8 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -43,6 +47,8 @@ public class RatingServiceImpl implements RatingService {
     ProductVariantRepository variantRepository;
     OrderClient orderClient;
     UserClient userClient;
+    ElasticsearchSyncService elasticsearchSyncService;
+    ProductLeaderboards productLeaderboards;
 
     private static final int MAX_IMAGES_PER_RATING = 5;
 
@@ -368,6 +374,25 @@ public class RatingServiceImpl implements RatingService {
 
         log.info("Updated product {} stats: averageRating={}, ratingCount={}", 
                 productId, averageRating, ratingCount);
+
+        // Chỉ patch rating trong search index, không index lại cả document
+        afterCommit(() -> {
+            elasticsearchSyncService.refreshProductStats(List.of(productId));
+            productLeaderboards.refreshStats(List.of(productId));
+        });
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 
     private RatingResponse toRatingResponse(ProductRating rating) {
@@ -0,0 +1,13 @@
+package com.vdt2025.product_service.service.counter;
+
+import java.util.Map;
+
+/**
+ * Một lô delta của write-behind counter chờ ghi xuống DB
+ *
+ * @param owner   instance sở hữu journal chứa lô này
+ * @param batchId ID duy nhất của lô (idempotency key khi ghi DB)
+ * @param deltas  field (prefix + entity id) -> delta
+ */
+public record CounterFlushBatchData(String owner, String batchId, Map<String, Long> deltas) {
+}
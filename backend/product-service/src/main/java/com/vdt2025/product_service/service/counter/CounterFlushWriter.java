@@ -0,0 +1,81 @@
+package com.vdt2025.product_service.service.counter;
+
+import com.vdt2025.product_service.repository.CounterFlushBatchRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Ghi lô delta của write-behind counter xuống DB bằng JDBC batch
+ * (một PreparedStatement cho mỗi bảng thay vì một UPDATE cho mỗi row)
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class CounterFlushWriter {
+
+    JdbcTemplate jdbcTemplate;
+    CounterFlushBatchRepository flushBatchRepository;
+
+    /**
+     * Apply lô delta xuống DB cùng marker batch_id trong một transaction
+     *
+     * @param statements field prefix -> câu UPDATE nhận 2 tham số (delta, id)
+     * @return false nếu lô đã được apply trước đó
+     */
+    @Transactional
+    public boolean apply(String counterName, CounterFlushBatchData batch, Map<String, String> statements) {
+        if (flushBatchRepository.existsById(batch.batchId())) {
+            log.info("{} batch {} was already flushed, skipping", counterName, batch.batchId());
+            return false;
+        }
+
+        for (Map.Entry<String, String> statement : statements.entrySet()) {
+            String prefix = statement.getKey();
+            // TreeMap: update theo thứ tự id để các instance luôn lock row cùng thứ tự
+            Map<String, Long> deltas = new TreeMap<>();
+            batch.deltas().forEach((field, delta) -> {
+                if (field.startsWith(prefix) && delta != 0) {
+                    deltas.put(field.substring(prefix.length()), delta);
+                }
+            });
+            if (deltas.isEmpty()) {
+                continue;
+            }
+
+            List<Object[]> args = new ArrayList<>(deltas.size());
+            deltas.forEach((id, delta) -> args.add(new Object[]{delta, id}));
+            jdbcTemplate.batchUpdate(statement.getValue(), args);
+        }
+
+        jdbcTemplate.update(
+                "INSERT INTO counter_flush_batches (batch_id, counter_name, entry_count, flushed_at) VALUES (?, ?, ?, ?)",
+                batch.batchId(), counterName, batch.deltas().size(), Timestamp.valueOf(LocalDateTime.now()));
+        return true;
+    }
+
+    /**
+     * Dọn marker cũ hơn 1 ngày - chạy mỗi giờ
+     */
+    @Scheduled(fixedDelay = 3600000, initialDelay = 3600000)
+    @Transactional
+    public void cleanupFlushedMarkers() {
+        int deleted = flushBatchRepository.deleteFlushedBefore(LocalDateTime.now().minusDays(1));
+        if (deleted > 0) {
+            log.info("Deleted {} flushed counter batch markers", deleted);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.vdt2025.product_service.service.counter;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Journal trên Redis cho các delta còn nằm trong bộ nhớ của write-behind counter
+ *
+ * Mỗi instance có journal riêng (counter-journal:{name:instance}) và một alive key có TTL.
+ * Khi instance chết trước khi flush, instance khác nhận (adopt) journal đó sau khi alive key hết hạn,
+ * nên delta đã ghi nhận không bị mất khi restart/crash.
+ */
+@Slf4j
+public class RedisCounterJournal {
+
+    private static final String BATCH_FIELD = "__batch";
+
+    private static final RedisScript<Long> APPEND_SCRIPT = script("redis/counter-journal-append.lua", Long.class);
+    private static final RedisScript<Long> BEGIN_SCRIPT = script("redis/counter-journal-begin.lua", Long.class);
+    private static final RedisScript<List> ADOPT_SCRIPT = script("redis/counter-journal-adopt.lua", List.class);
+    private static final RedisScript<Long> COMPLETE_SCRIPT = script("redis/counter-journal-complete.lua", Long.class);
+
+    private final String name;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final StringRedisTemplate redisTemplate;
+    private final Duration aliveTtl;
+
+    public RedisCounterJournal(String name, StringRedisTemplate redisTemplate, Duration aliveTtl) {
+        this.name = name;
+        this.redisTemplate = redisTemplate;
+        this.aliveTtl = aliveTtl;
+    }
+
+    /**
+     * Ghi delta vào journal của instance hiện tại
+     */
+    public void append(Map<String, Long> deltas) {
+        List<String> args = new ArrayList<>(1 + deltas.size() * 2);
+        args.add(String.valueOf(aliveTtl.toSeconds()));
+        deltas.forEach((field, delta) -> {
+            args.add(field);
+            args.add(String.valueOf(delta));
+        });
+        redisTemplate.execute(APPEND_SCRIPT, List.of(journalKey(instanceId), aliveKey(instanceId)), args.toArray());
+    }
+
+    /**
+     * Gia hạn alive key và đăng ký instance vào registry để instance khác có thể adopt khi cần
+     */
+    public void heartbeat() {
+        redisTemplate.opsForValue().set(aliveKey(instanceId), "1", aliveTtl);
+        redisTemplate.opsForSet().add(registryKey(), instanceId);
+    }
+
+    /**
+     * Chuyển snapshot từ journal sang lô inflight
+     *
+     * @return lô inflight, hoặc empty nếu lô inflight trước đó chưa xử lý xong
+     */
+    public Optional<CounterFlushBatchData> begin(Map<String, Long> snapshot) {
+        String batchId = UUID.randomUUID().toString();
+        List<String> args = new ArrayList<>(1 + snapshot.size() * 2);
+        args.add(batchId);
+        snapshot.forEach((field, delta) -> {
+            args.add(field);
+            args.add(String.valueOf(delta));
+        });
+        Long started = redisTemplate.execute(BEGIN_SCRIPT,
+                List.of(journalKey(instanceId), inflightKey(instanceId)), args.toArray());
+        if (started == null || started == 0) {
+            return Optional.empty();
+        }
+        return Optional.of(new CounterFlushBatchData(instanceId, batchId, snapshot));
+    }
+
+    /**
+     * Lô inflight còn dở của chính instance này (ghi DB thất bại ở chu kỳ trước)
+     */
+    public Optional<CounterFlushBatchData> unfinished() {
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(inflightKey(instanceId));
+        return parse(instanceId, new ArrayList<>(flatten(entries)));
+    }
+
+    /**
+     * Nhận journal/lô inflight của các instance đã chết
+     */
+    public List<CounterFlushBatchData> adoptOrphans() {
+        Set<String> instances = redisTemplate.opsForSet().members(registryKey());
+        if (instances == null) {
+            return List.of();
+        }
+
+        List<CounterFlushBatchData> batches = new ArrayList<>();
+        for (String owner : instances) {
+            if (owner.equals(instanceId)) {
+                continue;
+            }
+            List<?> entries = redisTemplate.execute(ADOPT_SCRIPT,
+                    List.of(journalKey(owner), inflightKey(owner), aliveKey(owner)),
+                    UUID.randomUUID().toString());
+            parse(owner, entries).ifPresentOrElse(batches::add, () -> forgetIfEmpty(owner));
+        }
+        return batches;
+    }
+
+    /**
+     * Xóa lô inflight sau khi đã ghi xuống DB
+     */
+    public void complete(CounterFlushBatchData batch) {
+        redisTemplate.execute(COMPLETE_SCRIPT, List.of(inflightKey(batch.owner())), batch.batchId());
+        if (!batch.owner().equals(instanceId)) {
+            forgetIfEmpty(batch.owner());
+        }
+    }
+
+    private void forgetIfEmpty(String owner) {
+        if (Boolean.TRUE.equals(redisTemplate.hasKey(aliveKey(owner)))) {
+            return;
+        }
+        if (!Boolean.TRUE.equals(redisTemplate.hasKey(journalKey(owner)))
+                && !Boolean.TRUE.equals(redisTemplate.hasKey(inflightKey(owner)))) {
+            redisTemplate.opsForSet().remove(registryKey(), owner);
+            log.info("Removed drained {} journal of instance {}", name, owner);
+        }
+    }
+
+    private Optional<CounterFlushBatchData> parse(String owner, List<?> entries) {
+        if (entries == null || entries.isEmpty()) {
+            return Optional.empty();
+        }
+        String batchId = null;
+        Map<String, Long> deltas = new HashMap<>();
+        for (int i = 0; i + 1 < entries.size(); i += 2) {
+            String field = entries.get(i).toString();
+            String value = entries.get(i + 1).toString();
+            if (BATCH_FIELD.equals(field)) {
+                batchId = value;
+            } else {
+                deltas.put(field, Long.parseLong(value));
+            }
+        }
+        return batchId == null ? Optional.empty() : Optional.of(new CounterFlushBatchData(owner, batchId, deltas));
+    }
+
+    private static List<Object> flatten(Map<Object, Object> entries) {
+        List<Object> flat = new ArrayList<>(entries.size() * 2);
+        entries.forEach((field, value) -> {
+            flat.add(field);
+            flat.add(value);
+        });
+        return flat;
+    }
+
+    private String journalKey(String owner) {
+        return "counter-journal:{" + name + ":" + owner + "}";
+    }
+
+    private String inflightKey(String owner) {
+        return journalKey(owner) + ":inflight";
+    }
+
+    private String aliveKey(String owner) {
+        return journalKey(owner) + ":alive";
+    }
+
+    private String registryKey() {
+        return "counter-journal:" + name + ":instances";
+    }
+
+    private static <T> RedisScript<T> script(String path, Class<T> resultType) {
+        DefaultRedisScript<T> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource(path)));
+        script.setResultType(resultType);
+        return script;
+    }
+}
@@ -0,0 +1,129 @@
+package com.vdt2025.product_service.service.counter;
+
+import com.vdt2025.product_service.entity.Product;
+import com.vdt2025.product_service.entity.ProductVariant;
+import com.vdt2025.product_service.service.CacheEvictService;
+import com.vdt2025.product_service.service.leaderboard.ProductLeaderboards;
+import com.vdt2025.product_service.service.search.ElasticsearchSyncService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gom soldQuantity (variant), soldCount (product) và totalSold (store) sau khi confirm sale / hoàn hàng
+ * và ghi xuống DB theo lô, thay cho các vòng UPDATE từng row trong transaction inventory
+ */
+@Component
+@Slf4j
+public class SoldCountAggregator extends WriteBehindCounter {
+
+    static final String VARIANT = "v:";
+    static final String PRODUCT = "p:";
+    static final String STORE = "s:";
+
+    private static final Map<String, String> STATEMENTS = Map.of(
+            VARIANT, "UPDATE product_variants SET sold_quantity = COALESCE(sold_quantity, 0) + ? WHERE id = ?",
+            PRODUCT, "UPDATE products SET sold_count = COALESCE(sold_count, 0) + ? WHERE id = ?",
+            STORE, "UPDATE stores SET total_sold = COALESCE(total_sold, 0) + ? WHERE id = ?"
+    );
+
+    private final CacheEvictService cacheEvictService;
+    private final ElasticsearchSyncService elasticsearchSyncService;
+    private final ProductLeaderboards productLeaderboards;
+
+    public SoldCountAggregator(
+            StringRedisTemplate redisTemplate,
+            CounterFlushWriter writer,
+            CacheEvictService cacheEvictService,
+            ElasticsearchSyncService elasticsearchSyncService,
+            ProductLeaderboards productLeaderboards,
+            @Value("${counters.journal.orphan-timeout-seconds:60}") long orphanTimeoutSeconds) {
+        super("sold-count", redisTemplate, writer, Duration.ofSeconds(orphanTimeoutSeconds));
+        this.cacheEvictService = cacheEvictService;
+        this.elasticsearchSyncService = elasticsearchSyncService;
+        this.productLeaderboards = productLeaderboards;
+    }
+
+    /**
+     * Ghi nhận số lượng bán được
+     *
+     * @param variants    variants đã bán (kèm product và store)
+     * @param quantityMap variantId -> số lượng
+     */
+    public void recordSales(List<ProductVariant> variants, Map<String, Integer> quantityMap) {
+        record(variants, quantityMap, 1);
+    }
+
+    /**
+     * Ghi nhận số lượng hoàn trả (giảm sold count)
+     */
+    public void recordReturns(List<ProductVariant> variants, Map<String, Integer> quantityMap) {
+        record(variants, quantityMap, -1);
+    }
+
+    private void record(List<ProductVariant> variants, Map<String, Integer> quantityMap, int sign) {
+        Map<String, Long> deltas = new HashMap<>();
+        for (ProductVariant variant : variants) {
+            Integer quantity = quantityMap.get(variant.getId());
+            if (quantity == null || quantity <= 0) {
+                continue;
+            }
+            long delta = (long) sign * quantity;
+            deltas.merge(VARIANT + variant.getId(), delta, Long::sum);
+
+            Product product = variant.getProduct();
+            deltas.merge(PRODUCT + product.getId(), delta, Long::sum);
+            if (product.getStore() != null) {
+                deltas.merge(STORE + product.getStore().getId(), delta, Long::sum);
+            }
+        }
+        increment(deltas);
+        log.debug("Recorded sold count deltas for {} variants", variants.size());
+    }
+
+    @Scheduled(fixedDelayString = "${counters.sold.flush-interval-ms:5000}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        log.info("Flushing pending sold counts before shutdown");
+        flush();
+    }
+
+    @Override
+    protected Map<String, String> statements() {
+        return STATEMENTS;
+    }
+
+    @Override
+    protected void afterFlush(Map<String, Long> applied) {
+        // soldCount nằm trong cache chi tiết sản phẩm, trong search index và leaderboard bán chạy
+        List<String> productIds = applied.keySet().stream()
+                .filter(field -> field.startsWith(PRODUCT))
+                .map(field -> field.substring(PRODUCT.length()))
+                .toList();
+        productIds.forEach(productId -> {
+            try {
+                cacheEvictService.evictProductDetails(productId);
+            } catch (Exception e) {
+                log.warn("Failed to evict product cache {}: {}", productId, e.getMessage());
+            }
+        });
+        try {
+            elasticsearchSyncService.refreshProductStats(productIds);
+        } catch (Exception e) {
+            log.warn("Failed to queue search stats update for {} products: {}", productIds.size(), e.getMessage());
+        }
+        productLeaderboards.refreshStats(productIds);
+    }
+}
@@ -0,0 +1,138 @@
+package com.vdt2025.product_service.service.counter;
+
+import com.vdt2025.product_service.service.search.ElasticsearchSyncService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ghi nhận lượt xem sản phẩm trong bộ nhớ và flush xuống products.view_count theo lô
+ *
+ * - Trang chi tiết sản phẩm không cần transaction ghi DB
+ * - Tùy chọn bỏ qua lượt xem lặp lại của cùng viewer trong một khoảng thời gian (dedup window, theo instance)
+ * - Metrics: product.views.pending (backlog), product.views.flush (thời gian flush),
+ *   product.views.recorded / product.views.deduplicated
+ */
+@Component
+@Slf4j
+public class ViewCountTracker extends WriteBehindCounter {
+
+    static final String PRODUCT = "p:";
+
+    private static final Map<String, String> STATEMENTS = Map.of(
+            PRODUCT, "UPDATE products SET view_count = COALESCE(view_count, 0) + ? WHERE id = ?"
+    );
+
+    private final ElasticsearchSyncService elasticsearchSyncService;
+    private final boolean dedupEnabled;
+    private final long dedupWindowMillis;
+    private final int dedupMaxEntries;
+    // viewer|productId -> thời điểm hết hạn dedup
+    private final ConcurrentHashMap<String, Long> recentViews = new ConcurrentHashMap<>();
+
+    private final Timer flushTimer;
+    private final Counter recordedCounter;
+    private final Counter deduplicatedCounter;
+
+    public ViewCountTracker(
+            StringRedisTemplate redisTemplate,
+            CounterFlushWriter writer,
+            MeterRegistry meterRegistry,
+            ElasticsearchSyncService elasticsearchSyncService,
+            @Value("${counters.journal.orphan-timeout-seconds:60}") long orphanTimeoutSeconds,
+            @Value("${counters.views.journal:false}") boolean journal,
+            @Value("${counters.views.dedup.enabled:false}") boolean dedupEnabled,
+            @Value("${counters.views.dedup.window-seconds:1800}") long dedupWindowSeconds,
+            @Value("${counters.views.dedup.max-entries:100000}") int dedupMaxEntries) {
+        super("view-count", redisTemplate, writer, Duration.ofSeconds(orphanTimeoutSeconds), journal);
+        this.elasticsearchSyncService = elasticsearchSyncService;
+        this.dedupEnabled = dedupEnabled;
+        this.dedupWindowMillis = Duration.ofSeconds(dedupWindowSeconds).toMillis();
+        this.dedupMaxEntries = dedupMaxEntries;
+
+        Gauge.builder("product.views.pending", this, ViewCountTracker::pendingSize)
+                .description("Number of products with view increments waiting to be flushed")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("product.views.flush")
+                .description("Time spent flushing buffered view counts to the database")
+                .register(meterRegistry);
+        this.recordedCounter = Counter.builder("product.views.recorded").register(meterRegistry);
+        this.deduplicatedCounter = Counter.builder("product.views.deduplicated").register(meterRegistry);
+    }
+
+    /**
+     * Ghi nhận một lượt xem
+     *
+     * @param productId ID sản phẩm
+     * @param viewerKey định danh viewer (username/session/IP) dùng cho dedup, có thể null
+     */
+    public void recordView(String productId, String viewerKey) {
+        if (dedupEnabled && viewerKey != null && isRepeatedView(viewerKey + "|" + productId)) {
+            deduplicatedCounter.increment();
+            return;
+        }
+        increment(PRODUCT + productId, 1);
+        recordedCounter.increment();
+    }
+
+    private boolean isRepeatedView(String key) {
+        if (recentViews.size() >= dedupMaxEntries && !recentViews.containsKey(key)) {
+            // Quá giới hạn bộ nhớ: vẫn đếm lượt xem, các entry hết hạn được dọn ở lần flush tới
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        boolean[] repeated = {true};
+        recentViews.compute(key, (k, expiresAt) -> {
+            if (expiresAt == null || expiresAt <= now) {
+                repeated[0] = false;
+                return now + dedupWindowMillis;
+            }
+            return expiresAt;
+        });
+        return repeated[0];
+    }
+
+    @Scheduled(fixedDelayString = "${counters.views.flush-interval-ms:10000}")
+    public void scheduledFlush() {
+        flushTimer.record(this::flush);
+        if (dedupEnabled) {
+            long now = System.currentTimeMillis();
+            recentViews.values().removeIf(expiresAt -> expiresAt <= now);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        log.info("Flushing pending view counts before shutdown");
+        flush();
+    }
+
+    @Override
+    protected Map<String, String> statements() {
+        return STATEMENTS;
+    }
+
+    @Override
+    protected void afterFlush(Map<String, Long> applied) {
+        List<String> productIds = applied.keySet().stream()
+                .map(field -> field.substring(PRODUCT.length()))
+                .toList();
+        try {
+            elasticsearchSyncService.refreshProductStats(productIds);
+        } catch (Exception e) {
+            log.warn("Failed to queue search view count update for {} products: {}", productIds.size(), e.getMessage());
+        }
+    }
+}
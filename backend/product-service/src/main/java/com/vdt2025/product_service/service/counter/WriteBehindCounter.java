@@ -0,0 +1,213 @@
+package com.vdt2025.product_service.service.counter;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Counter ghi trễ (write-behind): gom delta trong bộ nhớ và ghi xuống DB theo lô định kỳ
+ *
+ * - Delta được gom trong ConcurrentHashMap (lock theo bin nên các key khác nhau không tranh chấp),
+ *   merge/remove theo key là nguyên tử nên không mất delta khi flush chạy song song
+ * - Mỗi delta đồng thời được ghi vào {@link RedisCounterJournal} để không mất khi instance crash
+ * - Mỗi lô được ghi xuống DB bằng JDBC batch kèm marker batch_id (exactly-once)
+ *
+ * Subclass khai báo câu UPDATE cho từng loại field (prefix) và lập lịch gọi {@link #flush()}.
+ */
+@Slf4j
+public abstract class WriteBehindCounter {
+
+    private final String counterName;
+    private final RedisCounterJournal journal;
+    private final CounterFlushWriter writer;
+    private final boolean durable;
+    private final ConcurrentHashMap<String, Long> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushing = new AtomicBoolean(false);
+
+    protected WriteBehindCounter(String counterName, StringRedisTemplate redisTemplate,
+                                 CounterFlushWriter writer, Duration orphanTimeout) {
+        this(counterName, redisTemplate, writer, orphanTimeout, true);
+    }
+
+    /**
+     * @param durable false: không ghi journal cho mỗi delta (không tốn round-trip Redis ở hot path),
+     *                delta chưa flush sẽ mất nếu instance crash
+     */
+    protected WriteBehindCounter(String counterName, StringRedisTemplate redisTemplate,
+                                 CounterFlushWriter writer, Duration orphanTimeout, boolean durable) {
+        this.counterName = counterName;
+        this.journal = new RedisCounterJournal(counterName, redisTemplate, orphanTimeout);
+        this.writer = writer;
+        this.durable = durable;
+    }
+
+    /**
+     * @return field prefix -> câu UPDATE nhận 2 tham số (delta, id)
+     */
+    protected abstract Map<String, String> statements();
+
+    /**
+     * Hook chạy sau khi một lô được ghi xuống DB (ví dụ: evict cache)
+     */
+    protected void afterFlush(Map<String, Long> applied) {
+    }
+
+    /**
+     * Ghi nhận delta (field = prefix + entity id)
+     */
+    protected void increment(Map<String, Long> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        deltas.forEach((field, delta) -> pending.merge(field, delta, Long::sum));
+        if (!durable) {
+            return;
+        }
+        try {
+            journal.append(deltas);
+        } catch (Exception e) {
+            // Delta vẫn còn trong bộ nhớ, chỉ mất khả năng phục hồi nếu instance crash trước lần flush tới
+            log.warn("Failed to journal {} deltas: {}", counterName, e.getMessage());
+        }
+    }
+
+    /**
+     * Ghi nhận delta cho một field
+     */
+    protected void increment(String field, long delta) {
+        pending.merge(field, delta, Long::sum);
+        if (!durable) {
+            return;
+        }
+        try {
+            journal.append(Map.of(field, delta));
+        } catch (Exception e) {
+            log.warn("Failed to journal {} delta: {}", counterName, e.getMessage());
+        }
+    }
+
+    /**
+     * Số field đang chờ flush
+     */
+    public int pendingSize() {
+        return pending.size();
+    }
+
+    /**
+     * Ghi toàn bộ delta đang chờ xuống DB
+     *
+     * @return số field đã ghi
+     */
+    public int flush() {
+        if (!flushing.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            if (!durable) {
+                Map<String, Long> snapshot = drain();
+                return !snapshot.isEmpty()
+                        && applyOrRestore(new CounterFlushBatchData(null, UUID.randomUUID().toString(), snapshot))
+                        ? snapshot.size() : 0;
+            }
+
+            // 1. Lô dở dang của chính instance này và journal của instance đã chết
+            try {
+                journal.heartbeat();
+                Optional<CounterFlushBatchData> unfinished = journal.unfinished();
+                if (unfinished.isPresent() && !applyAndComplete(unfinished.get())) {
+                    return 0;
+                }
+                for (CounterFlushBatchData orphan : journal.adoptOrphans()) {
+                    log.info("Adopted {} journal of instance {} ({} entries)",
+                            counterName, orphan.owner(), orphan.deltas().size());
+                    applyAndComplete(orphan);
+                }
+            } catch (Exception e) {
+                log.warn("Could not recover {} journal: {}", counterName, e.getMessage());
+            }
+
+            // 2. Snapshot delta trong bộ nhớ
+            Map<String, Long> snapshot = drain();
+            if (snapshot.isEmpty()) {
+                return 0;
+            }
+
+            // 3. Chuyển snapshot sang lô inflight trên journal rồi ghi DB
+            Optional<CounterFlushBatchData> batch;
+            try {
+                batch = journal.begin(snapshot);
+            } catch (Exception e) {
+                log.warn("{} journal unavailable, flushing without it: {}", counterName, e.getMessage());
+                return applyOrRestore(new CounterFlushBatchData(null, UUID.randomUUID().toString(), snapshot))
+                        ? snapshot.size() : 0;
+            }
+            if (batch.isEmpty()) {
+                restore(snapshot);
+                return 0;
+            }
+            // Nếu ghi DB lỗi, lô vẫn nằm trong inflight và được thử lại ở chu kỳ sau
+            if (!applyAndComplete(batch.get())) {
+                return 0;
+            }
+            log.debug("Flushed {} {} entries", snapshot.size(), counterName);
+            return snapshot.size();
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    /**
+     * Lấy và xóa toàn bộ delta đang chờ (remove theo key là nguyên tử với merge nên không mất delta)
+     */
+    private Map<String, Long> drain() {
+        Map<String, Long> snapshot = new HashMap<>();
+        for (String field : pending.keySet()) {
+            Long delta = pending.remove(field);
+            if (delta != null && delta != 0) {
+                snapshot.put(field, delta);
+            }
+        }
+        return snapshot;
+    }
+
+    private boolean applyAndComplete(CounterFlushBatchData batch) {
+        try {
+            if (writer.apply(counterName, batch, statements())) {
+                afterFlush(batch.deltas());
+            }
+            journal.complete(batch);
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            // Instance khác vừa ghi lô này, chu kỳ sau sẽ thấy marker và complete
+            log.debug("{} batch {} already flushed by another instance", counterName, batch.batchId());
+            return false;
+        } catch (Exception e) {
+            log.error("Failed to flush {} batch {}: {}", counterName, batch.batchId(), e.getMessage(), e);
+            return false;
+        }
+    }
+
+    private boolean applyOrRestore(CounterFlushBatchData batch) {
+        try {
+            writer.apply(counterName, batch, statements());
+            afterFlush(batch.deltas());
+            return true;
+        } catch (Exception e) {
+            log.error("Failed to flush {} batch {}: {}", counterName, batch.batchId(), e.getMessage(), e);
+            restore(batch.deltas());
+            return false;
+        }
+    }
+
+    private void restore(Map<String, Long> snapshot) {
+        snapshot.forEach((field, delta) -> pending.merge(field, delta, Long::sum));
+    }
+}
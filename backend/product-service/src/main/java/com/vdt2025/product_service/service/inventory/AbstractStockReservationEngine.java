@@ -0,0 +1,266 @@
+package com.vdt2025.product_service.service.inventory;
+
+import com.vdt2025.product_service.exception.AppException;
+import com.vdt2025.product_service.exception.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Phần logic chung của reservation engine: chia shard, nạp counter lazy và bù trừ khi thao tác
+ * nhiều shard bị từ chối giữa chừng. Các subclass chỉ cần cài đặt thao tác nguyên tử trên một shard.
+ *
+ * Giao thức nạp counter dùng epoch theo variant: epoch được đọc trước khi đọc DB và chỉ ghi counter
+ * nếu epoch không đổi. Reconciler tăng epoch sau khi apply delta xuống DB, nên một lần đọc DB
+ * "cũ" (chưa thấy delta) sẽ không bao giờ được ghi vào engine.
+ *
+ * Giữa lúc lô processing commit xuống DB và lúc reconciler complete lô đó (hoặc mãi mãi nếu instance
+ * crash ở giữa), giá trị DB đã bao gồm delta của lô processing. Vì vậy lần nạp ghi nhận batch id của
+ * lô processing trước khi đọc DB, {@link StockLevelLoader} cho biết lô đó đã commit trong snapshot
+ * hay chưa, và counter chỉ cộng thêm processing khi lô chưa commit. Nếu lô processing đổi trong lúc
+ * đọc DB thì lần nạp bị bỏ qua và được thử lại.
+ */
+@Slf4j
+public abstract class AbstractStockReservationEngine implements StockReservationEngine {
+
+    protected enum Operation {
+        RESERVE, RELEASE, CONFIRM, UNCONFIRM, ADD_ON_HAND, SET_ON_HAND
+    }
+
+    protected enum Status {
+        APPLIED, REJECTED, NOT_LOADED
+    }
+
+    /**
+     * Kết quả thao tác trên một shard
+     *
+     * @param status    trạng thái
+     * @param variantId variant bị từ chối / chưa được nạp (null nếu APPLIED)
+     * @param before    trạng thái trước khi thay đổi của từng variant (chỉ có khi APPLIED)
+     */
+    protected record ShardResult(Status status, String variantId, Map<String, StockLevel> before) {
+    }
+
+    private final StockLevelLoader loader;
+    private final int shardCount;
+    private final int maxLoadAttempts;
+
+    protected AbstractStockReservationEngine(StockLevelLoader loader, int shardCount, int maxLoadAttempts) {
+        this.loader = loader;
+        this.shardCount = shardCount;
+        this.maxLoadAttempts = maxLoadAttempts;
+    }
+
+    // ========== Shard primitives ==========
+
+    /**
+     * Áp dụng thao tác lên các variant cùng shard một cách nguyên tử (all-or-nothing).
+     * Khi force = true bỏ qua kiểm tra số lượng (dùng cho bù trừ).
+     */
+    protected abstract ShardResult mutate(int shard, Operation operation, boolean force,
+                                          Map<String, Integer> quantities);
+
+    protected abstract long readEpoch(int shard, String variantId);
+
+    /**
+     * @return batch id của lô đang processing trên shard, hoặc null nếu không có
+     */
+    protected abstract String processingBatchId(int shard);
+
+    /**
+     * Ghi counter từ DB vào engine nếu epoch vẫn bằng expectedEpoch, lô processing vẫn là
+     * expectedBatchId và counter chưa tồn tại. Delta pending luôn được cộng vào giá trị DB,
+     * delta processing chỉ được cộng khi batchApplied = false.
+     */
+    protected abstract void load(int shard, String variantId, long expectedEpoch,
+                                 String expectedBatchId, boolean batchApplied, StockLevel dbLevel);
+
+    /**
+     * @return counter hiện tại, hoặc null nếu chưa được nạp
+     */
+    protected abstract StockLevel readLevel(int shard, String variantId);
+
+    protected abstract void evict(int shard, String variantId);
+
+    protected int shardCount() {
+        return shardCount;
+    }
+
+    protected int shardOf(String variantId) {
+        return Math.floorMod(variantId.hashCode(), shardCount);
+    }
+
+    // ========== StockReservationEngine ==========
+
+    @Override
+    public Map<String, StockLevel> reserve(Map<String, Integer> quantities) {
+        return applyAcrossShards(Operation.RESERVE, quantities);
+    }
+
+    @Override
+    public Map<String, StockLevel> release(Map<String, Integer> quantities) {
+        return applyAcrossShards(Operation.RELEASE, quantities);
+    }
+
+    @Override
+    public Map<String, StockLevel> confirm(Map<String, Integer> quantities) {
+        return applyAcrossShards(Operation.CONFIRM, quantities);
+    }
+
+    @Override
+    public Map<String, StockLevel> cancelConfirm(Map<String, Integer> quantities) {
+        return applyAcrossShards(Operation.UNCONFIRM, quantities);
+    }
+
+    @Override
+    public StockLevel adjustOnHand(String variantId, int delta) {
+        return applySingle(Operation.ADD_ON_HAND, variantId, delta);
+    }
+
+    @Override
+    public StockLevel setOnHand(String variantId, int newOnHand) {
+        if (newOnHand < 0) {
+            throw new AppException(ErrorCode.INVALID_STOCK_QUANTITY);
+        }
+        return applySingle(Operation.SET_ON_HAND, variantId, newOnHand);
+    }
+
+    @Override
+    public StockLevel getStockLevel(String variantId) {
+        int shard = shardOf(variantId);
+        for (int attempt = 0; attempt < maxLoadAttempts; attempt++) {
+            StockLevel level = readLevel(shard, variantId);
+            if (level != null) {
+                return level;
+            }
+            loadMissing(shard, List.of(variantId));
+        }
+        log.error("Could not load stock counter for variant {} after {} attempts", variantId, maxLoadAttempts);
+        throw new AppException(ErrorCode.INVALID_INVENTORY_STATE);
+    }
+
+    @Override
+    public void evict(String variantId) {
+        evict(shardOf(variantId), variantId);
+    }
+
+    // ========== Helpers ==========
+
+    private StockLevel applySingle(Operation operation, String variantId, int quantity) {
+        Map<String, StockLevel> before = applyAcrossShards(operation, Map.of(variantId, quantity));
+        return before.get(variantId);
+    }
+
+    private Map<String, StockLevel> applyAcrossShards(Operation operation, Map<String, Integer> quantities) {
+        if (quantities == null || quantities.isEmpty()) {
+            return Map.of();
+        }
+
+        // Gom theo shard, duyệt shard theo thứ tự tăng dần để kết quả ổn định
+        Map<Integer, Map<String, Integer>> byShard = new TreeMap<>();
+        quantities.forEach((variantId, quantity) ->
+                byShard.computeIfAbsent(shardOf(variantId), s -> new LinkedHashMap<>()).put(variantId, quantity));
+
+        Map<String, StockLevel> before = new HashMap<>();
+        List<Map.Entry<Integer, Map<String, Integer>>> applied = new ArrayList<>();
+
+        for (Map.Entry<Integer, Map<String, Integer>> entry : byShard.entrySet()) {
+            ShardResult result = mutateLoaded(entry.getKey(), operation, entry.getValue());
+            if (result.status() == Status.REJECTED) {
+                log.warn("Stock {} rejected for variant {}", operation, result.variantId());
+                compensate(operation, applied);
+                throw new AppException(rejectionCode(operation));
+            }
+            before.putAll(result.before());
+            applied.add(entry);
+        }
+        return before;
+    }
+
+    private ShardResult mutateLoaded(int shard, Operation operation, Map<String, Integer> quantities) {
+        for (int attempt = 0; attempt < maxLoadAttempts; attempt++) {
+            ShardResult result = mutate(shard, operation, false, quantities);
+            if (result.status() != Status.NOT_LOADED) {
+                return result;
+            }
+            loadMissing(shard, quantities.keySet());
+        }
+        log.error("Could not load stock counters for shard {} after {} attempts", shard, maxLoadAttempts);
+        throw new AppException(ErrorCode.INVALID_INVENTORY_STATE);
+    }
+
+    private void loadMissing(int shard, Iterable<String> variantIds) {
+        Map<String, Long> epochs = new HashMap<>();
+        for (String variantId : variantIds) {
+            if (readLevel(shard, variantId) == null) {
+                epochs.put(variantId, readEpoch(shard, variantId));
+            }
+        }
+        if (epochs.isEmpty()) {
+            return;
+        }
+
+        // Đọc batch id trước khi đọc DB để snapshot DB chắc chắn bắt đầu sau khi lô này được tạo
+        String batchId = processingBatchId(shard);
+        StockLevelLoader.Loaded loaded = loader.load(epochs.keySet(), batchId);
+        for (Map.Entry<String, Long> entry : epochs.entrySet()) {
+            StockLevel dbLevel = loaded.levels().get(entry.getKey());
+            if (dbLevel == null) {
+                log.warn("Inventory stock not found for variant {}", entry.getKey());
+                throw new AppException(ErrorCode.INVENTORY_STOCK_NOT_FOUND);
+            }
+            load(shard, entry.getKey(), entry.getValue(), batchId, loaded.batchApplied(), dbLevel);
+        }
+    }
+
+    /**
+     * Hoàn tác các shard đã apply khi một shard phía sau bị từ chối
+     */
+    private void compensate(Operation operation, List<Map.Entry<Integer, Map<String, Integer>>> applied) {
+        Operation inverse = switch (operation) {
+            case RESERVE -> Operation.RELEASE;
+            case RELEASE -> Operation.RESERVE;
+            case CONFIRM -> Operation.UNCONFIRM;
+            case UNCONFIRM -> Operation.CONFIRM;
+            default -> null;
+        };
+        if (inverse == null) {
+            return;
+        }
+        for (Map.Entry<Integer, Map<String, Integer>> entry : applied) {
+            mutate(entry.getKey(), inverse, true, entry.getValue());
+        }
+    }
+
+    private ErrorCode rejectionCode(Operation operation) {
+        return switch (operation) {
+            case RESERVE -> ErrorCode.OUT_OF_STOCK;
+            case ADD_ON_HAND -> ErrorCode.INSUFFICIENT_STOCK;
+            case SET_ON_HAND -> ErrorCode.INSUFFICIENT_STOCK_FOR_RESERVED;
+            default -> ErrorCode.INVALID_INVENTORY_OPERATION;
+        };
+    }
+
+    /**
+     * Tính delta (available, reserved, onHand) của một thao tác.
+     * Dùng chung cho in-memory engine; Redis engine tính tương tự trong Lua script.
+     */
+    protected static int[] deltaOf(Operation operation, int quantity, StockLevel current) {
+        return switch (operation) {
+            case RESERVE -> new int[]{-quantity, quantity, 0};
+            case RELEASE -> new int[]{quantity, -quantity, 0};
+            case CONFIRM -> new int[]{0, -quantity, -quantity};
+            case UNCONFIRM -> new int[]{0, quantity, quantity};
+            case ADD_ON_HAND -> new int[]{quantity, 0, quantity};
+            case SET_ON_HAND -> {
+                int delta = quantity - current.onHand();
+                yield new int[]{delta, 0, delta};
+            }
+        };
+    }
+}
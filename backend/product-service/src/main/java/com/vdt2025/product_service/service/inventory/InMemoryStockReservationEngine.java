@@ -0,0 +1,171 @@
+package com.vdt2025.product_service.service.inventory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Reservation engine chạy trong process, dùng cho test/local khi không có Redis.
+ * Mỗi shard được bảo vệ bởi monitor riêng nên các variant khác shard không tranh chấp nhau.
+ *
+ * Lưu ý: counter và journal mất khi restart, chỉ dùng cho single instance
+ * (reconciler được gọi khi shutdown để đẩy phần delta còn lại xuống DB).
+ */
+@Component
+@ConditionalOnProperty(name = "inventory.reservation.engine", havingValue = "memory")
+@Slf4j
+public class InMemoryStockReservationEngine extends AbstractStockReservationEngine {
+
+    private static final class Shard {
+        final Map<String, StockLevel> levels = new HashMap<>();
+        final Map<String, Integer> pendingReserved = new HashMap<>();
+        final Map<String, Integer> pendingOnHand = new HashMap<>();
+        final Map<String, Long> epochs = new HashMap<>();
+        ReconcileBatch processing;
+    }
+
+    private final Shard[] shards;
+
+    public InMemoryStockReservationEngine(
+            StockLevelLoader loader,
+            @Value("${inventory.reservation.shards:16}") int shardCount,
+            @Value("${inventory.reservation.load-attempts:3}") int maxLoadAttempts) {
+        super(loader, shardCount, maxLoadAttempts);
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard();
+        }
+        log.info("In-memory stock reservation engine configured with {} shards", shardCount);
+    }
+
+    @Override
+    protected ShardResult mutate(int shardIndex, Operation operation, boolean force, Map<String, Integer> quantities) {
+        Shard shard = shards[shardIndex];
+        synchronized (shard) {
+            for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+                StockLevel current = shard.levels.get(entry.getKey());
+                if (current == null) {
+                    return new ShardResult(Status.NOT_LOADED, entry.getKey(), Map.of());
+                }
+                int[] delta = deltaOf(operation, entry.getValue(), current);
+                if (!force && (current.available() + delta[0] < 0 || current.reserved() + delta[1] < 0)) {
+                    return new ShardResult(Status.REJECTED, entry.getKey(), Map.of());
+                }
+            }
+
+            Map<String, StockLevel> before = new HashMap<>();
+            for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+                String variantId = entry.getKey();
+                StockLevel current = shard.levels.get(variantId);
+                int[] delta = deltaOf(operation, entry.getValue(), current);
+                before.put(variantId, current);
+                shard.levels.put(variantId,
+                        new StockLevel(current.onHand() + delta[2], current.reserved() + delta[1]));
+                if (delta[1] != 0) {
+                    shard.pendingReserved.merge(variantId, delta[1], Integer::sum);
+                }
+                if (delta[2] != 0) {
+                    shard.pendingOnHand.merge(variantId, delta[2], Integer::sum);
+                }
+            }
+            return new ShardResult(Status.APPLIED, null, before);
+        }
+    }
+
+    @Override
+    protected long readEpoch(int shardIndex, String variantId) {
+        Shard shard = shards[shardIndex];
+        synchronized (shard) {
+            return shard.epochs.getOrDefault(variantId, 0L);
+        }
+    }
+
+    @Override
+    protected String processingBatchId(int shardIndex) {
+        Shard shard = shards[shardIndex];
+        synchronized (shard) {
+            return shard.processing == null ? null : shard.processing.batchId();
+        }
+    }
+
+    @Override
+    protected void load(int shardIndex, String variantId, long expectedEpoch,
+                        String expectedBatchId, boolean batchApplied, StockLevel dbLevel) {
+        Shard shard = shards[shardIndex];
+        synchronized (shard) {
+            if (shard.epochs.getOrDefault(variantId, 0L) != expectedEpoch) {
+                return;
+            }
+            String currentBatchId = shard.processing == null ? null : shard.processing.batchId();
+            if (!Objects.equals(currentBatchId, expectedBatchId)) {
+                return;
+            }
+            int reserved = dbLevel.reserved() + shard.pendingReserved.getOrDefault(variantId, 0);
+            int onHand = dbLevel.onHand() + shard.pendingOnHand.getOrDefault(variantId, 0);
+            if (shard.processing != null && !batchApplied) {
+                reserved += shard.processing.reservedDeltas().getOrDefault(variantId, 0);
+                onHand += shard.processing.onHandDeltas().getOrDefault(variantId, 0);
+            }
+            shard.levels.putIfAbsent(variantId, new StockLevel(onHand, reserved));
+        }
+    }
+
+    @Override
+    protected StockLevel readLevel(int shardIndex, String variantId) {
+        Shard shard = shards[shardIndex];
+        synchronized (shard) {
+            return shard.levels.get(variantId);
+        }
+    }
+
+    @Override
+    protected void evict(int shardIndex, String variantId) {
+        Shard shard = shards[shardIndex];
+        synchronized (shard) {
+            shard.epochs.merge(variantId, 1L, Long::sum);
+            shard.levels.remove(variantId);
+        }
+    }
+
+    @Override
+    public List<ReconcileBatch> beginReconcile() {
+        List<ReconcileBatch> batches = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            Shard shard = shards[i];
+            synchronized (shard) {
+                if (shard.processing == null) {
+                    if (shard.pendingReserved.isEmpty() && shard.pendingOnHand.isEmpty()) {
+                        continue;
+                    }
+                    shard.processing = new ReconcileBatch(i, UUID.randomUUID().toString(),
+                            new HashMap<>(shard.pendingReserved), new HashMap<>(shard.pendingOnHand));
+                    shard.pendingReserved.clear();
+                    shard.pendingOnHand.clear();
+                }
+                batches.add(shard.processing);
+            }
+        }
+        return batches;
+    }
+
+    @Override
+    public void completeReconcile(ReconcileBatch batch) {
+        Shard shard = shards[batch.shard()];
+        synchronized (shard) {
+            if (shard.processing == null || !shard.processing.batchId().equals(batch.batchId())) {
+                return;
+            }
+            batch.reservedDeltas().keySet().forEach(id -> shard.epochs.merge(id, 1L, Long::sum));
+            batch.onHandDeltas().keySet().forEach(id -> shard.epochs.merge(id, 1L, Long::sum));
+            shard.processing = null;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.vdt2025.product_service.service.inventory;
+
+import com.vdt2025.product_service.entity.InventoryTransaction.TransactionType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Journal tồn kho append-only trên bảng inventory_transactions
+ *
+ * - Ghi: một câu INSERT nhiều dòng cho mỗi nhóm tối đa batch-size entry, chạy trong transaction hiện tại
+ *   (thay cho JPA save từng entity, không cần dirty checking/persistence context)
+ * - Đọc: stream theo server-side cursor (fetch size) để xuất audit dài mà không giữ toàn bộ trong bộ nhớ
+ */
+@Component
+@Slf4j
+public class InventoryJournal {
+
+    private static final String INSERT_PREFIX = "INSERT INTO inventory_transactions (" +
+            "id, variant_id, transaction_type, quantity_change, quantity_before, quantity_after, " +
+            "reserved_before, reserved_after, reason, performed_by, reference_type, reference_id, created_at) VALUES ";
+    private static final String ROW_PLACEHOLDER = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    private final int fetchSize;
+
+    public InventoryJournal(
+            JdbcTemplate jdbcTemplate,
+            @Value("${inventory.journal.batch-size:500}") int batchSize,
+            @Value("${inventory.journal.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Ghi các entry vào journal (tham gia transaction hiện tại nếu có)
+     */
+    public void append(List<InventoryJournalEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        for (int from = 0; from < entries.size(); from += batchSize) {
+            List<InventoryJournalEntry> chunk = entries.subList(from, Math.min(from + batchSize, entries.size()));
+            String sql = INSERT_PREFIX + String.join(", ", Collections.nCopies(chunk.size(), ROW_PLACEHOLDER));
+            jdbcTemplate.update(sql, ps -> {
+                int index = 1;
+                for (InventoryJournalEntry entry : chunk) {
+                    index = bind(ps, index, entry);
+                }
+            });
+        }
+        log.debug("Appended {} inventory journal entries", entries.size());
+    }
+
+    /**
+     * Stream journal theo điều kiện lọc, thứ tự created_at tăng dần
+     * Khoảng thời gian [from, to) là bắt buộc để Postgres chỉ quét các partition liên quan
+     */
+    @Transactional(readOnly = true)
+    public void stream(InventoryJournalQuery query, Consumer<InventoryJournalEntry> consumer) {
+        StringBuilder sql = new StringBuilder("SELECT id, variant_id, transaction_type, quantity_change, " +
+                "quantity_before, quantity_after, reserved_before, reserved_after, reason, performed_by, " +
+                "reference_type, reference_id, created_at FROM inventory_transactions " +
+                "WHERE created_at >= ? AND created_at < ?");
+        List<Object> args = new ArrayList<>();
+        args.add(Timestamp.valueOf(query.from()));
+        args.add(Timestamp.valueOf(query.to()));
+        if (query.variantId() != null) {
+            sql.append(" AND variant_id = ?");
+            args.add(query.variantId());
+        }
+        if (query.transactionType() != null) {
+            sql.append(" AND transaction_type = ?");
+            args.add(query.transactionType().name());
+        }
+        if (query.referenceType() != null) {
+            sql.append(" AND reference_type = ?");
+            args.add(query.referenceType());
+        }
+        if (query.referenceId() != null) {
+            sql.append(" AND reference_id = ?");
+            args.add(query.referenceId());
+        }
+        sql.append(" ORDER BY created_at, id");
+
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql.toString(),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            for (int i = 0; i < args.size(); i++) {
+                ps.setObject(i + 1, args.get(i));
+            }
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(mapRow(rs)));
+    }
+
+    private static int bind(PreparedStatement ps, int index, InventoryJournalEntry entry) throws SQLException {
+        ps.setString(index++, entry.id());
+        ps.setString(index++, entry.variantId());
+        ps.setString(index++, entry.transactionType().name());
+        ps.setInt(index++, entry.quantityChange());
+        ps.setInt(index++, entry.before().onHand());
+        ps.setInt(index++, entry.after().onHand());
+        ps.setInt(index++, entry.before().reserved());
+        ps.setInt(index++, entry.after().reserved());
+        ps.setString(index++, entry.reason());
+        ps.setString(index++, entry.performedBy());
+        ps.setString(index++, entry.referenceType());
+        ps.setString(index++, entry.referenceId());
+        ps.setTimestamp(index++, Timestamp.valueOf(entry.createdAt()));
+        return index;
+    }
+
+    private static InventoryJournalEntry mapRow(ResultSet rs) throws SQLException {
+        return new InventoryJournalEntry(
+                rs.getString("id"),
+                rs.getString("variant_id"),
+                TransactionType.valueOf(rs.getString("transaction_type")),
+                rs.getInt("quantity_change"),
+                new StockLevel(rs.getInt("quantity_before"), rs.getInt("reserved_before")),
+                new StockLevel(rs.getInt("quantity_after"), rs.getInt("reserved_after")),
+                rs.getString("reason"),
+                rs.getString("performed_by"),
+                rs.getString("reference_type"),
+                rs.getString("reference_id"),
+                rs.getTimestamp("created_at").toLocalDateTime()
+        );
+    }
+}
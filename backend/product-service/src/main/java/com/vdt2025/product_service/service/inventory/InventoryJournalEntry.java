@@ -0,0 +1,27 @@
+package com.vdt2025.product_service.service.inventory;
+
+import com.vdt2025.product_service.entity.InventoryTransaction.TransactionType;
+
+import java.time.LocalDateTime;
+
+/**
+ * Một dòng trong journal tồn kho (inventory_transactions)
+ *
+ * @param quantityChange thay đổi onHand (âm hoặc dương)
+ * @param before         onHand/reserved trước thay đổi
+ * @param after          onHand/reserved sau thay đổi
+ */
+public record InventoryJournalEntry(
+        String id,
+        String variantId,
+        TransactionType transactionType,
+        int quantityChange,
+        StockLevel before,
+        StockLevel after,
+        String reason,
+        String performedBy,
+        String referenceType,
+        String referenceId,
+        LocalDateTime createdAt
+) {
+}
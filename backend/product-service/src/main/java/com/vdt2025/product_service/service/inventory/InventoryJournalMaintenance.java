@@ -0,0 +1,153 @@
+package com.vdt2025.product_service.service.inventory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Bảo trì journal tồn kho partition theo tháng (Postgres)
+ *
+ * - Tạo trước partition cho các tháng sắp tới (insert không rơi vào partition default)
+ * - Partition cũ hơn retention: rollup vào inventory_transaction_rollups rồi detach khỏi bảng chính
+ *   (giữ lại dưới tên *_archive hoặc drop tùy cấu hình)
+ *
+ * Chỉ chạy khi inventory_transactions đã được chuyển sang bảng partition (V4 migration).
+ * Service dùng ddl-auto, không có migration runner: V4__partition_inventory_transactions.sql phải chạy tay,
+ * chưa chạy thì WARN lúc khởi động và mỗi lần bảo trì (journal vẫn ghi vào bảng thường, không partition/rollup).
+ * Advisory lock đảm bảo chỉ một instance bảo trì tại một thời điểm.
+ */
+@Component
+@Slf4j
+public class InventoryJournalMaintenance {
+
+    private static final String TABLE = "inventory_transactions";
+    private static final Pattern PARTITION_NAME = Pattern.compile(TABLE + "_y(\\d{4})m(\\d{2})");
+    private static final long ADVISORY_LOCK_KEY = 0x494E564A524E4CL; // "INVJRNL"
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final boolean dropArchived;
+
+    public InventoryJournalMaintenance(
+            JdbcTemplate jdbcTemplate,
+            @Value("${inventory.journal.partition.months-ahead:2}") int monthsAhead,
+            @Value("${inventory.journal.partition.retention-months:12}") int retentionMonths,
+            @Value("${inventory.journal.partition.drop-archived:false}") boolean dropArchived) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.dropArchived = dropArchived;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void checkPartitioning() {
+        try {
+            if (!isPartitioned()) {
+                warnNotPartitioned();
+            }
+        } catch (Exception e) {
+            log.warn("Could not check whether {} is partitioned: {}", TABLE, e.getMessage());
+        }
+    }
+
+    /**
+     * Chạy lúc 2h sáng mỗi ngày
+     */
+    @Scheduled(cron = "${inventory.journal.partition.cron:0 0 2 * * *}")
+    @Transactional
+    public void maintain() {
+        if (!isPartitioned()) {
+            warnNotPartitioned();
+            return;
+        }
+        Boolean locked = jdbcTemplate.queryForObject(
+                "SELECT pg_try_advisory_xact_lock(?)", Boolean.class, ADVISORY_LOCK_KEY);
+        if (!Boolean.TRUE.equals(locked)) {
+            log.debug("Inventory journal maintenance is running on another instance");
+            return;
+        }
+
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= monthsAhead; i++) {
+            createPartition(current.plusMonths(i));
+        }
+
+        YearMonth oldestKept = current.minusMonths(retentionMonths);
+        for (String partition : listPartitions()) {
+            Matcher matcher = PARTITION_NAME.matcher(partition);
+            if (!matcher.matches()) {
+                continue;
+            }
+            YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+            if (month.isBefore(oldestKept)) {
+                archivePartition(partition, month);
+            }
+        }
+    }
+
+    private void warnNotPartitioned() {
+        log.warn("{} is not partitioned: apply db/migration/V4__partition_inventory_transactions.sql manually " +
+                "(no migration runner); partition creation and rollups are skipped until then", TABLE);
+    }
+
+    private boolean isPartitioned() {
+        Boolean partitioned = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table pt " +
+                "JOIN pg_class c ON c.oid = pt.partrelid WHERE c.relname = ?)", Boolean.class, TABLE);
+        return Boolean.TRUE.equals(partitioned);
+    }
+
+    private List<String> listPartitions() {
+        return jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i " +
+                "JOIN pg_class c ON c.oid = i.inhrelid " +
+                "JOIN pg_class p ON p.oid = i.inhparent WHERE p.relname = ?", String.class, TABLE);
+    }
+
+    private void createPartition(YearMonth month) {
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+        // Tên partition và ngày được sinh từ YearMonth, không có input từ người dùng
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(month) +
+                " PARTITION OF " + TABLE + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+    }
+
+    private void archivePartition(String partition, YearMonth month) {
+        int rolledUp = jdbcTemplate.update(
+                "INSERT INTO inventory_transaction_rollups (variant_id, period_month, transaction_type, " +
+                "transaction_count, quantity_change_total, reserved_change_total) " +
+                "SELECT variant_id, ?, transaction_type, COUNT(*), SUM(quantity_change), " +
+                "SUM(reserved_after - reserved_before) FROM " + partition + " " +
+                "GROUP BY variant_id, transaction_type " +
+                "ON CONFLICT (variant_id, period_month, transaction_type) DO UPDATE SET " +
+                "transaction_count = EXCLUDED.transaction_count, " +
+                "quantity_change_total = EXCLUDED.quantity_change_total, " +
+                "reserved_change_total = EXCLUDED.reserved_change_total",
+                month.atDay(1));
+
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " DETACH PARTITION " + partition);
+        if (dropArchived) {
+            jdbcTemplate.execute("DROP TABLE " + partition);
+        } else {
+            jdbcTemplate.execute("ALTER TABLE " + partition + " RENAME TO " + partition + "_archive");
+        }
+        log.info("Archived inventory journal partition {} ({} rollup rows, dropped={})",
+                partition, rolledUp, dropArchived);
+    }
+
+    private static String partitionName(YearMonth month) {
+        return String.format("%s_y%04dm%02d", TABLE, month.getYear(), month.getMonthValue());
+    }
+}
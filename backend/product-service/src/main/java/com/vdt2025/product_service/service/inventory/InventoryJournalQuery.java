@@ -0,0 +1,32 @@
+package com.vdt2025.product_service.service.inventory;
+
+import com.vdt2025.product_service.entity.InventoryTransaction.TransactionType;
+import com.vdt2025.product_service.exception.AppException;
+import com.vdt2025.product_service.exception.ErrorCode;
+
+import java.time.LocalDateTime;
+
+/**
+ * Điều kiện lọc khi stream journal tồn kho (các field null bị bỏ qua, trừ from/to)
+ */
+public record InventoryJournalQuery(
+        LocalDateTime from,
+        LocalDateTime to,
+        String variantId,
+        TransactionType transactionType,
+        String referenceType,
+        String referenceId
+) {
+
+    // Giới hạn khoảng thời gian để query chỉ chạm một số partition tháng
+    public static final long MAX_RANGE_DAYS = 366;
+
+    /**
+     * @throws AppException với ErrorCode.INVALID_AUDIT_RANGE nếu thiếu from/to, from >= to hoặc quá MAX_RANGE_DAYS
+     */
+    public void requireValidRange() {
+        if (from == null || to == null || !from.isBefore(to) || from.plusDays(MAX_RANGE_DAYS).isBefore(to)) {
+            throw new AppException(ErrorCode.INVALID_AUDIT_RANGE);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.vdt2025.product_service.service.inventory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.vdt2025.product_service.repository.InventoryStockRepository;
+import com.vdt2025.product_service.repository.ProductVariantRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Snapshot tồn kho khả dụng theo product cho hydration kết quả search/listing
+ *
+ * - Giá trị của mỗi product nằm trong Redis hash (dùng chung giữa các instance), phía trước là Caffeine
+ *   với TTL = staleness bound, nên hydration một trang là lookup trong bộ nhớ thay vì SUM trên inventory_stocks
+ * - Product chưa có trong snapshot được nạp từ DB (HSETNX, không ghi đè giá trị mới hơn)
+ * - InventoryServiceImpl gọi {@link #applyDelta} sau commit cho reserve/release/adjust/return,
+ *   delta chỉ cộng vào product đã có trong snapshot (script Lua nguyên tử)
+ * - Reconciliation định kỳ so snapshot với DB (sau khi đẩy hết delta của reservation engine xuống DB)
+ *   và sửa bằng compare-and-set, nên lệch do race giữa nạp và delta chỉ tồn tại tới lần reconcile kế tiếp
+ *
+ * Redis lỗi thì đọc thẳng DB như trước.
+ *
+ * Metrics: inventory.stock-snapshot.lookups{source=local|redis|db}, inventory.stock-snapshot.corrections
+ */
+@Component
+@Slf4j
+public class ProductStockSnapshot {
+
+    private static final String KEY = "inventory:product-available";
+
+    private final StringRedisTemplate redisTemplate;
+    private final InventoryStockRepository inventoryStockRepository;
+    private final ProductVariantRepository productVariantRepository;
+    private final StockReservationReconciler stockReservationReconciler;
+
+    private final RedisScript<Long> applyScript = script("redis/stock-snapshot-apply.lua");
+    private final RedisScript<Long> loadScript = script("redis/stock-snapshot-load.lua");
+    private final RedisScript<Long> reconcileScript = script("redis/stock-snapshot-reconcile.lua");
+
+    private final boolean enabled;
+    private final int reconcileBatchSize;
+    private final Cache<String, Integer> local;
+    // variant -> product không đổi sau khi tạo
+    private final Cache<String, String> productOfVariant;
+    private final AtomicBoolean reconciling = new AtomicBoolean(false);
+
+    private final Counter localLookups;
+    private final Counter redisLookups;
+    private final Counter dbLookups;
+    private final Counter corrections;
+
+    public ProductStockSnapshot(StringRedisTemplate redisTemplate,
+                                InventoryStockRepository inventoryStockRepository,
+                                ProductVariantRepository productVariantRepository,
+                                @Lazy StockReservationReconciler stockReservationReconciler,
+                                MeterRegistry meterRegistry,
+                                @Value("${inventory.stock-snapshot.enabled:true}") boolean enabled,
+                                @Value("${inventory.stock-snapshot.max-staleness-ms:2000}") long maxStalenessMs,
+                                @Value("${inventory.stock-snapshot.local-maximum-size:100000}") long localMaximumSize,
+                                @Value("${inventory.stock-snapshot.reconcile-batch-size:500}") int reconcileBatchSize) {
+        this.redisTemplate = redisTemplate;
+        this.inventoryStockRepository = inventoryStockRepository;
+        this.productVariantRepository = productVariantRepository;
+        this.stockReservationReconciler = stockReservationReconciler;
+        this.enabled = enabled;
+        this.reconcileBatchSize = reconcileBatchSize;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(localMaximumSize)
+                .expireAfterWrite(Duration.ofMillis(maxStalenessMs))
+                .build();
+        this.productOfVariant = Caffeine.newBuilder()
+                .maximumSize(localMaximumSize)
+                .build();
+
+        this.localLookups = lookups(meterRegistry, "local");
+        this.redisLookups = lookups(meterRegistry, "redis");
+        this.dbLookups = lookups(meterRegistry, "db");
+        this.corrections = Counter.builder("inventory.stock-snapshot.corrections")
+                .description("Products whose snapshot value was corrected by reconciliation")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Tồn kho khả dụng của các product, product không có inventory trả về 0
+     */
+    public Map<String, Integer> getAvailable(Collection<String> productIds) {
+        Set<String> ids = new LinkedHashSet<>(productIds);
+        if (!enabled) {
+            dbLookups.increment(ids.size());
+            return loadFromDb(ids);
+        }
+
+        Map<String, Integer> result = new HashMap<>(local.getAllPresent(ids));
+        localLookups.increment(result.size());
+        List<String> missing = ids.stream().filter(id -> !result.containsKey(id)).toList();
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        try {
+            List<Object> values = redisTemplate.opsForHash().multiGet(KEY, new ArrayList<>(missing));
+            List<String> notLoaded = new ArrayList<>();
+            for (int i = 0; i < missing.size(); i++) {
+                Object value = values.get(i);
+                if (value != null) {
+                    result.put(missing.get(i), Integer.parseInt(value.toString()));
+                    local.put(missing.get(i), Integer.parseInt(value.toString()));
+                } else {
+                    notLoaded.add(missing.get(i));
+                }
+            }
+            redisLookups.increment(missing.size() - notLoaded.size());
+            if (!notLoaded.isEmpty()) {
+                dbLookups.increment(notLoaded.size());
+                Map<String, Integer> loaded = loadFromDb(notLoaded);
+                redisTemplate.execute(loadScript, List.of(KEY), pairs(loaded));
+                result.putAll(loaded);
+            }
+        } catch (Exception e) {
+            log.warn("Stock snapshot unavailable, reading stock from database: {}", e.getMessage());
+            dbLookups.increment(missing.size());
+            result.putAll(loadFromDb(missing));
+        }
+        return result;
+    }
+
+    /**
+     * Cộng thay đổi tồn kho khả dụng (theo variant) vào snapshot của product tương ứng
+     *
+     * @param availableDeltas variantId -> delta available (âm khi giữ chỗ/xuất kho)
+     */
+    public void applyDelta(Map<String, Integer> availableDeltas) {
+        if (!enabled || availableDeltas.isEmpty()) {
+            return;
+        }
+        try {
+            Map<String, String> products = productOfVariant.getAll(availableDeltas.keySet(), this::loadProductIds);
+            Map<String, Integer> productDeltas = new HashMap<>();
+            availableDeltas.forEach((variantId, delta) -> {
+                String productId = products.get(variantId);
+                if (productId != null && delta != 0) {
+                    productDeltas.merge(productId, delta, Integer::sum);
+                }
+            });
+            if (productDeltas.isEmpty()) {
+                return;
+            }
+            redisTemplate.execute(applyScript, List.of(KEY), pairs(productDeltas));
+            local.invalidateAll(productDeltas.keySet());
+        } catch (Exception e) {
+            // Reconciliation sẽ sửa lại giá trị
+            log.warn("Failed to apply stock delta to snapshot: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Bỏ product khỏi snapshot (ví dụ thêm variant/inventory mới), lần đọc sau nạp lại từ DB
+     */
+    public void evictVariant(String variantId) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            String productId = productOfVariant.getAll(List.of(variantId), this::loadProductIds).get(variantId);
+            if (productId != null) {
+                redisTemplate.opsForHash().delete(KEY, productId);
+                local.invalidate(productId);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to evict stock snapshot for variant {}: {}", variantId, e.getMessage());
+        }
+    }
+
+    /**
+     * So snapshot với DB theo từng lô và sửa các product bị lệch
+     */
+    @Scheduled(fixedDelayString = "${inventory.stock-snapshot.reconcile-interval-ms:300000}",
+            initialDelayString = "${inventory.stock-snapshot.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        if (!enabled || !reconciling.compareAndSet(false, true)) {
+            return;
+        }
+        long corrected = 0;
+        try (Cursor<Map.Entry<Object, Object>> cursor = redisTemplate.opsForHash()
+                .scan(KEY, ScanOptions.scanOptions().count(reconcileBatchSize).build())) {
+            Map<String, String> batch = new HashMap<>();
+            while (cursor.hasNext()) {
+                Map.Entry<Object, Object> entry = cursor.next();
+                batch.put(entry.getKey().toString(), entry.getValue().toString());
+                if (batch.size() >= reconcileBatchSize) {
+                    corrected += reconcileBatch(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                corrected += reconcileBatch(batch);
+            }
+            if (corrected > 0) {
+                log.info("Stock snapshot reconciliation corrected {} products", corrected);
+            }
+        } catch (Exception e) {
+            log.warn("Stock snapshot reconciliation failed: {}", e.getMessage());
+        } finally {
+            reconciling.set(false);
+        }
+    }
+
+    private long reconcileBatch(Map<String, String> snapshotValues) {
+        // DB phải nhận hết delta đã có trong snapshot trước khi so sánh
+        stockReservationReconciler.reconcileNow();
+        Map<String, Integer> dbValues = loadFromDb(snapshotValues.keySet());
+
+        List<String> args = new ArrayList<>(snapshotValues.size() * 3);
+        snapshotValues.forEach((productId, snapshotValue) -> {
+            args.add(productId);
+            args.add(snapshotValue);
+            args.add(String.valueOf(dbValues.getOrDefault(productId, 0)));
+        });
+        Long result = redisTemplate.execute(reconcileScript, List.of(KEY), args.toArray());
+        long corrected = result != null ? result : 0;
+        if (corrected > 0) {
+            corrections.increment(corrected);
+            local.invalidateAll(snapshotValues.keySet());
+        }
+        return corrected;
+    }
+
+    private Map<String, Integer> loadFromDb(Collection<String> productIds) {
+        Map<String, Integer> values = new HashMap<>();
+        productIds.forEach(productId -> values.put(productId, 0));
+        inventoryStockRepository.countTotalAvailableStockByProductIds(new ArrayList<>(productIds))
+                .forEach(row -> values.put((String) row[0], ((Long) row[1]).intValue()));
+        return values;
+    }
+
+    private Map<String, String> loadProductIds(Set<? extends String> variantIds) {
+        Map<String, String> products = new HashMap<>();
+        productVariantRepository.findProductIdsByVariantIds(new ArrayList<>(variantIds))
+                .forEach(row -> products.put((String) row[0], (String) row[1]));
+        return products;
+    }
+
+    private static Object[] pairs(Map<String, Integer> values) {
+        Object[] args = new Object[values.size() * 2];
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : values.entrySet()) {
+            args[i++] = entry.getKey();
+            args[i++] = String.valueOf(entry.getValue());
+        }
+        return args;
+    }
+
+    private Counter lookups(MeterRegistry registry, String source) {
+        return Counter.builder("inventory.stock-snapshot.lookups")
+                .tag("source", source)
+                .register(registry);
+    }
+
+    private static RedisScript<Long> script(String path) {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource(path)));
+        script.setResultType(Long.class);
+        return script;
+    }
+}
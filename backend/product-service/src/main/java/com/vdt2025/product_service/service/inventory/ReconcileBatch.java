@@ -0,0 +1,24 @@
+package com.vdt2025.product_service.service.inventory;
+
+import java.util.Map;
+
+/**
+ * Một lô delta chờ đồng bộ từ reservation engine xuống bảng inventory_stocks
+ *
+ * @param shard          shard chứa lô delta
+ * @param batchId        ID duy nhất của lô, dùng để đảm bảo idempotent khi apply xuống DB
+ * @param reservedDeltas variantId -> delta cộng vào quantity_reserved
+ * @param onHandDeltas   variantId -> delta cộng vào quantity_on_hand
+ */
+public record ReconcileBatch(
+        int shard,
+        String batchId,
+        Map<String, Integer> reservedDeltas,
+        Map<String, Integer> onHandDeltas
+) {
+
+    public boolean isEmpty() {
+        return reservedDeltas.values().stream().allMatch(d -> d == 0)
+                && onHandDeltas.values().stream().allMatch(d -> d == 0);
+    }
+}
@@ -0,0 +1,180 @@
+package com.vdt2025.product_service.service.inventory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Reservation engine lưu counter trên Redis, mọi thao tác là một Lua script nguyên tử.
+ *
+ * Layout key của mỗi shard (hash tag {s} giúp các key của một shard nằm cùng slot khi chạy cluster):
+ * - inventory:{s}:levels     a:<variantId> = available, r:<variantId> = reserved
+ * - inventory:{s}:pending    delta chưa đồng bộ xuống DB (r:/h:<variantId>)
+ * - inventory:{s}:processing lô delta đang được reconciler apply
+ * - inventory:{s}:epoch      epoch của từng variant (xem {@link AbstractStockReservationEngine})
+ *
+ * Counter và journal được Redis persist nên restart product-service không làm mất phần giữ chỗ
+ * chưa đồng bộ xuống DB.
+ */
+@Component
+@ConditionalOnProperty(name = "inventory.reservation.engine", havingValue = "redis", matchIfMissing = true)
+@Slf4j
+public class RedisStockReservationEngine extends AbstractStockReservationEngine {
+
+    private static final String KEY_PREFIX = "inventory:{";
+    private static final String BATCH_FIELD = "__batch";
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisScript<List> mutateScript = script("redis/inventory-mutate.lua", List.class);
+    private final RedisScript<Long> loadScript = script("redis/inventory-load.lua", Long.class);
+    private final RedisScript<Long> evictScript = script("redis/inventory-evict.lua", Long.class);
+    private final RedisScript<List> beginReconcileScript = script("redis/inventory-reconcile-begin.lua", List.class);
+    private final RedisScript<Long> completeReconcileScript = script("redis/inventory-reconcile-complete.lua", Long.class);
+
+    public RedisStockReservationEngine(
+            StringRedisTemplate redisTemplate,
+            StockLevelLoader loader,
+            @Value("${inventory.reservation.shards:16}") int shardCount,
+            @Value("${inventory.reservation.load-attempts:3}") int maxLoadAttempts) {
+        super(loader, shardCount, maxLoadAttempts);
+        this.redisTemplate = redisTemplate;
+        log.info("Redis stock reservation engine configured with {} shards", shardCount);
+    }
+
+    @Override
+    protected ShardResult mutate(int shard, Operation operation, boolean force, Map<String, Integer> quantities) {
+        List<String> variantIds = new ArrayList<>(quantities.keySet());
+        Object[] args = new Object[2 + variantIds.size() * 2];
+        args[0] = operation.name();
+        args[1] = force ? "1" : "0";
+        for (int i = 0; i < variantIds.size(); i++) {
+            args[2 + i * 2] = variantIds.get(i);
+            args[3 + i * 2] = String.valueOf(quantities.get(variantIds.get(i)));
+        }
+
+        List<?> result = redisTemplate.execute(mutateScript,
+                List.of(key(shard, "levels"), key(shard, "pending")), args);
+
+        long status = toLong(result.get(0));
+        if (status == -1) {
+            return new ShardResult(Status.NOT_LOADED, variantIds.get((int) toLong(result.get(1))), Map.of());
+        }
+        if (status == 0) {
+            return new ShardResult(Status.REJECTED, variantIds.get((int) toLong(result.get(1))), Map.of());
+        }
+
+        Map<String, StockLevel> before = new HashMap<>();
+        for (int i = 0; i < variantIds.size(); i++) {
+            int available = (int) toLong(result.get(2 + i * 2));
+            int reserved = (int) toLong(result.get(3 + i * 2));
+            before.put(variantIds.get(i), new StockLevel(available + reserved, reserved));
+        }
+        return new ShardResult(Status.APPLIED, null, before);
+    }
+
+    @Override
+    protected long readEpoch(int shard, String variantId) {
+        Object epoch = redisTemplate.opsForHash().get(key(shard, "epoch"), variantId);
+        return epoch == null ? 0L : Long.parseLong(epoch.toString());
+    }
+
+    @Override
+    protected String processingBatchId(int shard) {
+        Object batchId = redisTemplate.opsForHash().get(key(shard, "processing"), BATCH_FIELD);
+        return batchId == null ? null : batchId.toString();
+    }
+
+    @Override
+    protected void load(int shard, String variantId, long expectedEpoch,
+                        String expectedBatchId, boolean batchApplied, StockLevel dbLevel) {
+        Long loaded = redisTemplate.execute(loadScript,
+                List.of(key(shard, "levels"), key(shard, "pending"), key(shard, "processing"), key(shard, "epoch")),
+                variantId, String.valueOf(expectedEpoch),
+                String.valueOf(dbLevel.onHand()), String.valueOf(dbLevel.reserved()),
+                expectedBatchId == null ? "" : expectedBatchId, batchApplied ? "1" : "0");
+        if (loaded == null || loaded == 0) {
+            log.debug("Stock counter load for variant {} skipped: epoch or processing batch changed", variantId);
+        }
+    }
+
+    @Override
+    protected StockLevel readLevel(int shard, String variantId) {
+        List<Object> values = redisTemplate.opsForHash()
+                .multiGet(key(shard, "levels"), List.of("a:" + variantId, "r:" + variantId));
+        if (values.get(0) == null || values.get(1) == null) {
+            return null;
+        }
+        int available = Integer.parseInt(values.get(0).toString());
+        int reserved = Integer.parseInt(values.get(1).toString());
+        return new StockLevel(available + reserved, reserved);
+    }
+
+    @Override
+    protected void evict(int shard, String variantId) {
+        redisTemplate.execute(evictScript, List.of(key(shard, "levels"), key(shard, "epoch")), variantId);
+    }
+
+    @Override
+    public List<ReconcileBatch> beginReconcile() {
+        List<ReconcileBatch> batches = new ArrayList<>();
+        for (int shard = 0; shard < shardCount(); shard++) {
+            List<?> entries = redisTemplate.execute(beginReconcileScript,
+                    List.of(key(shard, "pending"), key(shard, "processing")),
+                    UUID.randomUUID().toString());
+            if (entries == null || entries.isEmpty()) {
+                continue;
+            }
+
+            String batchId = null;
+            Map<String, Integer> reservedDeltas = new HashMap<>();
+            Map<String, Integer> onHandDeltas = new HashMap<>();
+            for (int i = 0; i + 1 < entries.size(); i += 2) {
+                String field = entries.get(i).toString();
+                String value = entries.get(i + 1).toString();
+                if (BATCH_FIELD.equals(field)) {
+                    batchId = value;
+                } else if (field.startsWith("r:")) {
+                    reservedDeltas.put(field.substring(2), Integer.parseInt(value));
+                } else if (field.startsWith("h:")) {
+                    onHandDeltas.put(field.substring(2), Integer.parseInt(value));
+                }
+            }
+            batches.add(new ReconcileBatch(shard, batchId, reservedDeltas, onHandDeltas));
+        }
+        return batches;
+    }
+
+    @Override
+    public void completeReconcile(ReconcileBatch batch) {
+        redisTemplate.execute(completeReconcileScript,
+                List.of(key(batch.shard(), "processing"), key(batch.shard(), "epoch")),
+                batch.batchId());
+    }
+
+    private static String key(int shard, String name) {
+        return KEY_PREFIX + shard + "}:" + name;
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number number ? number.longValue() : Long.parseLong(value.toString());
+    }
+
+    private static <T> RedisScript<T> script(String path, Class<T> resultType) {
+        DefaultRedisScript<T> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource(path)));
+        script.setResultType(resultType);
+        return script;
+    }
+}
@@ -0,0 +1,14 @@
+package com.vdt2025.product_service.service.inventory;
+
+/**
+ * Snapshot tồn kho của một variant tại thời điểm thao tác trên reservation engine
+ *
+ * @param onHand   tổng số lượng thực tế trong kho
+ * @param reserved số lượng đang được giữ chỗ
+ */
+public record StockLevel(int onHand, int reserved) {
+
+    public int available() {
+        return onHand - reserved;
+    }
+}
@@ -0,0 +1,55 @@
+package com.vdt2025.product_service.service.inventory;
+
+import com.vdt2025.product_service.repository.InventoryReconcileBatchRepository;
+import com.vdt2025.product_service.repository.InventoryStockRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Đọc onHand/reserved đã commit trong DB để nạp counter cho reservation engine.
+ * Luôn chạy trong transaction riêng để không bị ảnh hưởng bởi snapshot của transaction gọi tới
+ * (REPEATABLE_READ có thể trả về dữ liệu cũ hơn lần reconcile gần nhất).
+ *
+ * Tồn kho và marker của lô đang processing được đọc trong cùng một snapshot: reconciler ghi UPDATE
+ * tồn kho và marker trong cùng transaction, nên snapshot hoặc thấy cả hai hoặc không thấy gì.
+ * Nhờ đó engine biết chắc giá trị DB đã bao gồm delta của lô processing hay chưa.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class StockLevelLoader {
+
+    InventoryStockRepository inventoryStockRepository;
+    InventoryReconcileBatchRepository reconcileBatchRepository;
+
+    /**
+     * Kết quả đọc DB
+     *
+     * @param levels       variantId -> onHand/reserved đã commit
+     * @param batchApplied lô processing truyền vào đã được apply trong snapshot này hay chưa
+     */
+    public record Loaded(Map<String, StockLevel> levels, boolean batchApplied) {
+    }
+
+    /**
+     * @param processingBatchId lô đang processing của shard tại thời điểm đọc (null nếu không có)
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW, isolation = Isolation.REPEATABLE_READ, readOnly = true)
+    public Loaded load(Collection<String> variantIds, String processingBatchId) {
+        boolean batchApplied = processingBatchId != null && reconcileBatchRepository.existsById(processingBatchId);
+        Map<String, StockLevel> levels = new HashMap<>();
+        for (Object[] row : inventoryStockRepository.findStockLevelsByVariantIds(variantIds)) {
+            levels.put((String) row[0], new StockLevel((Integer) row[1], (Integer) row[2]));
+        }
+        return new Loaded(levels, batchApplied);
+    }
+}
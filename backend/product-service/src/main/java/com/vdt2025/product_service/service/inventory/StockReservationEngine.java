@@ -0,0 +1,83 @@
+package com.vdt2025.product_service.service.inventory;
+
+import com.vdt2025.product_service.exception.AppException;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reservation engine giữ counter tồn kho (available/reserved) của từng variant
+ * trong store được cập nhật nguyên tử, thay cho SELECT FOR UPDATE trên inventory_stocks.
+ *
+ * - Counter được chia theo shard (hash của variantId), mỗi thao tác là O(1) trên mỗi variant
+ * - Counter được nạp lazy từ DB ở lần truy cập đầu tiên
+ * - Mọi thay đổi đồng thời được ghi vào journal delta trong cùng thao tác nguyên tử,
+ *   {@link StockReservationReconciler} sẽ apply journal này xuống DB bất đồng bộ
+ *
+ * Các method nhận Map variantId -> quantity và áp dụng theo kiểu all-or-nothing.
+ * Giá trị trả về là trạng thái TRƯỚC khi thay đổi của từng variant (dùng cho audit log).
+ */
+public interface StockReservationEngine {
+
+    /**
+     * Giữ chỗ hàng: available -= quantity, reserved += quantity
+     *
+     * @throws AppException với ErrorCode.OUT_OF_STOCK nếu không đủ hàng
+     * @throws AppException với ErrorCode.INVENTORY_STOCK_NOT_FOUND nếu không tìm thấy inventory
+     */
+    Map<String, StockLevel> reserve(Map<String, Integer> quantities);
+
+    /**
+     * Xả hàng giữ chỗ: available += quantity, reserved -= quantity
+     *
+     * @throws AppException với ErrorCode.INVALID_INVENTORY_OPERATION nếu reserved không đủ
+     */
+    Map<String, StockLevel> release(Map<String, Integer> quantities);
+
+    /**
+     * Xác nhận bán: onHand -= quantity, reserved -= quantity (available giữ nguyên)
+     *
+     * @throws AppException với ErrorCode.INVALID_INVENTORY_OPERATION nếu reserved không đủ
+     */
+    Map<String, StockLevel> confirm(Map<String, Integer> quantities);
+
+    /**
+     * Hoàn tác confirm (khi transaction gọi confirm bị rollback): onHand += quantity, reserved += quantity
+     */
+    Map<String, StockLevel> cancelConfirm(Map<String, Integer> quantities);
+
+    /**
+     * Cộng delta (âm hoặc dương) vào onHand
+     *
+     * @throws AppException với ErrorCode.INSUFFICIENT_STOCK nếu available sau khi trừ bị âm
+     */
+    StockLevel adjustOnHand(String variantId, int delta);
+
+    /**
+     * Set cứng onHand về giá trị mới
+     *
+     * @throws AppException với ErrorCode.INSUFFICIENT_STOCK_FOR_RESERVED nếu newOnHand < reserved
+     */
+    StockLevel setOnHand(String variantId, int newOnHand);
+
+    /**
+     * Lấy trạng thái tồn kho realtime (bao gồm các delta chưa đồng bộ xuống DB)
+     */
+    StockLevel getStockLevel(String variantId);
+
+    /**
+     * Bỏ counter của variant khỏi engine, lần truy cập sau sẽ nạp lại từ DB
+     */
+    void evict(String variantId);
+
+    /**
+     * Lấy các lô delta cần đồng bộ xuống DB.
+     * Lô chưa được complete (ví dụ do crash) sẽ được trả lại ở lần gọi sau.
+     */
+    List<ReconcileBatch> beginReconcile();
+
+    /**
+     * Đánh dấu lô delta đã được apply xuống DB
+     */
+    void completeReconcile(ReconcileBatch batch);
+}
@@ -0,0 +1,169 @@
+package com.vdt2025.product_service.service.inventory;
+
+import com.vdt2025.product_service.entity.InventoryReconcileBatch;
+import com.vdt2025.product_service.repository.InventoryReconcileBatchRepository;
+import com.vdt2025.product_service.repository.InventoryStockRepository;
+import com.vdt2025.product_service.service.search.ElasticsearchSyncService;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Đồng bộ bất đồng bộ journal delta của {@link StockReservationEngine} xuống bảng inventory_stocks
+ *
+ * Flow mỗi chu kỳ:
+ * 1. engine.beginReconcile(): chuyển journal pending của từng shard sang processing
+ * 2. Apply delta gộp theo variant bằng UPDATE cộng dồn, ghi marker batch_id trong cùng transaction
+ * 3. engine.completeReconcile(): xóa lô processing
+ *
+ * Nếu instance chết giữa bước 2 và 3, lô processing được trả lại ở chu kỳ sau và marker
+ * giúp bỏ qua lô đã apply, nên delta không bao giờ bị apply hai lần.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class StockReservationReconciler {
+
+    StockReservationEngine reservationEngine;
+    InventoryStockRepository inventoryStockRepository;
+    InventoryReconcileBatchRepository reconcileBatchRepository;
+    ElasticsearchSyncService elasticsearchSyncService;
+
+    @Autowired
+    @Lazy
+    @NonFinal
+    StockReservationReconciler self;
+
+    AtomicBoolean running = new AtomicBoolean(false);
+
+    @Scheduled(fixedDelayString = "${inventory.reservation.reconcile-interval-ms:1000}")
+    public void scheduledReconcile() {
+        reconcileNow();
+    }
+
+    /**
+     * Đẩy toàn bộ delta đang chờ xuống DB
+     *
+     * @return số lô đã apply
+     */
+    public int reconcileNow() {
+        if (!running.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            int applied = 0;
+            for (ReconcileBatch batch : reservationEngine.beginReconcile()) {
+                try {
+                    if (batch.isEmpty()) {
+                        applied++;
+                    } else if (self.applyBatch(batch)) {
+                        applied++;
+                        refreshSearchStock(batch);
+                    }
+                    reservationEngine.completeReconcile(batch);
+                } catch (DataIntegrityViolationException e) {
+                    // Instance khác đã apply lô này, để instance đó complete
+                    log.debug("Reconcile batch {} already applied by another instance", batch.batchId());
+                } catch (Exception e) {
+                    log.error("Failed to reconcile batch {} of shard {}: {}",
+                            batch.batchId(), batch.shard(), e.getMessage(), e);
+                }
+            }
+            if (applied > 0) {
+                log.debug("Reconciled {} stock reservation batches", applied);
+            }
+            return applied;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Apply một lô delta xuống DB
+     *
+     * @return false nếu lô đã được apply trước đó
+     */
+    @Transactional
+    public boolean applyBatch(ReconcileBatch batch) {
+        if (reconcileBatchRepository.existsById(batch.batchId())) {
+            log.info("Reconcile batch {} was already applied, skipping", batch.batchId());
+            return false;
+        }
+
+        Set<String> variantIds = new HashSet<>(batch.reservedDeltas().keySet());
+        variantIds.addAll(batch.onHandDeltas().keySet());
+
+        // Sort để các instance luôn lock row theo cùng thứ tự
+        variantIds.stream().sorted().forEach(variantId -> {
+            int onHandDelta = batch.onHandDeltas().getOrDefault(variantId, 0);
+            int reservedDelta = batch.reservedDeltas().getOrDefault(variantId, 0);
+            if (onHandDelta == 0 && reservedDelta == 0) {
+                return;
+            }
+            int updated = inventoryStockRepository.applyReservationDelta(variantId, onHandDelta, reservedDelta);
+            if (updated == 0) {
+                log.warn("Inventory stock not found while reconciling variant {}: onHand {}, reserved {}",
+                        variantId, onHandDelta, reservedDelta);
+            }
+        });
+
+        reconcileBatchRepository.saveAndFlush(InventoryReconcileBatch.builder()
+                .batchId(batch.batchId())
+                .shard(batch.shard())
+                .variantCount(variantIds.size())
+                .build());
+        return true;
+    }
+
+    /**
+     * Partial update tồn kho trong Elasticsearch cho các variant có tồn kho khả dụng thay đổi
+     * (reserve rồi confirm trong cùng lô thì available không đổi)
+     */
+    private void refreshSearchStock(ReconcileBatch batch) {
+        Set<String> variantIds = new HashSet<>(batch.reservedDeltas().keySet());
+        variantIds.addAll(batch.onHandDeltas().keySet());
+        List<String> changed = variantIds.stream()
+                .filter(variantId -> batch.onHandDeltas().getOrDefault(variantId, 0)
+                        - batch.reservedDeltas().getOrDefault(variantId, 0) != 0)
+                .toList();
+        try {
+            elasticsearchSyncService.refreshVariantStock(changed);
+        } catch (Exception e) {
+            log.warn("Failed to queue search stock update for batch {}: {}", batch.batchId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Dọn marker cũ hơn 1 ngày - chạy mỗi giờ
+     */
+    @Scheduled(fixedDelay = 3600000, initialDelay = 3600000)
+    @Transactional
+    public void cleanupAppliedMarkers() {
+        int deleted = reconcileBatchRepository.deleteAppliedBefore(LocalDateTime.now().minusDays(1));
+        if (deleted > 0) {
+            log.info("Deleted {} applied reconcile batch markers", deleted);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        log.info("Flushing pending stock reservations before shutdown");
+        reconcileNow();
+    }
+}
@@ -0,0 +1,155 @@
+package com.vdt2025.product_service.service.inventory;
+
+import com.vdt2025.common_dto.dto.StockReservationCommand;
+import com.vdt2025.common_dto.dto.StockReservationResult;
+import com.vdt2025.product_service.dto.request.inventory.InventoryChangeRequest;
+import com.vdt2025.product_service.entity.InventoryReservation;
+import com.vdt2025.product_service.exception.AppException;
+import com.vdt2025.product_service.repository.InventoryReservationRepository;
+import com.vdt2025.product_service.service.InventoryService;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Xử lý lệnh giữ hàng của saga đặt hàng (idempotent theo reservationId)
+ *
+ * - Reserve và marker RESERVED ghi trong cùng một transaction: lệnh gửi lại chỉ đọc marker và trả kết quả cũ
+ * - Hết hàng / variant không hợp lệ (AppException) thì ghi marker REJECTED, không retry
+ * - Lỗi khác (DB, Redis) ném ra ngoài để RabbitMQ gửi lại lệnh
+ * - order-service hủy lần giữ hàng quá hạn qua {@link #cancel}: xả hàng nếu đã RESERVED, hoặc ghi marker
+ *   REJECTED trước để lệnh đến muộn không giữ hàng nữa
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class StockReservationSagaHandler {
+
+    private static final String CANCELLED_REASON = "RESERVATION_CANCELLED";
+    private static final String INSERT_MARKER =
+            "INSERT INTO inventory_reservations (reservation_id, status, reason, processed_at) VALUES (?, ?, ?, ?)";
+
+    InventoryService inventoryService;
+    InventoryReservationRepository reservationRepository;
+    JdbcTemplate jdbcTemplate;
+    TransactionTemplate transactionTemplate;
+
+    public StockReservationResult handle(StockReservationCommand command) {
+        String reservationId = command.getReservationId();
+        InventoryReservation existing = reservationRepository.findById(reservationId).orElse(null);
+        if (existing != null) {
+            log.info("Reservation {} was already processed ({}), replaying result", reservationId, existing.getStatus());
+            return toResult(existing);
+        }
+
+        List<InventoryChangeRequest> requests = command.getItems().stream()
+                .map(item -> InventoryChangeRequest.builder()
+                        .variantId(item.getVariantId())
+                        .quantity(item.getQuantity())
+                        .build())
+                .toList();
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                inventoryService.reserveStockBatch(requests);
+                insertMarker(reservationId, InventoryReservation.Status.RESERVED, null);
+            });
+            log.info("Reserved stock for reservation {}", reservationId);
+            return result(reservationId, true, null);
+        } catch (DuplicateKeyException e) {
+            // Instance khác xử lý cùng lệnh đồng thời; transaction này đã rollback (kể cả reservation engine)
+            return replay(reservationId, e);
+        } catch (AppException e) {
+            log.warn("Rejected reservation {}: {}", reservationId, e.getErrorCode());
+            try {
+                insertMarker(reservationId, InventoryReservation.Status.REJECTED, e.getErrorCode().name());
+            } catch (DuplicateKeyException duplicate) {
+                return replay(reservationId, duplicate);
+            }
+            return result(reservationId, false, e.getErrorCode().name());
+        }
+    }
+
+    /**
+     * Hủy một lần giữ hàng (idempotent theo reservationId)
+     *
+     * @param items các variant của lần giữ hàng (marker không lưu item)
+     * @return trạng thái marker trước khi hủy, null nếu lệnh giữ hàng chưa từng được xử lý
+     */
+    public InventoryReservation.Status cancel(String reservationId, List<InventoryChangeRequest> items) {
+        try {
+            return transactionTemplate.execute(status -> cancelLocked(reservationId, items));
+        } catch (DuplicateKeyException e) {
+            // Lệnh giữ hàng vừa được xử lý đồng thời, đọc lại marker đã commit
+            return transactionTemplate.execute(status -> cancelLocked(reservationId, items));
+        }
+    }
+
+    private InventoryReservation.Status cancelLocked(String reservationId, List<InventoryChangeRequest> items) {
+        InventoryReservation reservation = reservationRepository.findByIdForUpdate(reservationId).orElse(null);
+        if (reservation == null) {
+            insertMarker(reservationId, InventoryReservation.Status.REJECTED, CANCELLED_REASON);
+            log.info("Cancelled reservation {} before it was processed", reservationId);
+            return null;
+        }
+        InventoryReservation.Status previous = reservation.getStatus();
+        if (previous == InventoryReservation.Status.RESERVED) {
+            inventoryService.releaseReservationBatch(items);
+            reservation.setStatus(InventoryReservation.Status.RELEASED);
+            reservation.setReason(CANCELLED_REASON);
+            reservation.setProcessedAt(LocalDateTime.now());
+            reservationRepository.save(reservation);
+            log.info("Released stock of cancelled reservation {}", reservationId);
+        }
+        return previous;
+    }
+
+    /**
+     * Dọn marker cũ hơn 7 ngày (lệnh gửi lại chỉ xảy ra trong vài phút) - chạy mỗi giờ
+     */
+    @Scheduled(fixedDelay = 3600000, initialDelay = 3600000)
+    @Transactional
+    public void cleanupProcessedMarkers() {
+        int deleted = reservationRepository.deleteProcessedBefore(LocalDateTime.now().minusDays(7));
+        if (deleted > 0) {
+            log.info("Deleted {} processed reservation markers", deleted);
+        }
+    }
+
+    private void insertMarker(String reservationId, InventoryReservation.Status status, String reason) {
+        jdbcTemplate.update(INSERT_MARKER, reservationId, status.name(), reason, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    private StockReservationResult replay(String reservationId, DuplicateKeyException cause) {
+        return reservationRepository.findById(reservationId)
+                .map(this::toResult)
+                .orElseThrow(() -> cause);
+    }
+
+    private StockReservationResult toResult(InventoryReservation reservation) {
+        return result(reservation.getReservationId(),
+                reservation.getStatus() == InventoryReservation.Status.RESERVED,
+                reservation.getReason());
+    }
+
+    private StockReservationResult result(String reservationId, boolean success, String reason) {
+        return StockReservationResult.builder()
+                .reservationId(reservationId)
+                .success(success)
+                .reason(reason)
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+}
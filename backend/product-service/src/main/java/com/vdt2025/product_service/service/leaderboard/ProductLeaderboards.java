@@ -0,0 +1,329 @@
+package com.vdt2025.product_service.service.leaderboard;
+
+import com.vdt2025.product_service.document.ProductDocument;
+import com.vdt2025.product_service.repository.ProductRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Leaderboard sản phẩm (bán chạy, đánh giá cao, mới nhất) trên Redis sorted set
+ *
+ * - Mỗi metric có sorted set toàn sàn, theo store và theo category:
+ *   leaderboard:{lb}:{sold|rating|new}:{all|store:<id>|category:<id>}, hash meta giữ store/category của product
+ *   (hash tag {lb} giữ mọi key cùng slot vì script tính key phạm vi từ meta)
+ * - Cập nhật tăng dần, luôn ghi giá trị tuyệt đối nên lặp lại không gây sai lệch:
+ *   index/xóa product từ ProductIndexingPipeline, sold count sau mỗi lần flush của SoldCountAggregator,
+ *   rating sau khi RatingServiceImpl cập nhật thống kê
+ * - Rebuild hàng đêm từ DB ghi đè điểm và xóa product không còn bán, sửa các lệch do event bị mất
+ * - {@link #top} chỉ phục vụ trong max-rank vị trí đầu, trả về empty khi chưa build hoặc Redis lỗi để caller
+ *   dùng lại truy vấn JPA
+ *
+ * Metrics: product.leaderboard.requests{result=hit|fallback}, product.leaderboard.rebuild
+ */
+@Component
+@Slf4j
+public class ProductLeaderboards {
+
+    private static final String PREFIX = "leaderboard:{lb}:";
+    private static final String META = PREFIX + "meta";
+    private static final String BUILT = PREFIX + "built";
+    private static final String REBUILD_LOCK = PREFIX + "rebuild-lock";
+
+    /**
+     * Metric xếp hạng và field tương ứng của Product (dùng để nhận biết request có sort mặc định)
+     */
+    public enum Metric {
+        SOLD("sold", "soldCount"),
+        RATING("rating", "averageRating"),
+        NEW("new", "createdAt");
+
+        private final String key;
+        private final String field;
+
+        Metric(String key, String field) {
+            this.key = key;
+            this.field = field;
+        }
+
+        public String field() {
+            return field;
+        }
+    }
+
+    /**
+     * Một trang leaderboard: product id theo thứ hạng và tổng số product trong phạm vi
+     */
+    public record Ranking(List<String> productIds, long total) {
+    }
+
+    private final StringRedisTemplate redisTemplate;
+    private final ProductRepository productRepository;
+
+    private final RedisScript<Long> upsertScript = script("redis/leaderboard-upsert.lua");
+    private final RedisScript<Long> statsScript = script("redis/leaderboard-stats.lua");
+    private final RedisScript<Long> removeScript = script("redis/leaderboard-remove.lua");
+
+    private final boolean enabled;
+    private final int maxRank;
+    private final int batchSize;
+
+    private final Counter hitCounter;
+    private final Counter fallbackCounter;
+    private final Timer rebuildTimer;
+
+    public ProductLeaderboards(StringRedisTemplate redisTemplate,
+                               ProductRepository productRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${leaderboard.enabled:true}") boolean enabled,
+                               @Value("${leaderboard.max-rank:1000}") int maxRank,
+                               @Value("${leaderboard.batch-size:500}") int batchSize) {
+        this.redisTemplate = redisTemplate;
+        this.productRepository = productRepository;
+        this.enabled = enabled;
+        this.maxRank = maxRank;
+        this.batchSize = batchSize;
+
+        this.hitCounter = requests(meterRegistry, "hit");
+        this.fallbackCounter = requests(meterRegistry, "fallback");
+        this.rebuildTimer = Timer.builder("product.leaderboard.rebuild")
+                .description("Time spent rebuilding product leaderboards from the database")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Lấy một trang của leaderboard
+     *
+     * @param storeId    lọc theo store (null = không lọc), không dùng cùng categoryId
+     * @param categoryId lọc theo category (null = không lọc)
+     * @param minScore   điểm tối thiểu (ví dụ rating >= 4.0), null = không giới hạn
+     * @return empty nếu leaderboard chưa sẵn sàng, trang vượt max-rank, lọc cả store lẫn category hoặc Redis lỗi
+     */
+    public Optional<Ranking> top(Metric metric, String storeId, String categoryId, Double minScore,
+                                 int page, int size) {
+        long offset = (long) page * size;
+        if (!enabled || (storeId != null && categoryId != null) || offset + size > maxRank) {
+            fallbackCounter.increment();
+            return Optional.empty();
+        }
+        try {
+            if (!Boolean.TRUE.equals(redisTemplate.hasKey(BUILT))) {
+                fallbackCounter.increment();
+                return Optional.empty();
+            }
+            String key = key(metric, storeId != null ? "store:" + storeId
+                    : categoryId != null ? "category:" + categoryId
+                    : "all");
+            double min = minScore != null ? minScore : Double.NEGATIVE_INFINITY;
+            Set<String> ids = redisTemplate.opsForZSet()
+                    .reverseRangeByScore(key, min, Double.POSITIVE_INFINITY, offset, size);
+            Long total = redisTemplate.opsForZSet().count(key, min, Double.POSITIVE_INFINITY);
+            hitCounter.increment();
+            return Optional.of(new Ranking(ids != null ? List.copyOf(ids) : List.of(), total != null ? total : 0));
+        } catch (Exception e) {
+            log.warn("Failed to read leaderboard {}: {}", metric, e.getMessage());
+            fallbackCounter.increment();
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Product vừa được index: đang bán thì ghi điểm, ngược lại xóa khỏi leaderboard
+     */
+    public void upsert(ProductDocument document) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            if (!document.isActive() || document.isDeleted()) {
+                redisTemplate.execute(removeScript, List.of(META), PREFIX, document.getId());
+                return;
+            }
+            redisTemplate.execute(upsertScript, List.of(META), upsertArgs(List.<Object[]>of(new Object[]{
+                    document.getId(), document.getStoreId(), document.getCategoryId(), document.getSoldCount(),
+                    document.getAverageRating(), document.getRatingCount(), document.getCreatedAt()
+            })));
+        } catch (Exception e) {
+            log.warn("Failed to update leaderboards for product {}: {}", document.getId(), e.getMessage());
+        }
+    }
+
+    public void remove(String productId) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            redisTemplate.execute(removeScript, List.of(META), PREFIX, productId);
+        } catch (Exception e) {
+            log.warn("Failed to remove product {} from leaderboards: {}", productId, e.getMessage());
+        }
+    }
+
+    /**
+     * Đọc lại soldCount/averageRating từ DB và cập nhật điểm (sau flush sold count, sau khi có đánh giá mới)
+     */
+    public void refreshStats(Collection<String> productIds) {
+        if (!enabled || productIds.isEmpty()) {
+            return;
+        }
+        try {
+            List<Object[]> rows = productRepository.findStatsByIds(productIds);
+            List<String> args = new ArrayList<>(1 + rows.size() * 3);
+            args.add(PREFIX);
+            for (Object[] row : rows) {
+                // [productId, soldCount, viewCount, averageRating, ratingCount]
+                args.add((String) row[0]);
+                args.add(String.valueOf(row[1] != null ? row[1] : 0));
+                args.add(ratingScore((Double) row[3], (Integer) row[4]));
+            }
+            redisTemplate.execute(statsScript, List.of(META), args.toArray());
+        } catch (Exception e) {
+            log.warn("Failed to refresh leaderboard stats for {} products: {}", productIds.size(), e.getMessage());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Async
+    public void buildIfMissing() {
+        if (enabled && !Boolean.TRUE.equals(redisTemplate.hasKey(BUILT))) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Rebuild từ DB: ghi đè điểm của mọi product đang bán rồi xóa product không còn bán.
+     * Lock trên Redis để chỉ một instance rebuild tại một thời điểm.
+     */
+    @Scheduled(cron = "${leaderboard.rebuild-cron:0 30 3 * * *}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        String owner = UUID.randomUUID().toString();
+        if (!Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(REBUILD_LOCK, owner, Duration.ofMinutes(30)))) {
+            log.debug("Leaderboard rebuild is running on another instance");
+            return;
+        }
+        try {
+            rebuildTimer.record(() -> {
+                Set<String> active = new HashSet<>();
+                String afterId = "";
+                while (true) {
+                    List<Object[]> rows = productRepository.findLeaderboardSourceAfter(afterId, PageRequest.of(0, batchSize));
+                    if (!rows.isEmpty()) {
+                        redisTemplate.execute(upsertScript, List.of(META), upsertArgs(rows));
+                        rows.forEach(row -> active.add((String) row[0]));
+                    }
+                    if (rows.size() < batchSize) {
+                        break;
+                    }
+                    afterId = (String) rows.get(rows.size() - 1)[0];
+                }
+
+                int removed = removeInactive(active);
+                redisTemplate.opsForValue().set(BUILT, LocalDateTime.now().toString());
+                log.info("Rebuilt product leaderboards: {} products, {} removed", active.size(), removed);
+            });
+        } catch (Exception e) {
+            log.error("Failed to rebuild product leaderboards: {}", e.getMessage(), e);
+        } finally {
+            if (owner.equals(redisTemplate.opsForValue().get(REBUILD_LOCK))) {
+                redisTemplate.delete(REBUILD_LOCK);
+            }
+        }
+    }
+
+    private int removeInactive(Set<String> active) {
+        List<String> stale = new ArrayList<>();
+        try (Cursor<Map.Entry<Object, Object>> cursor = redisTemplate.opsForHash()
+                .scan(META, ScanOptions.scanOptions().count(batchSize).build())) {
+            while (cursor.hasNext()) {
+                String productId = cursor.next().getKey().toString();
+                if (!active.contains(productId)) {
+                    stale.add(productId);
+                }
+            }
+        }
+        for (int from = 0; from < stale.size(); from += batchSize) {
+            List<String> args = new ArrayList<>();
+            args.add(PREFIX);
+            args.addAll(stale.subList(from, Math.min(from + batchSize, stale.size())));
+            redisTemplate.execute(removeScript, List.of(META), args.toArray());
+        }
+        return stale.size();
+    }
+
+    /**
+     * @param rows [productId, storeId, categoryId, soldCount, averageRating, ratingCount, createdAt]
+     */
+    private static Object[] upsertArgs(List<Object[]> rows) {
+        List<String> args = new ArrayList<>(1 + rows.size() * 6);
+        args.add(PREFIX);
+        for (Object[] row : rows) {
+            args.add((String) row[0]);
+            args.add(Objects.toString(row[1], ""));
+            args.add(Objects.toString(row[2], ""));
+            args.add(String.valueOf(row[3] != null ? row[3] : 0));
+            args.add(ratingScore((Double) row[4], (Integer) row[5]));
+            LocalDateTime createdAt = (LocalDateTime) row[6];
+            args.add(String.valueOf(createdAt != null
+                    ? createdAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                    : 0));
+        }
+        return args.toArray();
+    }
+
+    /**
+     * Product chưa có đánh giá không nằm trong leaderboard rating
+     */
+    private static String ratingScore(Double averageRating, Integer ratingCount) {
+        return averageRating != null && ratingCount != null && ratingCount > 0
+                ? String.valueOf(averageRating)
+                : "";
+    }
+
+    private static String key(Metric metric, String scope) {
+        return PREFIX + metric.key + ":" + scope;
+    }
+
+    private Counter requests(MeterRegistry registry, String result) {
+        return Counter.builder("product.leaderboard.requests")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static RedisScript<Long> script(String path) {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource(path)));
+        script.setResultType(Long.class);
+        return script;
+    }
+}
@@ -3,17 +3,23 @@ package com.vdt2025.product_service.service.search;
 import com.vdt2025.product_service.document.ProductDocument;
 import com.vdt2025.product_service.document.StoreDocument;
 import com.vdt2025.product_service.entity.Product;
+import com.vdt2025.product_service.entity.ProductSearchTombstone;
+import com.vdt2025.product_service.entity.SearchSyncState;
 import com.vdt2025.product_service.entity.Store;
+import com.vdt2025.product_service.repository.InventoryStockRepository;
 import com.vdt2025.product_service.repository.ProductRepository;
+import com.vdt2025.product_service.repository.ProductSearchTombstoneRepository;
 import com.vdt2025.product_service.repository.StoreRepository;
 import com.vdt2025.product_service.repository.elasticsearch.ProductSearchRepository;
 import com.vdt2025.product_service.repository.elasticsearch.StoreSearchRepository;
+import com.vdt2025.product_service.service.suggest.SuggestionService;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import lombok.experimental.NonFinal;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
@@ -25,15 +31,21 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
  * Service để đồng bộ data giữa PostgreSQL và Elasticsearch
  * Hỗ trợ:
- * - Initial sync khi khởi động
- * - Incremental sync theo schedule
+ * - Initial sync khi khởi động (chỉ khi index chưa hiện hành), reindex blue/green qua alias
+ * - Incremental sync theo watermark, có lease để chỉ một replica chạy
  * - Manual reindex
  */
 @Service
@@ -52,16 +64,44 @@ public class ElasticsearchSyncService {
     StoreSearchRepository storeSearchRepository;
     StoreIndexMapper storeIndexMapper;
 
+    // Incremental sync / reindex dependencies
+    SearchSyncCheckpoint syncCheckpoint;
+    SearchIndexManager searchIndexManager;
+    ProductSearchTombstoneRepository tombstoneRepository;
+    InventoryStockRepository inventoryStockRepository;
+    ProductSearchResultCache searchResultCache;
+    SuggestionService suggestionService;
+
     @Autowired
     @Lazy
     @NonFinal
     ElasticsearchSyncService self;
 
+    // Pipeline phụ thuộc ngược lại service này
+    @Autowired
+    @Lazy
+    @NonFinal
+    ProductIndexingPipeline indexingPipeline;
+
+    @Value("${search.sync.incremental.batch-size:200}")
+    @NonFinal
+    int incrementalBatchSize;
+
+    @Value("${search.reindex.batch-size:500}")
+    @NonFinal
+    int reindexBatchSize;
+
+    @Value("${search.sync.incremental.safety-window-seconds:30}")
+    @NonFinal
+    long incrementalSafetyWindowSeconds;
+
     AtomicBoolean isSyncing = new AtomicBoolean(false);
-    static final int BATCH_SIZE = 50; // Smaller batch size to avoid memory issues
+    static final String PRODUCT_SYNC = "products";
+    static final LocalDateTime WATERMARK_ORIGIN = LocalDateTime.of(1970, 1, 1, 0, 0);
 
     /**
-     * Auto-sync khi application khởi động - LUÔN reindex để đảm bảo dữ liệu mới nhất
+     * Khi khởi động: chỉ rebuild index khi mapping/settings đã đổi hoặc chưa từng sync,
+     * ngược lại index hiện tại vẫn phục vụ search và chỉ cần bắt kịp thay đổi
      */
     @EventListener(ApplicationReadyEvent.class)
     @Async("elasticsearchTaskExecutor")
@@ -72,19 +112,24 @@ public class ElasticsearchSyncService {
             return;
         }
 
-        log.info("Application started. Starting automatic Elasticsearch reindex...");
-        
-        // Luôn reindex products khi khởi động
+        log.info("Application started. Checking Elasticsearch indices...");
+
         reindexProductsOnStartup();
-        
-        // Luôn reindex stores khi khởi động
+
         reindexStoresOnStartup();
     }
     
     /**
-     * Reindex products on startup - luôn thực hiện để đảm bảo dữ liệu mới nhất
+     * Product index còn hiện hành (cùng fingerprint, đã có watermark) thì chỉ chạy incremental sync
      */
     private void reindexProductsOnStartup() {
+        if (searchIndexManager.isCurrent(ProductDocument.class)
+                && syncCheckpoint.load(PRODUCT_SYNC).getWatermarkAt() != null) {
+            log.info("Product index is current. Running incremental sync instead of full reindex.");
+            incrementalSync();
+            return;
+        }
+
         long dbCount = productRepository.count();
         log.info("Starting product reindex. Database has {} products", dbCount);
         
@@ -96,11 +141,16 @@ public class ElasticsearchSyncService {
     }
     
     /**
-     * Reindex stores on startup - luôn thực hiện để đảm bảo dữ liệu mới nhất
+     * Store index còn hiện hành (cùng fingerprint, đủ số store active) thì bỏ qua reindex
      */
     private void reindexStoresOnStartup() {
-        long storeDbCount = storeRepository.count();
-        log.info("Starting store reindex. Database has {} stores", storeDbCount);
+        long storeDbCount = storeRepository.countByIsActiveTrue();
+        if (searchIndexManager.isCurrent(StoreDocument.class) && storeSearchRepository.count() == storeDbCount) {
+            log.info("Store index is current ({} stores). Skipping store reindex.", storeDbCount);
+            return;
+        }
+
+        log.info("Starting store reindex. Database has {} active stores", storeDbCount);
         
         if (storeDbCount > 0) {
             syncAllStoresInternal();
@@ -110,36 +160,151 @@ public class ElasticsearchSyncService {
     }
 
     /**
-     * Scheduled incremental sync - chạy mỗi 5 phút
-     * Chỉ sync các product đã update trong 10 phút gần đây
+     * Incremental sync theo watermark (updatedAt, id) - lưới an toàn cho luồng event RabbitMQ
+     *
+     * - Chỉ replica giữ lease trong search_sync_state mới chạy
+     * - Keyset scan các product thay đổi sau watermark, product đã soft delete được xóa khỏi index
+     * - Watermark được tiến sau mỗi lô đã đẩy lên index bằng bulk API
+     * - Product bị xóa vĩnh viễn được xử lý qua tombstone
      */
-    @Scheduled(fixedDelay = 300000, initialDelay = 600000) // 5 phút delay, start sau 10 phút
-    @Transactional(readOnly = true)
+    @Scheduled(
+            fixedDelayString = "${search.sync.incremental.interval-ms:60000}",
+            initialDelayString = "${search.sync.incremental.initial-delay-ms:600000}")
     public void incrementalSync() {
         if (!productSearchService.isHealthy()) {
             log.debug("Elasticsearch not available. Skipping incremental sync.");
             return;
         }
 
-        if (isSyncing.get()) {
+        if (!isSyncing.compareAndSet(false, true)) {
             log.debug("Sync already in progress. Skipping.");
             return;
         }
 
         try {
-            isSyncing.set(true);
-            LocalDateTime since = LocalDateTime.now().minusMinutes(10);
-
-            // This would require a custom query in ProductRepository
-            // For now, we'll skip incremental sync implementation
-            // You can add: List<Product> findByUpdatedAtAfter(LocalDateTime since);
-
-            log.debug("Incremental sync completed");
+            if (!syncCheckpoint.tryAcquire(PRODUCT_SYNC)) {
+                // Replica khác đang sync, chỉ cập nhật lag để metric của replica này không bị cũ
+                syncCheckpoint.load(PRODUCT_SYNC);
+                return;
+            }
+            try {
+                runIncrementalSync();
+            } finally {
+                syncCheckpoint.release(PRODUCT_SYNC);
+            }
+        } catch (Exception e) {
+            log.error("Error during incremental sync: {}", e.getMessage(), e);
         } finally {
             isSyncing.set(false);
         }
     }
 
+    private void runIncrementalSync() {
+        long startTime = System.currentTimeMillis();
+        SearchSyncState state = syncCheckpoint.load(PRODUCT_SYNC);
+        LocalDateTime afterAt = state.getWatermarkAt() != null ? state.getWatermarkAt() : WATERMARK_ORIGIN;
+        String afterId = state.getWatermarkId() != null ? state.getWatermarkId() : "";
+        // Không đọc các dòng mới hơn safety window: transaction ghi updatedAt trước đó có thể chưa commit
+        LocalDateTime upTo = LocalDateTime.now().minusSeconds(incrementalSafetyWindowSeconds);
+
+        long indexed = 0;
+        long removed = 0;
+        while (true) {
+            ChangedProductsBatch batch = self.fetchChangedProductsBatch(afterAt, afterId, upTo, incrementalBatchSize);
+            if (batch.scanned() == 0) {
+                break;
+            }
+
+            if (!batch.documents().isEmpty()) {
+                productSearchRepository.saveAll(batch.documents());
+            }
+            if (!batch.removedIds().isEmpty()) {
+                productSearchRepository.deleteAllById(batch.removedIds());
+            }
+            indexed += batch.documents().size();
+            removed += batch.removedIds().size();
+
+            afterAt = batch.lastUpdatedAt();
+            afterId = batch.lastId();
+            if (!syncCheckpoint.advance(PRODUCT_SYNC, afterAt, afterId)) {
+                return;
+            }
+            if (batch.scanned() < incrementalBatchSize) {
+                break;
+            }
+        }
+
+        // Đã quét hết đến upTo: kéo watermark lên upTo để lag phản ánh đúng khi không có thay đổi.
+        // Id rỗng nên các dòng có updatedAt = upTo sẽ được quét lại một lần (idempotent)
+        if (afterAt.isBefore(upTo) && !syncCheckpoint.advance(PRODUCT_SYNC, upTo, "")) {
+            return;
+        }
+
+        removed += applyTombstones();
+
+        if (indexed > 0 || removed > 0) {
+            searchResultCache.invalidate();
+            log.info("Incremental sync completed. {} products indexed, {} removed in {} ms",
+                    indexed, removed, System.currentTimeMillis() - startTime);
+        } else {
+            log.debug("Incremental sync completed. No changes since {}", afterAt);
+        }
+    }
+
+    /**
+     * Xóa khỏi index các product đã bị xóa vĩnh viễn rồi dọn tombstone
+     */
+    private long applyTombstones() {
+        long removed = 0;
+        while (true) {
+            List<String> productIds = tombstoneRepository.findOldest(PageRequest.of(0, incrementalBatchSize)).stream()
+                    .map(ProductSearchTombstone::getProductId)
+                    .toList();
+            if (productIds.isEmpty()) {
+                return removed;
+            }
+            productSearchRepository.deleteAllById(productIds);
+            tombstoneRepository.deleteAllByIdInBatch(productIds);
+            removed += productIds.size();
+            if (productIds.size() < incrementalBatchSize) {
+                return removed;
+            }
+        }
+    }
+
+    /**
+     * Fetch lô product thay đổi sau watermark và map sang document trong transaction riêng
+     */
+    @Transactional(readOnly = true)
+    public ChangedProductsBatch fetchChangedProductsBatch(LocalDateTime afterAt, String afterId,
+                                                          LocalDateTime upTo, int size) {
+        List<Product> products = productRepository.findChangedForElasticsearchSync(
+                afterAt, afterId, upTo, PageRequest.of(0, size));
+        if (products.isEmpty()) {
+            return new ChangedProductsBatch(List.of(), List.of(), afterAt, afterId, 0);
+        }
+
+        List<ProductDocument> documents = new ArrayList<>();
+        List<String> removedIds = new ArrayList<>();
+        for (Product product : products) {
+            if (product.isDeleted()) {
+                removedIds.add(product.getId());
+            } else {
+                documents.add(productIndexMapper.toDocument(product));
+            }
+        }
+        Product last = products.get(products.size() - 1);
+        return new ChangedProductsBatch(documents, removedIds, last.getUpdatedAt(), last.getId(), products.size());
+    }
+
+    public record ChangedProductsBatch(
+            List<ProductDocument> documents,
+            List<String> removedIds,
+            LocalDateTime lastUpdatedAt,
+            String lastId,
+            int scanned
+    ) {}
+
     /**
      * Full sync - reindex tất cả products
      * Note: Không dùng @Transactional ở đây vì method này là async
@@ -151,32 +316,20 @@ public class ElasticsearchSyncService {
             try {
                 log.info("Starting full Elasticsearch sync...");
                 long startTime = System.currentTimeMillis();
+                LocalDateTime startedAt = LocalDateTime.now();
 
-                // Clear existing index
-                productSearchRepository.deleteAll();
-                log.info("Cleared existing index");
-
-                // Sync in batches using transactional method
-                int page = 0;
-                long totalSynced = 0;
-
-                while (true) {
-                    List<ProductDocument> documents = self.fetchAndMapProductsBatch(page, BATCH_SIZE);
-
-                    if (documents.isEmpty()) {
-                        break;
-                    }
-
-                    productSearchRepository.saveAll(documents);
-                    totalSynced += documents.size();
-
-                    log.debug("Synced batch {} ({} products)", page + 1, documents.size());
-                    page++;
+                // Dựng index mới rồi chuyển alias, search vẫn dùng index cũ trong lúc load
+                long totalSynced = searchIndexManager.rebuild(ProductDocument.class, productBatches(startedAt));
+                if (totalSynced < 0) {
+                    return;
                 }
+                searchResultCache.invalidate();
 
                 long duration = System.currentTimeMillis() - startTime;
                 log.info("Full sync completed. {} products indexed in {} ms", totalSynced, duration);
 
+                resetWatermarkAfterFullSync(startedAt);
+
             } catch (Exception e) {
                 log.error("Error during full sync: {}", e.getMessage(), e);
             } finally {
@@ -188,20 +341,46 @@ public class ElasticsearchSyncService {
     }
 
     /**
-     * Fetch và map products trong transaction riêng
-     * Đảm bảo Hibernate session còn mở khi access lazy relations
+     * Duyệt toàn bộ product chưa xóa theo keyset (updatedAt, id) đến thời điểm bắt đầu full sync.
+     * Thay đổi sau đó được incremental sync bắt kịp nhờ watermark reset về startedAt
      */
-    @Transactional(readOnly = true)
-    public List<ProductDocument> fetchAndMapProductsBatch(int page, int size) {
-        Page<Product> productPage = productRepository.findAllForElasticsearchSync(PageRequest.of(page, size));
-        
-        if (productPage.isEmpty()) {
-            return List.of();
-        }
+    private SearchIndexManager.BatchSource<ProductDocument> productBatches(LocalDateTime upTo) {
+        return new SearchIndexManager.BatchSource<>() {
+            LocalDateTime afterAt = WATERMARK_ORIGIN;
+            String afterId = "";
 
-        return productPage.getContent().stream()
-                .map(productIndexMapper::toDocument)
-                .collect(Collectors.toList());
+            @Override
+            public List<ProductDocument> nextBatch() {
+                while (true) {
+                    ChangedProductsBatch batch = self.fetchChangedProductsBatch(afterAt, afterId, upTo, reindexBatchSize);
+                    if (batch.scanned() == 0) {
+                        return List.of();
+                    }
+                    afterAt = batch.lastUpdatedAt();
+                    afterId = batch.lastId();
+                    if (!batch.documents().isEmpty()) {
+                        return batch.documents();
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Sau full sync, incremental sync chỉ cần bắt đầu từ thời điểm full sync bắt đầu (trừ safety window)
+     */
+    private void resetWatermarkAfterFullSync(LocalDateTime startedAt) {
+        try {
+            if (syncCheckpoint.tryAcquire(PRODUCT_SYNC)) {
+                try {
+                    syncCheckpoint.advance(PRODUCT_SYNC, startedAt.minusSeconds(incrementalSafetyWindowSeconds), "");
+                } finally {
+                    syncCheckpoint.release(PRODUCT_SYNC);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Could not reset incremental sync watermark after full sync: {}", e.getMessage());
+        }
     }
 
     /**
@@ -218,6 +397,7 @@ public class ElasticsearchSyncService {
                 productSearchRepository.deleteById(productId);
                 log.debug("Product {} removed from index (not found or deleted)", productId);
             }
+            searchResultCache.invalidate();
         } catch (Exception e) {
             log.error("Error syncing product {}: {}", productId, e.getMessage());
         }
@@ -259,6 +439,7 @@ public class ElasticsearchSyncService {
         for (String id : toRemove) {
             productSearchRepository.deleteById(id);
         }
+        searchResultCache.invalidate();
 
         log.info("Synced {} products, removed {} from index", documents.size(), toRemove.size());
     }
@@ -268,11 +449,71 @@ public class ElasticsearchSyncService {
      */
     @Transactional(readOnly = true)
     public List<ProductDocument> fetchAndMapProducts(List<String> productIds) {
-        return productIds.stream()
-                .map(id -> productRepository.findByIdForElasticsearch(id).orElse(null))
-                .filter(p -> p != null && !p.isDeleted())
-                .map(productIndexMapper::toDocument)
-                .collect(Collectors.toList());
+        return new ArrayList<>(fetchAndMapProductsById(productIds).values());
+    }
+
+    /**
+     * Fetch nhiều product bằng một query và map sang document, key là product id
+     * Product không tồn tại hoặc đã soft delete không có trong kết quả
+     */
+    @Transactional(readOnly = true)
+    public Map<String, ProductDocument> fetchAndMapProductsById(Collection<String> productIds) {
+        Map<String, ProductDocument> documents = new LinkedHashMap<>();
+        for (Product product : productRepository.findAllByIdForElasticsearch(productIds)) {
+            if (!product.isDeleted()) {
+                documents.put(product.getId(), productIndexMapper.toDocument(product));
+            }
+        }
+        return documents;
+    }
+
+    /**
+     * Partial update soldCount/viewCount/averageRating/ratingCount của product trong index
+     * Giá trị được đọc lại từ DB lúc flush nên gọi nhiều lần chỉ tốn một lần ghi
+     */
+    public void refreshProductStats(Collection<String> productIds) {
+        productIds.forEach(productId -> indexingPipeline.submitPatch(productId, true, Map.of()));
+    }
+
+    /**
+     * Partial update stockQuantity của các variant (và totalAvailableStock) trong index
+     */
+    public void refreshVariantStock(Collection<String> variantIds) {
+        if (variantIds.isEmpty()) {
+            return;
+        }
+        self.loadVariantStock(variantIds)
+                .forEach((productId, stock) -> indexingPipeline.submitPatch(productId, false, stock));
+    }
+
+    /**
+     * Đọc các field thống kê của product, key là product id, value là field trong ProductDocument -> giá trị
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Map<String, Object>> loadProductStats(Collection<String> productIds) {
+        Map<String, Map<String, Object>> stats = new HashMap<>();
+        for (Object[] row : productRepository.findStatsByIds(productIds)) {
+            Map<String, Object> fields = new HashMap<>();
+            fields.put("soldCount", row[1]);
+            fields.put("viewCount", row[2]);
+            fields.put("averageRating", row[3]);
+            fields.put("ratingCount", row[4]);
+            stats.put((String) row[0], fields);
+        }
+        return stats;
+    }
+
+    /**
+     * Đọc tồn kho khả dụng của các variant, nhóm theo product id
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Map<String, Integer>> loadVariantStock(Collection<String> variantIds) {
+        Map<String, Map<String, Integer>> stockByProduct = new HashMap<>();
+        for (Object[] row : inventoryStockRepository.findAvailableStockWithProductByVariantIds(variantIds)) {
+            stockByProduct.computeIfAbsent((String) row[0], id -> new HashMap<>())
+                    .put((String) row[1], ((Number) row[2]).intValue());
+        }
+        return stockByProduct;
     }
 
     /**
@@ -281,6 +522,7 @@ public class ElasticsearchSyncService {
     public void removeFromIndex(String productId) {
         try {
             productSearchRepository.deleteById(productId);
+            searchResultCache.invalidate();
             log.debug("Removed product {} from index", productId);
         } catch (Exception e) {
             log.error("Error removing product {} from index: {}", productId, e.getMessage());
@@ -351,26 +593,11 @@ public class ElasticsearchSyncService {
                 log.info("Starting full Elasticsearch store sync...");
                 long startTime = System.currentTimeMillis();
 
-                // Clear existing store index
-                storeSearchRepository.deleteAll();
-                log.info("Cleared existing store index");
-
-                // Sync in batches
-                int page = 0;
-                long totalSynced = 0;
-
-                while (true) {
-                    List<StoreDocument> documents = self.fetchAndMapStoresBatch(page, BATCH_SIZE);
-
-                    if (documents.isEmpty()) {
-                        break;
-                    }
-
-                    storeSearchRepository.saveAll(documents);
-                    totalSynced += documents.size();
-
-                    log.debug("Synced store batch {} ({} stores)", page + 1, documents.size());
-                    page++;
+                AtomicInteger page = new AtomicInteger();
+                long totalSynced = searchIndexManager.rebuild(StoreDocument.class,
+                        () -> self.fetchAndMapStoresBatch(page.getAndIncrement(), reindexBatchSize));
+                if (totalSynced < 0) {
+                    return;
                 }
 
                 long duration = System.currentTimeMillis() - startTime;
@@ -410,10 +637,12 @@ public class ElasticsearchSyncService {
             StoreDocument document = self.fetchAndMapSingleStore(storeId);
             if (document != null) {
                 storeSearchRepository.save(document);
+                suggestionService.upsertStore(storeId, document.getStoreName(), document.getTotalSold());
                 log.debug("Synced store {} to index", storeId);
             } else {
                 // Store not found or inactive, remove from index
                 storeSearchRepository.deleteById(storeId);
+                suggestionService.removeStore(storeId);
                 log.debug("Store {} removed from index (not found or inactive)", storeId);
             }
         } catch (Exception e) {
@@ -438,6 +667,7 @@ public class ElasticsearchSyncService {
     public void removeStoreFromIndex(String storeId) {
         try {
             storeSearchRepository.deleteById(storeId);
+            suggestionService.removeStore(storeId);
             log.debug("Removed store {} from index", storeId);
         } catch (Exception e) {
             log.error("Error removing store {} from index: {}", storeId, e.getMessage());
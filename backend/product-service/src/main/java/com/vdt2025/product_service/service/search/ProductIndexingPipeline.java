@@ -0,0 +1,422 @@
+package com.vdt2025.product_service.service.search;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.bulk.OperationType;
+import co.elastic.clients.json.JsonData;
+import com.vdt2025.product_service.document.ProductDocument;
+import com.vdt2025.product_service.service.leaderboard.ProductLeaderboards;
+import com.vdt2025.product_service.service.suggest.SuggestionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pipeline index product vào Elasticsearch theo lô thay cho mỗi event một lần fetch + một lần ghi
+ *
+ * - Event thay đổi được gom vào hàng đợi có giới hạn, trùng product id thì gộp (thao tác mới nhất thắng)
+ * - Mỗi thay đổi được giữ tối thiểu linger-ms để gộp các lần sửa liên tiếp, rồi flush qua _bulk
+ *   theo ngưỡng số action và số byte
+ * - Hàng đợi đầy thì {@link #submit} chặn listener RabbitMQ (backpressure), quá offer-timeout thì ném lỗi
+ *   để message được requeue
+ * - Item lỗi trong bulk được đưa lại hàng đợi với backoff, quá max-attempts thì bỏ (incremental sync sẽ bắt kịp)
+ * - Thay đổi chỉ ở field biến động (tồn kho, sold/view count, rating) đi dạng PATCH: bulk _update bằng script,
+ *   không load lại product và không gửi lại toàn bộ document. PATCH gộp vào UPSERT/DELETE đang chờ thì bị bỏ
+ *
+ * Metrics: search.indexing.queue.size, search.indexing.lag (từ lúc phát event đến khi bulk thành công),
+ * search.indexing.items{result}
+ */
+@Component
+@Slf4j
+public class ProductIndexingPipeline {
+
+    public enum Action {
+        UPSERT, DELETE, PATCH
+    }
+
+    /**
+     * Ghi đè các field thống kê và stockQuantity của variant, rồi tính lại totalAvailableStock
+     * giống ProductIndexMapper (tổng tồn kho khả dụng của variant đang active)
+     */
+    static final String PATCH_SCRIPT = """
+            if (params.fields != null) {
+              for (e in params.fields.entrySet()) { ctx._source[e.getKey()] = e.getValue(); }
+            }
+            if (params.stock != null && !params.stock.isEmpty() && ctx._source.variants != null) {
+              int total = 0;
+              for (v in ctx._source.variants) {
+                if (params.stock.containsKey(v.id)) { v.stockQuantity = params.stock.get(v.id); }
+                if (v.isActive == true && v.stockQuantity != null) { total += v.stockQuantity; }
+              }
+              ctx._source.totalAvailableStock = total;
+            }
+            """;
+
+    private final ElasticsearchSyncService syncService;
+    private final ElasticsearchClient elasticsearchClient;
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final ProductSearchResultCache searchResultCache;
+    private final SuggestionService suggestionService;
+    private final ProductLeaderboards productLeaderboards;
+
+    private final int queueCapacity;
+    private final long lingerMillis;
+    private final long offerTimeoutMillis;
+    private final int maxActions;
+    private final long maxBytes;
+    private final int maxAttempts;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    // Thứ tự chèn = thứ tự flush; gộp theo product id không làm đổi vị trí
+    private final Map<String, PendingChange> pending = new LinkedHashMap<>();
+
+    private final Timer lagTimer;
+    private final Counter indexedCounter;
+    private final Counter deletedCounter;
+    private final Counter patchedCounter;
+    private final Counter retriedCounter;
+    private final Counter droppedCounter;
+    private final Counter coalescedCounter;
+
+    public ProductIndexingPipeline(ElasticsearchSyncService syncService,
+                                   ElasticsearchClient elasticsearchClient,
+                                   ElasticsearchOperations elasticsearchOperations,
+                                   ProductSearchResultCache searchResultCache,
+                                   SuggestionService suggestionService,
+                                   ProductLeaderboards productLeaderboards,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${search.indexing.queue-capacity:10000}") int queueCapacity,
+                                   @Value("${search.indexing.linger-ms:500}") long lingerMillis,
+                                   @Value("${search.indexing.offer-timeout-ms:30000}") long offerTimeoutMillis,
+                                   @Value("${search.indexing.bulk.max-actions:500}") int maxActions,
+                                   @Value("${search.indexing.bulk.max-bytes:5242880}") long maxBytes,
+                                   @Value("${search.indexing.max-attempts:5}") int maxAttempts) {
+        this.syncService = syncService;
+        this.elasticsearchClient = elasticsearchClient;
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.searchResultCache = searchResultCache;
+        this.suggestionService = suggestionService;
+        this.productLeaderboards = productLeaderboards;
+        this.queueCapacity = queueCapacity;
+        this.lingerMillis = lingerMillis;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.maxActions = maxActions;
+        this.maxBytes = maxBytes;
+        this.maxAttempts = maxAttempts;
+
+        Gauge.builder("search.indexing.queue.size", this, ProductIndexingPipeline::queueSize)
+                .description("Number of distinct products waiting to be indexed")
+                .register(meterRegistry);
+        this.lagTimer = Timer.builder("search.indexing.lag")
+                .description("Time from product change event to successful bulk index")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.indexedCounter = items(meterRegistry, "indexed");
+        this.deletedCounter = items(meterRegistry, "deleted");
+        this.patchedCounter = items(meterRegistry, "patched");
+        this.retriedCounter = items(meterRegistry, "retried");
+        this.droppedCounter = items(meterRegistry, "dropped");
+        this.coalescedCounter = items(meterRegistry, "coalesced");
+    }
+
+    /**
+     * Đưa một thay đổi vào hàng đợi, chặn khi hàng đợi đầy
+     *
+     * @param changedAt thời điểm phát event (dùng tính lag), null thì lấy thời điểm nhận
+     * @throws IllegalStateException nếu hàng đợi vẫn đầy sau offer-timeout
+     */
+    public void submit(String productId, Action action, LocalDateTime changedAt) {
+        enqueue(productId, new PendingChange(action, toMillis(changedAt), 0, 0, false, Map.of()));
+    }
+
+    /**
+     * Đưa một partial update vào hàng đợi
+     *
+     * @param stats cập nhật soldCount/viewCount/averageRating/ratingCount (đọc lại từ DB lúc flush)
+     * @param stock tồn kho khả dụng theo variant id, có thể rỗng
+     */
+    public void submitPatch(String productId, boolean stats, Map<String, Integer> stock) {
+        enqueue(productId, new PendingChange(Action.PATCH, System.currentTimeMillis(), 0, 0, stats, Map.copyOf(stock)));
+    }
+
+    private long toMillis(LocalDateTime changedAt) {
+        return changedAt != null
+                ? changedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : System.currentTimeMillis();
+    }
+
+    private void enqueue(String productId, PendingChange change) {
+        lock.lock();
+        try {
+            PendingChange existing = pending.get(productId);
+            if (existing != null) {
+                pending.put(productId, existing.merge(change));
+                coalescedCounter.increment();
+                return;
+            }
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(offerTimeoutMillis);
+            while (pending.size() >= queueCapacity) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new IllegalStateException("Indexing queue is full (" + queueCapacity + ")");
+                }
+                notFull.awaitNanos(remaining);
+            }
+            long now = System.currentTimeMillis();
+            pending.put(productId, change.readyAt(now + lingerMillis));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for indexing queue", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flush các thay đổi đã qua linger window, lặp đến khi không còn lô nào sẵn sàng
+     */
+    @Scheduled(fixedDelayString = "${search.indexing.flush-interval-ms:200}")
+    public void flush() {
+        while (true) {
+            Map<String, PendingChange> batch = drainReady(System.currentTimeMillis());
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                process(batch);
+            } catch (Exception e) {
+                log.error("Bulk indexing of {} products failed: {}", batch.size(), e.getMessage(), e);
+                batch.forEach(this::retry);
+                return;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        log.info("Flushing {} pending product index changes before shutdown", queueSize());
+        lock.lock();
+        try {
+            pending.replaceAll((id, change) -> change.readyAt(0));
+        } finally {
+            lock.unlock();
+        }
+        flush();
+    }
+
+    public int queueSize() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Map<String, PendingChange> drainReady(long now) {
+        Map<String, PendingChange> batch = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            Iterator<Map.Entry<String, PendingChange>> iterator = pending.entrySet().iterator();
+            while (iterator.hasNext() && batch.size() < maxActions) {
+                Map.Entry<String, PendingChange> entry = iterator.next();
+                if (entry.getValue().readyAtMillis() <= now) {
+                    batch.put(entry.getKey(), entry.getValue());
+                    iterator.remove();
+                }
+            }
+            if (!batch.isEmpty()) {
+                notFull.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return batch;
+    }
+
+    private void process(Map<String, PendingChange> batch) throws Exception {
+        List<String> upsertIds = batch.entrySet().stream()
+                .filter(entry -> entry.getValue().action() == Action.UPSERT)
+                .map(Map.Entry::getKey)
+                .toList();
+        Map<String, ProductDocument> documents = upsertIds.isEmpty()
+                ? Map.of()
+                : syncService.fetchAndMapProductsById(upsertIds);
+        List<String> statsIds = batch.entrySet().stream()
+                .filter(entry -> entry.getValue().action() == Action.PATCH && entry.getValue().stats())
+                .map(Map.Entry::getKey)
+                .toList();
+        Map<String, Map<String, Object>> stats = statsIds.isEmpty()
+                ? Map.of()
+                : syncService.loadProductStats(statsIds);
+
+        String index = elasticsearchOperations.getIndexCoordinatesFor(ProductDocument.class).getIndexName();
+        List<BulkOperation> operations = new ArrayList<>();
+        List<String> operationIds = new ArrayList<>();
+        long bytes = 0;
+        for (Map.Entry<String, PendingChange> entry : batch.entrySet()) {
+            String productId = entry.getKey();
+            ProductDocument document = documents.get(productId);
+            BulkOperation operation;
+            if (entry.getValue().action() == Action.PATCH) {
+                Map<String, JsonData> params = new HashMap<>();
+                params.put("fields", JsonData.of(stats.getOrDefault(productId, Map.of())));
+                params.put("stock", JsonData.of(entry.getValue().stock()));
+                operation = BulkOperation.of(b -> b.update(u -> u.index(index).id(productId).retryOnConflict(3)
+                        .action(a -> a.script(s -> s.inline(i -> i.source(PATCH_SCRIPT).lang("painless").params(params))))));
+                bytes += PATCH_SCRIPT.length() + 64L * (entry.getValue().stock().size() + 4);
+            } else if (document == null) {
+                // DELETE hoặc product không còn / đã soft delete
+                suggestionService.removeProduct(productId);
+                productLeaderboards.remove(productId);
+                operation = BulkOperation.of(b -> b.delete(d -> d.index(index).id(productId)));
+                bytes += productId.length() + 64;
+            } else {
+                suggestionService.upsertProduct(document);
+                productLeaderboards.upsert(document);
+                Document source = elasticsearchOperations.getElasticsearchConverter().mapObject(document);
+                operation = BulkOperation.of(b -> b.index(i -> i.index(index).id(productId).document(source)));
+                bytes += source.toJson().getBytes(StandardCharsets.UTF_8).length;
+            }
+            operations.add(operation);
+            operationIds.add(productId);
+
+            if (bytes >= maxBytes) {
+                sendBulk(operations, operationIds, batch);
+                operations = new ArrayList<>();
+                operationIds = new ArrayList<>();
+                bytes = 0;
+            }
+        }
+        if (!operations.isEmpty()) {
+            sendBulk(operations, operationIds, batch);
+        }
+    }
+
+    private void sendBulk(List<BulkOperation> operations, List<String> operationIds,
+                          Map<String, PendingChange> batch) throws Exception {
+        BulkResponse response = elasticsearchClient.bulk(b -> b.operations(operations));
+        long now = System.currentTimeMillis();
+        boolean documentsChanged = false;
+        List<BulkResponseItem> items = response.items();
+        for (int i = 0; i < items.size(); i++) {
+            BulkResponseItem item = items.get(i);
+            String productId = operationIds.get(i);
+            PendingChange change = batch.get(productId);
+            // Xóa/patch document không tồn tại (404) cũng là thành công: product chưa được index,
+            // lần full index sau sẽ mang giá trị mới nhất
+            boolean failed = item.error() != null && item.status() != 404;
+            if (failed) {
+                log.warn("Bulk item for product {} failed: {}", productId, item.error().reason());
+                retry(productId, change);
+                continue;
+            }
+            if (item.operationType() == OperationType.Delete) {
+                deletedCounter.increment();
+                documentsChanged = true;
+            } else if (item.operationType() == OperationType.Update) {
+                // Field đã patch được lấy lại khi hydrate trang cache, không cần invalidate
+                patchedCounter.increment();
+            } else {
+                indexedCounter.increment();
+                documentsChanged = true;
+            }
+            lagTimer.record(Duration.ofMillis(Math.max(0, now - change.changedAtMillis())));
+        }
+        if (documentsChanged) {
+            searchResultCache.invalidate();
+        }
+        log.debug("Bulk indexed {} product operations (errors={})", items.size(), response.errors());
+    }
+
+    /**
+     * Đưa lại hàng đợi với backoff lũy thừa; nếu trong lúc đó đã có thay đổi mới cho product thì gộp thay đổi
+     * thất bại vào thay đổi mới (giữ stock của PATCH lỗi), dùng backoff và số lần thử lớn hơn
+     */
+    private void retry(String productId, PendingChange change) {
+        int attempts = change.attempts() + 1;
+        if (attempts >= maxAttempts) {
+            droppedCounter.increment();
+            log.error("Giving up indexing product {} after {} attempts", productId, attempts);
+            return;
+        }
+        long backoff = Math.min(30_000L, lingerMillis * (1L << attempts));
+        lock.lock();
+        try {
+            // Không chặn ở đây: item retry được phép vượt capacity để flusher không tự khóa mình
+            pending.merge(productId, change.retry(System.currentTimeMillis() + backoff, attempts),
+                    (newer, retried) -> retried.merge(newer).retry(
+                            Math.max(newer.readyAtMillis(), retried.readyAtMillis()),
+                            Math.max(newer.attempts(), retried.attempts())));
+        } finally {
+            lock.unlock();
+        }
+        retriedCounter.increment();
+    }
+
+    private Counter items(MeterRegistry registry, String result) {
+        return Counter.builder("search.indexing.items")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /**
+     * Thay đổi đang chờ index của một product
+     *
+     * @param changedAtMillis thời điểm của thay đổi cũ nhất chưa được index (để lag không bị đánh giá thấp khi gộp)
+     * @param stats            PATCH: có cập nhật các field thống kê
+     * @param stock            PATCH: tồn kho khả dụng theo variant id
+     */
+    private record PendingChange(Action action, long changedAtMillis, long readyAtMillis, int attempts,
+                                 boolean stats, Map<String, Integer> stock) {
+
+        /**
+         * UPSERT/DELETE thay thế thay đổi cũ; PATCH gộp vào PATCH, còn gộp vào UPSERT/DELETE thì thừa
+         */
+        PendingChange merge(PendingChange next) {
+            long oldest = Math.min(changedAtMillis, next.changedAtMillis());
+            if (next.action() != Action.PATCH) {
+                return new PendingChange(next.action(), oldest, readyAtMillis, 0, false, Map.of());
+            }
+            if (action != Action.PATCH) {
+                return this;
+            }
+            Map<String, Integer> mergedStock = new HashMap<>(stock);
+            mergedStock.putAll(next.stock());
+            return new PendingChange(Action.PATCH, oldest, readyAtMillis, 0, stats || next.stats(), mergedStock);
+        }
+
+        PendingChange readyAt(long readyAtMillis) {
+            return new PendingChange(action, changedAtMillis, readyAtMillis, attempts, stats, stock);
+        }
+
+        PendingChange retry(long readyAtMillis, int attempts) {
+            return new PendingChange(action, changedAtMillis, readyAtMillis, attempts, stats, stock);
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.vdt2025.product_service.service.search;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.vdt2025.product_service.cache.CacheGenerations;
+import com.vdt2025.product_service.dto.request.search.ProductSearchRequest;
+import com.vdt2025.product_service.dto.response.search.ProductSearchResponse.SearchAggregations;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cache kết quả tìm kiếm sản phẩm trên Elasticsearch
+ *
+ * - {@link ProductSearchRequest} được chuẩn hóa thành key (keyword lowercase/gộp khoảng trắng, list sort + bỏ trùng,
+ *   categoryId đơn tương đương categoryIds một phần tử, giá bỏ số 0 thừa...) rồi hash
+ * - Trang kết quả chỉ lưu id + score + highlight (TTL ngắn), document được lấy lại bằng mget khi trả về
+ *   nên giá/tồn kho/rating luôn là giá trị hiện tại của index
+ * - Aggregations lưu riêng theo phần query/filter (không phụ thuộc sort, trang), có thêm L1 trong process
+ *   để facet của các trang danh mục phổ biến được trả từ bộ nhớ khi tải cao
+ * - Mọi key nhúng generation của index (cache-gen:product-search-index), tăng khi có document được ghi/xóa.
+ *   Ghi index chỉ đánh dấu dirty, generation được tăng và đọc lại tối đa một lần mỗi generation-refresh-ms
+ *
+ * Metrics: search.cache.requests{cache=hits|aggregations, result=l1_hit|hit|miss}
+ */
+@Component
+@Slf4j
+public class ProductSearchResultCache {
+
+    static final String GENERATION_SCOPE = "product-search-index";
+    private static final String HITS_PREFIX = "search:hits:";
+    private static final String AGGREGATIONS_PREFIX = "search:aggs:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final CacheGenerations cacheGenerations;
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private final boolean enabled;
+    private final Duration hitsTtl;
+    private final Duration aggregationsTtl;
+    private final com.github.benmanes.caffeine.cache.Cache<String, SearchAggregations> localAggregations;
+
+    private volatile long generation;
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+
+    private final Counter hitsHit;
+    private final Counter hitsMiss;
+    private final Counter aggregationsLocalHit;
+    private final Counter aggregationsHit;
+    private final Counter aggregationsMiss;
+
+    public ProductSearchResultCache(StringRedisTemplate redisTemplate,
+                                    CacheGenerations cacheGenerations,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${search.cache.enabled:true}") boolean enabled,
+                                    @Value("${search.cache.hits-ttl-seconds:30}") long hitsTtlSeconds,
+                                    @Value("${search.cache.aggregations-ttl-seconds:120}") long aggregationsTtlSeconds,
+                                    @Value("${search.cache.local-aggregations.maximum-size:1000}") long localMaximumSize,
+                                    @Value("${search.cache.local-aggregations.ttl-seconds:30}") long localTtlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.cacheGenerations = cacheGenerations;
+        this.enabled = enabled;
+        this.hitsTtl = Duration.ofSeconds(hitsTtlSeconds);
+        this.aggregationsTtl = Duration.ofSeconds(aggregationsTtlSeconds);
+        this.localAggregations = Caffeine.newBuilder()
+                .maximumSize(localMaximumSize)
+                .expireAfterWrite(Duration.ofSeconds(localTtlSeconds))
+                .build();
+
+        this.hitsHit = requests(meterRegistry, "hits", "hit");
+        this.hitsMiss = requests(meterRegistry, "hits", "miss");
+        this.aggregationsLocalHit = requests(meterRegistry, "aggregations", "l1_hit");
+        this.aggregationsHit = requests(meterRegistry, "aggregations", "hit");
+        this.aggregationsMiss = requests(meterRegistry, "aggregations", "miss");
+    }
+
+    /**
+     * Key đã chuẩn hóa của một request
+     *
+     * @param query phần quyết định tập kết quả (keyword, fuzzy, filters) - dùng cho aggregations
+     * @param page  query + sort + highlight + trang - dùng cho trang kết quả
+     */
+    public record Keys(long generation, String query, String page) {
+    }
+
+    /**
+     * Một trang kết quả đã cache, không chứa document
+     */
+    public record CachedPage(long totalHits, Float maxScore, List<CachedHit> hits) {
+    }
+
+    public record CachedHit(String id, Float score, Map<String, List<String>> highlights) {
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Keys keys(ProductSearchRequest request, Pageable pageable) {
+        String query = canonicalQuery(request);
+        String page = query + "|sort=" + canonicalSort(request)
+                + "|hl=" + Boolean.TRUE.equals(request.getEnableHighlight())
+                + "|from=" + pageable.getOffset() + "|size=" + pageable.getPageSize();
+        return new Keys(generation, hash(query), hash(page));
+    }
+
+    public CachedPage getPage(Keys keys) {
+        CachedPage page = read(HITS_PREFIX + keys.generation() + ":" + keys.page(), CachedPage.class);
+        (page != null ? hitsHit : hitsMiss).increment();
+        return page;
+    }
+
+    public void putPage(Keys keys, CachedPage page) {
+        write(HITS_PREFIX + keys.generation() + ":" + keys.page(), page, hitsTtl);
+    }
+
+    public SearchAggregations getAggregations(Keys keys) {
+        String key = AGGREGATIONS_PREFIX + keys.generation() + ":" + keys.query();
+        SearchAggregations aggregations = localAggregations.getIfPresent(key);
+        if (aggregations != null) {
+            aggregationsLocalHit.increment();
+            return aggregations;
+        }
+        aggregations = read(key, SearchAggregations.class);
+        if (aggregations != null) {
+            aggregationsHit.increment();
+            localAggregations.put(key, aggregations);
+        } else {
+            aggregationsMiss.increment();
+        }
+        return aggregations;
+    }
+
+    public void putAggregations(Keys keys, SearchAggregations aggregations) {
+        if (aggregations == null) {
+            return;
+        }
+        String key = AGGREGATIONS_PREFIX + keys.generation() + ":" + keys.query();
+        localAggregations.put(key, aggregations);
+        write(key, aggregations, aggregationsTtl);
+    }
+
+    /**
+     * Đánh dấu index product đã thay đổi, generation được tăng ở lần refresh kế tiếp
+     */
+    public void invalidate() {
+        dirty.set(true);
+    }
+
+    /**
+     * Tăng generation nếu có thay đổi và đọc generation hiện tại (có thể do instance khác tăng)
+     */
+    @Scheduled(fixedDelayString = "${search.cache.generation-refresh-ms:1000}")
+    public void refreshGeneration() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long current = dirty.getAndSet(false)
+                    ? cacheGenerations.bump(GENERATION_SCOPE)
+                    : cacheGenerations.current(GENERATION_SCOPE);
+            if (current != generation) {
+                generation = current;
+                // Entry L1 của generation cũ không còn được đọc, dọn sớm để nhường chỗ
+                localAggregations.invalidateAll();
+            }
+        } catch (Exception e) {
+            dirty.set(true);
+            log.warn("Could not refresh product search cache generation: {}", e.getMessage());
+        }
+    }
+
+    private <T> T read(String key, Class<T> type) {
+        if (!enabled) {
+            return null;
+        }
+        try {
+            String json = redisTemplate.opsForValue().get(key);
+            return json != null ? objectMapper.readValue(json, type) : null;
+        } catch (Exception e) {
+            log.warn("Failed to read search cache entry {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void write(String key, Object value, Duration ttl) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            redisTemplate.opsForValue().set(key, objectMapper.writeValueAsString(value), ttl);
+        } catch (Exception e) {
+            log.warn("Failed to write search cache entry {}: {}", key, e.getMessage());
+        }
+    }
+
+    // ========== Canonical key ==========
+
+    /**
+     * Các field ảnh hưởng tới tập kết quả, theo đúng cách ProductSearchServiceImpl.buildQuery đọc chúng
+     */
+    static String canonicalQuery(ProductSearchRequest request) {
+        StringBuilder key = new StringBuilder();
+        key.append("q=").append(normalizeKeyword(request.getKeyword()));
+        if (StringUtils.hasText(request.getKeyword())) {
+            key.append("|fuzzy=").append(Boolean.TRUE.equals(request.getEnableFuzzy()));
+        }
+        key.append("|cat=").append(idFilter(request.getCategoryId(), request.getCategoryIds()));
+        key.append("|store=").append(idFilter(request.getStoreId(), request.getStoreIds()));
+        key.append("|brand=").append(idFilter(request.getBrandId(), request.getBrandIds()));
+        key.append("|price=").append(decimal(request.getPriceFrom())).append('-').append(decimal(request.getPriceTo()));
+        key.append("|rating=").append(request.getMinRating() != null ? request.getMinRating() : "");
+        key.append("|attrs=");
+        if (request.getAttributeFilters() != null) {
+            request.getAttributeFilters().stream()
+                    .filter(filter -> filter.getValues() != null && !filter.getValues().isEmpty())
+                    .map(filter -> filter.getAttributeId() + ":" + sortedDistinct(filter.getValues()))
+                    .sorted()
+                    .forEach(filter -> key.append(filter).append(';'));
+        }
+        return key.toString();
+    }
+
+    static String canonicalSort(ProductSearchRequest request) {
+        String sortBy = request.getSortBy();
+        if (!StringUtils.hasText(sortBy) || "relevance".equalsIgnoreCase(sortBy)) {
+            return "relevance";
+        }
+        String direction = "asc".equalsIgnoreCase(request.getSortDirection()) ? "asc" : "desc";
+        return sortBy.toLowerCase(Locale.ROOT) + ":" + direction;
+    }
+
+    private static String normalizeKeyword(String keyword) {
+        if (!StringUtils.hasText(keyword)) {
+            return "";
+        }
+        return keyword.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static String idFilter(String single, List<String> multiple) {
+        if (StringUtils.hasText(single)) {
+            return single;
+        }
+        return multiple != null ? sortedDistinct(multiple) : "";
+    }
+
+    private static String sortedDistinct(Collection<String> values) {
+        return String.join(",", values.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .sorted(Comparator.naturalOrder())
+                .toList());
+    }
+
+    private static String decimal(BigDecimal value) {
+        return value != null ? value.stripTrailingZeros().toPlainString() : "";
+    }
+
+    private static String hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Counter requests(MeterRegistry registry, String cache, String result) {
+        return Counter.builder("search.cache.requests")
+                .tag("cache", cache)
+                .tag("result", result)
+                .register(registry);
+    }
+}
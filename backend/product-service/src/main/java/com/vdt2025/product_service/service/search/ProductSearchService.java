@@ -16,6 +16,13 @@ public interface ProductSearchService {
      */
     ProductSearchResponse search(ProductSearchRequest request, Pageable pageable);
 
+    /**
+     * Tìm kiếm theo cursor (point-in-time + search_after) cho phân trang sâu / infinite scroll
+     *
+     * @param cursor nextCursor của trang trước, null cho trang đầu
+     */
+    ProductSearchResponse searchAfter(ProductSearchRequest request, String cursor, int size);
+
     /**
      * Autocomplete/Suggestion cho search box
      */
@@ -6,7 +6,9 @@ import co.elastic.clients.elasticsearch._types.SortOrder;
 import co.elastic.clients.elasticsearch._types.aggregations.*;
 import co.elastic.clients.elasticsearch._types.query_dsl.*;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.MgetResponse;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.get.GetResult;
 import co.elastic.clients.elasticsearch.core.search.*;
 import co.elastic.clients.json.JsonData;
 import com.vdt2025.product_service.document.ProductDocument;
@@ -22,13 +24,17 @@ import com.vdt2025.product_service.repository.ProductImageRepository;
 import com.vdt2025.product_service.repository.ProductRepository;
 import com.vdt2025.product_service.repository.ProductVariantRepository;
 import com.vdt2025.product_service.repository.elasticsearch.ProductSearchRepository;
+import com.vdt2025.product_service.service.suggest.SuggestionService;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
-import org.springframework.data.elasticsearch.core.IndexOperations;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -51,29 +57,70 @@ public class ProductSearchServiceImpl implements ProductSearchService {
 
     ElasticsearchClient elasticsearchClient;
     ElasticsearchOperations elasticsearchOperations;
+
+    // Lazy vì ElasticsearchSyncService phụ thuộc ngược vào ProductSearchService
+    @Autowired
+    @Lazy
+    @NonFinal
+    ElasticsearchSyncService elasticsearchSyncService;
     ProductSearchRepository productSearchRepository;
     ProductRepository productRepository;
     ProductVariantRepository variantRepository;
     ProductImageRepository productImageRepository;
     ProductIndexMapper productIndexMapper;
+    ProductSearchResultCache searchResultCache;
+    SearchCursors searchCursors;
+    SuggestionService suggestionService;
 
     private static final String INDEX_NAME = "products";
 
+    // Field lớn không cần cho ProductSummaryResponse, bỏ khi lấy document của trang đã cache
+    private static final List<String> SUMMARY_SOURCE_EXCLUDES = List.of(
+            "description", "variants", "attributes", "selectionGroups", "selectionOptionsText", "specsText", "suggest");
+
     @Override
     public ProductSearchResponse search(ProductSearchRequest request, Pageable pageable) {
         log.info("Searching products with keyword: {}, page: {}, size: {}",
                 request.getKeyword(), pageable.getPageNumber(), pageable.getPageSize());
 
         try {
-            // Build search request
-            SearchRequest searchRequest = buildSearchRequest(request, pageable);
+            boolean withAggregations = Boolean.TRUE.equals(request.getEnableAggregation());
+            ProductSearchResultCache.Keys keys = null;
+            SearchAggregations cachedAggregations = null;
+            if (searchResultCache.isEnabled()) {
+                keys = searchResultCache.keys(request, pageable);
+                cachedAggregations = withAggregations ? searchResultCache.getAggregations(keys) : null;
+                ProductSearchResultCache.CachedPage cachedPage = !withAggregations || cachedAggregations != null
+                        ? searchResultCache.getPage(keys)
+                        : null;
+                if (cachedPage != null) {
+                    ProductSearchResponse cached = hydrateCachedPage(cachedPage, pageable);
+                    if (cached != null) {
+                        cached.setAggregations(cachedAggregations);
+                        return cached;
+                    }
+                }
+            }
+
+            // Build search request, aggregation đã có trong cache thì không tính lại
+            SearchRequest searchRequest = buildSearchRequest(request, pageable,
+                    withAggregations && cachedAggregations == null);
 
             // Execute search
             SearchResponse<ProductDocument> response = elasticsearchClient.search(
                     searchRequest, ProductDocument.class);
 
             // Map response
-            return mapSearchResponse(response, pageable, request);
+            ProductSearchResponse result = mapSearchResponse(response, pageable, request);
+            if (keys != null) {
+                if (cachedAggregations != null) {
+                    result.setAggregations(cachedAggregations);
+                } else if (withAggregations) {
+                    searchResultCache.putAggregations(keys, result.getAggregations());
+                }
+                searchResultCache.putPage(keys, toCachedPage(result));
+            }
+            return result;
 
         } catch (IOException e) {
             log.error("Error searching products: {}", e.getMessage(), e);
@@ -81,6 +128,34 @@ public class ProductSearchServiceImpl implements ProductSearchService {
         }
     }
 
+    @Override
+    public ProductSearchResponse searchAfter(ProductSearchRequest request, String cursor, int size) {
+        boolean firstPage = !StringUtils.hasText(cursor);
+        log.info("Cursor search products with keyword: {}, first page: {}, size: {}",
+                request.getKeyword(), firstPage, size);
+
+        try {
+            String queryKey = ProductSearchResultCache.canonicalQuery(request)
+                    + "|sort=" + ProductSearchResultCache.canonicalSort(request);
+            // Aggregations chỉ tính ở trang đầu, các trang sau dùng lại facet client đã có
+            boolean withAggregations = firstPage && Boolean.TRUE.equals(request.getEnableAggregation());
+            SearchCursors.CursorPage<ProductDocument> page = searchCursors.page(INDEX_NAME, cursor, queryKey, size,
+                    s -> applySearchBody(s, request, withAggregations), ProductDocument.class);
+
+            ProductSearchResponse result = mapSearchResponse(page.response(), PageRequest.of(0, size), request);
+            if (!withAggregations) {
+                result.setAggregations(null);
+            }
+            result.setCurrentPage(null);
+            result.setNextCursor(page.nextCursor());
+            return result;
+
+        } catch (IOException e) {
+            log.error("Error cursor searching products: {}", e.getMessage(), e);
+            throw new RuntimeException("Search failed", e);
+        }
+    }
+
     @Override
     public List<String> suggest(String prefix, int size) {
         if (!StringUtils.hasText(prefix) || prefix.length() < 2) {
@@ -89,6 +164,12 @@ public class ProductSearchServiceImpl implements ProductSearchService {
 
         log.debug("Getting suggestions for prefix: {}", prefix);
 
+        // Chỉ mục prefix trong bộ nhớ; chưa sẵn sàng hoặc không khớp (gõ sai) thì dùng fuzzy query
+        Optional<List<String>> suggestions = suggestionService.suggest(prefix, size, SuggestionService.PRODUCT_TYPES);
+        if (suggestions.isPresent()) {
+            return suggestions.get();
+        }
+
         try {
             // Use prefix/match query on name.autocomplete field instead of completion suggester
             // This is more reliable and doesn't require special completion field mapping
@@ -171,6 +252,7 @@ public class ProductSearchServiceImpl implements ProductSearchService {
         productRepository.findById(productId).ifPresent(product -> {
             ProductDocument document = productIndexMapper.toDocument(product);
             productSearchRepository.save(document);
+            searchResultCache.invalidate();
             log.info("Product {} indexed successfully", productId);
         });
     }
@@ -187,6 +269,7 @@ public class ProductSearchServiceImpl implements ProductSearchService {
                 .collect(Collectors.toList());
 
         productSearchRepository.saveAll(documents);
+        searchResultCache.invalidate();
         log.info("{} products indexed successfully", documents.size());
     }
 
@@ -194,49 +277,17 @@ public class ProductSearchServiceImpl implements ProductSearchService {
     public void deleteFromIndex(String productId) {
         log.info("Deleting product from index: {}", productId);
         productSearchRepository.deleteById(productId);
+        searchResultCache.invalidate();
     }
 
+    /**
+     * Reindex blue/green qua alias (xem {@link ElasticsearchSyncService#syncAll()}),
+     * không xóa index đang phục vụ search
+     */
     @Override
-    @Async("elasticsearchTaskExecutor")
-    @Transactional(readOnly = true)
     public void reindexAll() {
         log.info("Starting full reindex of all products");
-
-        // Delete and recreate index to ensure correct mapping
-        IndexOperations indexOps = elasticsearchOperations.indexOps(ProductDocument.class);
-        if (indexOps.exists()) {
-            indexOps.delete();
-        }
-        indexOps.create();
-        indexOps.putMapping(indexOps.createMapping());
-
-        // Batch index all products
-        int batchSize = 100;
-        int page = 0;
-        long totalIndexed = 0;
-
-        while (true) {
-            List<Product> products = productRepository.findAll(
-                    org.springframework.data.domain.PageRequest.of(page, batchSize)
-            ).getContent();
-
-            if (products.isEmpty()) {
-                break;
-            }
-
-            List<ProductDocument> documents = products.stream()
-                    .filter(p -> !p.isDeleted())
-                    .map(productIndexMapper::toDocument)
-                    .collect(Collectors.toList());
-
-            productSearchRepository.saveAll(documents);
-            totalIndexed += documents.size();
-            page++;
-
-            log.info("Indexed batch {}, total: {}", page, totalIndexed);
-        }
-
-        log.info("Full reindex completed. Total products indexed: {}", totalIndexed);
+        elasticsearchSyncService.syncAll();
     }
 
     @Override
@@ -251,42 +302,105 @@ public class ProductSearchServiceImpl implements ProductSearchService {
 
     // ========== Private Helper Methods ==========
 
-    private SearchRequest buildSearchRequest(ProductSearchRequest request, Pageable pageable) {
+    /**
+     * Dựng response từ trang đã cache: lấy document hiện tại bằng mget, giữ thứ tự/score/highlight đã cache
+     *
+     * @return null nếu có hit không còn trong index (trả về kết quả thiếu sẽ lệch totalHits)
+     */
+    private ProductSearchResponse hydrateCachedPage(ProductSearchResultCache.CachedPage page, Pageable pageable)
+            throws IOException {
+        long start = System.currentTimeMillis();
+        List<ProductSearchHit> hits = new ArrayList<>(page.hits().size());
+        if (!page.hits().isEmpty()) {
+            List<String> ids = page.hits().stream().map(ProductSearchResultCache.CachedHit::id).toList();
+            MgetResponse<ProductDocument> response = elasticsearchClient.mget(m -> m
+                    .index(INDEX_NAME)
+                    .ids(ids)
+                    .sourceExcludes(SUMMARY_SOURCE_EXCLUDES), ProductDocument.class);
+
+            Map<String, ProductDocument> documents = new HashMap<>();
+            response.docs().stream()
+                    .filter(item -> item.isResult() && item.result().found() && item.result().source() != null)
+                    .map(item -> item.result())
+                    .forEach((GetResult<ProductDocument> result) -> documents.put(result.id(), result.source()));
+
+            for (ProductSearchResultCache.CachedHit cachedHit : page.hits()) {
+                ProductDocument doc = documents.get(cachedHit.id());
+                if (doc == null || !doc.isActive() || doc.isDeleted()) {
+                    return null;
+                }
+                hits.add(ProductSearchHit.builder()
+                        .id(cachedHit.id())
+                        .score(cachedHit.score())
+                        .product(mapToSummary(doc))
+                        .highlights(cachedHit.highlights() != null ? cachedHit.highlights() : new HashMap<>())
+                        .build());
+            }
+        }
+
+        return ProductSearchResponse.builder()
+                .hits(hits)
+                .totalHits(page.totalHits())
+                .totalPages((int) Math.ceil((double) page.totalHits() / pageable.getPageSize()))
+                .currentPage(pageable.getPageNumber())
+                .pageSize(pageable.getPageSize())
+                .took(System.currentTimeMillis() - start)
+                .maxScore(page.maxScore())
+                .build();
+    }
+
+    private ProductSearchResultCache.CachedPage toCachedPage(ProductSearchResponse response) {
+        List<ProductSearchResultCache.CachedHit> hits = response.getHits().stream()
+                .filter(Objects::nonNull)
+                .map(hit -> new ProductSearchResultCache.CachedHit(hit.getId(), hit.getScore(),
+                        hit.getHighlights() == null || hit.getHighlights().isEmpty() ? null : hit.getHighlights()))
+                .toList();
+        return new ProductSearchResultCache.CachedPage(response.getTotalHits(), response.getMaxScore(), hits);
+    }
+
+    private SearchRequest buildSearchRequest(ProductSearchRequest request, Pageable pageable,
+                                             boolean withAggregations) {
         return SearchRequest.of(s -> {
             s.index(INDEX_NAME)
-                    .query(buildQuery(request))
                     .from((int) pageable.getOffset())
                     .size(pageable.getPageSize());
-
-            // Add sorting
-            addSorting(s, request);
-
-            // Add highlighting if enabled
-            if (Boolean.TRUE.equals(request.getEnableHighlight())) {
-                s.highlight(h -> h
-                        .fields("name", hf -> hf
-                                .preTags("<em>")
-                                .postTags("</em>")
-                                .numberOfFragments(0)
-                        )
-                        .fields("description", hf -> hf
-                                .preTags("<em>")
-                                .postTags("</em>")
-                                .fragmentSize(150)
-                                .numberOfFragments(3)
-                        )
-                );
-            }
-
-            // Add aggregations if enabled
-            if (Boolean.TRUE.equals(request.getEnableAggregation())) {
-                addAggregations(s);
-            }
-
+            applySearchBody(s, request, withAggregations);
             return s;
         });
     }
 
+    /**
+     * Query, sort, highlight và aggregations dùng chung cho phân trang from/size và search_after
+     */
+    private void applySearchBody(SearchRequest.Builder s, ProductSearchRequest request, boolean withAggregations) {
+        s.query(buildQuery(request));
+
+        // Add sorting
+        addSorting(s, request);
+
+        // Add highlighting if enabled
+        if (Boolean.TRUE.equals(request.getEnableHighlight())) {
+            s.highlight(h -> h
+                    .fields("name", hf -> hf
+                            .preTags("<em>")
+                            .postTags("</em>")
+                            .numberOfFragments(0)
+                    )
+                    .fields("description", hf -> hf
+                            .preTags("<em>")
+                            .postTags("</em>")
+                            .fragmentSize(150)
+                            .numberOfFragments(3)
+                    )
+            );
+        }
+
+        // Add aggregations if enabled
+        if (withAggregations) {
+            addAggregations(s);
+        }
+    }
+
     private Query buildQuery(ProductSearchRequest request) {
         List<Query> mustQueries = new ArrayList<>();
         List<Query> filterQueries = new ArrayList<>();
@@ -0,0 +1,57 @@
+package com.vdt2025.product_service.service.search;
+
+import com.vdt2025.product_service.specification.ProductSpecification.KeywordMatch;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Chọn cách so khớp keyword cho đường tìm kiếm JPA (ProductSpecification)
+ *
+ * FULL_TEXT chỉ bật khi DB đã có hàm f_unaccent và các GIN index của V7__product_text_search.sql,
+ * ngược lại giữ LIKE như cũ để query không lỗi trên DB chưa chạy migration.
+ */
+@Component
+@Slf4j
+public class ProductTextSearch {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+
+    private volatile KeywordMatch keywordMatch = KeywordMatch.LIKE;
+
+    public ProductTextSearch(JdbcTemplate jdbcTemplate,
+                             @Value("${search.db.full-text.enabled:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+    }
+
+    public KeywordMatch keywordMatch() {
+        return keywordMatch;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void detect() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Boolean available = jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM pg_proc WHERE proname = 'f_unaccent') " +
+                    "AND EXISTS (SELECT 1 FROM pg_indexes WHERE indexname = 'idx_products_text_search') " +
+                    "AND EXISTS (SELECT 1 FROM pg_indexes WHERE indexname = 'idx_products_name_trgm')",
+                    Boolean.class);
+            if (Boolean.TRUE.equals(available)) {
+                keywordMatch = KeywordMatch.FULL_TEXT;
+                log.info("Product keyword search uses Postgres full-text and trigram indexes");
+            } else {
+                log.warn("Postgres text search objects not found (V7__product_text_search.sql), using LIKE keyword search");
+            }
+        } catch (Exception e) {
+            log.warn("Could not detect Postgres text search support, using LIKE keyword search: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.vdt2025.product_service.service.search;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.vdt2025.product_service.exception.AppException;
+import com.vdt2025.product_service.exception.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Phân trang sâu bằng point-in-time + search_after cho product/store search
+ *
+ * - Trang đầu mở PIT trên index (alias), các trang sau đọc cùng snapshot nên kết quả ổn định khi đang index
+ * - Cursor trả cho client là token mờ (base64url) chứa PIT id, sort values của hit cuối và hash của query;
+ *   gửi cursor với query khác bị từ chối
+ * - Chi phí mỗi trang không phụ thuộc độ sâu (không có from); tie-breaker _shard_doc do ES tự thêm khi dùng PIT
+ * - PIT hết hạn (client dừng quá keep-alive) thì cursor bị từ chối (INVALID_SEARCH_CURSOR), client bắt đầu lại
+ *   từ trang đầu: sort values chứa _shard_doc chỉ có nghĩa trong PIT cũ, tiếp tục trên PIT mới sẽ bỏ sót/lặp hit
+ * - Trang cuối (ít hơn size) đóng PIT ngay
+ * - Số PIT do instance mở được giới hạn bởi search.cursor.max-open (mỗi PIT giữ segment trên ES đến khi
+ *   hết keep-alive); vượt giới hạn thì trang đầu bị từ chối với TOO_MANY_SEARCH_CURSORS
+ */
+@Component
+@Slf4j
+public class SearchCursors {
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String keepAlive;
+    private final int maxOpen;
+
+    /**
+     * PIT do instance này mở và chưa đóng, hết hạn theo keep-alive kể từ lần dùng cuối
+     */
+    private final Cache<String, Boolean> openPits;
+
+    public SearchCursors(ElasticsearchClient elasticsearchClient,
+                         @Value("${search.cursor.keep-alive:2m}") String keepAlive,
+                         @Value("${search.cursor.max-open:500}") int maxOpen) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.keepAlive = keepAlive;
+        this.maxOpen = maxOpen;
+        this.openPits = Caffeine.newBuilder()
+                .expireAfterAccess(DurationStyle.detectAndParse(keepAlive))
+                .build();
+    }
+
+    /**
+     * Một trang kết quả và cursor của trang kế tiếp (null nếu đã hết)
+     */
+    public record CursorPage<T>(SearchResponse<T> response, String nextCursor) {
+    }
+
+    /**
+     * Nội dung của token cursor
+     *
+     * @param p PIT id
+     * @param s sort values của hit cuối trang trước
+     * @param q hash của query + sort
+     */
+    record Token(String p, List<Object> s, String q) {
+    }
+
+    /**
+     * Chạy một trang search_after
+     *
+     * @param index     index/alias để mở PIT ở trang đầu
+     * @param cursor    cursor từ trang trước, null/rỗng cho trang đầu
+     * @param queryKey  dạng chuẩn của query + sort, dùng để kiểm tra cursor thuộc đúng query
+     * @param size      số hit mỗi trang
+     * @param body      query, sort, highlight, aggregations (không đặt index/from)
+     */
+    public <T> CursorPage<T> page(String index, String cursor, String queryKey, int size,
+                                  Consumer<SearchRequest.Builder> body, Class<T> type) throws IOException {
+        String queryHash = hash(queryKey);
+        Token token = StringUtils.hasText(cursor) ? decode(cursor, queryHash) : null;
+        String pitId = token != null ? token.p() : openPit(index);
+        List<FieldValue> searchAfter = token != null ? toFieldValues(token.s()) : List.of();
+
+        SearchResponse<T> response;
+        try {
+            response = elasticsearchClient.search(request(pitId, searchAfter, size, body), type);
+        } catch (ElasticsearchException e) {
+            if (token == null || e.status() != 404) {
+                throw e;
+            }
+            log.debug("Point in time expired for index {}, rejecting cursor", index);
+            openPits.invalidate(pitId);
+            throw new AppException(ErrorCode.INVALID_SEARCH_CURSOR);
+        }
+
+        String currentPitId = response.pitId() != null ? response.pitId() : pitId;
+        if (!currentPitId.equals(pitId)) {
+            openPits.invalidate(pitId);
+        }
+        openPits.put(currentPitId, Boolean.TRUE);
+        List<Hit<T>> hits = response.hits().hits();
+        if (hits.size() < size || hits.isEmpty()) {
+            closeQuietly(currentPitId);
+            return new CursorPage<>(response, null);
+        }
+        List<Object> lastSort = hits.get(hits.size() - 1).sort().stream()
+                .map(FieldValue::_get)
+                .toList();
+        return new CursorPage<>(response, encode(new Token(currentPitId, lastSort, queryHash)));
+    }
+
+    private SearchRequest request(String pitId, List<FieldValue> searchAfter, int size,
+                                  Consumer<SearchRequest.Builder> body) {
+        return SearchRequest.of(s -> {
+            body.accept(s);
+            s.size(size)
+                    .pit(p -> p.id(pitId).keepAlive(k -> k.time(keepAlive)));
+            if (!searchAfter.isEmpty()) {
+                s.searchAfter(searchAfter);
+            }
+            return s;
+        });
+    }
+
+    private String openPit(String index) throws IOException {
+        openPits.cleanUp();
+        if (openPits.estimatedSize() >= maxOpen) {
+            log.warn("Refusing to open point in time for index {}: {} already open", index, openPits.estimatedSize());
+            throw new AppException(ErrorCode.TOO_MANY_SEARCH_CURSORS);
+        }
+        String pitId = elasticsearchClient.openPointInTime(p -> p.index(index).keepAlive(k -> k.time(keepAlive))).id();
+        openPits.put(pitId, Boolean.TRUE);
+        return pitId;
+    }
+
+    private void closeQuietly(String pitId) {
+        openPits.invalidate(pitId);
+        try {
+            elasticsearchClient.closePointInTime(c -> c.id(pitId));
+        } catch (Exception e) {
+            // PIT tự hết hạn theo keep-alive
+            log.debug("Could not close point in time: {}", e.getMessage());
+        }
+    }
+
+    private String encode(Token token) {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(token));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode search cursor", e);
+        }
+    }
+
+    private Token decode(String cursor, String queryHash) {
+        Token token;
+        try {
+            token = objectMapper.readValue(Base64.getUrlDecoder().decode(cursor), Token.class);
+        } catch (Exception e) {
+            throw new AppException(ErrorCode.INVALID_SEARCH_CURSOR);
+        }
+        if (token.p() == null || token.s() == null || !queryHash.equals(token.q())) {
+            throw new AppException(ErrorCode.INVALID_SEARCH_CURSOR);
+        }
+        return token;
+    }
+
+    private static List<FieldValue> toFieldValues(List<Object> values) {
+        List<FieldValue> fieldValues = new ArrayList<>(values.size());
+        for (Object value : values) {
+            if (value == null) {
+                fieldValues.add(FieldValue.NULL);
+            } else if (value instanceof Integer || value instanceof Long) {
+                fieldValues.add(FieldValue.of(((Number) value).longValue()));
+            } else if (value instanceof Number number) {
+                fieldValues.add(FieldValue.of(number.doubleValue()));
+            } else if (value instanceof Boolean bool) {
+                fieldValues.add(FieldValue.of(bool));
+            } else {
+                fieldValues.add(FieldValue.of(value.toString()));
+            }
+        }
+        return fieldValues;
+    }
+
+    private static String hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
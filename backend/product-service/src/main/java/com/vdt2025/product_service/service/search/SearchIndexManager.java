@@ -0,0 +1,264 @@
+package com.vdt2025.product_service.service.search;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexInformation;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.index.AliasAction;
+import org.springframework.data.elasticsearch.core.index.AliasActionParameters;
+import org.springframework.data.elasticsearch.core.index.AliasActions;
+import org.springframework.data.elasticsearch.core.index.AliasData;
+import org.springframework.data.elasticsearch.core.index.Settings;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reindex blue/green cho các index Elasticsearch (products, stores)
+ *
+ * Tên trong {@code @Document(indexName)} là alias, dữ liệu nằm ở index có version {@code <alias>_<fingerprint>_<time>}:
+ * 1. Tạo index mới với refresh tắt và replicas = 0, mapping mang fingerprint (hash settings + mapping) trong _meta
+ * 2. Bulk load song song vào index mới, search vẫn đọc index cũ qua alias
+ * 3. Khôi phục refresh/replicas, refresh rồi chuyển alias nguyên tử (kể cả khi "products" còn là index thật từ bản cũ)
+ * 4. Xóa các index version cũ
+ *
+ * Chỉ một replica được rebuild một index tại một thời điểm (lease qua {@link SearchSyncCheckpoint})
+ */
+@Component
+@Slf4j
+public class SearchIndexManager {
+
+    private static final DateTimeFormatter VERSION_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    private static final String META_FINGERPRINT = "fingerprint";
+
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final ElasticsearchClient elasticsearchClient;
+    private final SearchSyncCheckpoint syncCheckpoint;
+    private final int parallelism;
+
+    public SearchIndexManager(ElasticsearchOperations elasticsearchOperations,
+                              ElasticsearchClient elasticsearchClient,
+                              SearchSyncCheckpoint syncCheckpoint,
+                              @Value("${search.reindex.parallelism:2}") int parallelism) {
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.elasticsearchClient = elasticsearchClient;
+        this.syncCheckpoint = syncCheckpoint;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Nguồn dữ liệu cho rebuild, trả về lô rỗng khi hết
+     */
+    @FunctionalInterface
+    public interface BatchSource<T> {
+        List<T> nextBatch();
+    }
+
+    /**
+     * Alias đang trỏ tới index có cùng fingerprint với mapping/settings hiện tại của document class
+     */
+    public boolean isCurrent(Class<?> documentClass) {
+        String alias = aliasOf(documentClass);
+        try {
+            List<String> targets = aliasTargets(alias);
+            if (targets.size() != 1) {
+                return false;
+            }
+            String fingerprint = fingerprint(documentClass);
+            return elasticsearchOperations.indexOps(IndexCoordinates.of(targets.get(0)))
+                    .getInformation(IndexCoordinates.of(targets.get(0))).stream()
+                    .map(IndexInformation::getMapping)
+                    .anyMatch(mapping -> fingerprint.equals(metaFingerprint(mapping)));
+        } catch (Exception e) {
+            log.warn("Could not inspect index {}: {}", alias, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Dựng lại toàn bộ index của document class rồi chuyển alias
+     *
+     * @return số document đã index, -1 nếu replica khác đang rebuild
+     */
+    public <T> long rebuild(Class<T> documentClass, BatchSource<T> source) {
+        String alias = aliasOf(documentClass);
+        String leaseName = alias + "-reindex";
+        if (!syncCheckpoint.tryAcquire(leaseName)) {
+            log.info("Index {} is being rebuilt by another instance. Skipping.", alias);
+            return -1;
+        }
+
+        String fingerprint = fingerprint(documentClass);
+        String newIndex = alias + "_" + fingerprint + "_" + LocalDateTime.now().format(VERSION_FORMAT);
+        try {
+            IndexOperations classOps = elasticsearchOperations.indexOps(documentClass);
+            Settings settings = classOps.createSettings().flatten();
+            String refreshInterval = String.valueOf(settings.getOrDefault("index.refresh_interval", "1s"));
+            String replicas = String.valueOf(settings.getOrDefault("index.number_of_replicas", "1"));
+
+            // Tắt refresh và replica trong lúc bulk load
+            settings.put("index.refresh_interval", "-1");
+            settings.put("index.number_of_replicas", "0");
+            Document mapping = classOps.createMapping();
+            mapping.put("_meta", Map.of(META_FINGERPRINT, fingerprint));
+
+            IndexOperations newOps = elasticsearchOperations.indexOps(IndexCoordinates.of(newIndex));
+            newOps.create(settings, mapping);
+            log.info("Created index {} for alias {}", newIndex, alias);
+
+            long total = bulkLoad(newIndex, leaseName, source);
+
+            elasticsearchClient.indices().putSettings(p -> p
+                    .index(newIndex)
+                    .settings(s -> s
+                            .refreshInterval(t -> t.time(refreshInterval))
+                            .numberOfReplicas(replicas)));
+            newOps.refresh();
+
+            swapAlias(alias, newIndex);
+            deleteStaleIndices(alias, newIndex);
+            log.info("Alias {} now points to {} ({} documents)", alias, newIndex, total);
+            return total;
+        } catch (Exception e) {
+            deleteQuietly(newIndex);
+            throw new IllegalStateException("Rebuild of index " + alias + " failed: " + e.getMessage(), e);
+        } finally {
+            syncCheckpoint.release(leaseName);
+        }
+    }
+
+    private <T> long bulkLoad(String index, String leaseName, BatchSource<T> source) {
+        IndexCoordinates coordinates = IndexCoordinates.of(index);
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "es-reindex-" + index);
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Giới hạn số lô đang chờ ghi để không giữ quá nhiều document trong bộ nhớ
+        Semaphore inFlight = new Semaphore(parallelism * 2);
+        AtomicLong total = new AtomicLong();
+        AtomicInteger batches = new AtomicInteger();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        try {
+            while (true) {
+                List<T> documents = source.nextBatch();
+                if (documents.isEmpty()) {
+                    break;
+                }
+                // Gia hạn lease theo tiến độ, mất lease thì dừng để không ghi đè rebuild của replica khác
+                if (!syncCheckpoint.tryAcquire(leaseName)) {
+                    throw new IllegalStateException("Lost reindex lease " + leaseName);
+                }
+                inFlight.acquireUninterruptibly();
+                futures.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        elasticsearchOperations.save(documents, coordinates);
+                        total.addAndGet(documents.size());
+                        log.debug("Indexed batch {} into {} ({} documents)",
+                                batches.incrementAndGet(), index, documents.size());
+                    } finally {
+                        inFlight.release();
+                    }
+                }, executor));
+                futures.removeIf(future -> future.isDone() && !future.isCompletedExceptionally());
+                futures.stream().filter(CompletableFuture::isCompletedExceptionally).findFirst()
+                        .ifPresent(CompletableFuture::join);
+            }
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+            return total.get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Chuyển alias sang index mới trong một request updateAliases (nguyên tử)
+     */
+    private void swapAlias(String alias, String newIndex) {
+        List<String> currentTargets = aliasTargets(alias);
+        AliasActions actions = new AliasActions(new AliasAction.Add(
+                AliasActionParameters.builder().withIndices(newIndex).withAliases(alias).build()));
+        if (!currentTargets.isEmpty()) {
+            actions.add(new AliasAction.Remove(AliasActionParameters.builder()
+                    .withIndices(currentTargets.toArray(String[]::new)).withAliases(alias).build()));
+        } else if (elasticsearchOperations.indexOps(IndexCoordinates.of(alias)).exists()) {
+            // Bản cũ dùng index thật tên "products"/"stores": xóa nó cùng lúc với tạo alias
+            actions.add(new AliasAction.RemoveIndex(AliasActionParameters.builder().withIndices(alias).build()));
+        }
+        elasticsearchOperations.indexOps(IndexCoordinates.of(newIndex)).alias(actions);
+    }
+
+    /**
+     * Xóa index version cũ và index dở dang của các lần rebuild bị gián đoạn
+     */
+    private void deleteStaleIndices(String alias, String keepIndex) {
+        IndexCoordinates pattern = IndexCoordinates.of(alias + "_*");
+        for (IndexInformation information : elasticsearchOperations.indexOps(pattern).getInformation(pattern)) {
+            if (!information.getName().equals(keepIndex)) {
+                deleteQuietly(information.getName());
+            }
+        }
+    }
+
+    private List<String> aliasTargets(String alias) {
+        try {
+            Map<String, Set<AliasData>> aliases = elasticsearchOperations.indexOps(IndexCoordinates.of(alias))
+                    .getAliases(alias);
+            return new ArrayList<>(aliases.keySet());
+        } catch (Exception e) {
+            return List.of();
+        }
+    }
+
+    private void deleteQuietly(String index) {
+        try {
+            elasticsearchOperations.indexOps(IndexCoordinates.of(index)).delete();
+            log.info("Deleted index {}", index);
+        } catch (Exception e) {
+            log.warn("Could not delete index {}: {}", index, e.getMessage());
+        }
+    }
+
+    private String aliasOf(Class<?> documentClass) {
+        return elasticsearchOperations.getIndexCoordinatesFor(documentClass).getIndexName();
+    }
+
+    @SuppressWarnings("unchecked")
+    private String metaFingerprint(Document mapping) {
+        Object meta = mapping == null ? null : mapping.get("_meta");
+        return meta instanceof Map<?, ?> map ? (String) ((Map<String, Object>) map).get(META_FINGERPRINT) : null;
+    }
+
+    /**
+     * Hash của settings + mapping sinh từ document class, đổi khi annotation hoặc file settings thay đổi
+     */
+    private String fingerprint(Class<?> documentClass) {
+        IndexOperations classOps = elasticsearchOperations.indexOps(documentClass);
+        String source = classOps.createSettings().flatten().toJson() + classOps.createMapping().toJson();
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 6);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.vdt2025.product_service.service.search;
+
+import com.vdt2025.product_service.entity.SearchSyncState;
+import com.vdt2025.product_service.repository.SearchSyncStateRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lưu watermark và lease của incremental sync trong bảng search_sync_state
+ *
+ * - Lease: UPDATE có điều kiện (trống / hết hạn / của chính mình), replica nào cập nhật được dòng thì chạy sync
+ * - Watermark chỉ được tiến khi còn giữ lease, mỗi lần tiến đồng thời gia hạn lease
+ * - Gauge search.sync.lag{sync} = now - watermark (giây), replica không giữ lease vẫn báo lag theo lần đọc gần nhất
+ */
+@Component
+@Slf4j
+public class SearchSyncCheckpoint {
+
+    private final SearchSyncStateRepository stateRepository;
+    private final MeterRegistry meterRegistry;
+    private final Duration leaseDuration;
+    private final String owner = UUID.randomUUID().toString();
+    private final Map<String, AtomicReference<LocalDateTime>> watermarks = new ConcurrentHashMap<>();
+
+    public SearchSyncCheckpoint(SearchSyncStateRepository stateRepository,
+                                MeterRegistry meterRegistry,
+                                @Value("${search.sync.incremental.lease-seconds:120}") long leaseSeconds) {
+        this.stateRepository = stateRepository;
+        this.meterRegistry = meterRegistry;
+        this.leaseDuration = Duration.ofSeconds(leaseSeconds);
+    }
+
+    /**
+     * Nhận lease cho luồng sync, tạo dòng state nếu chưa có
+     *
+     * @return true nếu replica hiện tại được phép chạy sync
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public boolean tryAcquire(String syncName) {
+        stateRepository.createIfAbsent(syncName);
+        LocalDateTime now = LocalDateTime.now();
+        boolean acquired = stateRepository.tryAcquireLease(syncName, owner, now, now.plus(leaseDuration)) > 0;
+        if (!acquired) {
+            log.debug("Sync lease {} is held by another instance", syncName);
+        }
+        return acquired;
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void release(String syncName) {
+        stateRepository.releaseLease(syncName, owner);
+    }
+
+    /**
+     * Đọc state hiện tại và cập nhật gauge lag
+     */
+    @Transactional(readOnly = true)
+    public SearchSyncState load(String syncName) {
+        SearchSyncState state = stateRepository.findById(syncName)
+                .orElseGet(() -> SearchSyncState.builder().syncName(syncName).build());
+        watermark(syncName).set(state.getWatermarkAt());
+        return state;
+    }
+
+    /**
+     * Tiến watermark sau khi một lô đã được đẩy lên index
+     *
+     * @return false nếu lease đã mất (hết hạn và replica khác đã nhận), khi đó phải dừng sync
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public boolean advance(String syncName, LocalDateTime watermarkAt, String watermarkId) {
+        LocalDateTime now = LocalDateTime.now();
+        boolean advanced = stateRepository.advanceWatermark(
+                syncName, owner, watermarkAt, watermarkId, now, now.plus(leaseDuration)) > 0;
+        if (advanced) {
+            watermark(syncName).set(watermarkAt);
+        } else {
+            log.warn("Lost sync lease {} while advancing watermark to {}", syncName, watermarkAt);
+        }
+        return advanced;
+    }
+
+    private AtomicReference<LocalDateTime> watermark(String syncName) {
+        return watermarks.computeIfAbsent(syncName, name -> {
+            AtomicReference<LocalDateTime> ref = new AtomicReference<>();
+            Gauge.builder("search.sync.lag", ref, r -> r.get() == null
+                            ? Double.NaN
+                            : Duration.between(r.get(), LocalDateTime.now()).toMillis() / 1000.0)
+                    .tag("sync", name)
+                    .baseUnit("seconds")
+                    .description("Khoảng trễ giữa thời điểm hiện tại và watermark của incremental sync")
+                    .register(meterRegistry);
+            return ref;
+        });
+    }
+}
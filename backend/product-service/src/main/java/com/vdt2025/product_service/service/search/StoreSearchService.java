@@ -16,6 +16,13 @@ public interface StoreSearchService {
      */
     StoreSearchResponse search(StoreSearchRequest request, Pageable pageable);
 
+    /**
+     * Tìm kiếm theo cursor (point-in-time + search_after) cho phân trang sâu / infinite scroll
+     *
+     * @param cursor nextCursor của trang trước, null cho trang đầu
+     */
+    StoreSearchResponse searchAfter(StoreSearchRequest request, String cursor, int size);
+
     /**
      * Autocomplete/suggestions cho tìm kiếm cửa hàng
      */
@@ -17,13 +17,14 @@ import com.vdt2025.product_service.dto.response.search.StoreSearchResponse.*;
 import com.vdt2025.product_service.entity.Store;
 import com.vdt2025.product_service.repository.StoreRepository;
 import com.vdt2025.product_service.repository.elasticsearch.StoreSearchRepository;
+import com.vdt2025.product_service.service.suggest.SuggestionService;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
-import org.springframework.data.elasticsearch.core.IndexOperations;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -47,6 +48,9 @@ public class StoreSearchServiceImpl implements StoreSearchService {
     StoreSearchRepository storeSearchRepository;
     StoreRepository storeRepository;
     StoreIndexMapper storeIndexMapper;
+    ElasticsearchSyncService elasticsearchSyncService;
+    SuggestionService suggestionService;
+    SearchCursors searchCursors;
 
     private static final String INDEX_NAME = "stores";
 
@@ -72,6 +76,32 @@ public class StoreSearchServiceImpl implements StoreSearchService {
         }
     }
 
+    @Override
+    public StoreSearchResponse searchAfter(StoreSearchRequest request, String cursor, int size) {
+        boolean firstPage = !StringUtils.hasText(cursor);
+        log.info("Cursor search stores with keyword: {}, first page: {}, size: {}",
+                request.getKeyword(), firstPage, size);
+
+        try {
+            // Aggregations chỉ tính ở trang đầu
+            boolean withAggregations = firstPage && Boolean.TRUE.equals(request.getEnableAggregation());
+            SearchCursors.CursorPage<StoreDocument> page = searchCursors.page(INDEX_NAME, cursor, queryKey(request),
+                    size, s -> applySearchBody(s, request, withAggregations), StoreDocument.class);
+
+            StoreSearchResponse result = mapSearchResponse(page.response(), PageRequest.of(0, size), request);
+            if (!withAggregations) {
+                result.setAggregations(null);
+            }
+            result.setCurrentPage(null);
+            result.setNextCursor(page.nextCursor());
+            return result;
+
+        } catch (IOException e) {
+            log.error("Error cursor searching stores: {}", e.getMessage(), e);
+            throw new RuntimeException("Store search failed", e);
+        }
+    }
+
     @Override
     public List<String> suggest(String prefix, int size) {
         if (!StringUtils.hasText(prefix) || prefix.length() < 2) {
@@ -80,6 +110,11 @@ public class StoreSearchServiceImpl implements StoreSearchService {
 
         log.debug("Getting store suggestions for prefix: {}", prefix);
 
+        Optional<List<String>> suggestions = suggestionService.suggest(prefix, size, SuggestionService.STORE_TYPES);
+        if (suggestions.isPresent()) {
+            return suggestions.get();
+        }
+
         try {
             SearchRequest request = SearchRequest.of(s -> s
                     .index(INDEX_NAME)
@@ -134,10 +169,12 @@ public class StoreSearchServiceImpl implements StoreSearchService {
             if (store.isActive()) {
                 StoreDocument document = storeIndexMapper.toDocument(store);
                 storeSearchRepository.save(document);
+                suggestionService.upsertStore(storeId, store.getStoreName(), store.getTotalSold());
                 log.info("Store {} indexed successfully", storeId);
             } else {
                 // Remove inactive store from index
                 storeSearchRepository.deleteById(storeId);
+                suggestionService.removeStore(storeId);
                 log.info("Store {} removed from index (inactive)", storeId);
             }
         });
@@ -156,6 +193,9 @@ public class StoreSearchServiceImpl implements StoreSearchService {
                 .collect(Collectors.toList());
 
         storeSearchRepository.saveAll(documents);
+        stores.stream()
+                .filter(Store::isActive)
+                .forEach(store -> suggestionService.upsertStore(store.getId(), store.getStoreName(), store.getTotalSold()));
         log.info("{} stores indexed successfully", documents.size());
     }
 
@@ -163,48 +203,17 @@ public class StoreSearchServiceImpl implements StoreSearchService {
     public void deleteFromIndex(String storeId) {
         log.info("Deleting store from index: {}", storeId);
         storeSearchRepository.deleteById(storeId);
+        suggestionService.removeStore(storeId);
     }
 
+    /**
+     * Reindex blue/green qua alias (xem {@link ElasticsearchSyncService#syncAllStores()}),
+     * không xóa index đang phục vụ search
+     */
     @Override
-    @Async("elasticsearchTaskExecutor")
-    @Transactional(readOnly = true)
     public void reindexAll() {
         log.info("Starting full reindex of all stores");
-
-        // Delete and recreate index
-        IndexOperations indexOps = elasticsearchOperations.indexOps(StoreDocument.class);
-        if (indexOps.exists()) {
-            indexOps.delete();
-        }
-        indexOps.create();
-        indexOps.putMapping(indexOps.createMapping());
-
-        // Batch index all active stores
-        int batchSize = 100;
-        int page = 0;
-        long totalIndexed = 0;
-
-        while (true) {
-            List<Store> stores = storeRepository.findAllByIsActiveTrue(
-                    org.springframework.data.domain.PageRequest.of(page, batchSize)
-            ).getContent();
-
-            if (stores.isEmpty()) {
-                break;
-            }
-
-            List<StoreDocument> documents = stores.stream()
-                    .map(storeIndexMapper::toDocument)
-                    .collect(Collectors.toList());
-
-            storeSearchRepository.saveAll(documents);
-            totalIndexed += documents.size();
-            page++;
-
-            log.info("Indexed store batch {}, total: {}", page, totalIndexed);
-        }
-
-        log.info("Store reindex completed. Total stores indexed: {}", totalIndexed);
+        elasticsearchSyncService.syncAllStores();
     }
 
     @Override
@@ -222,42 +231,65 @@ public class StoreSearchServiceImpl implements StoreSearchService {
     private SearchRequest buildSearchRequest(StoreSearchRequest request, Pageable pageable) {
         return SearchRequest.of(s -> {
             s.index(INDEX_NAME)
-                    .query(buildQuery(request))
                     .from((int) pageable.getOffset())
                     .size(pageable.getPageSize());
+            applySearchBody(s, request, Boolean.TRUE.equals(request.getEnableAggregation()));
+            return s;
+        });
+    }
 
-            // Add sorting
-            addSorting(s, request);
-
-            // Add highlighting if enabled
-            if (Boolean.TRUE.equals(request.getEnableHighlight())) {
-                s.highlight(h -> h
-                        .fields("storeName", hf -> hf
-                                .preTags("<em>")
-                                .postTags("</em>")
-                                .numberOfFragments(0)
-                        )
-                        .fields("storeDescription", hf -> hf
-                                .preTags("<em>")
-                                .postTags("</em>")
-                                .fragmentSize(150)
-                                .numberOfFragments(3)
-                        )
-                        .fields("shopAddress", hf -> hf
-                                .preTags("<em>")
-                                .postTags("</em>")
-                                .numberOfFragments(0)
-                        )
-                );
-            }
+    /**
+     * Query, sort, highlight và aggregations dùng chung cho phân trang from/size và search_after
+     */
+    private void applySearchBody(SearchRequest.Builder s, StoreSearchRequest request, boolean withAggregations) {
+        s.query(buildQuery(request));
+
+        // Add sorting
+        addSorting(s, request);
+
+        // Add highlighting if enabled
+        if (Boolean.TRUE.equals(request.getEnableHighlight())) {
+            s.highlight(h -> h
+                    .fields("storeName", hf -> hf
+                            .preTags("<em>")
+                            .postTags("</em>")
+                            .numberOfFragments(0)
+                    )
+                    .fields("storeDescription", hf -> hf
+                            .preTags("<em>")
+                            .postTags("</em>")
+                            .fragmentSize(150)
+                            .numberOfFragments(3)
+                    )
+                    .fields("shopAddress", hf -> hf
+                            .preTags("<em>")
+                            .postTags("</em>")
+                            .numberOfFragments(0)
+                    )
+            );
+        }
 
-            // Add aggregations if enabled
-            if (Boolean.TRUE.equals(request.getEnableAggregation())) {
-                addAggregations(s);
-            }
+        // Add aggregations if enabled
+        if (withAggregations) {
+            addAggregations(s);
+        }
+    }
 
-            return s;
-        });
+    /**
+     * Các field quyết định tập kết quả và thứ tự, cursor chỉ hợp lệ với cùng giá trị này
+     */
+    private String queryKey(StoreSearchRequest request) {
+        return StoreSearchRequest.builder()
+                .keyword(request.getKeyword())
+                .provinceId(request.getProvinceId())
+                .wardId(request.getWardId())
+                .minRating(request.getMinRating())
+                .minProducts(request.getMinProducts())
+                .sortBy(request.getSortBy())
+                .sortDirection(request.getSortDirection())
+                .enableFuzzy(request.getEnableFuzzy())
+                .build()
+                .toString();
     }
 
     private Query buildQuery(StoreSearchRequest request) {
@@ -0,0 +1,94 @@
+package com.vdt2025.product_service.service.selection;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Chỉ mục tương thích option - variant của một product (dựng một lần, lưu trong cache productSelectionIndex)
+ *
+ * - Variant đang active được đánh số liên tục 0..n-1 theo {@link #getVariantIds()}
+ * - Mỗi option giữ danh sách số thứ tự variant được link; khi nạp (kể cả từ Redis) chuyển thành BitSet
+ * - Availability và tìm variant theo selections là phép giao BitSet, không truy cập DB
+ *
+ * Dạng lưu cache là list số thứ tự (Jackson serialize được), BitSet chỉ nằm trong bộ nhớ.
+ */
+public final class ProductSelectionIndex {
+
+    private final List<String> variantIds;
+    private final Map<String, List<Integer>> optionVariants;
+
+    @JsonIgnore
+    private final Map<String, BitSet> optionBits;
+
+    @JsonCreator
+    public ProductSelectionIndex(@JsonProperty("variantIds") List<String> variantIds,
+                                 @JsonProperty("optionVariants") Map<String, List<Integer>> optionVariants) {
+        // ArrayList/HashMap (không dùng List.copyOf) để default typing của cache deserialize được
+        this.variantIds = new ArrayList<>(variantIds);
+        this.optionVariants = new HashMap<>(optionVariants);
+        this.optionBits = new HashMap<>(optionVariants.size());
+        optionVariants.forEach((optionId, positions) -> {
+            BitSet bits = new BitSet(variantIds.size());
+            positions.forEach(bits::set);
+            optionBits.put(optionId, bits);
+        });
+    }
+
+    public List<String> getVariantIds() {
+        return variantIds;
+    }
+
+    public Map<String, List<Integer>> getOptionVariants() {
+        return optionVariants;
+    }
+
+    /**
+     * Tập variant có đủ tất cả các option đã biết trong danh sách (option lạ bị bỏ qua)
+     *
+     * @return empty nếu không có option nào thuộc product
+     */
+    public Optional<BitSet> compatible(Collection<String> optionIds) {
+        BitSet result = null;
+        for (String optionId : optionIds) {
+            BitSet bits = optionBits.get(optionId);
+            if (bits == null) {
+                continue;
+            }
+            if (result == null) {
+                result = (BitSet) bits.clone();
+            } else {
+                result.and(bits);
+            }
+        }
+        return Optional.ofNullable(result);
+    }
+
+    /**
+     * Option còn ít nhất một variant trong tập compatible
+     */
+    public boolean intersects(String optionId, BitSet compatible) {
+        BitSet bits = optionBits.get(optionId);
+        return bits != null && bits.intersects(compatible);
+    }
+
+    /**
+     * Variant có đủ tất cả option (giống query findVariantByOptionIds: option không thuộc product thì không khớp)
+     * Nhiều variant cùng khớp thì lấy variant đầu tiên theo thứ tự đánh số
+     */
+    public Optional<String> findVariant(Collection<String> optionIds) {
+        if (optionIds.isEmpty() || !optionBits.keySet().containsAll(optionIds)) {
+            return Optional.empty();
+        }
+        int position = compatible(optionIds).map(bits -> bits.nextSetBit(0)).orElse(-1);
+        return position >= 0 ? Optional.of(variantIds.get(position)) : Optional.empty();
+    }
+}
@@ -0,0 +1,57 @@
+package com.vdt2025.product_service.service.selection;
+
+import com.vdt2025.product_service.entity.ProductSelectionOption;
+import com.vdt2025.product_service.entity.ProductVariant;
+import com.vdt2025.product_service.exception.AppException;
+import com.vdt2025.product_service.exception.ErrorCode;
+import com.vdt2025.product_service.repository.ProductRepository;
+import com.vdt2025.product_service.repository.ProductVariantRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dựng {@link ProductSelectionIndex} từ một query (variant active + option đã fetch sẵn)
+ * Cache productSelectionIndex được xóa cùng productSelectionConfig qua CacheEvictService.evictProductSelectionConfig
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class ProductSelectionIndexLoader {
+
+    ProductRepository productRepository;
+    ProductVariantRepository variantRepository;
+
+    @Cacheable(value = "productSelectionIndex", key = "#productId")
+    @Transactional(readOnly = true)
+    public ProductSelectionIndex load(String productId) {
+        if (!productRepository.existsById(productId)) {
+            throw new AppException(ErrorCode.PRODUCT_NOT_FOUND);
+        }
+
+        List<ProductVariant> variants = variantRepository.findByProductIdWithSelectionsAndStock(productId);
+        List<String> variantIds = new ArrayList<>(variants.size());
+        Map<String, List<Integer>> optionVariants = new HashMap<>();
+        for (ProductVariant variant : variants) {
+            int position = variantIds.size();
+            variantIds.add(variant.getId());
+            for (ProductSelectionOption option : variant.getSelectionOptions()) {
+                optionVariants.computeIfAbsent(option.getId(), id -> new ArrayList<>()).add(position);
+            }
+        }
+
+        log.debug("Built selection index for product {} with {} variants and {} options",
+                productId, variantIds.size(), optionVariants.size());
+        return new ProductSelectionIndex(variantIds, optionVariants);
+    }
+}
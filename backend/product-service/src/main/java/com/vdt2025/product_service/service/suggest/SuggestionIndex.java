@@ -0,0 +1,206 @@
+package com.vdt2025.product_service.service.suggest;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Chỉ mục prefix bất biến cho gợi ý tìm kiếm (search-as-you-type)
+ *
+ * - Mỗi term (tên sản phẩm, thương hiệu, danh mục, cửa hàng) được chuẩn hóa bỏ dấu tiếng Việt rồi sinh key
+ *   cho từng vị trí bắt đầu từ (gõ "galaxy" vẫn ra "Samsung Galaxy S24")
+ * - Key được sắp xếp trong một mảng, các key có cùng prefix nằm liên tiếp: tìm đoạn bằng binary search
+ * - Segment tree lưu vị trí có trọng số lớn nhất của mỗi đoạn, top-k lấy bằng cách tách đoạn quanh phần tử
+ *   lớn nhất (k lần truy vấn O(log n)), không phụ thuộc số key khớp prefix
+ *
+ * Instance không đổi sau khi build nên đọc đồng thời không cần khóa
+ */
+public final class SuggestionIndex {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^a-z0-9]+");
+    private static final int MAX_WORD_KEYS = 6;
+    // Giới hạn số đoạn được xét cho một truy vấn khi filter loại nhiều term
+    private static final int MAX_VISITS = 4096;
+
+    public enum Type {
+        PRODUCT, BRAND, CATEGORY, STORE
+    }
+
+    /**
+     * @param id     định danh duy nhất trong index, dạng {type}:{entity id}
+     * @param weight độ phổ biến (sold count...), term nặng hơn được gợi ý trước
+     */
+    public record Term(String id, Type type, String text, long weight) {
+    }
+
+    private final Term[] terms;
+    private final String[] keys;
+    private final int[] termOfKey;
+    private final long[] scores;
+    // Segment tree bottom-up: tree[size + i] = i, node trong giữ vị trí có score lớn nhất của hai con
+    private final int[] tree;
+    private final int size;
+
+    private SuggestionIndex(Term[] terms, String[] keys, int[] termOfKey, long[] scores) {
+        this.terms = terms;
+        this.keys = keys;
+        this.termOfKey = termOfKey;
+        this.scores = scores;
+        this.size = keys.length;
+        this.tree = new int[Math.max(2, 2 * size)];
+        for (int i = 0; i < size; i++) {
+            tree[size + i] = i;
+        }
+        for (int node = size - 1; node > 0; node--) {
+            tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+        }
+    }
+
+    public static SuggestionIndex build(Collection<Term> source) {
+        Term[] terms = source.toArray(Term[]::new);
+        List<String> keyList = new ArrayList<>();
+        List<long[]> meta = new ArrayList<>();
+        for (int t = 0; t < terms.length; t++) {
+            String[] words = normalize(terms[t].text()).split(" ");
+            if (words.length == 0 || words[0].isEmpty()) {
+                continue;
+            }
+            for (int w = 0; w < Math.min(words.length, MAX_WORD_KEYS); w++) {
+                keyList.add(String.join(" ", Arrays.copyOfRange(words, w, words.length)));
+                // Khớp từ đầu tên được ưu tiên hơn khớp từ giữa khi cùng trọng số
+                meta.add(new long[]{t, terms[t].weight() * 2 + (w == 0 ? 1 : 0)});
+            }
+        }
+
+        Integer[] order = new Integer[keyList.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing(keyList::get));
+
+        String[] keys = new String[order.length];
+        int[] termOfKey = new int[order.length];
+        long[] scores = new long[order.length];
+        for (int i = 0; i < order.length; i++) {
+            keys[i] = keyList.get(order[i]);
+            termOfKey[i] = (int) meta.get(order[i])[0];
+            scores[i] = meta.get(order[i])[1];
+        }
+        return new SuggestionIndex(terms, keys, termOfKey, scores);
+    }
+
+    public static SuggestionIndex empty() {
+        return build(List.of());
+    }
+
+    /**
+     * Lấy tối đa k term khớp prefix (đã chuẩn hóa), theo trọng số giảm dần, không trùng text hiển thị
+     */
+    public List<Term> topK(String normalizedPrefix, int k, Predicate<Term> accept) {
+        int from = lowerBound(normalizedPrefix);
+        int to = lowerBound(normalizedPrefix + Character.MAX_VALUE);
+        List<Term> result = new ArrayList<>(k);
+        if (from >= to || k <= 0) {
+            return result;
+        }
+
+        Set<String> seenIds = new HashSet<>();
+        Set<String> seenTexts = new HashSet<>();
+        PriorityQueue<int[]> ranges = new PriorityQueue<>((a, b) -> Long.compare(scores[b[2]], scores[a[2]]));
+        ranges.add(new int[]{from, to, argMax(from, to)});
+        int visits = 0;
+        while (!ranges.isEmpty() && result.size() < k && visits++ < MAX_VISITS) {
+            int[] range = ranges.poll();
+            int position = range[2];
+            Term term = terms[termOfKey[position]];
+            if (seenIds.add(term.id()) && accept.test(term)
+                    && seenTexts.add(term.text().toLowerCase(Locale.ROOT))) {
+                result.add(term);
+            }
+            if (range[0] < position) {
+                ranges.add(new int[]{range[0], position, argMax(range[0], position)});
+            }
+            if (position + 1 < range[1]) {
+                ranges.add(new int[]{position + 1, range[1], argMax(position + 1, range[1])});
+            }
+        }
+        return result;
+    }
+
+    public int termCount() {
+        return terms.length;
+    }
+
+    /**
+     * Term có từ nào (tính từ vị trí bắt đầu từ) khớp prefix đã chuẩn hóa không
+     */
+    public static boolean matches(String normalizedText, String normalizedPrefix) {
+        if (normalizedText.startsWith(normalizedPrefix)) {
+            return true;
+        }
+        int words = 1;
+        for (int i = normalizedText.indexOf(' '); i >= 0 && words < MAX_WORD_KEYS; i = normalizedText.indexOf(' ', i + 1)) {
+            words++;
+            if (normalizedText.startsWith(normalizedPrefix, i + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Chuẩn hóa để so khớp không dấu: "Điện Thoại  Sam-sung" -> "dien thoai sam sung"
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String stripped = COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        String lower = stripped.replace('đ', 'd').replace('Đ', 'd').toLowerCase(Locale.ROOT);
+        return NON_ALPHANUMERIC.matcher(lower).replaceAll(" ").trim();
+    }
+
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Vị trí có score lớn nhất trong [from, to)
+     */
+    private int argMax(int from, int to) {
+        int best = from;
+        for (int l = from + size, r = to + size; l < r; l >>= 1, r >>= 1) {
+            if ((l & 1) == 1) {
+                best = better(best, tree[l++]);
+            }
+            if ((r & 1) == 1) {
+                best = better(best, tree[--r]);
+            }
+        }
+        return best;
+    }
+
+    private int better(int a, int b) {
+        return scores[b] > scores[a] ? b : a;
+    }
+}
@@ -0,0 +1,270 @@
+package com.vdt2025.product_service.service.suggest;
+
+import com.vdt2025.product_service.document.ProductDocument;
+import com.vdt2025.product_service.repository.ProductRepository;
+import com.vdt2025.product_service.repository.StoreRepository;
+import com.vdt2025.product_service.service.suggest.SuggestionIndex.Term;
+import com.vdt2025.product_service.service.suggest.SuggestionIndex.Type;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gợi ý tìm kiếm từ chỉ mục prefix trong bộ nhớ, Elasticsearch chỉ còn là fallback
+ *
+ * - Snapshot {@link SuggestionIndex} được build từ DB (product đang bán, thương hiệu, danh mục, cửa hàng)
+ *   và build lại định kỳ hoặc khi số thay đổi chưa gộp vượt rebuild-threshold
+ * - Thay đổi giữa hai lần build (từ pipeline index product, sync store) nằm trong overlay nhỏ,
+ *   ghi đè term cùng id trong snapshot khi truy vấn
+ * - {@link #suggest} trả về empty khi chưa có snapshot hoặc không có term nào khớp (có thể gõ sai),
+ *   lúc đó caller dùng truy vấn fuzzy của Elasticsearch
+ *
+ * Metrics: search.suggest.requests{source=memory|fallback}, search.suggest.rebuild, search.suggest.terms
+ */
+@Component
+@Slf4j
+public class SuggestionService {
+
+    public static final Set<Type> PRODUCT_TYPES = Set.of(Type.PRODUCT, Type.BRAND, Type.CATEGORY);
+    public static final Set<Type> STORE_TYPES = Set.of(Type.STORE);
+
+    private final ProductRepository productRepository;
+    private final StoreRepository storeRepository;
+
+    private final boolean enabled;
+    private final Duration rebuildInterval;
+    private final int rebuildThreshold;
+    private final int batchSize;
+
+    private volatile SuggestionIndex snapshot;
+    private volatile long builtAtMillis;
+    // term id -> thay đổi sau snapshot (term null = đã xóa)
+    private final Map<String, PendingTerm> overrides = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+
+    private final Counter memoryCounter;
+    private final Counter fallbackCounter;
+    private final Timer rebuildTimer;
+
+    public SuggestionService(ProductRepository productRepository,
+                             StoreRepository storeRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${search.suggest.enabled:true}") boolean enabled,
+                             @Value("${search.suggest.rebuild-interval-minutes:30}") long rebuildIntervalMinutes,
+                             @Value("${search.suggest.rebuild-threshold:2000}") int rebuildThreshold,
+                             @Value("${search.suggest.batch-size:2000}") int batchSize) {
+        this.productRepository = productRepository;
+        this.storeRepository = storeRepository;
+        this.enabled = enabled;
+        this.rebuildInterval = Duration.ofMinutes(rebuildIntervalMinutes);
+        this.rebuildThreshold = rebuildThreshold;
+        this.batchSize = batchSize;
+
+        this.memoryCounter = requests(meterRegistry, "memory");
+        this.fallbackCounter = requests(meterRegistry, "fallback");
+        this.rebuildTimer = Timer.builder("search.suggest.rebuild")
+                .description("Time spent rebuilding the in-memory suggestion index")
+                .register(meterRegistry);
+        Gauge.builder("search.suggest.terms", this, service -> service.snapshot != null
+                        ? service.snapshot.termCount()
+                        : 0)
+                .description("Number of terms in the current suggestion index snapshot")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Gợi ý theo prefix (không phân biệt dấu, khớp đầu từ)
+     *
+     * @return empty nếu chỉ mục chưa sẵn sàng hoặc không có kết quả - caller fallback sang Elasticsearch
+     */
+    public Optional<List<String>> suggest(String prefix, int size, Set<Type> types) {
+        SuggestionIndex index = snapshot;
+        String normalizedPrefix = SuggestionIndex.normalize(prefix);
+        if (!enabled || index == null || normalizedPrefix.isEmpty()) {
+            fallbackCounter.increment();
+            return Optional.empty();
+        }
+
+        List<Term> candidates = new ArrayList<>(index.topK(normalizedPrefix, size,
+                term -> types.contains(term.type()) && !overrides.containsKey(term.id())));
+        overrides.values().stream()
+                .filter(change -> change.term() != null && types.contains(change.term().type()))
+                .filter(change -> SuggestionIndex.matches(change.normalized(), normalizedPrefix))
+                .forEach(change -> candidates.add(change.term()));
+
+        Set<String> seenTexts = new HashSet<>();
+        List<String> suggestions = candidates.stream()
+                .sorted(Comparator.comparingLong(Term::weight).reversed())
+                .map(Term::text)
+                .filter(text -> seenTexts.add(text.toLowerCase(Locale.ROOT)))
+                .limit(size)
+                .toList();
+        if (suggestions.isEmpty()) {
+            fallbackCounter.increment();
+            return Optional.empty();
+        }
+        memoryCounter.increment();
+        return Optional.of(suggestions);
+    }
+
+    /**
+     * Cập nhật tên/độ phổ biến của product vừa được index, product ngừng bán thì bị xóa khỏi gợi ý
+     */
+    public void upsertProduct(ProductDocument document) {
+        if (!document.isActive() || document.isDeleted()) {
+            removeProduct(document.getId());
+            return;
+        }
+        // Thương hiệu/danh mục giữ trọng số tổng hợp của snapshot, được cập nhật ở lần build sau
+        put(new Term(id(Type.PRODUCT, document.getId()), Type.PRODUCT, document.getName(),
+                productWeight(document.getSoldCount())));
+    }
+
+    public void removeProduct(String productId) {
+        remove(id(Type.PRODUCT, productId));
+    }
+
+    public void upsertStore(String storeId, String storeName, Integer totalSold) {
+        put(new Term(id(Type.STORE, storeId), Type.STORE, storeName, productWeight(totalSold)));
+    }
+
+    public void removeStore(String storeId) {
+        remove(id(Type.STORE, storeId));
+    }
+
+    /**
+     * Build snapshot lần đầu, build lại khi đến hạn hoặc overlay quá lớn
+     */
+    @Scheduled(fixedDelayString = "${search.suggest.check-interval-ms:10000}",
+            initialDelayString = "${search.suggest.initial-delay-ms:5000}")
+    public void maintain() {
+        if (!enabled) {
+            return;
+        }
+        boolean due = snapshot == null
+                || overrides.size() >= rebuildThreshold
+                || System.currentTimeMillis() - builtAtMillis >= rebuildInterval.toMillis();
+        if (due) {
+            rebuild();
+        }
+    }
+
+    public void rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long startSequence = sequence.get();
+            long startTime = System.currentTimeMillis();
+            SuggestionIndex index = rebuildTimer.record(() -> SuggestionIndex.build(loadTerms()));
+            snapshot = index;
+            builtAtMillis = System.currentTimeMillis();
+            // Thay đổi trước lúc bắt đầu load đã có trong snapshot
+            overrides.values().removeIf(change -> change.sequence() <= startSequence);
+            log.info("Suggestion index rebuilt with {} terms in {} ms ({} pending changes)",
+                    index.termCount(), builtAtMillis - startTime, overrides.size());
+        } catch (Exception e) {
+            log.error("Failed to rebuild suggestion index: {}", e.getMessage(), e);
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    private List<Term> loadTerms() {
+        List<Term> terms = new ArrayList<>();
+        // Trọng số thương hiệu/danh mục = tổng trọng số product của chúng
+        Map<String, Term> brands = new HashMap<>();
+        Map<String, Term> categories = new HashMap<>();
+
+        String afterId = "";
+        while (true) {
+            List<Object[]> rows = productRepository.findSuggestionSourceAfter(afterId, PageRequest.of(0, batchSize));
+            for (Object[] row : rows) {
+                String productId = (String) row[0];
+                long weight = productWeight((Integer) row[2]);
+                if (row[1] != null) {
+                    terms.add(new Term(id(Type.PRODUCT, productId), Type.PRODUCT, (String) row[1], weight));
+                }
+                accumulate(brands, Type.BRAND, (String) row[3], (String) row[4], weight);
+                accumulate(categories, Type.CATEGORY, (String) row[5], (String) row[6], weight);
+            }
+            if (rows.size() < batchSize) {
+                break;
+            }
+            afterId = (String) rows.get(rows.size() - 1)[0];
+        }
+        terms.addAll(brands.values());
+        terms.addAll(categories.values());
+
+        for (Object[] row : storeRepository.findSuggestionSource()) {
+            if (row[1] != null) {
+                terms.add(new Term(id(Type.STORE, (String) row[0]), Type.STORE, (String) row[1],
+                        productWeight((Integer) row[2])));
+            }
+        }
+        return terms;
+    }
+
+    private void accumulate(Map<String, Term> terms, Type type, String entityId, String text, long weight) {
+        if (entityId == null || text == null) {
+            return;
+        }
+        terms.merge(entityId, new Term(id(type, entityId), type, text, weight),
+                (existing, added) -> new Term(existing.id(), type, existing.text(), existing.weight() + weight));
+    }
+
+    private void put(Term term) {
+        if (term.text() == null) {
+            return;
+        }
+        overrides.put(term.id(), new PendingTerm(term, SuggestionIndex.normalize(term.text()), sequence.incrementAndGet()));
+    }
+
+    private void remove(String termId) {
+        overrides.put(termId, new PendingTerm(null, "", sequence.incrementAndGet()));
+    }
+
+    private static long productWeight(Integer soldCount) {
+        // +1 để sản phẩm chưa bán vẫn có thứ tự ổn định theo tên khớp đầu
+        return (soldCount != null ? Math.max(0, soldCount) : 0) + 1L;
+    }
+
+    private static String id(Type type, String entityId) {
+        return type.name() + ":" + entityId;
+    }
+
+    private Counter requests(MeterRegistry registry, String source) {
+        return Counter.builder("search.suggest.requests")
+                .tag("source", source)
+                .register(registry);
+    }
+
+    /**
+     * Thay đổi chưa có trong snapshot
+     *
+     * @param normalized text đã chuẩn hóa của term, tính sẵn để lọc overlay không phải chuẩn hóa lại mỗi truy vấn
+     */
+    private record PendingTerm(Term term, String normalized, long sequence) {
+    }
+}
@@ -0,0 +1,146 @@
+package com.vdt2025.product_service.specification;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vdt2025.product_service.entity.Product;
+import com.vdt2025.product_service.exception.AppException;
+import com.vdt2025.product_service.exception.ErrorCode;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.function.Function;
+
+/**
+ * Keyset (seek) pagination cho danh sách sản phẩm: WHERE (sortKey, id) sau cursor ORDER BY sortKey, id LIMIT n
+ *
+ * - Không dùng OFFSET nên trang sâu có chi phí như trang đầu, đi theo index (sort_key, id)
+ * - id là tie-breaker nên thứ tự ổn định kể cả khi nhiều sản phẩm cùng giá trị sort
+ * - Cột nullable (average_rating, min_price) chỉ liệt kê sản phẩm có giá trị
+ *   (chưa có đánh giá / chưa có variant thì không có thứ hạng theo cột đó)
+ * - Cursor là token mờ (base64url JSON) gồm cột sort, chiều sort, giá trị và id của dòng cuối trang
+ */
+public final class ProductKeyset {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private ProductKeyset() {
+    }
+
+    /**
+     * Các cột hỗ trợ seek, mỗi cột có composite index (column, id)
+     */
+    public enum SortKey {
+        SOLD_COUNT("soldCount", false, Integer::valueOf, Product::getSoldCount),
+        AVERAGE_RATING("averageRating", true, Double::valueOf, Product::getAverageRating),
+        CREATED_AT("createdAt", false, LocalDateTime::parse, Product::getCreatedAt),
+        MIN_PRICE("minPrice", true, BigDecimal::new, Product::getMinPrice);
+
+        private final String field;
+        private final boolean nullable;
+        private final Function<String, Comparable<?>> parser;
+        private final Function<Product, Object> extractor;
+
+        SortKey(String field, boolean nullable, Function<String, Comparable<?>> parser,
+                Function<Product, Object> extractor) {
+            this.field = field;
+            this.nullable = nullable;
+            this.parser = parser;
+            this.extractor = extractor;
+        }
+
+        public String field() {
+            return field;
+        }
+
+        /**
+         * Map sortBy của request (cùng alias với searchProductsInternal) sang cột seek
+         *
+         * @throws AppException UNSUPPORTED_LISTING_SORT nếu cột không hỗ trợ seek
+         */
+        public static SortKey from(String sortBy) {
+            if (sortBy == null || sortBy.isBlank()) {
+                return CREATED_AT;
+            }
+            String field = switch (sortBy) {
+                case "price" -> "minPrice";
+                case "sold" -> "soldCount";
+                default -> sortBy;
+            };
+            for (SortKey key : values()) {
+                if (key.field.equalsIgnoreCase(field)) {
+                    return key;
+                }
+            }
+            throw new AppException(ErrorCode.UNSUPPORTED_LISTING_SORT);
+        }
+    }
+
+    /**
+     * Vị trí dòng cuối của trang trước
+     *
+     * @param k cột sort
+     * @param d chiều sort (asc/desc)
+     * @param v giá trị cột sort dạng chuỗi
+     * @param i id sản phẩm
+     */
+    public record Cursor(String k, String d, String v, String i) {
+    }
+
+    public static Sort sort(SortKey key, Sort.Direction direction) {
+        return Sort.by(direction, key.field).and(Sort.by(direction, "id"));
+    }
+
+    /**
+     * Điều kiện seek: (key, id) > cursor với asc, (key, id) < cursor với desc
+     * Cursor null chỉ thêm điều kiện NOT NULL cho cột nullable
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static Specification<Product> after(SortKey key, Sort.Direction direction, Cursor cursor) {
+        return (root, query, cb) -> {
+            Path<Comparable> path = root.get(key.field);
+            Predicate notNull = key.nullable ? cb.isNotNull(path) : cb.conjunction();
+            if (cursor == null) {
+                return notNull;
+            }
+            Comparable value = key.parser.apply(cursor.v());
+            Path<String> id = root.get("id");
+            Predicate seek = direction.isAscending()
+                    ? cb.or(cb.greaterThan(path, value), cb.and(cb.equal(path, value), cb.greaterThan(id, cursor.i())))
+                    : cb.or(cb.lessThan(path, value), cb.and(cb.equal(path, value), cb.lessThan(id, cursor.i())));
+            return cb.and(notNull, seek);
+        };
+    }
+
+    public static String encode(SortKey key, Sort.Direction direction, Product last) {
+        Object value = key.extractor.apply(last);
+        Cursor cursor = new Cursor(key.name(), direction.name(), value != null ? value.toString() : null, last.getId());
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(OBJECT_MAPPER.writeValueAsBytes(cursor));
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not encode listing cursor", e);
+        }
+    }
+
+    /**
+     * Giải mã cursor và kiểm tra cursor thuộc đúng cột/chiều sort của request
+     *
+     * @throws AppException INVALID_SEARCH_CURSOR nếu cursor hỏng hoặc của listing khác
+     */
+    public static Cursor decode(String token, SortKey key, Sort.Direction direction) {
+        try {
+            Cursor cursor = OBJECT_MAPPER.readValue(Base64.getUrlDecoder().decode(token), Cursor.class);
+            if (key.name().equals(cursor.k()) && direction.name().equals(cursor.d())
+                    && cursor.v() != null && cursor.i() != null) {
+                key.parser.apply(cursor.v());
+                return cursor;
+            }
+        } catch (Exception e) {
+            // fall through
+        }
+        throw new AppException(ErrorCode.INVALID_SEARCH_CURSOR);
+    }
+}
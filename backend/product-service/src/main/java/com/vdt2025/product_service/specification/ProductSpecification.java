@@ -15,16 +15,38 @@ import java.util.List;
  */
 public class ProductSpecification {
 
+    /**
+     * Cách so khớp keyword
+     * - LIKE: lower(name/description) LIKE '%kw%' (quét toàn bảng, dùng khi DB chưa có V7 migration)
+     * - FULL_TEXT: full-text không dấu trên tên + mô tả hoặc chuỗi con trong tên (GIN index, xem ProductTextSearchFunctions)
+     */
+    public enum KeywordMatch {
+        LIKE, FULL_TEXT
+    }
+
     public static Specification<Product> withFilter(ProductFilterRequest filter) {
+        return withFilter(filter, KeywordMatch.LIKE);
+    }
+
+    public static Specification<Product> withFilter(ProductFilterRequest filter, KeywordMatch keywordMatch) {
         return (root, query, cb) -> {
             List<Predicate> predicates = new ArrayList<>();
 
             // Keyword search (tìm trong tên và mô tả)
             if (filter.getKeyword() != null && !filter.getKeyword().isBlank()) {
-                String keyword = "%" + filter.getKeyword().toLowerCase() + "%";
-                Predicate namePredicate = cb.like(cb.lower(root.get("name")), keyword);
-                Predicate descPredicate = cb.like(cb.lower(root.get("description")), keyword);
-                predicates.add(cb.or(namePredicate, descPredicate));
+                if (keywordMatch == KeywordMatch.FULL_TEXT) {
+                    String keyword = filter.getKeyword().trim();
+                    Predicate textPredicate = cb.isTrue(cb.function("product_text_match", Boolean.class,
+                            root.get("name"), root.get("description"), cb.literal(keyword)));
+                    Predicate namePredicate = cb.isTrue(cb.function("product_name_contains", Boolean.class,
+                            root.get("name"), cb.literal(escapeLike(keyword))));
+                    predicates.add(cb.or(textPredicate, namePredicate));
+                } else {
+                    String keyword = "%" + filter.getKeyword().toLowerCase() + "%";
+                    Predicate namePredicate = cb.like(cb.lower(root.get("name")), keyword);
+                    Predicate descPredicate = cb.like(cb.lower(root.get("description")), keyword);
+                    predicates.add(cb.or(namePredicate, descPredicate));
+                }
             }
 
             // Name exact/partial match
@@ -138,4 +160,8 @@ public class ProductSpecification {
             return cb.and(predicates.toArray(new Predicate[0]));
         };
     }
-}
\ No newline at end of file
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
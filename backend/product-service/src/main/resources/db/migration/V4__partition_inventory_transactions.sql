@@ -0,0 +1,79 @@
+-- Migration script to convert inventory_transactions into an append-only table partitioned by month
+-- New rows are written by InventoryJournal (multi-row INSERT), InventoryJournalMaintenance creates
+-- upcoming partitions and archives old ones after rolling them up into inventory_transaction_rollups
+
+BEGIN;
+
+ALTER TABLE inventory_transactions RENAME TO inventory_transactions_legacy;
+ALTER INDEX IF EXISTS idx_inv_tx_variant RENAME TO idx_inv_tx_legacy_variant;
+ALTER INDEX IF EXISTS idx_inv_tx_type RENAME TO idx_inv_tx_legacy_type;
+ALTER INDEX IF EXISTS idx_inv_tx_created RENAME TO idx_inv_tx_legacy_created;
+ALTER INDEX IF EXISTS idx_inv_tx_reference RENAME TO idx_inv_tx_legacy_reference;
+
+-- Partition key must be part of the primary key
+CREATE TABLE inventory_transactions (
+    id VARCHAR(255) NOT NULL,
+    variant_id VARCHAR(255) NOT NULL,
+    transaction_type VARCHAR(50) NOT NULL,
+    quantity_change INTEGER NOT NULL,
+    quantity_before INTEGER NOT NULL,
+    quantity_after INTEGER NOT NULL,
+    reserved_before INTEGER NOT NULL,
+    reserved_after INTEGER NOT NULL,
+    reason TEXT,
+    performed_by VARCHAR(100),
+    reference_type VARCHAR(50),
+    reference_id VARCHAR(100),
+    metadata TEXT,
+    created_at TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+CREATE INDEX idx_inv_tx_variant ON inventory_transactions(variant_id, created_at);
+CREATE INDEX idx_inv_tx_type ON inventory_transactions(transaction_type);
+CREATE INDEX idx_inv_tx_created ON inventory_transactions(created_at);
+CREATE INDEX idx_inv_tx_reference ON inventory_transactions(reference_type, reference_id);
+
+-- One partition per month from the oldest existing row to two months ahead
+DO $$
+DECLARE
+    month_start DATE;
+BEGIN
+    FOR month_start IN
+        SELECT generate_series(
+            date_trunc('month', COALESCE((SELECT MIN(created_at) FROM inventory_transactions_legacy), now())),
+            date_trunc('month', now()) + INTERVAL '2 months',
+            INTERVAL '1 month')::date
+    LOOP
+        EXECUTE format(
+            'CREATE TABLE IF NOT EXISTS %I PARTITION OF inventory_transactions FOR VALUES FROM (%L) TO (%L)',
+            'inventory_transactions_y' || to_char(month_start, 'YYYY') || 'm' || to_char(month_start, 'MM'),
+            month_start,
+            (month_start + INTERVAL '1 month')::date);
+    END LOOP;
+END $$;
+
+-- Safety net for rows outside the pre-created range
+CREATE TABLE inventory_transactions_default PARTITION OF inventory_transactions DEFAULT;
+
+INSERT INTO inventory_transactions (id, variant_id, transaction_type, quantity_change, quantity_before,
+    quantity_after, reserved_before, reserved_after, reason, performed_by, reference_type, reference_id,
+    metadata, created_at)
+SELECT id, variant_id, transaction_type, quantity_change, quantity_before, quantity_after,
+    reserved_before, reserved_after, reason, performed_by, reference_type, reference_id, metadata, created_at
+FROM inventory_transactions_legacy;
+
+CREATE TABLE IF NOT EXISTS inventory_transaction_rollups (
+    variant_id VARCHAR(255) NOT NULL,
+    period_month DATE NOT NULL,
+    transaction_type VARCHAR(50) NOT NULL,
+    transaction_count BIGINT NOT NULL,
+    quantity_change_total BIGINT NOT NULL,
+    reserved_change_total BIGINT NOT NULL,
+    PRIMARY KEY (variant_id, period_month, transaction_type)
+);
+
+-- Verify row counts before dropping the legacy table:
+-- DROP TABLE inventory_transactions_legacy;
+
+COMMIT;
@@ -0,0 +1,24 @@
+-- Watermark + lease for ElasticsearchSyncService.incrementalSync and tombstones for hard-deleted products
+
+BEGIN;
+
+CREATE TABLE IF NOT EXISTS search_sync_state (
+    sync_name VARCHAR(50) PRIMARY KEY,
+    watermark_at TIMESTAMP,
+    watermark_id VARCHAR(255),
+    lease_owner VARCHAR(100),
+    lease_until TIMESTAMP,
+    last_synced_at TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS product_search_tombstones (
+    product_id VARCHAR(255) PRIMARY KEY,
+    deleted_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_product_tombstone_deleted_at ON product_search_tombstones (deleted_at);
+
+-- Keyset scan (updated_at, id) of changed products
+CREATE INDEX IF NOT EXISTS idx_products_updated_at_id ON products (updated_at, id);
+
+COMMIT;
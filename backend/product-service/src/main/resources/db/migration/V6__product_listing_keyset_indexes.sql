@@ -0,0 +1,10 @@
+-- Composite indexes for keyset pagination of product listings (ProductKeyset): ORDER BY sort_key, id
+
+BEGIN;
+
+CREATE INDEX IF NOT EXISTS idx_products_sold_count_id ON products (sold_count, id);
+CREATE INDEX IF NOT EXISTS idx_products_average_rating_id ON products (average_rating, id);
+CREATE INDEX IF NOT EXISTS idx_products_created_at_id ON products (created_at, id);
+CREATE INDEX IF NOT EXISTS idx_products_min_price_id ON products (min_price, id);
+
+COMMIT;
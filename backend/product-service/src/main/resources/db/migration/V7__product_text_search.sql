@@ -0,0 +1,23 @@
+-- Postgres keyword search for products (ProductSpecification KeywordMatch.FULL_TEXT)
+-- Used by the JPA listing path and as fallback while Elasticsearch is unavailable.
+-- Index expressions must match ProductTextSearchFunctions exactly.
+
+BEGIN;
+
+CREATE EXTENSION IF NOT EXISTS unaccent;
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- unaccent() is only STABLE (dictionary can change), an IMMUTABLE wrapper is required in index expressions
+CREATE OR REPLACE FUNCTION f_unaccent(text) RETURNS text
+    LANGUAGE sql IMMUTABLE PARALLEL SAFE STRICT
+AS $$ SELECT public.unaccent('public.unaccent'::regdictionary, $1) $$;
+
+-- Full-text on name + description, accents removed ("điện thoại" matches "dien thoai")
+CREATE INDEX IF NOT EXISTS idx_products_text_search ON products
+    USING GIN (to_tsvector('simple', f_unaccent(coalesce(name, '') || ' ' || coalesce(description, ''))));
+
+-- Substring match on name for partially typed words
+CREATE INDEX IF NOT EXISTS idx_products_name_trgm ON products
+    USING GIN (lower(f_unaccent(name)) gin_trgm_ops);
+
+COMMIT;
@@ -0,0 +1,5 @@
+-- Lấy và xóa nguyên tử tập key của một tag (key đăng ký sau thời điểm này vào tập mới)
+-- KEYS[1]: tag set
+local members = redis.call('SMEMBERS', KEYS[1])
+redis.call('DEL', KEYS[1])
+return members
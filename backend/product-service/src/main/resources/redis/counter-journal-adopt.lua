@@ -0,0 +1,14 @@
+-- Nhận journal của instance đã chết (alive key hết hạn) thành một lô inflight
+-- Nếu instance đó còn lô inflight dở dang thì trả lại chính lô đó
+-- KEYS[1]: journal hash, KEYS[2]: inflight hash, KEYS[3]: alive key, ARGV[1]: batch id mới
+if redis.call('EXISTS', KEYS[3]) == 1 then
+    return {}
+end
+if redis.call('EXISTS', KEYS[2]) == 0 then
+    if redis.call('EXISTS', KEYS[1]) == 0 then
+        return {}
+    end
+    redis.call('RENAME', KEYS[1], KEYS[2])
+    redis.call('HSET', KEYS[2], '__batch', ARGV[1])
+end
+return redis.call('HGETALL', KEYS[2])
@@ -0,0 +1,8 @@
+-- Ghi delta của write-behind counter vào journal của instance
+-- KEYS[1]: journal hash, KEYS[2]: alive key
+-- ARGV[1]: alive TTL (giây), ARGV[2..]: cặp field, delta
+for i = 2, #ARGV, 2 do
+    redis.call('HINCRBY', KEYS[1], ARGV[i], ARGV[i + 1])
+end
+redis.call('SET', KEYS[2], '1', 'EX', ARGV[1])
+return 1
@@ -0,0 +1,16 @@
+-- Chuyển snapshot delta từ journal sang lô inflight trước khi ghi xuống DB
+-- KEYS[1]: journal hash, KEYS[2]: inflight hash
+-- ARGV[1]: batch id, ARGV[2..]: cặp field, delta
+-- Trả về 0 nếu lô inflight trước đó chưa được xử lý xong
+if redis.call('EXISTS', KEYS[2]) == 1 then
+    return 0
+end
+for i = 2, #ARGV, 2 do
+    local left = redis.call('HINCRBY', KEYS[1], ARGV[i], -tonumber(ARGV[i + 1]))
+    if left == 0 then
+        redis.call('HDEL', KEYS[1], ARGV[i])
+    end
+    redis.call('HSET', KEYS[2], ARGV[i], ARGV[i + 1])
+end
+redis.call('HSET', KEYS[2], '__batch', ARGV[1])
+return 1
@@ -0,0 +1,7 @@
+-- Xóa lô inflight sau khi đã ghi xuống DB
+-- KEYS[1]: inflight hash, ARGV[1]: batch id
+if redis.call('HGET', KEYS[1], '__batch') ~= ARGV[1] then
+    return 0
+end
+redis.call('DEL', KEYS[1])
+return 1
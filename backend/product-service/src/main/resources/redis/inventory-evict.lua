@@ -0,0 +1,5 @@
+-- Bỏ counter của variant, tăng epoch để các lần nạp đang chạy dở không ghi đè giá trị cũ
+-- KEYS[1]: levels, KEYS[2]: epoch, ARGV[1]: variantId
+redis.call('HINCRBY', KEYS[2], ARGV[1], 1)
+redis.call('HDEL', KEYS[1], 'a:' .. ARGV[1], 'r:' .. ARGV[1])
+return 1
@@ -0,0 +1,29 @@
+-- Nạp counter tồn kho từ giá trị DB nếu epoch và lô processing chưa thay đổi kể từ lúc đọc DB
+-- KEYS[1]: levels, KEYS[2]: pending, KEYS[3]: processing, KEYS[4]: epoch
+-- ARGV[1]: variantId, ARGV[2]: expected epoch, ARGV[3]: onHand (DB), ARGV[4]: reserved (DB)
+-- ARGV[5]: batch id của lô processing lúc đọc DB ('' nếu không có)
+-- ARGV[6]: 1 nếu snapshot DB đã bao gồm lô processing đó (marker đã commit)
+local id = ARGV[1]
+local epoch = redis.call('HGET', KEYS[4], id) or '0'
+if epoch ~= ARGV[2] then
+    return 0
+end
+local batch = redis.call('HGET', KEYS[3], '__batch') or ''
+if batch ~= ARGV[5] then
+    return 0
+end
+local includeProcessing = ARGV[6] ~= '1'
+
+local function unsynced(field)
+    local value = tonumber(redis.call('HGET', KEYS[2], field) or '0')
+    if includeProcessing then
+        value = value + tonumber(redis.call('HGET', KEYS[3], field) or '0')
+    end
+    return value
+end
+
+local reserved = tonumber(ARGV[4]) + unsynced('r:' .. id)
+local onHand = tonumber(ARGV[3]) + unsynced('h:' .. id)
+redis.call('HSETNX', KEYS[1], 'r:' .. id, reserved)
+redis.call('HSETNX', KEYS[1], 'a:' .. id, onHand - reserved)
+return 1
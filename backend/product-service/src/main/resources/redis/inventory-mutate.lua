@@ -0,0 +1,58 @@
+-- Thao tác nguyên tử trên counter tồn kho của các variant trong cùng một shard
+-- KEYS[1]: hash levels  (a:<variantId> = available, r:<variantId> = reserved)
+-- KEYS[2]: hash pending (r:<variantId> = delta reserved, h:<variantId> = delta onHand chưa đồng bộ DB)
+-- ARGV[1]: operation, ARGV[2]: force (1 = bỏ qua kiểm tra), ARGV[3..]: cặp variantId, quantity
+-- Trả về: {1, 0, available1, reserved1, ...} nếu thành công (giá trị trước khi thay đổi)
+--         {0, index} nếu bị từ chối, {-1, index} nếu counter chưa được nạp
+local op = ARGV[1]
+local force = ARGV[2] == '1'
+local count = (#ARGV - 2) / 2
+
+local function delta(q, a, r)
+    if op == 'RESERVE' then return -q, q, 0 end
+    if op == 'RELEASE' then return q, -q, 0 end
+    if op == 'CONFIRM' then return 0, -q, -q end
+    if op == 'UNCONFIRM' then return 0, q, q end
+    if op == 'ADD_ON_HAND' then return q, 0, q end
+    if op == 'SET_ON_HAND' then
+        local d = q - (a + r)
+        return d, 0, d
+    end
+    return 0, 0, 0
+end
+
+for i = 0, count - 1 do
+    local id = ARGV[3 + i * 2]
+    local q = tonumber(ARGV[4 + i * 2])
+    local values = redis.call('HMGET', KEYS[1], 'a:' .. id, 'r:' .. id)
+    if not values[1] or not values[2] then
+        return {-1, i}
+    end
+    if not force then
+        local a = tonumber(values[1])
+        local r = tonumber(values[2])
+        local da, dr = delta(q, a, r)
+        if a + da < 0 or r + dr < 0 then
+            return {0, i}
+        end
+    end
+end
+
+local result = {1, 0}
+for i = 0, count - 1 do
+    local id = ARGV[3 + i * 2]
+    local q = tonumber(ARGV[4 + i * 2])
+    local values = redis.call('HMGET', KEYS[1], 'a:' .. id, 'r:' .. id)
+    local a = tonumber(values[1])
+    local r = tonumber(values[2])
+    local da, dr, dh = delta(q, a, r)
+    table.insert(result, a)
+    table.insert(result, r)
+    if da ~= 0 then redis.call('HINCRBY', KEYS[1], 'a:' .. id, da) end
+    if dr ~= 0 then
+        redis.call('HINCRBY', KEYS[1], 'r:' .. id, dr)
+        redis.call('HINCRBY', KEYS[2], 'r:' .. id, dr)
+    end
+    if dh ~= 0 then redis.call('HINCRBY', KEYS[2], 'h:' .. id, dh) end
+end
+return result
@@ -0,0 +1,11 @@
+-- Chuyển journal pending sang processing để đồng bộ xuống DB
+-- Nếu processing còn tồn tại (lần trước chưa complete) thì trả lại chính lô đó
+-- KEYS[1]: pending, KEYS[2]: processing, ARGV[1]: batch id mới
+if redis.call('EXISTS', KEYS[2]) == 0 then
+    if redis.call('EXISTS', KEYS[1]) == 0 then
+        return {}
+    end
+    redis.call('RENAME', KEYS[1], KEYS[2])
+    redis.call('HSET', KEYS[2], '__batch', ARGV[1])
+end
+return redis.call('HGETALL', KEYS[2])
@@ -0,0 +1,12 @@
+-- Xóa lô processing sau khi đã apply xuống DB và tăng epoch của các variant liên quan
+-- KEYS[1]: processing, KEYS[2]: epoch, ARGV[1]: batch id
+if redis.call('HGET', KEYS[1], '__batch') ~= ARGV[1] then
+    return 0
+end
+for _, field in ipairs(redis.call('HKEYS', KEYS[1])) do
+    if field ~= '__batch' then
+        redis.call('HINCRBY', KEYS[2], string.sub(field, 3), 1)
+    end
+end
+redis.call('DEL', KEYS[1])
+return 1
@@ -0,0 +1,16 @@
+-- Xóa product khỏi mọi leaderboard (ngừng bán, bị xóa)
+-- KEYS[1]: hash meta, ARGV[1]: prefix key, ARGV[2..]: productId
+local prefix = ARGV[1]
+for i = 2, #ARGV do
+    local meta = redis.call('HGET', KEYS[1], ARGV[i])
+    if meta then
+        local sep = string.find(meta, '|', 1, true)
+        for _, scope in ipairs({'all', 'store:' .. string.sub(meta, 1, sep - 1), 'category:' .. string.sub(meta, sep + 1)}) do
+            for _, metric in ipairs({'sold', 'rating', 'new'}) do
+                redis.call('ZREM', prefix .. metric .. ':' .. scope, ARGV[i])
+            end
+        end
+        redis.call('HDEL', KEYS[1], ARGV[i])
+    end
+end
+return 1
@@ -0,0 +1,21 @@
+-- Cập nhật soldCount/averageRating của product đã có trong leaderboard (product chưa có thì bỏ qua,
+-- sẽ được thêm khi index lại hoặc rebuild)
+-- KEYS[1]: hash meta, ARGV[1]: prefix key, tiếp theo là các bộ 3: productId, sold, rating ('' = chưa có)
+local prefix = ARGV[1]
+local updated = 0
+for i = 2, #ARGV, 3 do
+    local meta = redis.call('HGET', KEYS[1], ARGV[i])
+    if meta then
+        local sep = string.find(meta, '|', 1, true)
+        for _, scope in ipairs({'all', 'store:' .. string.sub(meta, 1, sep - 1), 'category:' .. string.sub(meta, sep + 1)}) do
+            redis.call('ZADD', prefix .. 'sold:' .. scope, ARGV[i + 1], ARGV[i])
+            if ARGV[i + 2] == '' then
+                redis.call('ZREM', prefix .. 'rating:' .. scope, ARGV[i])
+            else
+                redis.call('ZADD', prefix .. 'rating:' .. scope, ARGV[i + 2], ARGV[i])
+            end
+        end
+        updated = updated + 1
+    end
+end
+return updated
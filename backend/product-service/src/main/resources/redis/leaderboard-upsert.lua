@@ -0,0 +1,35 @@
+-- Ghi điểm của product vào leaderboard toàn sàn, theo store và theo category
+-- Product đổi store/category thì được xóa khỏi leaderboard của phạm vi cũ
+-- KEYS[1]: hash meta (productId -> storeId|categoryId)
+-- ARGV[1]: prefix key, tiếp theo là các bộ 6: productId, storeId, categoryId, sold, rating ('' = chưa có), created
+local prefix = ARGV[1]
+local metrics = {'sold', 'rating', 'new'}
+
+local function scopes(meta)
+    local sep = string.find(meta, '|', 1, true)
+    return {'all', 'store:' .. string.sub(meta, 1, sep - 1), 'category:' .. string.sub(meta, sep + 1)}
+end
+
+for i = 2, #ARGV, 6 do
+    local productId = ARGV[i]
+    local meta = ARGV[i + 1] .. '|' .. ARGV[i + 2]
+    local old = redis.call('HGET', KEYS[1], productId)
+    if old and old ~= meta then
+        for _, scope in ipairs(scopes(old)) do
+            for _, metric in ipairs(metrics) do
+                redis.call('ZREM', prefix .. metric .. ':' .. scope, productId)
+            end
+        end
+    end
+    redis.call('HSET', KEYS[1], productId, meta)
+    for _, scope in ipairs(scopes(meta)) do
+        redis.call('ZADD', prefix .. 'sold:' .. scope, ARGV[i + 3], productId)
+        redis.call('ZADD', prefix .. 'new:' .. scope, ARGV[i + 5], productId)
+        if ARGV[i + 4] == '' then
+            redis.call('ZREM', prefix .. 'rating:' .. scope, productId)
+        else
+            redis.call('ZADD', prefix .. 'rating:' .. scope, ARGV[i + 4], productId)
+        end
+    end
+end
+return 1
@@ -0,0 +1,11 @@
+-- Cộng delta tồn kho khả dụng vào snapshot theo product, chỉ với product đã có trong snapshot
+-- (product chưa có sẽ được nạp từ DB ở lần đọc đầu, cộng vào field trống sẽ cho giá trị sai)
+-- KEYS[1]: hash snapshot, ARGV: cặp productId, delta
+local applied = 0
+for i = 1, #ARGV, 2 do
+    if redis.call('HEXISTS', KEYS[1], ARGV[i]) == 1 then
+        redis.call('HINCRBY', KEYS[1], ARGV[i], ARGV[i + 1])
+        applied = applied + 1
+    end
+end
+return applied
@@ -0,0 +1,6 @@
+-- Nạp giá trị đọc từ DB vào snapshot, không ghi đè field đã có (có thể đã nhận delta mới hơn)
+-- KEYS[1]: hash snapshot, ARGV: cặp productId, available
+for i = 1, #ARGV, 2 do
+    redis.call('HSETNX', KEYS[1], ARGV[i], ARGV[i + 1])
+end
+return 1
@@ -0,0 +1,10 @@
+-- Sửa lệch giữa snapshot và DB, chỉ ghi khi field chưa bị delta khác thay đổi kể từ lúc đọc
+-- KEYS[1]: hash snapshot, ARGV: bộ ba productId, giá trị snapshot đã đọc, giá trị DB
+local corrected = 0
+for i = 1, #ARGV, 3 do
+    if redis.call('HGET', KEYS[1], ARGV[i]) == ARGV[i + 1] and ARGV[i + 1] ~= ARGV[i + 2] then
+        redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 2])
+        corrected = corrected + 1
+    end
+end
+return corrected
@@ -0,0 +1,179 @@
+package com.vdt2025.product_service.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vdt2025.common_dto.cache.CompactRedisSerializer;
+import com.vdt2025.product_service.configuration.CacheConfiguration;
+import com.vdt2025.product_service.dto.response.*;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.LinkedHashMap;
+
+/**
+ * Benchmark so sánh kích thước payload và thời gian encode/decode của các codec cache
+ * trên DTO thật (chi tiết sản phẩm, trang kết quả tìm kiếm)
+ *
+ * Không phải test JUnit, chạy thủ công:
+ * <pre>
+ * mvn -q test-compile
+ * java -cp target/classes:target/test-classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *   com.vdt2025.product_service.cache.CacheCodecBenchmark [iterations]
+ * </pre>
+ */
+public class CacheCodecBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 5_000;
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        ObjectMapper objectMapper = CacheConfiguration.cacheObjectMapper();
+
+        Map<String, RedisSerializer<Object>> codecs = new LinkedHashMap<>();
+        codecs.put("json (legacy)", new GenericJackson2JsonRedisSerializer(objectMapper));
+        codecs.put("smile", CompactRedisSerializer.create(objectMapper, CompactRedisSerializer.WriteFormat.COMPACT, 0));
+        codecs.put("smile+lz4", CompactRedisSerializer.create(objectMapper, CompactRedisSerializer.WriteFormat.COMPACT, 1));
+
+        Map<String, Object> payloads = new LinkedHashMap<>();
+        payloads.put("ProductResponse", productResponse());
+        payloads.put("PageCacheDTO(20)", searchPage(20));
+
+        System.out.printf("%-18s %-14s %10s %14s %14s%n", "payload", "codec", "bytes", "encode ns/op", "decode ns/op");
+        payloads.forEach((payloadName, payload) -> codecs.forEach((codecName, codec) -> {
+            Result result = measure(codec, payload, iterations);
+            System.out.printf("%-18s %-14s %10d %14d %14d%n",
+                    payloadName, codecName, result.bytes(), result.encodeNanos(), result.decodeNanos());
+        }));
+    }
+
+    private static Result measure(RedisSerializer<Object> codec, Object payload, int iterations) {
+        byte[] bytes = codec.serialize(payload);
+        Object roundTrip = codec.deserialize(bytes);
+        if (!payload.equals(roundTrip)) {
+            throw new IllegalStateException("Round-trip mismatch for " + payload.getClass().getSimpleName());
+        }
+
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += codec.serialize(payload).length;
+            sink += codec.deserialize(bytes).hashCode();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += codec.serialize(payload).length;
+        }
+        long encodeNanos = (System.nanoTime() - start) / iterations;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += codec.deserialize(bytes).hashCode();
+        }
+        long decodeNanos = (System.nanoTime() - start) / iterations;
+
+        if (sink == 42) {
+            System.out.println();
+        }
+        return new Result(bytes.length, encodeNanos, decodeNanos);
+    }
+
+    private record Result(int bytes, long encodeNanos, long decodeNanos) {}
+
+    private static ProductResponse productResponse() {
+        LocalDateTime now = LocalDateTime.of(2025, 11, 20, 10, 30);
+        CategoryResponse category = CategoryResponse.builder()
+                .id("cat-phone").name("Điện thoại").description("Điện thoại thông minh")
+                .imageName("phone.png").imageUrl("https://cdn.example.com/categories/phone.png")
+                .level(1).productCount(1250).createdBy("admin").createdAt(now).updatedAt(now)
+                .build();
+        StoreResponse store = StoreResponse.builder()
+                .id("store-1").sellerProfileId("seller-1").userName("seller01").storeName("Cửa hàng Công Nghệ Số")
+                .storeDescription("Chuyên điện thoại, máy tính bảng và phụ kiện chính hãng")
+                .logoName("logo.png").logoUrl("https://cdn.example.com/stores/store-1/logo.png")
+                .bannerName("banner.png").bannerUrl("https://cdn.example.com/stores/store-1/banner.png")
+                .contactEmail("contact@store.example.com").contactPhone("0912345678")
+                .shopAddress("Số 1 Đại Cồ Việt, Hai Bà Trưng, Hà Nội").provinceId(1).wardId(10)
+                .isActive(true).createdAt(now).updatedAt(now)
+                .build();
+        BrandResponse brand = BrandResponse.builder()
+                .id("brand-1").name("Samsung").description("Samsung Electronics")
+                .logoName("samsung.png").logoUrl("https://cdn.example.com/brands/samsung.png")
+                .isActive(true).createdAt(now).updatedAt(now)
+                .build();
+
+        List<VariantResponse> variants = new ArrayList<>();
+        String[] colors = {"Đen", "Trắng", "Xanh", "Tím"};
+        String[] storages = {"128GB", "256GB", "512GB"};
+        for (String color : colors) {
+            for (String storage : storages) {
+                variants.add(VariantResponse.builder()
+                        .id("variant-" + color.hashCode() + "-" + storage)
+                        .sku("SM-S24-" + storage + "-" + Math.abs(color.hashCode() % 1000))
+                        .variantName("Galaxy S24 " + color + " " + storage)
+                        .price(new BigDecimal("21990000")).originalPrice(new BigDecimal("24990000"))
+                        .soldQuantity(320).imageName("variant.png")
+                        .imageUrl("https://cdn.example.com/products/p-1/variants/" + storage + ".png")
+                        .weight(new BigDecimal("0.167")).createdAt(now).updatedAt(now)
+                        .attributeValues(List.of(
+                                attributeValue("attr-color", "Màu sắc", color, now),
+                                attributeValue("attr-storage", "Bộ nhớ", storage, now)))
+                        .availableStock(57).reservedStock(3)
+                        .build());
+            }
+        }
+
+        List<ProductImageResponse> images = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            images.add(ProductImageResponse.builder()
+                    .id("img-" + i).imageName("image-" + i + ".jpg")
+                    .imageUrl("https://cdn.example.com/products/p-1/image-" + i + ".jpg")
+                    .isPrimary(i == 0).displayOrder(i).createdAt(now).updatedAt(now)
+                    .build());
+        }
+
+        return ProductResponse.builder()
+                .id("p-1").name("Samsung Galaxy S24 5G")
+                .description("Samsung Galaxy S24 với chip Snapdragon 8 Gen 3, màn hình Dynamic AMOLED 2X 6.2 inch, "
+                        .repeat(8))
+                .shortDescription("Flagship nhỏ gọn, camera 50MP, pin 4000mAh")
+                .viewCount(154_320L).soldCount(3_840).averageRating(4.8).ratingCount(912).isActive(true)
+                .category(category).store(store).brand(brand)
+                .variants(variants).images(images)
+                .createdBy("seller01").createdAt(now).updatedAt(now)
+                .minPrice(new BigDecimal("21990000")).maxPrice(new BigDecimal("27990000"))
+                .storeCategories(List.of(category))
+                .build();
+    }
+
+    private static AttributeValueResponse attributeValue(String attributeId, String attributeName, String value,
+                                                         LocalDateTime now) {
+        return AttributeValueResponse.builder()
+                .id(attributeId + "-" + value).value(value)
+                .attributeId(attributeId).attributeName(attributeName)
+                .isActive(true).createdAt(now).updatedAt(now)
+                .build();
+    }
+
+    private static PageCacheDTO<ProductSummaryResponse> searchPage(int size) {
+        LocalDateTime now = LocalDateTime.of(2025, 11, 20, 10, 30);
+        List<ProductSummaryResponse> content = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            content.add(ProductSummaryResponse.builder()
+                    .id("p-" + i).name("Điện thoại Samsung Galaxy mẫu " + i)
+                    .shortDescription("Flagship nhỏ gọn, camera 50MP, pin 4000mAh")
+                    .thumbnailImage("https://cdn.example.com/products/p-" + i + "/thumb.jpg")
+                    .minPrice(new BigDecimal("21990000")).maxPrice(new BigDecimal("27990000"))
+                    .soldCount(100 + i).averageRating(4.5).ratingCount(80 + i).isActive(true)
+                    .storeName("Cửa hàng Công Nghệ Số").storeId("store-1")
+                    .storeCategoryName(List.of("Điện thoại", "Khuyến mãi"))
+                    .platformCategoryName("Điện thoại").brandName("Samsung")
+                    .createdAt(now).totalAvailableStock(120 + i)
+                    .build());
+        }
+        return new PageCacheDTO<>(content, 0, size, 1_250);
+    }
+}
@@ -0,0 +1,129 @@
+package com.vdt2025.product_service.service.suggest;
+
+import com.vdt2025.product_service.service.suggest.SuggestionIndex.Term;
+import com.vdt2025.product_service.service.suggest.SuggestionIndex.Type;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SuggestionIndexTest {
+
+    private static Term term(String id, String text, long weight) {
+        return new Term(id, Type.PRODUCT, text, weight);
+    }
+
+    private static List<String> texts(List<Term> terms) {
+        return terms.stream().map(Term::text).toList();
+    }
+
+    @Test
+    void topKOnlyReturnsTermsInPrefixRange() {
+        SuggestionIndex index = SuggestionIndex.build(List.of(
+                term("1", "Samsung Galaxy S24", 10),
+                term("2", "Samsung Tab", 5),
+                term("3", "Sony TV", 20),
+                term("4", "Apple iPhone", 30)));
+
+        assertThat(texts(index.topK("sam", 10, t -> true)))
+                .containsExactly("Samsung Galaxy S24", "Samsung Tab");
+        assertThat(texts(index.topK("s", 10, t -> true)))
+                .containsExactly("Sony TV", "Samsung Galaxy S24", "Samsung Tab");
+        assertThat(index.topK("samsung tab", 10, t -> true)).extracting(Term::id).containsExactly("2");
+        assertThat(index.topK("zzz", 10, t -> true)).isEmpty();
+        assertThat(index.topK("a", 10, t -> true)).extracting(Term::id).containsExactly("4");
+    }
+
+    @Test
+    void topKMatchesWordStartsWithoutDiacritics() {
+        SuggestionIndex index = SuggestionIndex.build(List.of(
+                term("1", "Điện thoại Samsung Galaxy", 10),
+                term("2", "Tai nghe Galaxy Buds", 5)));
+
+        assertThat(index.topK("dien th", 10, t -> true)).extracting(Term::id).containsExactly("1");
+        assertThat(index.topK("galaxy", 10, t -> true)).extracting(Term::id).containsExactly("1", "2");
+        // Chỉ khớp đầu từ, không khớp giữa từ
+        assertThat(index.topK("alaxy", 10, t -> true)).isEmpty();
+    }
+
+    @Test
+    void topKOrdersByWeightAndStopsAtK() {
+        SuggestionIndex index = SuggestionIndex.build(List.of(
+                term("1", "iPhone 13", 5),
+                term("2", "iPhone 15 Pro", 50),
+                term("3", "iPhone 14", 20),
+                term("4", "iPhone 12", 10)));
+
+        assertThat(texts(index.topK("iphone", 3, t -> true)))
+                .containsExactly("iPhone 15 Pro", "iPhone 14", "iPhone 12");
+        assertThat(index.topK("iphone", 0, t -> true)).isEmpty();
+    }
+
+    @Test
+    void topKPrefersWordStartMatchOnEqualWeight() {
+        SuggestionIndex index = SuggestionIndex.build(List.of(
+                term("1", "Samsung Galaxy", 10),
+                term("2", "Galaxy Buds", 10)));
+
+        assertThat(index.topK("galaxy", 2, t -> true)).extracting(Term::id).containsExactly("2", "1");
+    }
+
+    @Test
+    void topKSkipsDuplicatesAndRejectedTerms() {
+        SuggestionIndex index = SuggestionIndex.build(List.of(
+                // Nhiều key của cùng một term khớp prefix
+                term("1", "Pro Pro Max", 30),
+                // Trùng text hiển thị với term khác
+                term("2", "pro pro max", 20),
+                term("3", "Pro Case", 10),
+                term("4", "Pro Stand", 5)));
+
+        assertThat(index.topK("pro", 10, t -> true)).extracting(Term::id).containsExactly("1", "3", "4");
+        assertThat(index.topK("pro", 2, t -> !t.id().equals("1"))).extracting(Term::id).containsExactly("2", "3");
+    }
+
+    @Test
+    void topKAgreesWithBruteForce() {
+        Random random = new Random(42);
+        String[] words = {"ao", "quan", "giay", "tui", "dong", "ho", "kinh", "mu", "vi", "sac"};
+        List<Term> terms = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            StringBuilder text = new StringBuilder();
+            int length = 1 + random.nextInt(4);
+            for (int w = 0; w < length; w++) {
+                text.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            // Trọng số và text khác nhau để thứ tự mong đợi là duy nhất
+            terms.add(term(String.valueOf(i), text.toString().trim() + " " + i, i * 7919L % 1009));
+        }
+        SuggestionIndex index = SuggestionIndex.build(terms);
+
+        for (String prefix : List.of("a", "ao", "quan g", "d", "ho", "vi sac", "mu 1", "x")) {
+            List<String> expected = terms.stream()
+                    .filter(t -> SuggestionIndex.matches(SuggestionIndex.normalize(t.text()), prefix))
+                    .sorted(Comparator.comparingLong(Term::weight).reversed())
+                    .limit(8)
+                    .map(Term::id)
+                    .toList();
+            assertThat(index.topK(prefix, 8, t -> true)).extracting(Term::id)
+                    .as("prefix '%s'", prefix)
+                    .containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    void emptyIndexReturnsNothing() {
+        assertThat(SuggestionIndex.empty().topK("a", 5, t -> true)).isEmpty();
+        assertThat(SuggestionIndex.empty().termCount()).isZero();
+    }
+
+    @Test
+    void normalizeStripsDiacriticsAndPunctuation() {
+        assertThat(SuggestionIndex.normalize("Điện Thoại  Sam-sung")).isEqualTo("dien thoai sam sung");
+        assertThat(SuggestionIndex.normalize(null)).isEmpty();
+    }
+}
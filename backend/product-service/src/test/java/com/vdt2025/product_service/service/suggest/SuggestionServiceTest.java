@@ -0,0 +1,133 @@
+package com.vdt2025.product_service.service.suggest;
+
+import com.vdt2025.product_service.document.ProductDocument;
+import com.vdt2025.product_service.repository.ProductRepository;
+import com.vdt2025.product_service.repository.StoreRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SuggestionServiceTest {
+
+    private ProductRepository productRepository;
+    private StoreRepository storeRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private SuggestionService service;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        storeRepository = mock(StoreRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new SuggestionService(productRepository, storeRepository, meterRegistry, true, 30, 2000, 100);
+
+        // [productId, name, soldCount, brandId, brandName, categoryId, categoryName]
+        when(productRepository.findSuggestionSourceAfter(anyString(), any())).thenReturn(List.<Object[]>of(
+                new Object[]{"p1", "Samsung Galaxy S24", 100, "b1", "Samsung", "c1", "Điện thoại"},
+                new Object[]{"p2", "Samsung Galaxy A15", 40, "b1", "Samsung", "c1", "Điện thoại"},
+                new Object[]{"p3", "Sony WH-1000XM5", 10, "b2", "Sony", "c2", "Tai nghe"}));
+        // [storeId, storeName, totalSold]
+        when(storeRepository.findSuggestionSource()).thenReturn(List.<Object[]>of(
+                new Object[]{"s1", "Samsung Official Store", 500}));
+        service.rebuild();
+    }
+
+    private static ProductDocument product(String id, String name, Integer soldCount, boolean active) {
+        return ProductDocument.builder()
+                .id(id)
+                .name(name)
+                .soldCount(soldCount)
+                .isActive(active)
+                .isDeleted(false)
+                .build();
+    }
+
+    @Test
+    void suggestFromSnapshotFiltersTypes() {
+        // Thương hiệu Samsung có trọng số tổng 100 + 40 + 2
+        assertThat(service.suggest("sam", 10, SuggestionService.PRODUCT_TYPES)).contains(
+                List.of("Samsung", "Samsung Galaxy S24", "Samsung Galaxy A15"));
+        assertThat(service.suggest("sam", 10, SuggestionService.STORE_TYPES)).contains(
+                List.of("Samsung Official Store"));
+        assertThat(service.suggest("dien", 10, SuggestionService.PRODUCT_TYPES)).contains(List.of("Điện thoại"));
+    }
+
+    @Test
+    void suggestReturnsEmptyForFallback() {
+        assertThat(service.suggest("xyz", 10, SuggestionService.PRODUCT_TYPES)).isEmpty();
+        assertThat(service.suggest("  ", 10, SuggestionService.PRODUCT_TYPES)).isEmpty();
+
+        SuggestionService notBuilt = new SuggestionService(productRepository, storeRepository,
+                new SimpleMeterRegistry(), true, 30, 2000, 100);
+        assertThat(notBuilt.suggest("sam", 10, SuggestionService.PRODUCT_TYPES)).isEmpty();
+        assertThat(meterRegistry.counter("search.suggest.requests", "source", "fallback").count()).isEqualTo(2);
+    }
+
+    @Test
+    void overlayReplacesSnapshotTermWithSameId() {
+        service.upsertProduct(product("p2", "Samsung Galaxy A16", 40, true));
+
+        assertThat(service.suggest("samsung galaxy", 10, SuggestionService.PRODUCT_TYPES)).contains(
+                List.of("Samsung Galaxy S24", "Samsung Galaxy A16"));
+        assertThat(service.suggest("a15", 10, SuggestionService.PRODUCT_TYPES)).isEmpty();
+    }
+
+    @Test
+    void overlayMergesNewTermsByWeight() {
+        service.upsertProduct(product("p4", "Samsung Galaxy Z Fold", 70, true));
+        service.upsertProduct(product("p5", "Samsung Galaxy Z Flip", 1, true));
+
+        assertThat(service.suggest("samsung galaxy", 10, SuggestionService.PRODUCT_TYPES)).contains(List.of(
+                "Samsung Galaxy S24", "Samsung Galaxy Z Fold", "Samsung Galaxy A15", "Samsung Galaxy Z Flip"));
+        assertThat(service.suggest("samsung galaxy", 2, SuggestionService.PRODUCT_TYPES)).contains(
+                List.of("Samsung Galaxy S24", "Samsung Galaxy Z Fold"));
+        // Khớp đầu từ ở giữa tên, không dấu
+        assertThat(service.suggest("fold", 10, SuggestionService.PRODUCT_TYPES)).contains(
+                List.of("Samsung Galaxy Z Fold"));
+    }
+
+    @Test
+    void overlayRemovalHidesSnapshotTerm() {
+        service.removeProduct("p1");
+        service.upsertProduct(product("p3", "Sony WH-1000XM5", 10, false));
+        service.removeStore("s1");
+
+        assertThat(service.suggest("samsung galaxy", 10, SuggestionService.PRODUCT_TYPES)).contains(
+                List.of("Samsung Galaxy A15"));
+        assertThat(service.suggest("sony wh", 10, SuggestionService.PRODUCT_TYPES)).isEmpty();
+        assertThat(service.suggest("samsung", 10, SuggestionService.STORE_TYPES)).isEmpty();
+    }
+
+    @Test
+    void overlayStoreUpsertAndTextDeduplication() {
+        service.upsertStore("s2", "Sony Center", 1000);
+        // Cùng text với product trong snapshot: chỉ hiển thị một lần
+        service.upsertProduct(product("p6", "samsung galaxy s24", 5, true));
+
+        assertThat(service.suggest("s", 10, SuggestionService.STORE_TYPES)).contains(
+                List.of("Sony Center", "Samsung Official Store"));
+        assertThat(service.suggest("samsung galaxy s", 10, SuggestionService.PRODUCT_TYPES)).contains(
+                List.of("Samsung Galaxy S24"));
+    }
+
+    @Test
+    void rebuildDropsOverlayAlreadyInSnapshot() {
+        service.upsertProduct(product("p2", "Samsung Galaxy A16", 40, true));
+        when(productRepository.findSuggestionSourceAfter(anyString(), any())).thenReturn(List.<Object[]>of(
+                new Object[]{"p1", "Samsung Galaxy S24", 100, "b1", "Samsung", "c1", "Điện thoại"},
+                new Object[]{"p2", "Samsung Galaxy A16", 40, "b1", "Samsung", "c1", "Điện thoại"}));
+        service.rebuild();
+
+        assertThat(service.suggest("samsung galaxy", 10, SuggestionService.PRODUCT_TYPES)).contains(
+                List.of("Samsung Galaxy S24", "Samsung Galaxy A16"));
+        assertThat(service.suggest("sony", 10, SuggestionService.PRODUCT_TYPES)).isEmpty();
+    }
+}
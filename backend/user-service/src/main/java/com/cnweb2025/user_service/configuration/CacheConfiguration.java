@@ -3,11 +3,12 @@ package com.cnweb2025.user_service.configuration;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.vdt2025.common_dto.cache.CompactRedisSerializer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
-import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.security.data.repository.query.SecurityEvaluationContextExtension;
 
@@ -23,7 +24,9 @@ public class CacheConfiguration {
     }
 
     @Bean
-    public RedisCacheConfiguration redisCacheConfiguration() {
+    public RedisCacheConfiguration redisCacheConfiguration(
+            @Value("${cache.codec.write-format:compact}") String writeFormat,
+            @Value("${cache.codec.compression-threshold:1024}") int compressionThreshold) {
         // 1. Tạo một ObjectMapper tùy chỉnh
         ObjectMapper objectMapper = new ObjectMapper()
                 // 2. Đăng ký module để xử lý LocalDateTime, ZonedDateTime, v.v.
@@ -35,8 +38,12 @@ public class CacheConfiguration {
                 ObjectMapper.DefaultTyping.NON_FINAL
         );
 
-        // 3. Tạo serializer với ObjectMapper đã được cấu hình
-        GenericJackson2JsonRedisSerializer serializer = new GenericJackson2JsonRedisSerializer(objectMapper);
+        // 3. Tạo serializer nhị phân (Smile + LZ4) với ObjectMapper đã được cấu hình
+        // Entry JSON cũ vẫn đọc được; write-format=json dùng khi rolling deploy
+        CompactRedisSerializer serializer = CompactRedisSerializer.create(
+                objectMapper,
+                CompactRedisSerializer.WriteFormat.valueOf(writeFormat.toUpperCase()),
+                compressionThreshold);
 
         // 4. Sử dụng serializer này cho cấu hình cache
         return RedisCacheConfiguration.defaultCacheConfig()
@@ -40,6 +40,19 @@ import styles from "./CheckoutPage.module.css";
 const { Option } = Select;
 const { TextArea } = Input;
 
+// Đơn mới tạo chờ product-service giữ hàng (saga) trước khi cho thanh toán
+const STOCK_NOT_RESERVED_CODE = 1932;
+
+const initiatePaymentWhenReserved = async (orderIds, expireDurationSeconds) => {
+  for (let attempt = 0; ; attempt++) {
+    const response = await initiateOrderPaymentApi(orderIds, expireDurationSeconds);
+    if (response?.code !== STOCK_NOT_RESERVED_CODE || attempt >= 10) {
+      return response;
+    }
+    await new Promise((resolve) => setTimeout(resolve, 300 * (attempt + 1)));
+  }
+};
+
 /**
  * Checkout Page Component
  * Trang điền thông tin địa chỉ giao hàng và đặt hàng
@@ -275,7 +288,7 @@ const CheckoutPage = () => {
           console.log("Initiating payment for orders:", orderIds);
 
           // Gọi API khởi tạo thanh toán với thời gian hết hạn 15 phút (900 giây)
-          const paymentResponse = await initiateOrderPaymentApi(orderIds, 900);
+          const paymentResponse = await initiatePaymentWhenReserved(orderIds, 900);
 
           hideLoading();
 